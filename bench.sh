@@ -0,0 +1,15 @@
+#!/bin/bash
+# Build the analyzer and the JMH benchmarks, then run them.
+# Results are written as JSON to bench-results.json (throughput, "bytes" = input bytes/s,
+# and gc.alloc.rate.norm = bytes allocated per operation).
+#
+#   ./bench.sh                         # all benchmarks
+#   ./bench.sh ParserBenchmark -p threads=50000
+
+set -e
+
+mvn -B -q install -DskipTests
+mvn -B -q -f bench/pom.xml package
+
+java -jar bench/target/benchmarks.jar -prof gc -rf json -rff bench-results.json "$@"
+echo "Results: bench-results.json"
@@ -0,0 +1,84 @@
+package com.analyzer.bench;
+
+import com.analyzer.ThreadDumpServer;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full POST /api/analyze round trip against a server started in the benchmark JVM.
+ * With {@code cache} on, every request after the first is a result-cache hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AnalyzeBenchmark {
+
+    @Param({"1000", "10000"})
+    public int threads;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    @Param({"false", "true"})
+    public boolean cache;
+
+    private HttpServer server;
+    private HttpClient client;
+    private URI        uri;
+    private byte[]     body;
+    private final byte[] sink = new byte[64 * 1024];
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        body   = BenchSupport.multipartBody(BenchSupport.generator(threads, 24, "JDK21").generateBytes());
+        System.setProperty("analyzer.cacheBytes", cache ? String.valueOf(256L << 20) : "0");
+        server = ThreadDumpServer.startOn(0);
+        uri    = URI.create("http://localhost:" + server.getAddress().getPort() + "/api/analyze");
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        server.stop(0);
+    }
+
+    @Benchmark
+    public long analyze(BenchSupport.Bytes counter) throws IOException, InterruptedException {
+        counter.bytes += body.length;
+        HttpRequest req = HttpRequest.newBuilder(uri)
+                .header("Content-Type", BenchSupport.CONTENT_TYPE)
+                .header("Accept-Encoding", gzip ? "gzip" : "identity")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        HttpResponse<InputStream> res = client.send(req, HttpResponse.BodyHandlers.ofInputStream());
+        if (res.statusCode() != 200) throw new IllegalStateException("HTTP " + res.statusCode());
+        long total = 0;
+        try (InputStream in = res.body()) {
+            for (int n; (n = in.read(sink)) != -1; ) total += n;
+        }
+        return total;
+    }
+}
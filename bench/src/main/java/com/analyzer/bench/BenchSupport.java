@@ -0,0 +1,56 @@
+package com.analyzer.bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/** Shared fixtures for the benchmarks. */
+public final class BenchSupport {
+
+    static final String BOUNDARY     = "----AnalyzerBenchBoundary7MA4YWxkTrZu0gW";
+    static final String CONTENT_TYPE = "multipart/form-data; boundary=" + BOUNDARY;
+
+    private BenchSupport() { }
+
+    /**
+     * Input bytes consumed per second, reported next to ops/s in the JMH JSON as "bytes".
+     * Dividing gc.alloc.rate.norm (from -prof gc) by the input size gives allocation per MB.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() { bytes = 0; }
+    }
+
+    static DumpGenerator generator(int threads, int depth, String variant) {
+        return new DumpGenerator()
+                .threads(threads)
+                .stackDepth(depth)
+                .variant(DumpGenerator.Variant.valueOf(variant))
+                .seed(42);
+    }
+
+    /** A browser-like form: a text field, the dump as a file part, and a trailing field. */
+    static byte[] multipartBody(byte[] file) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(file.length + 512);
+        String head = "--" + BOUNDARY + "\r\n"
+                    + "Content-Disposition: form-data; name=\"note\"\r\n\r\n"
+                    + "benchmark\r\n"
+                    + "--" + BOUNDARY + "\r\n"
+                    + "Content-Disposition: form-data; name=\"dumpfile\"; filename=\"dump.txt\"\r\n"
+                    + "Content-Type: text/plain\r\n\r\n";
+        String tail = "\r\n--" + BOUNDARY + "--\r\n";
+        out.writeBytes(head.getBytes(StandardCharsets.UTF_8));
+        out.writeBytes(file);
+        out.writeBytes(tail.getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+}
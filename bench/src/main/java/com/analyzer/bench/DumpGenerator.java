@@ -0,0 +1,249 @@
+package com.analyzer.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic generator of realistic HotSpot thread dumps for benchmarks.
+ *
+ * The same settings and seed always produce the same bytes. Most threads belong to pools
+ * (executor workers, Tomcat/Netty event loops, JDBC pool housekeepers) whose members share a
+ * stack, as in real application servers; the rest get stacks assembled from a frame vocabulary.
+ *
+ * Usage:
+ *   java -cp bench/target/benchmarks.jar com.analyzer.bench.DumpGenerator \
+ *        --threads 20000 --depth 32 --locks 0.05 --variant JDK21 --seed 42 --out big-dump.txt
+ */
+public final class DumpGenerator {
+
+    /** Header layout of the JDK that "took" the dump. */
+    public enum Variant {
+        /** "name" #N daemon prio=5 os_prio=0 tid=0x... nid=0x... — no cpu/elapsed */
+        JDK8,
+        /** "name" #N daemon prio=5 os_prio=0 cpu=1.23ms elapsed=4.56s tid=0x... nid=0x... */
+        JDK17,
+        /** "name" #N [osId] daemon prio=5 os_prio=0 cpu=1.23ms elapsed=4.56s tid=0x... nid=osId */
+        JDK21,
+        /** Each thread picks one of the above */
+        MIXED
+    }
+
+    private static final String[] APP_FRAMES = {
+            "com.acme.orders.OrderService.placeOrder(OrderService.java:%d)",
+            "com.acme.orders.OrderRepository.save(OrderRepository.java:%d)",
+            "com.acme.billing.InvoiceGenerator.render(InvoiceGenerator.java:%d)",
+            "com.acme.web.OrderController.create(OrderController.java:%d)",
+            "com.acme.cache.RegionCache.get(RegionCache.java:%d)",
+            "com.fasterxml.jackson.databind.ObjectMapper.readValue(ObjectMapper.java:%d)",
+            "com.zaxxer.hikari.pool.HikariPool.getConnection(HikariPool.java:%d)",
+            "org.hibernate.internal.SessionImpl.flush(SessionImpl.java:%d)",
+            "org.springframework.aop.framework.ReflectiveMethodInvocation.proceed(ReflectiveMethodInvocation.java:%d)",
+            "org.springframework.transaction.interceptor.TransactionInterceptor.invoke(TransactionInterceptor.java:%d)",
+            "org.apache.catalina.core.StandardWrapperValve.invoke(StandardWrapperValve.java:%d)",
+            "org.apache.coyote.http11.Http11Processor.service(Http11Processor.java:%d)",
+            "java.util.HashMap.computeIfAbsent(HashMap.java:%d)",
+            "java.util.concurrent.ConcurrentHashMap.putVal(ConcurrentHashMap.java:%d)",
+            "java.net.SocketInputStream.read(SocketInputStream.java:%d)",
+            "sun.nio.ch.SocketDispatcher.read0(Native Method)",
+    };
+
+    private static final String[] LOCK_CLASSES = {
+            "java.lang.Object", "java.util.HashMap", "com.acme.cache.RegionCache",
+            "java.util.concurrent.locks.ReentrantLock$NonfairSync",
+    };
+
+    private record Pool(String namePattern, boolean daemon, String state, String detail, String[] frames) { }
+
+    private static final Pool[] POOLS = {
+            new Pool("pool-%d-thread-%d", false, "WAITING", "(parking)", new String[] {
+                    "jdk.internal.misc.Unsafe.park(Native Method)",
+                    "- parking to wait for  <0x00000000c0a80010> (a java.util.concurrent.locks.AbstractQueuedSynchronizer$ConditionObject)",
+                    "java.util.concurrent.locks.LockSupport.park(LockSupport.java:371)",
+                    "java.util.concurrent.locks.AbstractQueuedSynchronizer$ConditionObject.await(AbstractQueuedSynchronizer.java:1623)",
+                    "java.util.concurrent.LinkedBlockingQueue.take(LinkedBlockingQueue.java:435)",
+                    "java.util.concurrent.ThreadPoolExecutor.getTask(ThreadPoolExecutor.java:1070)",
+                    "java.util.concurrent.ThreadPoolExecutor.runWorker(ThreadPoolExecutor.java:1130)",
+                    "java.util.concurrent.ThreadPoolExecutor$Worker.run(ThreadPoolExecutor.java:642)",
+                    "java.lang.Thread.run(Thread.java:1583)" }),
+            new Pool("nioEventLoopGroup-%d-%d", true, "RUNNABLE", "", new String[] {
+                    "sun.nio.ch.EPoll.wait(Native Method)",
+                    "sun.nio.ch.EPollSelectorImpl.doSelect(EPollSelectorImpl.java:121)",
+                    "sun.nio.ch.SelectorImpl.lockAndDoSelect(SelectorImpl.java:130)",
+                    "sun.nio.ch.SelectorImpl.select(SelectorImpl.java:142)",
+                    "io.netty.channel.nio.SelectedSelectionKeySetSelector.select(SelectedSelectionKeySetSelector.java:68)",
+                    "io.netty.channel.nio.NioEventLoop.select(NioEventLoop.java:879)",
+                    "io.netty.channel.nio.NioEventLoop.run(NioEventLoop.java:526)",
+                    "io.netty.util.concurrent.SingleThreadEventExecutor$4.run(SingleThreadEventExecutor.java:997)",
+                    "io.netty.util.internal.ThreadExecutorMap$2.run(ThreadExecutorMap.java:74)",
+                    "io.netty.util.concurrent.FastThreadLocalRunnable.run(FastThreadLocalRunnable.java:30)",
+                    "java.lang.Thread.run(Thread.java:1583)" }),
+            new Pool("http-nio-8080-exec-%2$d", true, "WAITING", "(parking)", new String[] {
+                    "jdk.internal.misc.Unsafe.park(Native Method)",
+                    "- parking to wait for  <0x00000000c0b00020> (a java.util.concurrent.locks.AbstractQueuedSynchronizer$ConditionObject)",
+                    "java.util.concurrent.locks.LockSupport.park(LockSupport.java:371)",
+                    "java.util.concurrent.locks.AbstractQueuedSynchronizer$ConditionObject.await(AbstractQueuedSynchronizer.java:1623)",
+                    "java.util.concurrent.LinkedBlockingQueue.take(LinkedBlockingQueue.java:435)",
+                    "org.apache.tomcat.util.threads.TaskQueue.take(TaskQueue.java:117)",
+                    "org.apache.tomcat.util.threads.ThreadPoolExecutor.getTask(ThreadPoolExecutor.java:1114)",
+                    "org.apache.tomcat.util.threads.ThreadPoolExecutor.runWorker(ThreadPoolExecutor.java:1176)",
+                    "org.apache.tomcat.util.threads.ThreadPoolExecutor$Worker.run(ThreadPoolExecutor.java:659)",
+                    "org.apache.tomcat.util.threads.TaskThread$WrappingRunnable.run(TaskThread.java:61)",
+                    "java.lang.Thread.run(Thread.java:1583)" }),
+            new Pool("HikariPool-%d housekeeper-%d", true, "TIMED_WAITING", "(parking)", new String[] {
+                    "jdk.internal.misc.Unsafe.park(Native Method)",
+                    "- parking to wait for  <0x00000000c0c00030> (a java.util.concurrent.locks.AbstractQueuedSynchronizer$ConditionObject)",
+                    "java.util.concurrent.locks.LockSupport.parkNanos(LockSupport.java:269)",
+                    "java.util.concurrent.locks.AbstractQueuedSynchronizer$ConditionObject.awaitNanos(AbstractQueuedSynchronizer.java:1758)",
+                    "java.util.concurrent.ScheduledThreadPoolExecutor$DelayedWorkQueue.take(ScheduledThreadPoolExecutor.java:1182)",
+                    "java.util.concurrent.ThreadPoolExecutor.getTask(ThreadPoolExecutor.java:1070)",
+                    "java.util.concurrent.ThreadPoolExecutor.runWorker(ThreadPoolExecutor.java:1130)",
+                    "java.util.concurrent.ThreadPoolExecutor$Worker.run(ThreadPoolExecutor.java:642)",
+                    "java.lang.Thread.run(Thread.java:1583)" }),
+    };
+
+    private int     threads      = 1000;
+    private int     stackDepth   = 24;
+    private double  lockDensity  = 0.05;
+    private double  poolFraction = 0.7;
+    private Variant variant      = Variant.JDK21;
+    private long    seed         = 42;
+
+    public DumpGenerator threads(int n)           { this.threads = n;      return this; }
+    public DumpGenerator stackDepth(int n)        { this.stackDepth = n;   return this; }
+    /** Probability that a generated frame carries a lock line (locked / waiting to lock / parking). */
+    public DumpGenerator lockDensity(double p)    { this.lockDensity = p;  return this; }
+    /** Share of threads that belong to pools with identical stacks. */
+    public DumpGenerator poolFraction(double p)   { this.poolFraction = p; return this; }
+    public DumpGenerator variant(Variant v)       { this.variant = v;      return this; }
+    public DumpGenerator seed(long s)             { this.seed = s;         return this; }
+
+    public String generate() {
+        StringBuilder sb = new StringBuilder(threads * (stackDepth * 70 + 200));
+        try { writeTo(sb); } catch (IOException e) { throw new IllegalStateException(e); }
+        return sb.toString();
+    }
+
+    public byte[] generateBytes() {
+        return generate().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public void writeTo(Appendable out) throws IOException {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        out.append("2024-01-15 10:23:45\n")
+           .append("Full thread dump OpenJDK 64-Bit Server VM (21.0.1+12-29 mixed mode, sharing):\n\n");
+
+        // A handful of hot monitors that BLOCKED threads contend on
+        List<String> monitors = new ArrayList<>();
+        for (int i = 0; i < 16; i++) monitors.add(String.format(Locale.ROOT, "0x%016x", 0x76b3e0000L + i * 0x40L));
+
+        int[] poolSerial = new int[POOLS.length];
+        for (int i = 0; i < threads; i++) {
+            Variant v = variant == Variant.MIXED ? Variant.values()[rnd.nextInt(3)] : variant;
+            int num    = i + 1;
+            long osId  = 100_000L + i;
+            double elapsedS = 10 + rnd.nextDouble() * 200_000;
+
+            if (rnd.nextDouble() < poolFraction) {
+                int p = rnd.nextInt(POOLS.length);
+                Pool pool = POOLS[p];
+                String name = String.format(Locale.ROOT, pool.namePattern, p + 1, ++poolSerial[p]);
+                double cpuMs = "RUNNABLE".equals(pool.state) ? elapsedS * rnd.nextDouble() * 400 : rnd.nextDouble() * 500;
+                header(out, v, name, num, pool.daemon, 5, cpuMs, elapsedS, osId);
+                out.append("   java.lang.Thread.State: ").append(pool.state);
+                if (!pool.detail.isEmpty()) out.append(' ').append(pool.detail);
+                out.append('\n');
+                for (int f = 0; f < pool.frames.length && f < Math.max(stackDepth, 4); f++) frame(out, pool.frames[f]);
+            } else {
+                String name = "app-worker-" + i;
+                int kind = rnd.nextInt(10);
+                String state = kind < 4 ? "RUNNABLE" : kind < 6 ? "BLOCKED" : kind < 8 ? "WAITING" : "TIMED_WAITING";
+                String detail = switch (state) {
+                    case "BLOCKED" -> "(on object monitor)";
+                    case "WAITING" -> "(on object monitor)";
+                    case "TIMED_WAITING" -> "(sleeping)";
+                    default -> "";
+                };
+                double cpuMs = elapsedS * ("RUNNABLE".equals(state) ? rnd.nextDouble() * 900 : rnd.nextDouble() * 20);
+                header(out, v, name, num, rnd.nextBoolean(), 1 + rnd.nextInt(10), cpuMs, elapsedS, osId);
+                out.append("   java.lang.Thread.State: ").append(state);
+                if (!detail.isEmpty()) out.append(' ').append(detail);
+                out.append('\n');
+
+                if ("TIMED_WAITING".equals(state)) frame(out, "java.lang.Thread.sleep(Native Method)");
+                if ("WAITING".equals(state)) {
+                    frame(out, "java.lang.Object.wait(Native Method)");
+                    frame(out, "- waiting on <" + monitors.get(rnd.nextInt(monitors.size())) + "> (a java.lang.Object)");
+                }
+                for (int f = 0; f < stackDepth; f++) {
+                    String fr = APP_FRAMES[rnd.nextInt(APP_FRAMES.length)];
+                    frame(out, fr.contains("%d") ? String.format(Locale.ROOT, fr, 20 + rnd.nextInt(400)) : fr);
+                    if (f == 0 && "BLOCKED".equals(state)) {
+                        frame(out, "- waiting to lock <" + monitors.get(rnd.nextInt(monitors.size())) + "> (a java.lang.Object)");
+                    } else if (rnd.nextDouble() < lockDensity) {
+                        String lock = monitors.get(rnd.nextInt(monitors.size()));
+                        String cls  = LOCK_CLASSES[rnd.nextInt(LOCK_CLASSES.length)];
+                        frame(out, (rnd.nextBoolean() ? "- locked <" : "- parking to wait for  <") + lock + "> (a " + cls + ")");
+                    }
+                }
+                frame(out, "java.lang.Thread.run(Thread.java:1583)");
+            }
+            out.append('\n');
+        }
+
+        out.append("\"VM Thread\" os_prio=0 cpu=1234.56ms elapsed=200000.00s tid=0x00007f0000001000 nid=0x1 runnable\n\n")
+           .append("\"GC Thread#0\" os_prio=0 cpu=987.65ms elapsed=200000.00s tid=0x00007f0000002000 nid=0x2 runnable\n\n")
+           .append("JNI global refs: 25, weak refs: 0\n\n");
+    }
+
+    private static void header(Appendable out, Variant v, String name, int num, boolean daemon,
+                               int prio, double cpuMs, double elapsedS, long osId) throws IOException {
+        out.append('"').append(name).append("\" #").append(Integer.toString(num));
+        if (v == Variant.JDK21) out.append(" [").append(Long.toString(osId)).append(']');
+        if (daemon) out.append(" daemon");
+        out.append(" prio=").append(Integer.toString(prio)).append(" os_prio=0");
+        if (v != Variant.JDK8) {
+            out.append(" cpu=").append(String.format(Locale.ROOT, "%.2f", cpuMs)).append("ms")
+               .append(" elapsed=").append(String.format(Locale.ROOT, "%.2f", elapsedS)).append('s');
+        }
+        out.append(" tid=0x00007f").append(String.format(Locale.ROOT, "%010x", 0x1a2b3c0000L + num * 0x800L));
+        if (v == Variant.JDK21) out.append(" nid=").append(Long.toString(osId));
+        else                    out.append(" nid=0x").append(Long.toHexString(osId));
+        out.append(" waiting on condition  [0x00007f1a2b3c4000]\n");
+    }
+
+    private static void frame(Appendable out, String frame) throws IOException {
+        out.append(frame.startsWith("-") ? "\t" : "\tat ").append(frame).append('\n');
+    }
+
+    public static void main(String[] args) throws IOException {
+        DumpGenerator g = new DumpGenerator();
+        Path outFile = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String val = args[i + 1];
+            switch (args[i]) {
+                case "--threads" -> g.threads(Integer.parseInt(val));
+                case "--depth"   -> g.stackDepth(Integer.parseInt(val));
+                case "--locks"   -> g.lockDensity(Double.parseDouble(val));
+                case "--pools"   -> g.poolFraction(Double.parseDouble(val));
+                case "--variant" -> g.variant(Variant.valueOf(val));
+                case "--seed"    -> g.seed(Long.parseLong(val));
+                case "--out"     -> outFile = Path.of(val);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (outFile == null) {
+            Writer w = new java.io.OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+            g.writeTo(w);
+            w.flush();
+        } else {
+            try (Writer w = Files.newBufferedWriter(outFile, StandardCharsets.UTF_8)) { g.writeTo(w); }
+        }
+    }
+}
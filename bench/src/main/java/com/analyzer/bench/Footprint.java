@@ -0,0 +1,71 @@
+package com.analyzer.bench;
+
+import com.analyzer.StackTable;
+import com.analyzer.ThreadDumpParser;
+import com.analyzer.ThreadInfo;
+import com.analyzer.ThreadTable;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Retained heap of a parsed dump: as {@code List<ThreadInfo>} plus its {@link StackTable}, then
+ * as a {@link ThreadTable} alone. Measured as used heap after full GCs, so run it with nothing
+ * else going on and a fixed heap, e.g.
+ *
+ *   java -Xms2g -Xmx2g -cp bench/target/benchmarks.jar com.analyzer.bench.Footprint \
+ *        --threads 50000 --depth 32 --variant JDK21
+ *   java ... com.analyzer.bench.Footprint --file dump.txt
+ */
+public final class Footprint {
+
+    private Footprint() { }
+
+    public static void main(String[] args) throws Exception {
+        DumpGenerator g = BenchSupport.generator(50_000, 32, "JDK21");
+        Path file = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String val = args[i + 1];
+            switch (args[i]) {
+                case "--threads" -> g.threads(Integer.parseInt(val));
+                case "--depth"   -> g.stackDepth(Integer.parseInt(val));
+                case "--variant" -> g.variant(DumpGenerator.Variant.valueOf(val));
+                case "--file"    -> file = Path.of(val);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        String dump = file != null ? Files.readString(file) : g.generate();
+
+        long empty = usedAfterGc();
+        ThreadDumpParser parser = new ThreadDumpParser();
+        List<ThreadInfo> threads = parser.parse(dump);
+        StackTable stacks = parser.stackTable();
+        long asObjects = usedAfterGc() - empty;
+
+        ThreadTable table = ThreadTable.of(threads, stacks);
+        threads = null;
+        stacks  = null;
+        parser  = null;
+        long asTable = usedAfterGc() - empty;
+
+        int n = table.size();
+        System.out.printf(Locale.ROOT, "%d threads, %d stacks, %d frames, %.1f MB of dump%n",
+                n, table.stackCount(), table.frameCount(), dump.length() / 1e6);
+        System.out.printf(Locale.ROOT, "List<ThreadInfo> + StackTable: %,12d bytes  %,7d per thread%n", asObjects, asObjects / n);
+        System.out.printf(Locale.ROOT, "ThreadTable:                   %,12d bytes  %,7d per thread%n", asTable, asTable / n);
+    }
+
+    private static long usedAfterGc() throws InterruptedException {
+        var memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+}
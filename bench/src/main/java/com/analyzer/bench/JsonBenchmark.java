@@ -0,0 +1,67 @@
+package com.analyzer.bench;
+
+import com.analyzer.JsonSerializer;
+import com.analyzer.ThreadDumpParser;
+import com.analyzer.ThreadInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/** Serialization of a parsed dump to the analyze response JSON. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class JsonBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int threads;
+
+    private List<ThreadInfo> parsed;
+    private long inputBytes;
+
+    @Setup
+    public void setup() {
+        String dump = BenchSupport.generator(threads, 24, "JDK21").generate();
+        inputBytes  = dump.length();
+        parsed      = new ThreadDumpParser().parse(dump);
+    }
+
+    @Benchmark
+    public String toJson(BenchSupport.Bytes counter) {
+        counter.bytes += inputBytes;
+        return JsonSerializer.toJson(parsed);
+    }
+
+    @Benchmark
+    public void writeJson(BenchSupport.Bytes counter) throws IOException {
+        counter.bytes += inputBytes;
+        JsonSerializer.write(parsed, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public void writeJsonGzip(BenchSupport.Bytes counter) throws IOException {
+        counter.bytes += inputBytes;
+        // Same settings as ThreadDumpServer.gzip
+        try (OutputStream out = new GZIPOutputStream(OutputStream.nullOutputStream(), 16 * 1024) {{ def.setLevel(Deflater.BEST_SPEED); }}) {
+            JsonSerializer.write(parsed, out);
+        }
+    }
+}
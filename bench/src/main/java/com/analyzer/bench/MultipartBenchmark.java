@@ -0,0 +1,55 @@
+package com.analyzer.bench;
+
+import com.analyzer.MultipartParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/** Multipart extraction: the String-returning API and the streaming part reader it is built on. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MultipartBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int threads;
+
+    private byte[] body;
+    private final byte[] sink = new byte[64 * 1024];
+
+    @Setup
+    public void setup() {
+        body = BenchSupport.multipartBody(BenchSupport.generator(threads, 24, "JDK21").generateBytes());
+    }
+
+    @Benchmark
+    public String extractFileContent(BenchSupport.Bytes counter) throws Exception {
+        counter.bytes += body.length;
+        return MultipartParser.extractFileContent(new ByteArrayInputStream(body), BenchSupport.CONTENT_TYPE);
+    }
+
+    @Benchmark
+    public long streamFilePart(BenchSupport.Bytes counter) throws Exception {
+        counter.bytes += body.length;
+        long total = 0;
+        try (InputStream in = MultipartParser.openFileStream(new ByteArrayInputStream(body), BenchSupport.CONTENT_TYPE)) {
+            for (int n; (n = in.read(sink)) != -1; ) total += n;
+        }
+        return total;
+    }
+}
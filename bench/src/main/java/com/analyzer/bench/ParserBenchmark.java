@@ -0,0 +1,81 @@
+package com.analyzer.bench;
+
+import com.analyzer.ThreadDumpParser;
+import com.analyzer.ThreadInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ThreadDumpParser over an in-memory String, over a byte stream (the upload path), and split
+ * across the common ForkJoinPool — run with -jvmArgsAppend to vary its parallelism.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ParserBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int threads;
+
+    @Param({"24"})
+    public int depth;
+
+    @Param({"JDK21", "MIXED"})
+    public String variant;
+
+    private String dump;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        dump  = BenchSupport.generator(threads, depth, variant).generate();
+        bytes = dump.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<ThreadInfo> parseString(BenchSupport.Bytes counter) {
+        counter.bytes += bytes.length;
+        return new ThreadDumpParser().parse(dump);
+    }
+
+    @Benchmark
+    public void parseStream(BenchSupport.Bytes counter, Blackhole bh) throws IOException {
+        counter.bytes += bytes.length;
+        new ThreadDumpParser().parse(
+                new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8), bh::consume);
+    }
+
+    @Benchmark
+    public List<ThreadInfo> parseParallelString(BenchSupport.Bytes counter) {
+        counter.bytes += bytes.length;
+        return new ThreadDumpParser().parseParallel(dump, ForkJoinPool.commonPool());
+    }
+
+    @Benchmark
+    public List<ThreadInfo> parseParallelBytes(BenchSupport.Bytes counter) {
+        counter.bytes += bytes.length;
+        return new ThreadDumpParser().parseParallel(ByteBuffer.wrap(bytes), ForkJoinPool.commonPool());
+    }
+}
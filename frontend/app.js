@@ -1,4 +1,19 @@
-const API_URL = '/api/analyze';
+const API_URL      = '/api/analyze';
+const SESSIONS_URL = '/api/sessions/';
+const PAGE_SIZE    = 100;
+
+// ── Current session and table view ───────────────────────────────────────────
+// Threads stay on the server; the table shows one page of a server-side filtered, sorted query.
+const view = {
+  sessionId: null,
+  offset:    0,
+  sort:      'cpu',
+  order:     'desc',
+  total:     0,
+  request:   0,          // sequence number, so a slow older page never overwrites a newer one
+};
+const stackCache = new Map();   // stackId → trace, for the current session
+let filterTimer  = null;
 
 async function analyze() {
   const fileInput = document.getElementById('fileInput');
@@ -7,6 +22,9 @@ async function analyze() {
 
   errorMsg.style.display = 'none';
   hide('summarySection');
+  hide('locksSection');
+  hide('groupsSection');
+  hide('flameSection');
   hide('controlsSection');
   hide('tableSection');
 
@@ -30,13 +48,25 @@ async function analyze() {
       return;
     }
 
+    view.sessionId = data.sessionId;
+    view.offset    = 0;
+    stackCache.clear();
+
     renderSummary(data);
-    renderTable(data);
+    renderLocks(data.locks);
+    renderGroups(data.stackGroups);
 
     show('summarySection');
+    if (data.locks.monitors.length || data.locks.deadlocks.length) show('locksSection');
+    if (data.stackGroups.length) show('groupsSection');
+    show('flameSection');
+    document.getElementById('flame').innerHTML = '';
+    document.getElementById('flameInfo').textContent = '';
     show('controlsSection');
     show('tableSection');
 
+    await loadPage();
+
   } catch (err) {
     showError('Cannot reach the backend. Make sure the server is running on port 8080.');
   } finally {
@@ -45,54 +75,134 @@ async function analyze() {
   }
 }
 
+// Filters are applied by the server; typing waits for a short pause before asking
 function applyFilters() {
-  const search  = document.getElementById('searchInput').value.toLowerCase();
-  const stateF  = document.getElementById('stateFilter').value;
-  const healthF = document.getElementById('healthFilter').value;
-
-  const rows = document.querySelectorAll('#mainTable tbody tr:not(.stack-row)');
-  let visible = 0;
-
-  rows.forEach(row => {
-    const match = (!search  || (row.dataset.name   || '').includes(search))
-               && (!stateF  || (row.dataset.state  || '') === stateF)
-               && (!healthF || (row.dataset.health || '') === healthF);
-
-    row.style.display = match ? '' : 'none';
-    const next = row.nextElementSibling;
-    if (next && next.classList.contains('stack-row'))
-      next.style.display = match ? '' : 'none';
-    if (match) visible++;
+  clearTimeout(filterTimer);
+  filterTimer = setTimeout(() => { view.offset = 0; loadPage(); }, 200);
+}
+
+function sortBy(key) {
+  if (view.sort === key) view.order = view.order === 'desc' ? 'asc' : 'desc';
+  else { view.sort = key; view.order = key === 'name' ? 'asc' : 'desc'; }
+  view.offset = 0;
+  document.querySelectorAll('#mainTable th[data-sort]').forEach(th => {
+    th.classList.toggle('sorted', th.dataset.sort === view.sort);
+    th.dataset.order = th.dataset.sort === view.sort ? view.order : '';
   });
+  loadPage();
+}
 
-  document.getElementById('emptyMsg').style.display = visible === 0 ? 'block' : 'none';
+function pageBy(step) {
+  const next = view.offset + step * PAGE_SIZE;
+  if (next < 0 || next >= view.total) return;
+  view.offset = next;
+  loadPage();
 }
 
-function renderSummary(threads) {
-  let run = 0, block = 0, wait = 0, timed = 0, hot = 0, daemon = 0;
-  threads.forEach(t => {
-    if (t.state === 'RUNNABLE')      run++;
-    if (t.state === 'BLOCKED')       block++;
-    if (t.state === 'WAITING')       wait++;
-    if (t.state === 'TIMED_WAITING') timed++;
-    if (t.health === 'HOT')          hot++;
-    if (t.daemon)                    daemon++;
+// The thread filters, as query parameters — shared by the table and the flame graph
+function filterParams(extra) {
+  return new URLSearchParams({
+    ...extra,
+    q:      document.getElementById('searchInput').value,
+    state:  document.getElementById('stateFilter').value,
+    health: document.getElementById('healthFilter').value,
+    cpuMin: document.getElementById('cpuMinInput').value,
+    cpuMax: document.getElementById('cpuMaxInput').value,
+    lock:   document.getElementById('lockInput').value,
+  });
+}
+
+async function loadPage() {
+  if (!view.sessionId) return;
+  const params = filterParams({
+    offset: view.offset,
+    limit:  PAGE_SIZE,
+    sort:   view.sort,
+    order:  view.order,
+  });
+  const seq = ++view.request;
+
+  try {
+    const res  = await fetch(SESSIONS_URL + view.sessionId + '/threads?' + params);
+    const data = await res.json();
+    if (seq !== view.request) return;
+    if (!res.ok) {
+      showError(data.error || 'Server returned an error.');
+      return;
+    }
+    view.total = data.total;
+    renderTable(data.threads);
+    renderPager(data);
+  } catch (err) {
+    if (seq === view.request) showError('Cannot reach the backend. Make sure the server is running on port 8080.');
+  }
+}
+
+function renderSummary(s) {
+  const st = s.states, h = s.health;
+  document.getElementById('sTotal').textContent  = s.threadCount;
+  document.getElementById('sRun').textContent    = st.RUNNABLE      || 0;
+  document.getElementById('sBlock').textContent  = st.BLOCKED       || 0;
+  document.getElementById('sWait').textContent   = st.WAITING       || 0;
+  document.getElementById('sTimed').textContent  = st.TIMED_WAITING || 0;
+  document.getElementById('sHot').textContent    = h.HOT            || 0;
+  document.getElementById('sDaemon').textContent = s.daemon;
+}
+
+// Contended locks, most threads queued behind them first; deadlock cycles above the table
+function renderLocks(locks) {
+  const msg = document.getElementById('deadlockMsg');
+  if (locks.deadlocks.length) {
+    msg.innerHTML = locks.deadlocks
+      .map(d => 'Deadlock: ' + d.names.map(esc).join(' → ') + ' → ' + esc(d.names[0]))
+      .join('<br>');
+    msg.style.display = 'block';
+  } else {
+    msg.style.display = 'none';
+  }
+
+  const tbody = document.getElementById('locksBody');
+  tbody.innerHTML = '';
+  locks.monitors.forEach(m => {
+    const waiters = m.waiterNames.join(', ') + (m.waiters > m.waiterNames.length ? ', …' : '');
+    const tr = document.createElement('tr');
+    tr.innerHTML = `
+      <td class="red">${m.queued}</td>
+      <td class="mono-sm">&lt;${esc(m.address)}&gt; ${esc(m.className)}</td>
+      <td class="small">${m.owner >= 0 ? esc(m.ownerName) : '<span class="muted">unknown</span>'}</td>
+      <td class="small" title="${esc(waiters)}">${m.waiters} — ${esc(truncate(waiters, 70))}</td>
+    `;
+    tbody.appendChild(tr);
+  });
+}
+
+// Stacks shared by 2+ threads — the biggest pools show up first
+function renderGroups(groups) {
+  const tbody = document.getElementById('groupsBody');
+  tbody.innerHTML = '';
+
+  groups.forEach((g, idx) => {
+    const rowId = 'group_' + idx;
+    const names = g.names.join(', ') + (g.count > g.names.length ? ', …' : '');
+
+    const tr = document.createElement('tr');
+    tr.innerHTML = `
+      <td class="blue">${g.count}</td>
+      <td class="mono-sm" title="${esc(g.topFrame)}">${esc(truncate(g.topFrame, 90))}</td>
+      <td class="small" title="${esc(names)}">${esc(truncate(names, 80))}</td>
+      <td><button class="expand-btn" onclick="toggleStack('${rowId}', ${g.stackId}, this)">▶ trace</button></td>
+    `;
+    tbody.appendChild(tr);
+    tbody.appendChild(stackRow(rowId, 4));
   });
-  document.getElementById('sTotal').textContent  = threads.length;
-  document.getElementById('sRun').textContent    = run;
-  document.getElementById('sBlock').textContent  = block;
-  document.getElementById('sWait').textContent   = wait;
-  document.getElementById('sTimed').textContent  = timed;
-  document.getElementById('sHot').textContent    = hot;
-  document.getElementById('sDaemon').textContent = daemon;
 }
 
 function renderTable(threads) {
   const tbody = document.getElementById('tableBody');
   tbody.innerHTML = '';
 
-  threads.forEach((t, idx) => {
-    const stackId = 'stack_' + idx;
+  threads.forEach(t => {
+    const rowId = 'stack_' + t.idx;
 
     // ── Format each field, show blank when value is absent (null / -1) ───────
     const cpuFmt    = t.cpuMs     != null ? fmt(t.cpuMs)     : '—';
@@ -111,15 +221,11 @@ function renderTable(threads) {
     const nid       = t.nid        || '—';
     const nidDec    = t.nidDecimal || '—';
     const detail    = t.stateDetail || '';
-    const lock      = t.lockInfo   || '';
+    const lock      = t.lockInfo + (t.blockedBy >= 0 ? ' — held by ' + t.blockedByName : '');
 
     const tr = document.createElement('tr');
-    tr.dataset.name   = t.name.toLowerCase();
-    tr.dataset.state  = t.state;
-    tr.dataset.health = t.health;
-
     tr.innerHTML = `
-      <td class="muted">${idx + 1}</td>
+      <td class="muted">${t.idx + 1}</td>
       <td><div class="thread-name" title="${esc(t.name)}">${esc(t.name)}</div></td>
       <td class="muted">${threadNum}</td>
       <td><span class="badge badge-${t.state}">${t.state}</span></td>
@@ -135,32 +241,128 @@ function renderTable(threads) {
       <td class="muted">${elFmt}</td>
       <td class="${pctCls}">${pctFmt}</td>
       <td class="small lock-info" title="${esc(lock)}">${esc(lock ? truncate(lock, 45) : '')}</td>
-      <td><button class="expand-btn" onclick="toggleStack('${stackId}', this)">▶ trace</button></td>
+      <td>${t.stackId >= 0
+            ? `<button class="expand-btn" onclick="toggleStack('${rowId}', ${t.stackId}, this)">▶ trace</button>`
+            : ''}</td>
     `;
     tbody.appendChild(tr);
-
-    // Stack trace expand row
-    const stackRow = document.createElement('tr');
-    stackRow.className = 'stack-row';
-    stackRow.id = stackId;
-    stackRow.innerHTML = `
-      <td class="stack-cell" colspan="17">
-        ${t.stackTrace
-          ? `<pre class="stack-pre">${esc(t.stackTrace)}</pre>`
-          : `<span class="no-stack">No stack trace available</span>`}
-      </td>
-    `;
-    tbody.appendChild(stackRow);
+    tbody.appendChild(stackRow(rowId, 17));
   });
+
+  document.getElementById('emptyMsg').style.display = threads.length === 0 ? 'block' : 'none';
+}
+
+function renderPager(page) {
+  const from = page.total === 0 ? 0 : page.offset + 1;
+  const to   = page.offset + page.threads.length;
+  document.getElementById('pageInfo').textContent =
+    `${fmt(from)}–${fmt(to)} of ${fmt(page.total)} threads`;
+  document.getElementById('prevBtn').disabled = page.offset === 0;
+  document.getElementById('nextBtn').disabled = to >= page.total;
 }
 
-function toggleStack(id, btn) {
-  const row  = document.getElementById(id);
+// ── Flame graph ──────────────────────────────────────────────────────────────
+// Built on the server from the threads matching the current filters; root on top, callees below.
+// Clicking a frame zooms into it, clicking the top bar zooms back out.
+const FLAME_ROW_PX  = 18;
+const FLAME_MIN_PCT = 0.2;      // narrower frames are not drawn
+
+async function loadFlame() {
+  if (!view.sessionId) return;
+  const params = filterParams({ weight: document.getElementById('flameWeight').value });
+  const base   = SESSIONS_URL + view.sessionId + '/flame?';
+  document.getElementById('flameFolded').href = base + params + '&format=folded';
+  document.getElementById('flameInfo').textContent = 'Building…';
+  try {
+    const res  = await fetch(base + params);
+    const data = await res.json();
+    if (!res.ok) throw new Error(data.error || 'Server returned an error.');
+    document.getElementById('flameInfo').textContent =
+      `${fmt(data.threads)} threads, ${fmt(data.nodes)} frames`;
+    renderFlame([data.tree]);
+  } catch (err) {
+    document.getElementById('flameInfo').textContent = err.message;
+  }
+}
+
+// path: the nodes from the real root down to the one drawn at the top
+function renderFlame(path) {
+  const all  = path[0];
+  const root = path[path.length - 1];
+  const box  = document.getElementById('flame');
+  box.innerHTML = '';
+  let maxDepth = 0;
+
+  // trail: the nodes from the drawn root down to this one
+  const draw = (node, trail, left, width) => {
+    if (width < FLAME_MIN_PCT) return;
+    const depth = trail.length - 1;
+    maxDepth = Math.max(maxDepth, depth);
+    const pct = all.value ? (node.value / all.value * 100).toFixed(1) : '0';
+    const el  = document.createElement('div');
+    el.className   = 'flame-node' + (depth === 0 && path.length > 1 ? ' flame-zoomed' : '');
+    el.style.left  = left + '%';
+    el.style.width = width + '%';
+    el.style.top   = depth * FLAME_ROW_PX + 'px';
+    el.textContent = node.name;
+    el.title       = `${node.name}\n${fmt(node.value)} (${pct}% of all), self ${fmt(node.self)}`;
+    el.onclick     = depth === 0
+      ? () => { if (path.length > 1) renderFlame(path.slice(0, -1)); }
+      : () => renderFlame(path.concat(trail.slice(1)));
+    box.appendChild(el);
+
+    let x = left;
+    node.children.forEach(c => {
+      const w = node.value ? width * c.value / node.value : 0;
+      draw(c, trail.concat([c]), x, w);
+      x += w;
+    });
+  };
+  draw(root, [root], 0, 100);
+  box.style.height = (maxDepth + 1) * FLAME_ROW_PX + 'px';
+}
+
+// Empty expand row; the trace is fetched the first time it is opened
+function stackRow(rowId, cols) {
+  const row = document.createElement('tr');
+  row.className = 'stack-row';
+  row.id = rowId;
+  row.innerHTML = `<td class="stack-cell" colspan="${cols}"></td>`;
+  return row;
+}
+
+async function toggleStack(rowId, stackId, btn) {
+  const row  = document.getElementById(rowId);
   const open = row.classList.toggle('open');
   btn.textContent = open ? '▼ trace' : '▶ trace';
+  if (!open || row.dataset.loaded) return;
+
+  const cell = row.firstElementChild;
+  cell.innerHTML = '<span class="no-stack">Loading…</span>';
+  try {
+    let trace = stackCache.get(stackId);
+    if (trace === undefined) {
+      const res  = await fetch(SESSIONS_URL + view.sessionId + '/stacks/' + stackId);
+      const data = await res.json();
+      if (!res.ok) throw new Error(data.error || 'Server returned an error.');
+      trace = data.trace;
+      stackCache.set(stackId, trace);
+    }
+    cell.innerHTML = trace
+      ? `<pre class="stack-pre">${esc(trace)}</pre>`
+      : `<span class="no-stack">No stack trace available</span>`;
+    row.dataset.loaded = '1';
+  } catch (err) {
+    cell.innerHTML = `<span class="no-stack">${esc(err.message)}</span>`;
+  }
 }
 
 // ── Utilities ──────────────────────────────────────────────────────────────
+function showError(msg) {
+  const el = document.getElementById('errorMsg');
+  el.textContent   = msg;
+  el.style.display = 'block';
+}
 function fmt(n) {
   return Number(n).toLocaleString(undefined, { maximumFractionDigits: 2 });
 }
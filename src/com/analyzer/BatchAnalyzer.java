@@ -0,0 +1,353 @@
+package com.analyzer;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Headless analysis of many dumps at once, written as NDJSON (one JSON object per line).
+ *
+ *   java -cp out com.analyzer.BatchAnalyzer [options] <file|dir>...
+ *   java -jar threaddump-analyzer.jar batch [options] <file|dir>...
+ *
+ *   --out FILE      write to FILE instead of stdout
+ *   --jobs N        dumps analyzed at once (default: available processors)
+ *   --summary-only  no per-thread records
+ *   --stacks        also one record per distinct stack, with its trace
+ *   --index DIR     also add every dump to the search index in DIR (see {@link DumpIndex}); a dump
+ *                   is keyed by its path (and zip entry), so re-running over a tree adds only new files
+ *
+ * Directories are walked recursively. Plain files are memory-mapped and large ones parsed in
+ * parallel; {@code .gz} files are streamed, and every entry of a {@code .zip} is its own dump.
+ * At most {@code jobs} dumps are held in memory at a time, however many inputs are given, and
+ * each dump's records are written together:
+ *
+ *   {"type":"thread", "file", "entry", "idx", ...thread fields..., "stackId", "blockedBy", "topFrame"}
+ *   {"type":"stack",  "file", "entry", "id", "threads", "trace"}
+ *   {"type":"dump",   "file", "entry", "bytes", "parseMs", "threadCount", "stackCount", "daemon",
+ *                     "states", "health", "deadlocks": [[idx, ...]], "monitors": [...]}
+ *   {"type":"error",  "file", "entry", "error"}
+ *
+ * "entry" is the name inside a zip archive, "" otherwise; "idx" is the thread's position in its
+ * dump and is what blockedBy, deadlocks and monitors refer to. Exits with 1 if any input failed.
+ */
+public class BatchAnalyzer {
+
+    private static final int SUMMARY_MONITORS = 10;
+
+    private final OutputStream out;
+    private final boolean      threads;
+    private final boolean      stacks;
+    private final ForkJoinPool pool;
+    private final Semaphore    inFlight;
+    private final DumpIndex    index;      // null → not indexing
+
+    private final AtomicInteger dumps  = new AtomicInteger(), failed = new AtomicInteger();
+    private final AtomicLong    bytes  = new AtomicLong(),    threadCount = new AtomicLong();
+
+    BatchAnalyzer(OutputStream out, int jobs, boolean threads, boolean stacks, DumpIndex index) {
+        this.out      = out;
+        this.threads  = threads;
+        this.stacks   = stacks;
+        this.pool     = new ForkJoinPool(jobs);
+        this.inFlight = new Semaphore(jobs);
+        this.index    = index;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path outFile = null, indexDir = null;
+        int jobs = Runtime.getRuntime().availableProcessors();
+        boolean threads = true, stacks = false;
+        List<Path> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            boolean takesValue = arg.equals("--out") || arg.equals("--jobs") || arg.equals("--index");
+            if (takesValue && i + 1 == args.length) usage(arg + " needs a value");
+            switch (arg) {
+                case "--out"          -> outFile = Path.of(args[++i]);
+                case "--jobs"         -> {
+                    try { jobs = Math.max(1, Integer.parseInt(args[++i])); }
+                    catch (NumberFormatException e) { usage("--jobs needs a number, not " + args[i]); }
+                }
+                case "--summary-only" -> threads = false;
+                case "--stacks"       -> stacks = true;
+                case "--index"        -> indexDir = Path.of(args[++i]);
+                default -> {
+                    if (arg.startsWith("--")) usage("Unknown option " + arg);
+                    inputs.add(Path.of(arg));
+                }
+            }
+        }
+        if (inputs.isEmpty()) usage(null);
+
+        long start = System.nanoTime();
+        OutputStream sink = outFile != null ? Files.newOutputStream(outFile) : System.out;
+        BatchAnalyzer batch;
+        try (OutputStream out = new BufferedOutputStream(sink, 256 * 1024);
+             DumpIndex index = indexDir != null ? new DumpIndex(indexDir) : null) {
+            batch = new BatchAnalyzer(out, jobs, threads, stacks, index);
+            batch.run(inputs);
+        }
+        double secs = (System.nanoTime() - start) / 1e9;
+        System.err.printf(Locale.ROOT, "%d dumps, %d threads, %.1f MB in %.2f s (%.1f MB/s), %d failed%n",
+                batch.dumps.get(), batch.threadCount.get(), batch.bytes.get() / 1e6, secs,
+                batch.bytes.get() / 1e6 / secs, batch.failed.get());
+        if (batch.failed.get() > 0) System.exit(1);
+    }
+
+    private static void usage(String problem) {
+        if (problem != null) System.err.println(problem);
+        System.err.println("Usage: BatchAnalyzer [--out FILE] [--jobs N] [--summary-only] [--stacks] [--index DIR] <file|dir>...");
+        System.exit(2);
+    }
+
+    /** Analyzes every input and returns once all records are written. */
+    void run(List<Path> inputs) throws IOException, InterruptedException {
+        for (Path input : inputs) {
+            if (Files.isDirectory(input)) {
+                try (Stream<Path> files = Files.walk(input)) {
+                    for (Path p : (Iterable<Path>) files.filter(Files::isRegularFile).sorted()::iterator) submit(p);
+                }
+            } else {
+                submit(input);
+            }
+        }
+        // Every task holds a permit until its records are written
+        inFlight.acquire(pool.getParallelism());
+        pool.shutdown();
+        out.flush();
+    }
+
+    // Blocks while jobs dumps are already in flight, so walking a huge tree never runs ahead
+    private void submit(Path file) throws InterruptedException {
+        inFlight.acquire();
+        pool.execute(() -> {
+            try { analyze(file); }
+            finally { inFlight.release(); }
+        });
+    }
+
+    // ── Per input ────────────────────────────────────────────────────────────
+
+    private void analyze(Path file) {
+        String name = file.toString();
+        try {
+            if (name.endsWith(".zip")) {
+                try (ZipFile zip = new ZipFile(file.toFile())) {
+                    for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
+                        ZipEntry entry = e.nextElement();
+                        if (entry.isDirectory()) continue;
+                        try (InputStream in = zip.getInputStream(entry)) {
+                            streamed(name, entry.getName(), in);
+                        } catch (IOException | RuntimeException ex) {
+                            error(name, entry.getName(), ex);
+                        }
+                    }
+                }
+            } else if (name.endsWith(".gz")) {
+                try (InputStream in = new GZIPInputStream(Files.newInputStream(file), 64 * 1024)) {
+                    streamed(name, "", in);
+                }
+            } else {
+                mapped(name, file);
+            }
+        } catch (IOException | RuntimeException ex) {
+            error(name, "", ex);
+        }
+    }
+
+    private void mapped(String name, Path file) throws IOException {
+        long start = System.nanoTime();
+        ThreadDumpParser parser = new ThreadDumpParser();
+        List<ThreadInfo> parsed;
+        long size;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = ch.size();
+            if (size > Integer.MAX_VALUE) {
+                // Past what one mapping can hold; streamed instead
+                parsed = new ArrayList<>();
+                try (Reader in = new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8)) {
+                    parser.parse(in, parsed::add);
+                }
+            } else {
+                ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                parsed = parser.parseParallel(buf, pool);
+            }
+        }
+        write(name, "", size, System.nanoTime() - start, parsed, parser.stackTable());
+    }
+
+    private void streamed(String name, String entry, InputStream in) throws IOException {
+        long start = System.nanoTime();
+        Counting counted = new Counting(in);
+        ThreadDumpParser parser = new ThreadDumpParser();
+        List<ThreadInfo> parsed = new ArrayList<>();
+        parser.parse(new InputStreamReader(counted, StandardCharsets.UTF_8), parsed::add);
+        write(name, entry, counted.count, System.nanoTime() - start, parsed, parser.stackTable());
+    }
+
+    // ── NDJSON ───────────────────────────────────────────────────────────────
+
+    // One dump's records go out together; the lock only covers serialization, never parsing
+    private void write(String file, String entry, long size, long parseNanos,
+                       List<ThreadInfo> parsed, StackTable table) throws IOException {
+        LockGraph locks = LockGraph.build(parsed);
+        if (index != null) {
+            String key = Path.of(file).toAbsolutePath().normalize() + (entry.isEmpty() ? "" : "!" + entry);
+            index.add(key, key, ThreadTable.of(parsed, table));
+        }
+        dumps.incrementAndGet();
+        bytes.addAndGet(size);
+        threadCount.addAndGet(parsed.size());
+
+        synchronized (out) {
+            JsonWriter w = new JsonWriter(out);
+            if (threads) {
+                for (int i = 0; i < parsed.size(); i++) {
+                    ThreadInfo t = parsed.get(i);
+                    JsonSerializer.writeFields(w, t);
+                    where(w.raw(",\"type\":\"thread\""), file, entry)
+                     .raw(",\"idx\":").num(i)
+                     .raw(",\"stackId\":").num(t.stack != null ? t.stack.id : -1)
+                     .raw(",\"blockedBy\":").num(locks.blockedBy[i])
+                     .raw(",\"topFrame\":").str(t.stack != null ? Session.topFrame(t.stack.text) : "")
+                     .raw("}\n");
+                }
+            }
+            if (stacks) {
+                for (StackSignature s : table.stacks()) {
+                    where(w.raw("{\"type\":\"stack\""), file, entry)
+                     .raw(",\"id\":").num(s.id)
+                     .raw(",\"threads\":").num(s.threads)
+                     .raw(",\"trace\":").str(s.text)
+                     .raw("}\n");
+                }
+            }
+            summary(w, file, entry, size, parseNanos, parsed, table, locks);
+            w.flush();
+        }
+    }
+
+    private static void summary(JsonWriter w, String file, String entry, long size, long parseNanos,
+                                List<ThreadInfo> parsed, StackTable table, LockGraph locks) throws IOException {
+        Map<String, Integer> states = new TreeMap<>(), health = new TreeMap<>();
+        int daemon = 0;
+        for (ThreadInfo t : parsed) {
+            states.merge(t.state, 1, Integer::sum);
+            health.merge(t.health, 1, Integer::sum);
+            if (t.daemon) daemon++;
+        }
+
+        where(w.raw("{\"type\":\"dump\""), file, entry)
+         .raw(",\"bytes\":").num(size)
+         .raw(",\"parseMs\":").r2(parseNanos / 1e6)
+         .raw(",\"threadCount\":").num(parsed.size())
+         .raw(",\"stackCount\":").num(table.size())
+         .raw(",\"daemon\":").num(daemon)
+         .raw(",\"states\":");
+        counts(w, states);
+        w.raw(",\"health\":");
+        counts(w, health);
+
+        w.raw(",\"deadlocks\":[");
+        for (int i = 0; i < locks.deadlocks.size(); i++) {
+            if (i > 0) w.raw(",");
+            ints(w, locks.deadlocks.get(i));
+        }
+        w.raw("],\"monitorCount\":").num(locks.monitors.size()).raw(",\"monitors\":[");
+        for (int i = 0; i < locks.monitors.size() && i < SUMMARY_MONITORS; i++) {
+            LockGraph.Monitor m = locks.monitors.get(i);
+            if (i > 0) w.raw(",");
+            w.raw("{")
+             .raw("\"address\":"   ).str(m.address)    .raw(",")
+             .raw("\"className\":" ).str(m.className)  .raw(",")
+             .raw("\"owner\":"     ).num(m.owner)      .raw(",")
+             .raw("\"waiters\":"   ).num(m.waiters.length).raw(",")
+             .raw("\"queued\":"    ).num(m.queued)
+             .raw("}");
+        }
+        w.raw("]}\n");
+    }
+
+    private void error(String file, String entry, Exception ex) {
+        failed.incrementAndGet();
+        System.err.println("Error: " + file + (entry.isEmpty() ? "" : "!" + entry) + ": " + ex.getMessage());
+        try {
+            synchronized (out) {
+                JsonWriter w = new JsonWriter(out);
+                where(w.raw("{\"type\":\"error\""), file, entry).raw(",\"error\":").str(String.valueOf(ex.getMessage())).raw("}\n");
+                w.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static JsonWriter where(JsonWriter w, String file, String entry) throws IOException {
+        return w.raw(",\"file\":").str(file).raw(",\"entry\":").str(entry);
+    }
+
+    private static void counts(JsonWriter w, Map<String, Integer> counts) throws IOException {
+        w.raw("{");
+        boolean first = true;
+        for (Map.Entry<String, Integer> e : counts.entrySet()) {
+            if (!first) w.raw(",");
+            first = false;
+            w.str(e.getKey()).raw(":").num(e.getValue());
+        }
+        w.raw("}");
+    }
+
+    private static void ints(JsonWriter w, int[] a) throws IOException {
+        w.raw("[");
+        for (int i = 0; i < a.length; i++) {
+            if (i > 0) w.raw(",");
+            w.num(a[i]);
+        }
+        w.raw("]");
+    }
+
+    /** Counts the (decompressed) bytes read through it. */
+    private static final class Counting extends FilterInputStream {
+        long count;
+
+        Counting(InputStream in) { super(in); }
+
+        @Override public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+}
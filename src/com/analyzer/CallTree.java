@@ -0,0 +1,246 @@
+package com.analyzer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Stacks of many threads merged into one prefix tree, outermost frame at the root — the data
+ * behind a flame graph.
+ *
+ * Each node is one frame reached by one path from the root; "total" is the weight of every
+ * thread whose stack passes through it, "self" of those whose stack ends there. Weight is one
+ * per thread, or the thread's cpuMs. Lock lines ("- locked ...") are not frames and are skipped.
+ *
+ * Frames are keyed by method ("com.acme.Foo.bar") or by the whole line, file and line number
+ * included. The tree keeps one String per distinct key and works on ids otherwise: threads are
+ * first summed per stack, so each distinct stack is walked once however many threads share it.
+ * Trees grow by {@link #add}; several dumps, or sessions, go into one tree by adding each.
+ *
+ * Nodes live in parallel arrays; a node's parent always comes before it. Not thread-safe.
+ */
+public class CallTree {
+
+    public enum Weight { THREADS, CPU }
+    public enum Frames { METHOD, LINE }
+
+    public final Weight weight;
+    public final Frames frames;
+
+    private final Map<String, Integer> keyIds = new HashMap<>();
+    private final List<String>         keys   = new ArrayList<>();
+
+    private int[]    parent = new int[1024];
+    private int[]    key    = new int[1024];
+    private double[] total  = new double[1024];
+    private double[] self   = new double[1024];
+    private int      size   = 1;                 // node 0 is the root
+    private final ChildIndex children = new ChildIndex();
+
+    private long threads;
+
+    public CallTree(Weight weight, Frames frames) {
+        this.weight = weight;
+        this.frames = frames;
+        parent[0] = -1;
+        key[0]    = -1;
+    }
+
+    public int    nodeCount()   { return size; }
+    public long   threadCount() { return threads; }
+    public double total()       { return total[0]; }
+
+    // ── Building ─────────────────────────────────────────────────────────────
+
+    /** Adds the rows of {@code table} that {@code rows} accepts. */
+    public void add(ThreadTable table, IntPredicate rows) {
+        // Sum per stack first; a pool of 2,000 identical workers is one walk
+        double[] perStack = new double[table.stackCount()];
+        boolean[] seen    = new boolean[table.stackCount()];
+        for (int i = 0; i < table.size(); i++) {
+            if (!rows.test(i)) continue;
+            threads++;
+            double w = weight == Weight.THREADS ? 1 : Math.max(0, table.cpuMs(i));
+            int s = table.stackId(i);
+            if (s < 0) { total[0] += w; self[0] += w; continue; }
+            perStack[s] += w;
+            seen[s] = true;
+        }
+
+        int[] keyOf = new int[table.frameCount()];          // table frame id → key id + 2; 1 = not a frame, 0 = not looked up
+        for (int s = 0; s < perStack.length; s++) {
+            if (!seen[s]) continue;
+            double w = perStack[s];
+            int node = 0;
+            total[0] += w;
+            for (int d = table.stackDepth(s) - 1; d >= 0; d--) {
+                int f = table.stackFrame(s, d);
+                if (keyOf[f] == 0) keyOf[f] = keyFor(table.frameText(f)) + 2;
+                int k = keyOf[f] - 2;
+                if (k < 0) continue;                          // lock line
+                node = child(node, k);
+                total[node] += w;
+            }
+            self[node] += w;
+        }
+    }
+
+    // Key id of a stack line, -1 for lock lines and anything else that is not a frame
+    private int keyFor(String line) {
+        int s = 0, e = line.length();
+        while (s < e && line.charAt(s) <= ' ')     s++;
+        while (e > s && line.charAt(e - 1) <= ' ') e--;
+        if (!line.startsWith("at ", s)) return -1;
+        s += 3;
+        if (frames == Frames.METHOD) {
+            int paren = line.indexOf('(', s);
+            if (paren > 0 && paren < e) e = paren;
+        }
+        return keyId(line.substring(s, e));
+    }
+
+    private int keyId(String k) {
+        Integer id = keyIds.get(k);
+        if (id != null) return id;
+        keys.add(k);
+        keyIds.put(k, keys.size() - 1);
+        return keys.size() - 1;
+    }
+
+    private int child(int node, int k) {
+        int c = children.get(node, k);
+        if (c >= 0) return c;
+        if (size == parent.length) {
+            int n = size * 2;
+            parent = Arrays.copyOf(parent, n);
+            key    = Arrays.copyOf(key, n);
+            total  = Arrays.copyOf(total, n);
+            self   = Arrays.copyOf(self, n);
+        }
+        c = size++;
+        parent[c] = node;
+        key[c]    = k;
+        children.put(node, k, c);
+        return c;
+    }
+
+    // ── Output ───────────────────────────────────────────────────────────────
+
+    /**
+     * Collapsed stacks, one line per node with self weight: frames root first, joined by ';',
+     * then a space and the weight (CPU in whole ms). The input format of flamegraph.pl and most
+     * flame graph viewers.
+     */
+    public void writeFolded(OutputStream out) throws IOException {
+        JsonWriter w = new JsonWriter(out);
+        int[] path = new int[64];
+        for (int n = 1; n < size; n++) {
+            long v = Math.round(self[n]);
+            if (v <= 0) continue;
+            int depth = 0;
+            for (int p = n; p > 0; p = parent[p]) {
+                if (depth == path.length) path = Arrays.copyOf(path, depth * 2);
+                path[depth++] = p;
+            }
+            for (int d = depth - 1; d >= 0; d--) {
+                w.raw(keys.get(key[path[d]]));
+                if (d > 0) w.raw(";");
+            }
+            w.raw(" ").num(v).raw("\n");
+        }
+        w.flush();
+    }
+
+    /**
+     * <pre>
+     * { "weight": "threads", "threads": 5000, "nodes": 812,
+     *   "tree": {"name": "all", "value": 5000, "self": 0, "children": [ {"name", "value", "self", "children"}, ... ]} }
+     * </pre>
+     * Children are sorted by value, largest first. Nodes worth less than {@code minFraction} of
+     * the root are left out, which bounds the response whatever the number of distinct stacks.
+     */
+    public void writeJson(double minFraction, OutputStream out) throws IOException {
+        // Child lists, built once for the walk
+        int[] first = new int[size], nextSibling = new int[size];
+        Arrays.fill(first, -1);
+        for (int n = size - 1; n >= 1; n--) {
+            nextSibling[n] = first[parent[n]];
+            first[parent[n]] = n;
+        }
+        JsonWriter w = new JsonWriter(out);
+        w.raw("{\"weight\":").str(weight.name().toLowerCase(Locale.ROOT))
+         .raw(",\"threads\":").num(threads)
+         .raw(",\"nodes\":").num(size)
+         .raw(",\"tree\":");
+        writeNode(w, 0, first, nextSibling, total[0] * minFraction);
+        w.raw("}");
+        w.flush();
+    }
+
+    private void writeNode(JsonWriter w, int n, int[] first, int[] nextSibling, double min) throws IOException {
+        w.raw("{\"name\":").str(n == 0 ? "all" : keys.get(key[n]))
+         .raw(",\"value\":").r2(total[n])
+         .raw(",\"self\":").r2(self[n])
+         .raw(",\"children\":[");
+        List<Integer> kids = new ArrayList<>();
+        for (int c = first[n]; c >= 0; c = nextSibling[c]) if (total[c] > 0 && total[c] >= min) kids.add(c);
+        kids.sort((a, b) -> Double.compare(total[b], total[a]));
+        for (int i = 0; i < kids.size(); i++) {
+            if (i > 0) w.raw(",");
+            writeNode(w, kids.get(i), first, nextSibling, min);
+        }
+        w.raw("]}");
+    }
+
+    // (parent, key) → child node, open addressing over one long[] of packed keys
+    private static final class ChildIndex {
+        private long[] slots = new long[2048];
+        private int[]  nodes = new int[2048];
+        private int    used;
+
+        ChildIndex() { Arrays.fill(slots, -1); }
+
+        int get(int parent, int key) {
+            long k = pack(parent, key);
+            for (int i = slot(k, slots.length); ; i = (i + 1) & (slots.length - 1)) {
+                if (slots[i] == k)  return nodes[i];
+                if (slots[i] == -1) return -1;
+            }
+        }
+
+        void put(int parent, int key, int node) {
+            if (2 * (used + 1) > slots.length) grow();
+            insert(pack(parent, key), node);
+            used++;
+        }
+
+        private void insert(long k, int node) {
+            int i = slot(k, slots.length);
+            while (slots[i] != -1) i = (i + 1) & (slots.length - 1);
+            slots[i] = k;
+            nodes[i] = node;
+        }
+
+        private void grow() {
+            long[] oldSlots = slots;
+            int[]  oldNodes = nodes;
+            slots = new long[oldSlots.length * 2];
+            nodes = new int[oldNodes.length * 2];
+            Arrays.fill(slots, -1);
+            for (int i = 0; i < oldSlots.length; i++) if (oldSlots[i] != -1) insert(oldSlots[i], oldNodes[i]);
+        }
+
+        private static long pack(int parent, int key) { return (long) parent << 32 | (key & 0xFFFFFFFFL); }
+
+        private static int slot(long k, int length) {
+            long h = k * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 32) & (length - 1);
+        }
+    }
+}
@@ -0,0 +1,661 @@
+package com.analyzer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Persistent inverted index over the threads of every dump analyzed, for questions like "which
+ * dumps had threads in HikariPool.getConnection" or "who held lock 0x...".
+ *
+ * Each thread is indexed under these terms:
+ *
+ *   frame:com.zaxxer.hikari.pool.HikariPool.getConnection   every method on its stack
+ *   token:hikari  token:pool  token:getconnection  ...       package, class and method names of
+ *                                                            those frames, lowercased, whole and
+ *                                                            split at camel case
+ *   held:0x0000000712345678    waiting:0x...    lock:0x...   lock addresses it holds, waits for,
+ *                                                            or mentions at all
+ *   lockclass:java.util.concurrent.locks.ReentrantLock$NonfairSync
+ *   state:blocked   health:hot                               facets
+ *
+ * Every dump added is written as a new {@link IndexSegment} file under the index directory and
+ * is searchable at once. As dumps are added, segments of similar size are merged
+ * {@value #MERGE_FACTOR} at a time, so a search over thousands of dumps reads a few dozen files.
+ * Dumps are keyed by id (the content hash for uploads) and a dump already indexed is skipped.
+ *
+ * Searches and adds may run concurrently: a search reads the segment list as it was when it
+ * started; merged-away files are deleted, which leaves existing mappings readable.
+ *
+ * A merge interrupted after its output was renamed into place leaves the output and its sources
+ * on disk. Sources holding only dumps of newer segments are deleted on load; one holding some of
+ * them (a source merged twice before the crash) is kept, and its copies of those dumps are
+ * hidden from searches, term counts and stats.
+ */
+public class DumpIndex implements AutoCloseable {
+
+    public static final String FRAME = "frame:", TOKEN = "token:", HELD = "held:", WAITING = "waiting:",
+                               LOCK = "lock:", LOCK_CLASS = "lockclass:", STATE = "state:", HEALTH = "health:";
+
+    private static final List<String> FIELDS = List.of(FRAME, TOKEN, HELD, WAITING, LOCK, LOCK_CLASS, STATE, HEALTH);
+
+    private static final String SUFFIX = ".tdx";
+    private static final int    MERGE_FACTOR      = 8;
+    private static final long   MAX_SEGMENT_BYTES = 1L << 30;
+    private static final int    QUEUE             = 16;
+
+    private final Path dir;
+    private final Set<String> ids = new HashSet<>();            // guarded by this
+    private volatile Segments segments = new Segments(List.of(), Map.of());  // replaced, never modified
+    private long nextGeneration;
+    private final LongAdder dropped = new LongAdder();
+
+    // Uploads are indexed off the request thread, one at a time. A dropped dump's id is only
+    // recorded by add(), so the same dump is indexed when it is submitted again.
+    private final ThreadPoolExecutor writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE), r -> {
+                Thread t = new Thread(r, "dump-index");
+                t.setDaemon(true);
+                return t;
+            }, (r, ex) -> {
+                dropped.increment();
+                System.err.println("Index queue full, dump not indexed");
+            });
+
+    // The segments, oldest first, and for those that have any, which of their dumps a newer one also holds
+    private record Segments(List<IndexSegment> list, Map<IndexSegment, BitSet> hidden) { }
+
+    public DumpIndex(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+        load();
+    }
+
+    // Newest first: a segment whose dumps are all in newer ones is the leftover of an interrupted merge
+    private void load() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> s = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) s::iterator) {
+                String n = p.getFileName().toString();
+                if (n.endsWith(".tmp")) Files.deleteIfExists(p);
+                else if (n.startsWith("seg-") && n.endsWith(SUFFIX)) files.add(p);
+            }
+        }
+        files.sort(Comparator.comparingLong(DumpIndex::generation).reversed());
+        List<IndexSegment> open = new ArrayList<>();
+        Map<IndexSegment, BitSet> shadowed = new HashMap<>();
+        for (Path p : files) {
+            nextGeneration = Math.max(nextGeneration, generation(p) + 1);
+            IndexSegment seg;
+            try { seg = IndexSegment.open(p, generation(p)); }
+            catch (IOException | RuntimeException e) {
+                System.err.println("Skipping index segment " + p + ": " + e.getMessage());
+                continue;
+            }
+            BitSet seen = new BitSet(seg.dumpCount);
+            for (int d = 0; d < seg.dumpCount; d++) if (!ids.add(seg.dumpId(d))) seen.set(d);
+            if (seen.cardinality() == seg.dumpCount && seg.dumpCount > 0) {
+                Files.deleteIfExists(p);
+                continue;
+            }
+            open.add(seg);
+            if (!seen.isEmpty()) shadowed.put(seg, seen);
+        }
+        open.sort(Comparator.comparingLong(s -> s.generation));
+        segments = new Segments(List.copyOf(open), Map.copyOf(shadowed));
+    }
+
+    private static long generation(Path p) {
+        String n = p.getFileName().toString();
+        return Long.parseLong(n.substring(4, n.length() - SUFFIX.length()));
+    }
+
+    private Path segmentFile(long generation) { return dir.resolve(String.format(Locale.ROOT, "seg-%012d%s", generation, SUFFIX)); }
+
+    // ── Adding ───────────────────────────────────────────────────────────────
+
+    /** Indexes {@code table} on the index's own thread; dropped, and counted, if too many are queued. */
+    public void submit(String id, String name, ThreadTable table) {
+        writer.execute(() -> {
+            try { add(id, name, table); }
+            catch (IOException | RuntimeException e) { System.err.println("Error: indexing " + id + ": " + e.getMessage()); }
+        });
+    }
+
+    /** Indexes {@code table} as dump {@code id} and returns true, or false if {@code id} is indexed already. */
+    public boolean add(String id, String name, ThreadTable table) throws IOException {
+        synchronized (this) {
+            if (!ids.add(id)) return false;
+        }
+        byte[][] keys;
+        int[][]  postings;
+        try {
+            // The bulk of the work, outside the lock so batch jobs index in parallel
+            Terms terms = terms(table);
+            int n = terms.keys.size();
+            byte[][] utf = new byte[n][];
+            for (int t = 0; t < n; t++) utf[t] = terms.keys.get(t).getBytes(StandardCharsets.UTF_8);
+            Integer[] order = new Integer[n];
+            for (int t = 0; t < n; t++) order[t] = t;
+            Arrays.sort(order, (a, b) -> IndexSegment.compare(utf[a], utf[b]));
+            keys     = new byte[n][];
+            postings = new int[n][];
+            for (int t = 0; t < n; t++) {
+                keys[t]     = utf[order[t]];
+                postings[t] = terms.postings[order[t]].toArray();
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) { ids.remove(id); }
+            throw e;
+        }
+
+        synchronized (this) {
+            try {
+                IndexSegment seg = install(nextGeneration++, tmp -> IndexSegment.write(tmp, id, name == null ? "" : name,
+                        System.currentTimeMillis(), table, keys, postings));
+                List<IndexSegment> next = new ArrayList<>(segments.list);
+                next.add(seg);
+                segments = new Segments(List.copyOf(next), segments.hidden);
+            } catch (IOException | RuntimeException e) {
+                ids.remove(id);
+                throw e;
+            }
+            mergeSmall();
+        }
+        return true;
+    }
+
+    private interface SegmentWrite { void to(Path tmp) throws IOException; }
+
+    // Written under a temporary name and renamed, so a segment file is always complete
+    private IndexSegment install(long gen, SegmentWrite write) throws IOException {
+        Path file = segmentFile(gen);
+        Path tmp  = dir.resolve(file.getFileName() + ".tmp");
+        try {
+            write.to(tmp);
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return IndexSegment.open(file, gen);
+    }
+
+    // Merges MERGE_FACTOR segments of one size tier (docs, in powers of 4) while any tier has that many
+    private void mergeSmall() throws IOException {
+        while (true) {
+            Map<Integer, List<IndexSegment>> tiers = new TreeMap<>();
+            for (IndexSegment s : segments.list)
+                tiers.computeIfAbsent(tier(s), t -> new ArrayList<>()).add(s);
+            List<IndexSegment> batch = null;
+            for (List<IndexSegment> tier : tiers.values()) {
+                if (tier.size() < MERGE_FACTOR) continue;
+                List<IndexSegment> candidate = tier.subList(0, MERGE_FACTOR);
+                long bytes = 0;
+                for (IndexSegment s : candidate) bytes += s.sizeBytes();
+                if (bytes <= MAX_SEGMENT_BYTES) { batch = List.copyOf(candidate); break; }
+            }
+            if (batch == null) return;
+
+            List<IndexSegment> sources = batch;
+            IndexSegment merged = install(nextGeneration++, tmp -> IndexSegment.merge(tmp, sources));
+            List<IndexSegment> next = new ArrayList<>(segments.list);
+            next.removeAll(sources);
+            next.add(merged);
+            // Hidden dumps stay hidden at their place in the merged segment
+            Map<IndexSegment, BitSet> hidden = new HashMap<>(segments.hidden);
+            BitSet moved = new BitSet();
+            int base = 0;
+            for (IndexSegment s : sources) {
+                BitSet h = hidden.remove(s);
+                if (h != null) for (int d = h.nextSetBit(0); d >= 0; d = h.nextSetBit(d + 1)) moved.set(base + d);
+                base += s.dumpCount;
+            }
+            if (!moved.isEmpty()) hidden.put(merged, moved);
+            segments = new Segments(List.copyOf(next), Map.copyOf(hidden));
+            for (IndexSegment s : sources) Files.deleteIfExists(s.file);
+        }
+    }
+
+    private static int tier(IndexSegment s) {
+        return (31 - Integer.numberOfLeadingZeros(Math.max(1, s.docCount))) / 2;
+    }
+
+    /** Dumps submitted while the queue was full, and so never indexed. */
+    public long dropped() { return dropped.sum(); }
+
+    /** Waits up to a minute for queued dumps to be indexed. */
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(1, TimeUnit.MINUTES)) System.err.println("Index: queued dumps not indexed within a minute");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ── Terms ────────────────────────────────────────────────────────────────
+
+    private static final class Postings {
+        int[] docs = new int[4];
+        int   n;
+
+        void add(int doc) {
+            if (n > 0 && docs[n - 1] == doc) return;     // rows come in order, so repeats are adjacent
+            if (n == docs.length) docs = Arrays.copyOf(docs, n * 2);
+            docs[n++] = doc;
+        }
+
+        int[] toArray() { return Arrays.copyOf(docs, n); }
+    }
+
+    // Terms of one dump by id, in first-seen order, each with the rows it occurs in
+    static final class Terms {
+        final Map<String, Integer> ids  = new HashMap<>();
+        final List<String>         keys = new ArrayList<>();
+        Postings[] postings = new Postings[1024];
+
+        int id(String term) {
+            Integer id = ids.get(term);
+            if (id != null) return id;
+            int t = keys.size();
+            if (t == postings.length) postings = Arrays.copyOf(postings, t * 2);
+            postings[t] = new Postings();
+            keys.add(term);
+            ids.put(term, t);
+            return t;
+        }
+
+        void add(String term, int row) { postings[id(term)].add(row); }
+    }
+
+    // The terms of each distinct frame and stack are worked out once, as ids
+    static Terms terms(ThreadTable table) {
+        Terms terms = new Terms();
+        int[][] frameTerms = new int[table.frameCount()][];
+        int[][] stackTerms = new int[table.stackCount()][];
+        int[] mark = new int[1024];          // term id → last stack id + 1 it was collected for
+        int[] stateTerm  = new int[16];      // state code → term id + 1
+        int[] healthTerm = new int[ThreadTable.Health.values().length];
+        for (int i = 0; i < table.size(); i++) {
+            int s = table.stackId(i);
+            if (s >= 0) {
+                if (stackTerms[s] == null) {
+                    int[] collected = new int[64];
+                    int n = 0;
+                    for (int d = 0; d < table.stackDepth(s); d++) {
+                        int f = table.stackFrame(s, d);
+                        if (frameTerms[f] == null) frameTerms[f] = frameTerms(terms, table.frameText(f));
+                        for (int t : frameTerms[f]) {
+                            if (t >= mark.length) mark = Arrays.copyOf(mark, Math.max(t + 1, mark.length * 2));
+                            if (mark[t] == s + 1) continue;
+                            mark[t] = s + 1;
+                            if (n == collected.length) collected = Arrays.copyOf(collected, n * 2);
+                            collected[n++] = t;
+                        }
+                    }
+                    stackTerms[s] = Arrays.copyOf(collected, n);
+                }
+                for (int t : stackTerms[s]) terms.postings[t].add(i);
+            }
+
+            List<LockRef> locks = table.locks(i);
+            for (LockRef r : locks) {
+                String address = r.address.toLowerCase(Locale.ROOT);
+                terms.add(LOCK + address, i);
+                if (!r.className.isEmpty()) terms.add(LOCK_CLASS + r.className, i);
+                switch (r.kind) {
+                    // Object.wait() prints "locked" for the monitor it has released, as in LockGraph
+                    case LOCKED -> { if (!releases(locks, r.address)) terms.add(HELD + address, i); }
+                    case OWNS   -> terms.add(HELD + address, i);
+                    case WAITING_TO_LOCK, WAITING_ON, PARKING -> terms.add(WAITING + address, i);
+                }
+            }
+            int code = table.stateCode(i), health = table.health(i).ordinal();
+            if (code < 0) {
+                terms.add(STATE + table.state(i).toLowerCase(Locale.ROOT), i);
+            } else {
+                if (code >= stateTerm.length) stateTerm = Arrays.copyOf(stateTerm, Math.max(code + 1, stateTerm.length * 2));
+                if (stateTerm[code] == 0) stateTerm[code] = terms.id(STATE + table.state(i).toLowerCase(Locale.ROOT)) + 1;
+                terms.postings[stateTerm[code] - 1].add(i);
+            }
+            if (healthTerm[health] == 0) healthTerm[health] = terms.id(HEALTH + table.health(i).name().toLowerCase(Locale.ROOT)) + 1;
+            terms.postings[healthTerm[health] - 1].add(i);
+        }
+        return terms;
+    }
+
+    private static boolean releases(List<LockRef> refs, String address) {
+        for (LockRef r : refs) {
+            if (r.address.equals(address)
+                    && (r.kind == LockRef.Kind.WAITING_ON || r.kind == LockRef.Kind.WAITING_TO_LOCK)) return true;
+        }
+        return false;
+    }
+
+    // "at com.acme.Foo$Bar.doWork(Foo.java:42)" → ids of frame:com.acme.Foo$Bar.doWork and its tokens
+    private static int[] frameTerms(Terms terms, String line) {
+        String l = line.trim();
+        if (!l.startsWith("at ")) return new int[0];
+        int paren = l.indexOf('(');
+        String method = l.substring(3, paren > 3 ? paren : l.length()).trim();
+        Set<String> out = new LinkedHashSet<>();
+        out.add(FRAME + method);
+        tokens(method, t -> out.add(TOKEN + t));
+        int[] ids = new int[out.size()];
+        int k = 0;
+        for (String t : out) ids[k++] = terms.id(t);
+        return ids;
+    }
+
+    /** Lowercased name parts of {@code method}: split at '.', '$', '/', '_', then each again at camel case. */
+    static void tokens(String method, Consumer<String> out) {
+        for (String part : method.split("[.$/_<>]+")) {
+            if (part.length() < 2 || isDigits(part)) continue;
+            out.accept(part.toLowerCase(Locale.ROOT));
+            int start = 0;
+            for (int i = 1; i <= part.length(); i++) {
+                if (i < part.length() && !wordBreak(part, i)) continue;
+                if (start > 0 || i < part.length()) {
+                    String w = part.substring(start, i);
+                    if (w.length() >= 2 && !isDigits(w)) out.accept(w.toLowerCase(Locale.ROOT));
+                }
+                start = i;
+            }
+        }
+    }
+
+    // fooBar | FOOBar → FOO|Bar | foo2 | 2foo
+    private static boolean wordBreak(String s, int i) {
+        char a = s.charAt(i - 1), b = s.charAt(i);
+        if (Character.isLowerCase(a) && Character.isUpperCase(b)) return true;
+        if (Character.isUpperCase(a) && Character.isUpperCase(b)
+                && i + 1 < s.length() && Character.isLowerCase(s.charAt(i + 1))) return true;
+        return Character.isDigit(a) != Character.isDigit(b);
+    }
+
+    private static boolean isDigits(String s) {
+        for (int i = 0; i < s.length(); i++) if (!Character.isDigit(s.charAt(i))) return false;
+        return true;
+    }
+
+    // ── Queries ──────────────────────────────────────────────────────────────
+
+    /**
+     * A query: clauses separated by spaces, all of which a thread must match. A clause is
+     * {@code field:value}, or a bare value — a frame if it contains a '.', a lock if it starts
+     * with 0x, a token otherwise. A trailing '*' matches every term starting with the value.
+     * Values are lowercased except for frame and lockclass; angle brackets around addresses are
+     * dropped.
+     *
+     *   frame:com.zaxxer.hikari.pool.HikariPool.getConnection state:blocked
+     *   held:<0x000000071a2b3c40>
+     *   frame:org.apache.kafka.*  health:hot
+     */
+    public record Clause(String field, String value, boolean prefix) {
+        byte[] key() { return (field + value).getBytes(StandardCharsets.UTF_8); }
+
+        @Override public String toString() { return field + value + (prefix ? "*" : ""); }
+    }
+
+    public static List<Clause> parse(String query) {
+        List<Clause> clauses = new ArrayList<>();
+        for (String raw : query.trim().split("\\s+")) {
+            if (raw.isEmpty()) continue;
+            String field = null, value = raw;
+            int colon = raw.indexOf(':');
+            if (colon > 0) {
+                String f = raw.substring(0, colon + 1).toLowerCase(Locale.ROOT);
+                if (!FIELDS.contains(f)) throw new IllegalArgumentException("Unknown field " + raw.substring(0, colon)
+                        + "; expected one of " + String.join(" ", FIELDS));
+                field = f;
+                value = raw.substring(colon + 1);
+            }
+            boolean prefix = value.endsWith("*");
+            if (prefix) value = value.substring(0, value.length() - 1);
+            if (value.startsWith("<") && value.endsWith(">")) value = value.substring(1, value.length() - 1);
+            if (field == null) {
+                field = value.contains(".") ? FRAME
+                      : value.regionMatches(true, 0, "0x", 0, 2) ? LOCK
+                      : TOKEN;
+            }
+            if (!field.equals(FRAME) && !field.equals(LOCK_CLASS)) value = value.toLowerCase(Locale.ROOT);
+            if (value.isEmpty() && !prefix) throw new IllegalArgumentException("Empty value in " + raw);
+            clauses.add(new Clause(field, value, prefix));
+        }
+        if (clauses.isEmpty()) throw new IllegalArgumentException("Empty query");
+        return clauses;
+    }
+
+    // Docs of seg matching every clause, ascending
+    private static int[] match(IndexSegment seg, List<Clause> clauses) {
+        int[] docs = null;
+        for (Clause c : clauses) {
+            int[] m = match(seg, c);
+            docs = docs == null ? m : intersect(docs, m);
+            if (docs.length == 0) break;
+        }
+        return docs;
+    }
+
+    private static int[] match(IndexSegment seg, Clause c) {
+        byte[] key = c.key();
+        if (!c.prefix) {
+            int t = seg.find(key);
+            if (t < 0) return new int[0];
+            int[] docs = new int[seg.docFreq(t)];
+            seg.postings(t, docs, 0, 0);
+            return docs;
+        }
+        int from = seg.ceiling(key), to = from;
+        long total = 0;
+        while (to < seg.termCount && seg.startsWith(to, key)) total += seg.docFreq(to++);
+        if (to - from == 1) {
+            int[] docs = new int[(int) total];
+            seg.postings(from, docs, 0, 0);
+            return docs;
+        }
+        // Union of several terms through a bitmap of the segment's docs
+        long[] bits = new long[(seg.docCount + 63) >>> 6];
+        int[] scratch = new int[1024];
+        for (int t = from; t < to; t++) {
+            int df = seg.docFreq(t);
+            if (scratch.length < df) scratch = new int[Math.max(df, scratch.length * 2)];
+            seg.postings(t, scratch, 0, 0);
+            for (int i = 0; i < df; i++) bits[scratch[i] >>> 6] |= 1L << scratch[i];
+        }
+        int n = 0;
+        for (long w : bits) n += Long.bitCount(w);
+        int[] docs = new int[n];
+        for (int w = 0, k = 0; w < bits.length; w++)
+            for (long b = bits[w]; b != 0; b &= b - 1) docs[k++] = (w << 6) + Long.numberOfTrailingZeros(b);
+        return docs;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if      (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else { out[n++] = a[i]; i++; j++; }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private record Hit(IndexSegment seg, int dump, int matches, int[] sample) { }
+
+    /**
+     * <pre>
+     * { "query": "frame:... state:blocked", "tookMs": 3.1, "segments": 4, "dumpsSearched": 2210,
+     *   "dumps": 37, "threads": 912,
+     *   "facets": {"state": {"BLOCKED": 912}, "health": {"BLOCKED": 900, "IDLE": 12}},
+     *   "results": [ {"dumpId", "name", "indexedAt", "threadCount", "matches",
+     *                 "threads": [ {"row", "name", "state", "health"}, ... ]}, ... ] }
+     * </pre>
+     * Results are the {@code limit} most recently indexed dumps with a match, each with up to
+     * {@code sample} of its matching threads; "row" is the thread's index in the dump's session.
+     * Counts and facets cover every match.
+     */
+    public void writeSearch(String query, int limit, int sample, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        List<Clause> clauses = parse(query);
+        Segments segs = segments;
+
+        ThreadTable.State[]  states = ThreadTable.State.values();
+        ThreadTable.Health[] health = ThreadTable.Health.values();
+        long[] stateCounts = new long[states.length], healthCounts = new long[health.length];
+        List<Hit> hits = new ArrayList<>();
+        long threads = 0, dumpsSearched = 0;
+        for (IndexSegment seg : segs.list) {
+            BitSet hidden = segs.hidden.get(seg);
+            dumpsSearched += seg.dumpCount - (hidden == null ? 0 : hidden.cardinality());
+            int[] docs = match(seg, clauses);
+            for (int i = 0; i < docs.length; ) {
+                int d = seg.dumpOf(docs[i]), end = seg.docBase(d + 1), first = i;
+                if (hidden != null && hidden.get(d)) {
+                    while (i < docs.length && docs[i] < end) i++;
+                    continue;
+                }
+                while (i < docs.length && docs[i] < end) {
+                    stateCounts[seg.state(docs[i])]++;
+                    healthCounts[seg.health(docs[i])]++;
+                    i++;
+                }
+                threads += i - first;
+                hits.add(new Hit(seg, d, i - first, Arrays.copyOfRange(docs, first, Math.min(i, first + sample))));
+            }
+        }
+        hits.sort(Comparator.comparingLong((Hit h) -> h.seg.indexedAt(h.dump)).reversed());
+
+        JsonWriter w = new JsonWriter(out);
+        w.raw("{\"query\":").str(String.join(" ", clauses.stream().map(Clause::toString).toList()))
+         .raw(",\"tookMs\":").r2((System.nanoTime() - start) / 1e6)
+         .raw(",\"segments\":").num(segs.list.size())
+         .raw(",\"dumpsSearched\":").num(dumpsSearched)
+         .raw(",\"dumps\":").num(hits.size())
+         .raw(",\"threads\":").num(threads)
+         .raw(",\"facets\":{\"state\":");
+        facet(w, states, stateCounts);
+        w.raw(",\"health\":");
+        facet(w, health, healthCounts);
+        w.raw("},\"results\":[");
+        for (int h = 0; h < hits.size() && h < limit; h++) {
+            Hit hit = hits.get(h);
+            IndexSegment seg = hit.seg;
+            if (h > 0) w.raw(",");
+            w.raw("{\"dumpId\":").str(seg.dumpId(hit.dump))
+             .raw(",\"name\":").str(seg.dumpName(hit.dump))
+             .raw(",\"indexedAt\":").num(seg.indexedAt(hit.dump))
+             .raw(",\"threadCount\":").num(seg.threadCount(hit.dump))
+             .raw(",\"matches\":").num(hit.matches)
+             .raw(",\"threads\":[");
+            for (int i = 0; i < hit.sample.length; i++) {
+                int doc = hit.sample[i];
+                if (i > 0) w.raw(",");
+                w.raw("{\"row\":").num(doc - seg.docBase(hit.dump))
+                 .raw(",\"name\":").str(seg.threadName(doc))
+                 .raw(",\"state\":").str(states[seg.state(doc)].name())
+                 .raw(",\"health\":").str(health[seg.health(doc)].name())
+                 .raw("}");
+            }
+            w.raw("]}");
+        }
+        w.raw("]}");
+        w.flush();
+    }
+
+    private static void facet(JsonWriter w, Enum<?>[] names, long[] counts) throws IOException {
+        w.raw("{");
+        boolean first = true;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) continue;
+            if (!first) w.raw(",");
+            first = false;
+            w.str(names[i].name()).raw(":").num(counts[i]);
+        }
+        w.raw("}");
+    }
+
+    /**
+     * The first {@code limit} terms starting with {@code prefix}, with the number of threads
+     * carrying each across all dumps — for completing a query as it is typed:
+     * {"terms": [ {"term": "frame:com.zaxxer.hikari.pool.HikariPool.getConnection", "threads": 5120}, ... ]}
+     */
+    public void writeTerms(String prefix, int limit, OutputStream out) throws IOException {
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        // Each segment's first limit terms hold the first limit of the union
+        TreeMap<byte[], Long> found = new TreeMap<>(IndexSegment::compare);
+        Segments segs = segments;
+        for (IndexSegment seg : segs.list) {
+            BitSet hidden = segs.hidden.get(seg);
+            for (int t = seg.ceiling(key), n = 0; t < seg.termCount && n < limit && seg.startsWith(t, key); t++) {
+                long threads = hidden == null ? seg.docFreq(t) : visibleDocs(seg, t, hidden);
+                if (threads == 0) continue;
+                found.merge(seg.term(t), threads, Long::sum);
+                n++;
+            }
+        }
+        JsonWriter w = new JsonWriter(out);
+        w.raw("{\"terms\":[");
+        int n = 0;
+        for (Map.Entry<byte[], Long> e : found.entrySet()) {
+            if (n == limit) break;
+            if (n++ > 0) w.raw(",");
+            w.raw("{\"term\":").str(new String(e.getKey(), StandardCharsets.UTF_8))
+             .raw(",\"threads\":").num(e.getValue())
+             .raw("}");
+        }
+        w.raw("]}");
+        w.flush();
+    }
+
+    private static int visibleDocs(IndexSegment seg, int t, BitSet hidden) {
+        int[] docs = new int[seg.docFreq(t)];
+        seg.postings(t, docs, 0, 0);
+        int n = 0;
+        for (int doc : docs) if (!hidden.get(seg.dumpOf(doc))) n++;
+        return n;
+    }
+
+    /** {"segments", "dumps", "threads", "terms", "bytes", "queued", "dropped"}; terms are summed per segment. */
+    public String statsJson() {
+        long dumps = 0, threads = 0, terms = 0, bytes = 0;
+        Segments segs = segments;
+        for (IndexSegment s : segs.list) {
+            dumps   += s.dumpCount;
+            threads += s.docCount;
+            terms   += s.termCount;
+            bytes   += s.sizeBytes();
+            BitSet hidden = segs.hidden.get(s);
+            if (hidden == null) continue;
+            for (int d = hidden.nextSetBit(0); d >= 0; d = hidden.nextSetBit(d + 1)) {
+                dumps--;
+                threads -= s.threadCount(d);
+            }
+        }
+        return "{\"segments\":" + segs.list.size() + ",\"dumps\":" + dumps + ",\"threads\":" + threads
+                + ",\"terms\":" + terms + ",\"bytes\":" + bytes + ",\"queued\":" + writer.getQueue().size() + ",\"dropped\":" + dropped.sum() + "}";
+    }
+}
@@ -0,0 +1,177 @@
+package com.analyzer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares N dumps of the same JVM taken seconds apart.
+ *
+ * Threads are matched across snapshots by OS thread id plus JVM thread pointer (nid/tid),
+ * falling back to the name, and the position among threads of that name, when a dump has
+ * neither. For each pair of consecutive snapshots
+ * the interval CPU rate is ΔcpuMs / ΔelapsedMs — unlike ThreadInfo.cpuPercent, which averages
+ * over the thread's whole lifetime, this shows a thread that only started spinning recently.
+ *
+ * A thread is flagged stuck when it is present in every snapshot and either
+ *   "stack" - RUNNABLE or BLOCKED with the identical stack every time (a spin or hung call), or
+ *   "lock"  - BLOCKED waiting on the same monitor every time.
+ */
+public class DumpSeries {
+
+    /** One thread followed across snapshots; samples[i] is null where it is absent from snapshot i. */
+    public static class Track {
+        public final String       key;
+        public final ThreadInfo[] samples;
+        public final double[]     intervalCpuPercent;   // [i] = rate between snapshot i-1 and i; -1 if unknown
+        public double             maxIntervalCpuPercent = -1;
+        public String             stuck = "";
+
+        Track(String key, int n) {
+            this.key                = key;
+            this.samples            = new ThreadInfo[n];
+            this.intervalCpuPercent = new double[n];
+            Arrays.fill(intervalCpuPercent, -1);
+        }
+
+        /** Most recent sample — used for the display name and ids. */
+        public ThreadInfo latest() {
+            for (int i = samples.length - 1; i >= 0; i--) if (samples[i] != null) return samples[i];
+            return null;
+        }
+    }
+
+    public final List<String> names;
+    public final int[]        threadCounts;
+    public final int[]        dropped;        // [i] = threads of snapshot i sharing a key with an earlier one
+    public final List<Track>  tracks;
+
+    private DumpSeries(List<String> names, int[] threadCounts, int[] dropped, List<Track> tracks) {
+        this.names        = names;
+        this.threadCounts = threadCounts;
+        this.dropped      = dropped;
+        this.tracks       = tracks;
+    }
+
+    /** {@code snapshots} must be in capture order; {@code names} labels each one (e.g. the file name). */
+    public static DumpSeries analyze(List<List<ThreadInfo>> snapshots, List<String> names) {
+        int n = snapshots.size();
+        Map<String, Track> byKey = new HashMap<>();
+        List<Track> tracks = new ArrayList<>();
+        int[] counts  = new int[n];
+        int[] dropped = new int[n];
+
+        for (int i = 0; i < n; i++) {
+            List<ThreadInfo> snap = snapshots.get(i);
+            counts[i] = snap.size();
+            Map<String, Integer> sameName = new HashMap<>();
+            for (ThreadInfo t : snap) {
+                String key = key(t, sameName);
+                Track tr = byKey.get(key);
+                if (tr == null) {
+                    tr = new Track(key, n);
+                    byKey.put(key, tr);
+                    tracks.add(tr);
+                }
+                if (tr.samples[i] == null) tr.samples[i] = t;   // duplicate ids in one dump: first wins
+                else dropped[i]++;
+            }
+        }
+
+        for (Track tr : tracks) {
+            for (int i = 1; i < n; i++) {
+                ThreadInfo a = tr.samples[i - 1], b = tr.samples[i];
+                if (a == null || b == null || a.cpuMs < 0 || b.cpuMs < 0 || a.elapsedMs < 0 || b.elapsedMs < 0) continue;
+                double dElapsed = b.elapsedMs - a.elapsedMs;
+                double dCpu     = b.cpuMs - a.cpuMs;
+                if (dElapsed <= 0 || dCpu < 0) continue;           // restarted thread or reused id
+                double pct = dCpu / dElapsed * 100.0;
+                tr.intervalCpuPercent[i] = pct;
+                if (pct > tr.maxIntervalCpuPercent) tr.maxIntervalCpuPercent = pct;
+            }
+            tr.stuck = stuck(tr.samples);
+        }
+
+        tracks.sort((x, y) -> Double.compare(y.maxIntervalCpuPercent, x.maxIntervalCpuPercent));
+        return new DumpSeries(names, counts, dropped, tracks);
+    }
+
+    // Same-named threads without ids ("pool-worker" x 8) pair up in dump order: the k-th with the k-th
+    private static String key(ThreadInfo t, Map<String, Integer> sameName) {
+        if (!t.nidDecimal.isEmpty() || !t.tid.isEmpty()) return t.nidDecimal + "/" + t.tid;
+        int k = sameName.merge(t.name, 1, Integer::sum) - 1;
+        return k == 0 ? "name:" + t.name : "name:" + t.name + "#" + k;
+    }
+
+    private static String stuck(ThreadInfo[] samples) {
+        if (samples.length < 2) return "";
+        ThreadInfo first = samples[0];
+        if (first == null) return "";
+        boolean sameStack = !first.stackTrace.isEmpty()
+                && ("RUNNABLE".equals(first.state) || "BLOCKED".equals(first.state));
+        boolean sameLock  = "BLOCKED".equals(first.state) && !first.lockInfo.isEmpty();
+        for (int i = 1; i < samples.length && (sameStack || sameLock); i++) {
+            ThreadInfo t = samples[i];
+            if (t == null) return "";
+            if (sameStack && !(t.state.equals(first.state) && sameText(t.stackTrace, first.stackTrace))) sameStack = false;
+            if (sameLock  && !("BLOCKED".equals(t.state) && t.lockInfo.equals(first.lockInfo)))           sameLock  = false;
+        }
+        return sameLock ? "lock" : sameStack ? "stack" : "";
+    }
+
+    // Stack texts come from different StackTables; compare cached hashes before the full text
+    private static boolean sameText(String a, String b) {
+        return a == b || (a.hashCode() == b.hashCode() && a.equals(b));
+    }
+
+    // ── JSON ──────────────────────────────────────────────────────────────────
+
+    /**
+     * <pre>
+     * { "snapshots": [ {"name": "dump1.txt", "threads": 812, "dropped": 0}, ... ],
+     *   "threads":   [ {"key", "name", "nid", "tid", "stuck",
+     *                   "maxIntervalCpuPercent",
+     *                   "samples": [ {"state", "cpuMs", "elapsedMs", "intervalCpuPercent"} | null, ... ] }, ... ] }
+     * </pre>
+     */
+    public void writeJson(OutputStream out) throws IOException {
+        JsonWriter w = new JsonWriter(out);
+        w.raw("{\"snapshots\":[");
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0) w.raw(",");
+            w.raw("{\"name\":").str(names.get(i)).raw(",\"threads\":").num(threadCounts[i])
+             .raw(",\"dropped\":").num(dropped[i]).raw("}");
+        }
+        w.raw("],\"threads\":[");
+        for (int k = 0; k < tracks.size(); k++) {
+            Track tr = tracks.get(k);
+            ThreadInfo last = tr.latest();
+            if (k > 0) w.raw(",");
+            w.raw("{")
+             .raw("\"key\":"                   ).str(tr.key)                   .raw(",")
+             .raw("\"name\":"                  ).str(last.name)                .raw(",")
+             .raw("\"nid\":"                   ).str(last.nid)                 .raw(",")
+             .raw("\"tid\":"                   ).str(last.tid)                 .raw(",")
+             .raw("\"stuck\":"                 ).str(tr.stuck)                 .raw(",")
+             .raw("\"maxIntervalCpuPercent\":" ).r2(tr.maxIntervalCpuPercent)  .raw(",")
+             .raw("\"samples\":[");
+            for (int i = 0; i < tr.samples.length; i++) {
+                ThreadInfo t = tr.samples[i];
+                if (i > 0) w.raw(",");
+                if (t == null) { w.raw("null"); continue; }
+                w.raw("{\"state\":").str(t.state)
+                 .raw(",\"cpuMs\":").r2(t.cpuMs)
+                 .raw(",\"elapsedMs\":").r2(t.elapsedMs)
+                 .raw(",\"intervalCpuPercent\":").r2(tr.intervalCpuPercent[i])
+                 .raw("}");
+            }
+            w.raw("]}");
+        }
+        w.raw("]}");
+        w.flush();
+    }
+}
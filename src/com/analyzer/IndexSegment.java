@@ -0,0 +1,452 @@
+package com.analyzer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * One immutable, memory-mapped file of a {@link DumpIndex}: the threads of one or more dumps
+ * and, for every term, the ascending list of threads ("docs") it occurs in.
+ *
+ * Layout, big-endian:
+ *   header    magic, version, dumpCount, docCount, termCount, then the offsets of the dumps,
+ *             docs, postings and terms sections and the file length
+ *   dumps     int docBase[dumpCount + 1], long indexedAt[dumpCount],
+ *             int strOff[2 * dumpCount + 1], then the UTF-8 id and name of each dump
+ *   docs      byte state[docCount], byte health[docCount], int nameOff[docCount + 1], UTF-8 names
+ *   postings  per term, its docs as varint gaps (the first one from 0)
+ *   terms     int termOff[termCount + 1], long postOff[termCount + 1], int docFreq[termCount],
+ *             then the UTF-8 terms, sorted bytewise
+ *
+ * A doc is a thread's dump's docBase plus its row in that dump's {@link ThreadTable}. Merging
+ * concatenates dumps in order, so each source's postings only shift by its base and stay ascending.
+ * Files are written whole and never modified; one mapping holds the whole file, so segments stay
+ * below 2 GB.
+ */
+public class IndexSegment {
+
+    static final int MAGIC   = 0x54445849;   // "TDXI"
+    static final int VERSION = 1;
+
+    private static final int HEADER = 64;
+
+    public final Path file;
+    public final long generation;
+    public final int  dumpCount, docCount, termCount;
+
+    private final ByteBuffer buf;
+    private final int[]    docBase;
+    private final long[]   indexedAt;
+    private final String[] ids, names;
+    private final int stateAt, healthAt, nameOffAt, namesAt;
+    private final int postingsAt, termOffAt, postOffAt, docFreqAt, termsAt;
+
+    private IndexSegment(Path file, long generation, ByteBuffer buf) throws IOException {
+        this.file       = file;
+        this.generation = generation;
+        this.buf        = buf;
+        if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION || buf.getLong(56) != buf.capacity())
+            throw new IOException("Not a complete index segment: " + file);
+        dumpCount = buf.getInt(8);
+        docCount  = buf.getInt(12);
+        termCount = buf.getInt(16);
+        int dumpsAt = (int) buf.getLong(24);
+        int docsAt  = (int) buf.getLong(32);
+        postingsAt  = (int) buf.getLong(40);
+        termOffAt   = (int) buf.getLong(48);
+
+        // Dump metadata is small and read on every hit, so it moves onto the heap
+        docBase   = new int[dumpCount + 1];
+        indexedAt = new long[dumpCount];
+        ids       = new String[dumpCount];
+        names     = new String[dumpCount];
+        int p = dumpsAt;
+        for (int d = 0; d <= dumpCount; d++, p += 4) docBase[d] = buf.getInt(p);
+        for (int d = 0; d < dumpCount; d++, p += 8)  indexedAt[d] = buf.getLong(p);
+        int strAt = p + 4 * (2 * dumpCount + 1);
+        for (int d = 0; d < dumpCount; d++) {
+            ids[d]   = utf8(strAt + buf.getInt(p + 8 * d),     strAt + buf.getInt(p + 8 * d + 4));
+            names[d] = utf8(strAt + buf.getInt(p + 8 * d + 4), strAt + buf.getInt(p + 8 * d + 8));
+        }
+
+        stateAt   = docsAt;
+        healthAt  = stateAt + docCount;
+        nameOffAt = healthAt + docCount;
+        namesAt   = nameOffAt + 4 * (docCount + 1);
+
+        postOffAt = termOffAt + 4 * (termCount + 1);
+        docFreqAt = postOffAt + 8 * (termCount + 1);
+        termsAt   = docFreqAt + 4 * termCount;
+    }
+
+    public static IndexSegment open(Path file, long generation) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < HEADER || size > Integer.MAX_VALUE) throw new IOException("Not a complete index segment: " + file);
+            return new IndexSegment(file, generation, ch.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    public long sizeBytes() { return buf.capacity(); }
+
+    // ── Dumps and docs ───────────────────────────────────────────────────────
+
+    public String dumpId(int d)      { return ids[d]; }
+    public String dumpName(int d)    { return names[d]; }
+    public long   indexedAt(int d)   { return indexedAt[d]; }
+    public int    docBase(int d)     { return docBase[d]; }
+    public int    threadCount(int d) { return docBase[d + 1] - docBase[d]; }
+
+    /** The dump {@code doc} belongs to. */
+    public int dumpOf(int doc) {
+        int i = Arrays.binarySearch(docBase, 0, dumpCount, doc);
+        if (i >= 0) {
+            while (i + 1 < dumpCount && docBase[i + 1] == doc) i++;   // skip dumps without threads
+            return i;
+        }
+        return -i - 2;
+    }
+
+    /** {@link ThreadTable.State} ordinal of the thread. */
+    public int    state(int doc)      { return buf.get(stateAt + doc); }
+    /** {@link ThreadTable.Health} ordinal of the thread. */
+    public int    health(int doc)     { return buf.get(healthAt + doc); }
+    public String threadName(int doc) {
+        return utf8(namesAt + buf.getInt(nameOffAt + 4 * doc), namesAt + buf.getInt(nameOffAt + 4 * doc + 4));
+    }
+
+    // ── Terms ────────────────────────────────────────────────────────────────
+
+    /** Index of {@code term}, or -1. */
+    public int find(byte[] term) {
+        int t = ceiling(term);
+        return t < termCount && compare(t, term) == 0 ? t : -1;
+    }
+
+    /** Index of the first term not below {@code key}; {@link #termCount} if there is none. */
+    public int ceiling(byte[] key) {
+        int lo = 0, hi = termCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(mid, key) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    public boolean startsWith(int t, byte[] prefix) {
+        int from = termStart(t);
+        if (termStart(t + 1) - from < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) if (buf.get(termsAt + from + i) != prefix[i]) return false;
+        return true;
+    }
+
+    public byte[] term(int t) {
+        byte[] b = new byte[termStart(t + 1) - termStart(t)];
+        buf.get(termsAt + termStart(t), b);
+        return b;
+    }
+
+    public int docFreq(int t) { return buf.getInt(docFreqAt + 4 * t); }
+
+    /** Appends the docs of term {@code t} to {@code into} from {@code at}, each plus {@code base}; returns the new length. */
+    public int postings(int t, int[] into, int at, int base) {
+        int p   = postingsAt + (int) buf.getLong(postOffAt + 8 * t);
+        int n   = docFreq(t);
+        int doc = 0;
+        for (int k = 0; k < n; k++) {
+            int v = 0, shift = 0, b;
+            do {
+                b = buf.get(p++);
+                v |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            doc += v;
+            into[at++] = doc + base;
+        }
+        return at;
+    }
+
+    private int termStart(int t) { return buf.getInt(termOffAt + 4 * t); }
+
+    private int compare(int t, byte[] key) {
+        int from = termsAt + termStart(t), len = termStart(t + 1) - termStart(t);
+        int n = Math.min(len, key.length);
+        for (int i = 0; i < n; i++) {
+            int c = (buf.get(from + i) & 0xFF) - (key[i] & 0xFF);
+            if (c != 0) return c;
+        }
+        return len - key.length;
+    }
+
+    private String utf8(int from, int to) {
+        byte[] b = new byte[to - from];
+        buf.get(from, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    static int compare(byte[] a, byte[] b) { return Arrays.compareUnsigned(a, b); }
+
+    // ── Writing ──────────────────────────────────────────────────────────────
+
+    /**
+     * Writes a segment holding the one dump in {@code table}; {@code terms} must be sorted
+     * bytewise and {@code postings[i]} holds the ascending rows of {@code terms[i]}.
+     */
+    static void write(Path file, String id, String name, long indexedAt, ThreadTable table,
+                      byte[][] terms, int[][] postings) throws IOException {
+        int n = table.size();
+        try (Out out = new Out(file)) {
+            out.dumps(new int[] {0, n}, new long[] {indexedAt}, new String[] {id, name});
+
+            out.section(Out.DOCS);
+            for (int i = 0; i < n; i++) out.writeByte(state(table.state(i)));
+            for (int i = 0; i < n; i++) out.writeByte(table.health(i).ordinal());
+            byte[] text = table.textBuffer();
+            int off = 0;
+            out.writeInt(0);
+            for (int i = 0; i < n; i++) out.writeInt(off += table.nameEnd(i) - table.nameStart(i));
+            for (int i = 0; i < n; i++) out.write(text, table.nameStart(i), table.nameEnd(i) - table.nameStart(i));
+
+            out.section(Out.POSTINGS);
+            for (int t = 0; t < terms.length; t++) {
+                int prev = 0;
+                for (int doc : postings[t]) { out.varint(doc - prev); prev = doc; }
+                out.term(terms[t], postings[t].length);
+            }
+        }
+    }
+
+    /** Writes the dumps of {@code sources}, in order, as one segment. */
+    static void merge(Path file, List<IndexSegment> sources) throws IOException {
+        int dumps = 0;
+        for (IndexSegment s : sources) dumps += s.dumpCount;
+        int[]    bases  = new int[sources.size()];
+        int[]    base   = new int[dumps + 1];
+        long[]   at     = new long[dumps];
+        String[] strs   = new String[2 * dumps];
+        int d = 0, docs = 0;
+        for (int k = 0; k < sources.size(); k++) {
+            IndexSegment s = sources.get(k);
+            bases[k] = docs;
+            for (int i = 0; i < s.dumpCount; i++, d++) {
+                base[d]         = docs + s.docBase[i];
+                at[d]           = s.indexedAt[i];
+                strs[2 * d]     = s.ids[i];
+                strs[2 * d + 1] = s.names[i];
+            }
+            docs += s.docCount;
+        }
+        base[dumps] = docs;
+
+        try (Out out = new Out(file)) {
+            out.dumps(base, at, strs);
+
+            out.section(Out.DOCS);
+            for (IndexSegment s : sources) out.copy(s.buf, s.stateAt, s.docCount);
+            for (IndexSegment s : sources) out.copy(s.buf, s.healthAt, s.docCount);
+            int shift = 0;
+            out.writeInt(0);
+            for (IndexSegment s : sources) {
+                for (int i = 1; i <= s.docCount; i++) out.writeInt(shift + s.buf.getInt(s.nameOffAt + 4 * i));
+                shift += s.buf.getInt(s.nameOffAt + 4 * s.docCount);
+            }
+            for (IndexSegment s : sources) out.copy(s.buf, s.namesAt, s.buf.getInt(s.nameOffAt + 4 * s.docCount));
+
+            // k-way merge of the sorted term lists; equal terms are written source by source
+            out.section(Out.POSTINGS);
+            PriorityQueue<Cursor> queue = new PriorityQueue<>((a, b) -> {
+                int c = compare(a.term, b.term);
+                return c != 0 ? c : Integer.compare(a.source, b.source);
+            });
+            for (int k = 0; k < sources.size(); k++) {
+                Cursor c = new Cursor(sources.get(k), k);
+                if (c.advance()) queue.add(c);
+            }
+            int[] scratch = new int[1024];
+            while (!queue.isEmpty()) {
+                byte[] term = queue.peek().term;
+                int prev = 0, freq = 0;
+                while (!queue.isEmpty() && compare(queue.peek().term, term) == 0) {
+                    Cursor c = queue.poll();
+                    int df = c.segment.docFreq(c.t);
+                    if (scratch.length < df) scratch = new int[Math.max(df, scratch.length * 2)];
+                    c.segment.postings(c.t, scratch, 0, bases[c.source]);
+                    for (int i = 0; i < df; i++) { out.varint(scratch[i] - prev); prev = scratch[i]; }
+                    freq += df;
+                    if (c.advance()) queue.add(c);
+                }
+                out.term(term, freq);
+            }
+        }
+    }
+
+    private static final class Cursor {
+        final IndexSegment segment;
+        final int source;
+        int t = -1;
+        byte[] term;
+
+        Cursor(IndexSegment segment, int source) {
+            this.segment = segment;
+            this.source  = source;
+        }
+
+        boolean advance() {
+            if (++t >= segment.termCount) return false;
+            term = segment.term(t);
+            return true;
+        }
+    }
+
+    private static int state(String s) {
+        for (ThreadTable.State st : ThreadTable.State.values()) if (st.name().equals(s)) return st.ordinal();
+        return ThreadTable.State.UNKNOWN.ordinal();
+    }
+
+    // Sections in file order; the header is patched in once every offset is known. Buffered by
+    // hand: postings go out a byte at a time
+    private static final class Out implements AutoCloseable {
+        static final int DOCS = 1, POSTINGS = 2;
+
+        final Path file;
+        private final FileChannel ch;
+        private final ByteBuffer  buf = ByteBuffer.allocate(256 * 1024);
+        private long flushed;
+        final long[] offsets = new long[4];    // dumps, docs, postings, terms
+
+        // Terms are collected while postings are written, then go last
+        private int[]  termOff  = new int[1024];
+        private long[] postOff  = new long[1024];
+        private int[]  docFreq  = new int[1024];
+        private byte[] termText = new byte[64 * 1024];
+        private int    terms, textLen;
+        private long   postStart;
+        private int    dumpCount, docCount;
+
+        Out(Path file) throws IOException {
+            this.file = file;
+            this.ch   = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                         StandardOpenOption.WRITE);
+            buf.position(HEADER);
+        }
+
+        long position() { return flushed + buf.position(); }
+
+        void writeByte(int b) throws IOException {
+            if (!buf.hasRemaining()) flush();
+            buf.put((byte) b);
+        }
+
+        void writeInt(int v) throws IOException {
+            if (buf.remaining() < 4) flush();
+            buf.putInt(v);
+        }
+
+        void writeLong(long v) throws IOException {
+            if (buf.remaining() < 8) flush();
+            buf.putLong(v);
+        }
+
+        void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (!buf.hasRemaining()) flush();
+                int n = Math.min(len, buf.remaining());
+                buf.put(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) flushed += ch.write(buf);
+            buf.clear();
+        }
+
+        void dumps(int[] base, long[] indexedAt, String[] strs) throws IOException {
+            offsets[0] = position();
+            dumpCount  = indexedAt.length;
+            docCount   = base[dumpCount];
+            for (int b : base)       writeInt(b);
+            for (long t : indexedAt) writeLong(t);
+            byte[][] utf = new byte[strs.length][];
+            int off = 0;
+            writeInt(0);
+            for (int i = 0; i < strs.length; i++) {
+                utf[i] = strs[i].getBytes(StandardCharsets.UTF_8);
+                writeInt(off += utf[i].length);
+            }
+            for (byte[] b : utf) write(b, 0, b.length);
+        }
+
+        void section(int s) {
+            offsets[s] = position();
+            if (s == POSTINGS) postStart = position();
+        }
+
+        void copy(ByteBuffer src, int from, int len) throws IOException {
+            byte[] chunk = new byte[Math.min(len, 64 * 1024)];
+            for (int done = 0; done < len; ) {
+                int n = Math.min(chunk.length, len - done);
+                src.get(from + done, chunk, 0, n);
+                write(chunk, 0, n);
+                done += n;
+            }
+        }
+
+        void varint(int v) throws IOException {
+            if (buf.remaining() < 5) flush();
+            while ((v & ~0x7F) != 0) {
+                buf.put((byte) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            buf.put((byte) v);
+        }
+
+        // Records a term whose postings were just written
+        void term(byte[] term, int freq) {
+            if (terms + 2 > termOff.length) {
+                int n = termOff.length * 2;
+                termOff = Arrays.copyOf(termOff, n);
+                postOff = Arrays.copyOf(postOff, n);
+                docFreq = Arrays.copyOf(docFreq, n);
+            }
+            if (textLen + term.length > termText.length)
+                termText = Arrays.copyOf(termText, Math.max(termText.length * 2, textLen + term.length));
+            System.arraycopy(term, 0, termText, textLen, term.length);
+            textLen += term.length;
+            docFreq[terms]     = freq;
+            termOff[terms + 1] = textLen;
+            postOff[terms + 1] = position() - postStart;
+            terms++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (ch) {
+                offsets[3] = position();
+                for (int t = 0; t <= terms; t++) writeInt(termOff[t]);
+                for (int t = 0; t <= terms; t++) writeLong(postOff[t]);
+                for (int t = 0; t < terms; t++)  writeInt(docFreq[t]);
+                write(termText, 0, textLen);
+                long length = position();
+                if (length > Integer.MAX_VALUE) throw new IOException("Index segment too large: " + file);
+                flush();
+
+                ByteBuffer h = ByteBuffer.allocate(HEADER);
+                h.putInt(MAGIC).putInt(VERSION).putInt(dumpCount).putInt(docCount).putInt(terms).putInt(0);
+                for (long o : offsets) h.putLong(o);
+                h.putLong(length);
+                ch.write(h.flip(), 0);
+                ch.force(true);
+            }
+        }
+    }
+}
@@ -1,49 +1,147 @@
 package com.analyzer;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
 public class JsonSerializer {
 
+    private static final int GROUP_SAMPLE_NAMES = 5;
+
     public static String toJson(List<ThreadInfo> threads) {
-        StringBuilder sb = new StringBuilder("[");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try { write(threads, out); }
+        catch (IOException e) { throw new UncheckedIOException(e); }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /** Streams the thread array to {@code out} as UTF-8; nothing is buffered beyond the writer's window. */
+    public static void write(List<ThreadInfo> threads, OutputStream out) throws IOException {
+        JsonWriter w = new JsonWriter(out);
+        w.raw("[");
+        for (int i = 0; i < threads.size(); i++) {
+            if (i > 0) w.raw(",");
+            writeThread(w, threads.get(i));
+        }
+        w.raw("]");
+        w.flush();
+    }
+
+    /**
+     * The analyze response: threads reference their stack by id instead of carrying a copy.
+     * <pre>
+     * { "threads":     [ {..., "stackId": 3, "blockedBy": 7}, ... ],
+     *   "stacks":      [ {"id": 3, "threads": 120, "trace": "at ..."}, ... ],
+     *   "stackGroups": [ {"stackId": 3, "count": 120, "names": ["pool-1-thread-1", ...]}, ... ],
+     *   "locks":       { "deadlocks": [...], "monitors": [...] } }
+     * </pre>
+     * stackGroups lists stacks shared by two or more threads, largest first, with a few sample names.
+     * blockedBy is the index of the thread holding the lock this one waits for, -1 if none;
+     * locks is described at {@link LockGraph#write}.
+     */
+    public static void writeAnalysis(List<ThreadInfo> threads, StackTable stacks, LockGraph locks,
+                                     OutputStream out) throws IOException {
+        writeAnalysis(ThreadTable.of(threads, stacks), locks, out);
+    }
+
+    /** As above, for threads already held as a table. */
+    public static void writeAnalysis(ThreadTable threads, LockGraph locks, OutputStream out) throws IOException {
+        JsonWriter w = new JsonWriter(out);
+        w.raw("{\"threads\":[");
         for (int i = 0; i < threads.size(); i++) {
-            ThreadInfo t = threads.get(i);
-            if (i > 0) sb.append(",");
-            sb.append("{")
-              .append("\"name\":"       ).append(str(t.name)        ).append(",")
-              .append("\"threadNum\":"  ).append(t.threadNum         ).append(",")
-              .append("\"state\":"      ).append(str(t.state)        ).append(",")
-              .append("\"stateDetail\":").append(str(t.stateDetail)  ).append(",")
-              .append("\"daemon\":"     ).append(t.daemon             ).append(",")
-              .append("\"priority\":"   ).append(t.priority           ).append(",")
-              .append("\"osPriority\":" ).append(t.osPriority         ).append(",")
-              .append("\"tid\":"        ).append(str(t.tid)           ).append(",")
-              .append("\"nid\":"        ).append(str(t.nid)           ).append(",")
-              .append("\"nidDecimal\":" ).append(str(t.nidDecimal)    ).append(",")
-              .append("\"cpuMs\":"      ).append(r2(t.cpuMs)          ).append(",")
-              .append("\"elapsedMs\":"  ).append(r2(t.elapsedMs)      ).append(",")
-              .append("\"cpuPercent\":" ).append(r2(t.cpuPercent)     ).append(",")
-              .append("\"lockInfo\":"   ).append(str(t.lockInfo)      ).append(",")
-              .append("\"health\":"     ).append(str(t.health)        ).append(",")
-              .append("\"stackTrace\":" ).append(str(t.stackTrace)    )
-              .append("}");
+            if (i > 0) w.raw(",");
+            writeFields(w, threads, i);
+            w.raw(",\"stackId\":").num(threads.stackId(i))
+             .raw(",\"blockedBy\":").num(locks.blockedBy[i])
+             .raw("}");
         }
-        sb.append("]");
-        return sb.toString();
+
+        w.raw("],\"stacks\":[");
+        for (int s = 0; s < threads.stackCount(); s++) {
+            if (s > 0) w.raw(",");
+            w.raw("{\"id\":").num(s)
+             .raw(",\"threads\":").num(threads.stackThreads(s))
+             .raw(",\"trace\":").str(threads.stackText(s))
+             .raw("}");
+        }
+
+        w.raw("],\"stackGroups\":[");
+        int[] groups = threads.stackGroups(2);
+        List<List<String>> names = sampleNames(threads, GROUP_SAMPLE_NAMES);
+        for (int i = 0; i < groups.length; i++) {
+            if (i > 0) w.raw(",");
+            w.raw("{\"stackId\":").num(groups[i]).raw(",\"count\":").num(threads.stackThreads(groups[i])).raw(",\"names\":[");
+            List<String> sample = names.get(groups[i]);
+            for (int k = 0; k < sample.size(); k++) {
+                if (k > 0) w.raw(",");
+                w.str(sample.get(k));
+            }
+            w.raw("]}");
+        }
+        w.raw("],\"locks\":");
+        locks.write(w, threads::name);
+        w.raw("}");
+        w.flush();
+    }
+
+    private static List<List<String>> sampleNames(ThreadTable threads, int max) {
+        List<List<String>> names = new ArrayList<>(threads.stackCount());
+        for (int s = 0; s < threads.stackCount(); s++) names.add(new ArrayList<>(0));
+        for (int i = 0; i < threads.size(); i++) {
+            int s = threads.stackId(i);
+            if (s < 0) continue;
+            List<String> l = names.get(s);
+            if (l.size() < max) l.add(threads.name(i));
+        }
+        return names;
+    }
+
+    static void writeThread(JsonWriter w, ThreadInfo t) throws IOException {
+        writeFields(w, t);
+        w.raw(",\"stackTrace\":").str(t.stackTrace).raw("}");
     }
 
-    private static String str(String s) {
-        if (s == null) return "\"\"";
-        return "\"" + s.replace("\\", "\\\\")
-                       .replace("\"", "\\\"")
-                       .replace("\n",  "\\n")
-                       .replace("\r",  "\\r")
-                       .replace("\t",  "\\t") + "\"";
+    // Opens the object and writes every field but the stack; the caller closes it
+    static void writeFields(JsonWriter w, ThreadInfo t) throws IOException {
+        w.raw("{")
+         .raw("\"name\":"        ).str(t.name)         .raw(",")
+         .raw("\"threadNum\":"   ).num(t.threadNum)    .raw(",")
+         .raw("\"state\":"       ).str(t.state)        .raw(",")
+         .raw("\"stateDetail\":" ).str(t.stateDetail)  .raw(",")
+         .raw("\"daemon\":"      ).bool(t.daemon)      .raw(",")
+         .raw("\"priority\":"    ).num(t.priority)     .raw(",")
+         .raw("\"osPriority\":"  ).num(t.osPriority)   .raw(",")
+         .raw("\"tid\":"         ).str(t.tid)          .raw(",")
+         .raw("\"nid\":"         ).str(t.nid)          .raw(",")
+         .raw("\"nidDecimal\":"  ).str(t.nidDecimal)   .raw(",")
+         .raw("\"cpuMs\":"       ).r2(t.cpuMs)         .raw(",")
+         .raw("\"elapsedMs\":"   ).r2(t.elapsedMs)     .raw(",")
+         .raw("\"cpuPercent\":"  ).r2(t.cpuPercent)    .raw(",")
+         .raw("\"lockInfo\":"    ).str(t.lockInfo)     .raw(",")
+         .raw("\"health\":"      ).str(t.health);
     }
 
-    // -1 means "not available" — serialize as JSON null so the frontend can detect absence
-    private static String r2(double v) {
-        if (v < 0) return "null";
-        return String.valueOf(Math.round(v * 100.0) / 100.0);
+    // Same fields, read from row i of the table
+    static void writeFields(JsonWriter w, ThreadTable t, int i) throws IOException {
+        w.raw("{")
+         .raw("\"name\":"        ).str(t.name(i))         .raw(",")
+         .raw("\"threadNum\":"   ).num(t.threadNum(i))    .raw(",")
+         .raw("\"state\":"       ).str(t.state(i))        .raw(",")
+         .raw("\"stateDetail\":" ).str(t.stateDetail(i))  .raw(",")
+         .raw("\"daemon\":"      ).bool(t.daemon(i))      .raw(",")
+         .raw("\"priority\":"    ).num(t.priority(i))     .raw(",")
+         .raw("\"osPriority\":"  ).num(t.osPriority(i))   .raw(",")
+         .raw("\"tid\":"         ).str(t.tid(i))          .raw(",")
+         .raw("\"nid\":"         ).str(t.nid(i))          .raw(",")
+         .raw("\"nidDecimal\":"  ).str(t.nidDecimal(i))   .raw(",")
+         .raw("\"cpuMs\":"       ).r2(t.cpuMs(i))         .raw(",")
+         .raw("\"elapsedMs\":"   ).r2(t.elapsedMs(i))     .raw(",")
+         .raw("\"cpuPercent\":"  ).r2(t.cpuPercent(i))    .raw(",")
+         .raw("\"lockInfo\":"    ).str(t.lockInfo(i))     .raw(",")
+         .raw("\"health\":"      ).str(t.health(i).name());
     }
 }
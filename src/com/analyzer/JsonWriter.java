@@ -0,0 +1,125 @@
+package com.analyzer;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes JSON as UTF-8 straight to an OutputStream through one small reusable buffer.
+ *
+ * Strings are escaped and encoded in a single pass over their chars — no intermediate
+ * copies — so the output can be arbitrarily large while the heap cost stays constant.
+ * Callers emit the punctuation themselves with {@link #raw}, chaining calls like a StringBuilder.
+ */
+public class JsonWriter implements Flushable {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+
+    private final OutputStream out;
+    private final byte[] buf = new byte[16 * 1024];
+    private int pos;
+
+    public JsonWriter(OutputStream out) { this.out = out; }
+
+    /** Writes {@code s} as-is (no quoting or escaping); used for JSON punctuation and keys. */
+    public JsonWriter raw(String s) throws IOException {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) { if (pos == buf.length) drain(); buf[pos++] = (byte) c; }
+            else i = utf8(s, i, n);
+        }
+        return this;
+    }
+
+    /** Writes {@code s} as a quoted JSON string; null is written as "". */
+    public JsonWriter str(String s) throws IOException {
+        if (pos + 2 > buf.length) drain();
+        buf[pos++] = '"';
+        if (s != null) {
+            for (int i = 0, n = s.length(); i < n; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                    if (pos == buf.length) drain();
+                    buf[pos++] = (byte) c;
+                } else if (c < 0x80) {
+                    escape(c);
+                } else {
+                    i = utf8(s, i, n);
+                }
+            }
+        }
+        if (pos == buf.length) drain();
+        buf[pos++] = '"';
+        return this;
+    }
+
+    public JsonWriter num(long v) throws IOException {
+        return raw(Long.toString(v));
+    }
+
+    public JsonWriter num(double v) throws IOException {
+        return raw(Double.toString(v));
+    }
+
+    public JsonWriter bool(boolean v) throws IOException {
+        return raw(v ? "true" : "false");
+    }
+
+    // -1 means "not available" — serialize as JSON null so the frontend can detect absence
+    public JsonWriter r2(double v) throws IOException {
+        if (v < 0) return raw("null");
+        return num(Math.round(v * 100.0) / 100.0);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    private void escape(char c) throws IOException {
+        if (pos + 6 > buf.length) drain();
+        buf[pos++] = '\\';
+        switch (c) {
+            case '"'  -> buf[pos++] = '"';
+            case '\\' -> buf[pos++] = '\\';
+            case '\n' -> buf[pos++] = 'n';
+            case '\r' -> buf[pos++] = 'r';
+            case '\t' -> buf[pos++] = 't';
+            default -> {
+                buf[pos++] = 'u';
+                buf[pos++] = '0';
+                buf[pos++] = '0';
+                buf[pos++] = HEX[c >> 4];
+                buf[pos++] = HEX[c & 0xF];
+            }
+        }
+    }
+
+    /** Encodes the non-ASCII char at {@code i}; returns the index of the last char consumed. */
+    private int utf8(String s, int i, int n) throws IOException {
+        if (pos + 4 > buf.length) drain();
+        char c = s.charAt(i);
+        if (c < 0x800) {
+            buf[pos++] = (byte) (0xC0 | (c >> 6));
+            buf[pos++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, s.charAt(++i));
+            buf[pos++] = (byte) (0xF0 | (cp >> 18));
+            buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+            buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+            buf[pos++] = '?';   // unpaired surrogate — same replacement String.getBytes uses
+        } else {
+            buf[pos++] = (byte) (0xE0 | (c >> 12));
+            buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buf[pos++] = (byte) (0x80 | (c & 0x3F));
+        }
+        return i;
+    }
+
+    private void drain() throws IOException {
+        if (pos > 0) { out.write(buf, 0, pos); pos = 0; }
+    }
+}
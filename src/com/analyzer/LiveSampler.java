@@ -0,0 +1,387 @@
+package com.analyzer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes a thread dump of one local JVM every {@code intervalMs} and keeps the last
+ * {@code capacity} of them, reduced to what a rolling view needs: per thread, its CPU time and
+ * state. Per-thread CPU rate is the CPU time gained between two consecutive samples divided by
+ * the wall time between them.
+ *
+ * Another JVM is dumped with {@code jcmd <pid> Thread.print -l}, whose output is read line by
+ * line straight into {@link ThreadDumpParser.Incremental}. This JVM ("self") is read through
+ * {@link ThreadMXBean}; each thread is written out in jstack layout and fed to the same parser,
+ * so both targets go through one code path.
+ *
+ * Per sample the sampler keeps three arrays of one entry per thread; nothing else outlives the
+ * sample, and threads that have left every retained sample are forgotten. Sampling runs on the
+ * executor passed to {@link #start}, with a fixed delay, so a slow target never queues up samples.
+ */
+public final class LiveSampler implements AutoCloseable {
+
+    /** "self", or the pid of the target JVM. */
+    public final String target;
+    public final long   intervalMs;
+    public final int    capacity;
+
+    private static final int  SELF_MAX_DEPTH = 256;
+    private static final long JCMD_TIMEOUT_S = 10;
+    private static final ThreadTable.State[] STATES = ThreadTable.State.values();
+
+    // One sample: entries sorted by track id, so the previous sample's entry is found by binary search
+    private record Sample(long seq, long timeMs, int[] track, double[] cpuMs, byte[] state) {
+        int find(int id) { return Arrays.binarySearch(track, id); }
+    }
+
+    // A thread seen in some retained sample, keyed by tid (or #N, or name when there is no tid)
+    private static final class Track {
+        final int id;
+        String    name;
+        long      lastSeq;
+
+        Track(int id) { this.id = id; }
+    }
+
+    private final Sample[] ring;
+    private int  next;                 // ring slot the next sample goes to
+    private long seq;                  // samples taken so far
+    private final Map<String, Track>  tracks = new HashMap<>();
+    private final Map<Integer, Track> byId   = new HashMap<>();
+    private int nextTrack;
+
+    private long   failures;
+    private String lastError = "";
+    private long   lastNanos, totalNanos;
+
+    // Scratch for the sample being taken; reused, so a sample allocates only what it keeps
+    private int[]    scratchTrack = new int[256];
+    private double[] scratchCpu   = new double[256];
+    private byte[]   scratchState = new byte[256];
+    private int      scratchSize;
+
+    private ScheduledFuture<?> task;
+
+    private LiveSampler(String target, long intervalMs, int capacity) {
+        if (!target.equals("self") && !target.chars().allMatch(Character::isDigit))
+            throw new IllegalArgumentException("Target must be a pid or \"self\"");
+        this.target     = target;
+        this.intervalMs = intervalMs;
+        this.capacity   = capacity;
+        this.ring       = new Sample[capacity];
+    }
+
+    /** A sampler of {@code target}, taking its first sample on {@code executor} right away. */
+    public static LiveSampler start(String target, long intervalMs, int capacity, ScheduledExecutorService executor) {
+        LiveSampler l = new LiveSampler(target, intervalMs, capacity);
+        l.task = executor.scheduleWithFixedDelay(l::sample, 0, intervalMs, TimeUnit.MILLISECONDS);
+        return l;
+    }
+
+    @Override
+    public void close() { task.cancel(false); }
+
+    // ── Sampling ─────────────────────────────────────────────────────────────
+
+    void sample() {
+        long start = System.nanoTime();
+        long now   = System.currentTimeMillis();
+        scratchSize = 0;
+        String error;
+        try {
+            ThreadDumpParser.Incremental feed = new ThreadDumpParser().incremental(this::add);
+            error = target.equals("self") ? dumpSelf(feed) : dumpPid(feed);
+            feed.finish();
+            if (error == null && scratchSize == 0) error = "No threads in the dump of " + target;
+        } catch (IOException | RuntimeException e) {
+            error = e.getMessage();
+            scratchSize = 0;                   // an incomplete dump is not kept as a sample
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        synchronized (this) {
+            lastNanos   = System.nanoTime() - start;
+            totalNanos += lastNanos;
+            if (error != null && scratchSize == 0) {
+                failures++;
+                lastError = error;
+                return;
+            }
+            store(now);
+        }
+    }
+
+    // Called by the parser for every thread of the sample being taken
+    private void add(ThreadInfo t) {
+        String key = !t.tid.isEmpty() ? t.tid : t.threadNum >= 0 ? "#" + t.threadNum : t.name;
+        Track tr;
+        synchronized (this) {
+            tr = tracks.get(key);
+            if (tr == null) {
+                tr = new Track(nextTrack++);
+                tracks.put(key, tr);
+                byId.put(tr.id, tr);
+            }
+            tr.name    = t.name;
+            tr.lastSeq = seq;
+        }
+        if (scratchSize == scratchTrack.length) {
+            int n = scratchSize * 2;
+            scratchTrack = Arrays.copyOf(scratchTrack, n);
+            scratchCpu   = Arrays.copyOf(scratchCpu, n);
+            scratchState = Arrays.copyOf(scratchState, n);
+        }
+        scratchTrack[scratchSize] = tr.id;
+        scratchCpu[scratchSize]   = t.cpuMs;
+        scratchState[scratchSize] = (byte) state(t.state).ordinal();
+        scratchSize++;
+    }
+
+    private static ThreadTable.State state(String s) {
+        for (ThreadTable.State st : STATES) if (st.name().equals(s)) return st;
+        return ThreadTable.State.UNKNOWN;
+    }
+
+    private void store(long now) {
+        // Sort the entries by track id; (id, position) packed into one long sorts without boxing
+        int n = scratchSize;
+        long[] order = new long[n];
+        for (int i = 0; i < n; i++) order[i] = (long) scratchTrack[i] << 32 | i;
+        Arrays.sort(order);
+        int[] track = new int[n];
+        double[] cpu = new double[n];
+        byte[] state = new byte[n];
+        int kept = 0;
+        for (int k = 0; k < n; k++) {
+            int i = (int) order[k];
+            if (kept > 0 && track[kept - 1] == scratchTrack[i]) continue;   // same key twice in one dump
+            track[kept] = scratchTrack[i];
+            cpu[kept]   = scratchCpu[i];
+            state[kept] = scratchState[i];
+            kept++;
+        }
+        if (kept < n) {
+            track = Arrays.copyOf(track, kept);
+            cpu   = Arrays.copyOf(cpu, kept);
+            state = Arrays.copyOf(state, kept);
+        }
+
+        ring[next] = new Sample(seq, now, track, cpu, state);
+        next = (next + 1) % capacity;
+        seq++;
+
+        // Forget threads that no retained sample mentions
+        long oldest = Math.max(0, seq - capacity);
+        for (Iterator<Track> it = tracks.values().iterator(); it.hasNext(); ) {
+            Track tr = it.next();
+            if (tr.lastSeq < oldest) {
+                it.remove();
+                byId.remove(tr.id);
+            }
+        }
+    }
+
+    private String dumpPid(ThreadDumpParser.Incremental feed) throws IOException, InterruptedException {
+        Process p = new ProcessBuilder(jcmd(), target, "Thread.print", "-l").redirectErrorStream(true).start();
+        // A target that never answers would block the read, and with it every sampler on the shared
+        // thread; past the deadline jcmd is killed, which closes its output and ends the read
+        CompletableFuture<Void> deadline = CompletableFuture.runAsync(p::destroyForcibly,
+                CompletableFuture.delayedExecutor(JCMD_TIMEOUT_S, TimeUnit.SECONDS));
+        String first = null;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8), 1 << 16)) {
+            for (String line; (line = in.readLine()) != null; ) {
+                // jcmd reports failures as text ("<pid>:" then an exception); keep the gist
+                if (first == null && !line.isBlank() && !line.equals(target + ":")) first = line.trim();
+                feed.accept(line);
+            }
+        } catch (IOException e) {
+            if (!deadline.isDone()) throw e;   // else the kill broke the read, reported below
+        } finally {
+            if (!deadline.cancel(false)) p.waitFor();
+            else if (!p.waitFor(JCMD_TIMEOUT_S, TimeUnit.SECONDS)) p.destroyForcibly().waitFor();
+        }
+        if (deadline.isDone() && !deadline.isCancelled())
+            throw new IOException("jcmd gave no complete dump within " + JCMD_TIMEOUT_S + " s");
+        return p.exitValue() == 0 ? null : first != null ? first : "jcmd exited with " + p.exitValue();
+    }
+
+    private static String jcmd() {
+        Path own = Path.of(System.getProperty("java.home"), "bin", "jcmd");
+        return Files.isExecutable(own) ? own.toString() : "jcmd";
+    }
+
+    // This JVM, in the layout jstack uses, one line at a time
+    private static String dumpSelf(ThreadDumpParser.Incremental feed) {
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        boolean cpu = mx.isThreadCpuTimeSupported() && mx.isThreadCpuTimeEnabled();
+        StringBuilder sb = new StringBuilder(128);
+        for (java.lang.management.ThreadInfo ti : mx.dumpAllThreads(true, true, SELF_MAX_DEPTH)) {
+            if (ti == null) continue;
+            long ns = cpu ? mx.getThreadCpuTime(ti.getThreadId()) : -1;
+            sb.setLength(0);
+            sb.append('"').append(ti.getThreadName()).append("\" #").append(ti.getThreadId());
+            if (ti.isDaemon()) sb.append(" daemon");
+            sb.append(" prio=").append(ti.getPriority());
+            if (ns >= 0) sb.append(String.format(Locale.ROOT, " cpu=%.2fms", ns / 1e6));
+            feed.accept(sb.toString());
+            feed.accept("   java.lang.Thread.State: " + ti.getThreadState());
+
+            StackTraceElement[] stack = ti.getStackTrace();
+            MonitorInfo[] monitors = ti.getLockedMonitors();
+            for (int d = 0; d < stack.length; d++) {
+                feed.accept("\tat " + stack[d]);
+                if (d == 0 && ti.getLockInfo() != null) {
+                    String verb = switch (ti.getThreadState()) {
+                        case BLOCKED -> "waiting to lock";
+                        default      -> stack[0].getMethodName().equals("park") ? "parking to wait for" : "waiting on";
+                    };
+                    feed.accept("\t- " + verb + " " + lock(ti.getLockInfo()));
+                }
+                for (MonitorInfo m : monitors) if (m.getLockedStackDepth() == d) feed.accept("\t- locked " + lock(m));
+            }
+            feed.accept("");
+            LockInfo[] owned = ti.getLockedSynchronizers();
+            if (owned.length > 0) {
+                feed.accept("   Locked ownable synchronizers:");
+                for (LockInfo l : owned) feed.accept("\t- " + lock(l));
+                feed.accept("");
+            }
+        }
+        return null;
+    }
+
+    private static String lock(LockInfo l) {
+        return String.format(Locale.ROOT, "<0x%016x> (a %s)", l.getIdentityHashCode(), l.getClassName());
+    }
+
+    // ── JSON ──────────────────────────────────────────────────────────────────
+
+    /** {"target", "intervalMs", "capacity", "samples", "failures", "lastError", "lastSampleMs", "avgSampleMs", "threads"} */
+    public synchronized void writeStatus(JsonWriter w) throws IOException {
+        Sample last = sample(0);
+        w.raw("{\"target\":").str(target)
+         .raw(",\"intervalMs\":").num(intervalMs)
+         .raw(",\"capacity\":").num(capacity)
+         .raw(",\"samples\":").num(Math.min(seq, capacity))
+         .raw(",\"failures\":").num(failures)
+         .raw(",\"lastError\":").str(lastError)
+         .raw(",\"lastSampleMs\":").r2(lastNanos / 1e6)
+         .raw(",\"avgSampleMs\":").r2(seq + failures == 0 ? 0 : totalNanos / 1e6 / (seq + failures))
+         .raw(",\"threads\":").num(last != null ? last.track.length : 0)
+         .raw("}");
+    }
+
+    /**
+     * The rolling view: status, sample times (oldest first) and, per thread in the latest sample,
+     * its CPU rate over the last interval and over the whole window, in CPU ms per second
+     * (100 = one core busy), plus one state letter per sample — N R B W T X ? — or '-' where absent.
+     * <pre>
+     * { "status": {...}, "times": [...],
+     *   "threads": [ {"id", "name", "state", "cpuMs", "cpuRate", "avgCpuRate", "states": "RRRWW"}, ... ] }
+     * </pre>
+     * Threads are sorted by cpuRate, highest first, and cut to {@code limit}.
+     */
+    public synchronized void writeView(int limit, OutputStream out) throws IOException {
+        JsonWriter w = new JsonWriter(out);
+        int count = (int) Math.min(seq, capacity);
+        w.raw("{\"status\":");
+        writeStatus(w);
+        w.raw(",\"times\":[");
+        for (int k = count - 1; k >= 0; k--) {
+            if (k < count - 1) w.raw(",");
+            w.num(sample(k).timeMs);
+        }
+        w.raw("],\"threads\":[");
+
+        Sample last = sample(0), prev = sample(1), first = sample(count - 1);
+        if (last != null) {
+            int n = last.track.length;
+            double[] rate = new double[n];
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                rate[i]  = rate(prev, last, i);
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(rate[b], rate[a]));
+            StringBuilder states = new StringBuilder(count);
+            for (int k = 0; k < n && k < limit; k++) {
+                int i = order[k], id = last.track[i];
+                states.setLength(0);
+                for (int s = count - 1; s >= 0; s--) {
+                    Sample sm = sample(s);
+                    int at = sm.find(id);
+                    states.append(at < 0 ? '-' : "NRBWTX?".charAt(sm.state[at]));
+                }
+                if (k > 0) w.raw(",");
+                w.raw("{\"id\":").num(id)
+                 .raw(",\"name\":").str(byId.get(id).name)
+                 .raw(",\"state\":").str(STATES[last.state[i]].name())
+                 .raw(",\"cpuMs\":").r2(last.cpuMs[i])
+                 .raw(",\"cpuRate\":").r2(rate[i])
+                 .raw(",\"avgCpuRate\":").r2(rate(first, last, i))
+                 .raw(",\"states\":").str(states.toString())
+                 .raw("}");
+            }
+        }
+        w.raw("]}");
+        w.flush();
+    }
+
+    /** One thread across the window, oldest sample first; false if no retained sample has it. */
+    public synchronized boolean writeThread(int id, OutputStream out) throws IOException {
+        Track tr = byId.get(id);
+        if (tr == null) return false;
+        JsonWriter w = new JsonWriter(out);
+        w.raw("{\"id\":").num(id).raw(",\"name\":").str(tr.name).raw(",\"samples\":[");
+        int count = (int) Math.min(seq, capacity);
+        boolean firstOut = true;
+        for (int k = count - 1; k >= 0; k--) {
+            Sample s = sample(k);
+            int at = s.find(id);
+            if (at < 0) continue;
+            if (!firstOut) w.raw(",");
+            firstOut = false;
+            w.raw("{\"time\":").num(s.timeMs)
+             .raw(",\"state\":").str(STATES[s.state[at]].name())
+             .raw(",\"cpuMs\":").r2(s.cpuMs[at])
+             .raw(",\"cpuRate\":").r2(k + 1 < count ? rate(sample(k + 1), s, at) : -1)
+             .raw("}");
+        }
+        w.raw("]}");
+        w.flush();
+        return true;
+    }
+
+    // k samples back from the newest, null if not taken yet
+    private Sample sample(int k) {
+        if (k < 0 || k >= Math.min(seq, capacity)) return null;
+        return ring[Math.floorMod(next - 1 - k, capacity)];
+    }
+
+    // CPU ms per wall second of entry i of {@code to} since {@code from}; -1 when not measurable
+    private static double rate(Sample from, Sample to, int i) {
+        if (from == null || from == to || to.cpuMs[i] < 0) return -1;
+        int at = from.find(to.track[i]);
+        if (at < 0 || from.cpuMs[at] < 0 || to.timeMs <= from.timeMs) return -1;
+        return Math.max(0, to.cpuMs[i] - from.cpuMs[at]) * 1000.0 / (to.timeMs - from.timeMs);
+    }
+}
@@ -0,0 +1,233 @@
+package com.analyzer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Who holds what and who waits for whom, built once per dump from the threads' {@link LockRef}s.
+ *
+ * Every lock address is resolved to its owner (a "locked" monitor or an owned j.u.c synchronizer)
+ * and its waiters (threads blocked entering it or parked on it). A blocked thread waits on exactly
+ * one lock, so the waits-for graph — waiter → owner — has at most one out-edge per thread and its
+ * cycles are exactly the deadlocks. Both passes are linear in threads plus lock lines.
+ *
+ * queued counts the threads that cannot proceed until a monitor is released: its direct waiters
+ * plus, transitively, everything waiting on those waiters. A monitor whose waiters include a
+ * deadlocked thread reports the whole deadlocked component.
+ */
+public class LockGraph {
+
+    /** A lock with at least one waiter. Thread references are indexes into the analysed list. */
+    public static class Monitor {
+        public final String address;
+        public final String className;
+        public int          owner = -1;           // -1 if no thread in the dump holds it
+        public int[]        waiters = new int[0];
+        public int          queued;
+
+        Monitor(String address, String className) {
+            this.address   = address;
+            this.className = className;
+        }
+    }
+
+    public final List<Monitor> monitors;     // most queued first
+    public final List<int[]>   deadlocks;    // thread indexes of each cycle, in waits-for order
+    public final int[]         blockedBy;    // [t] = owner thread t waits for, -1 if none
+
+    private LockGraph(List<Monitor> monitors, List<int[]> deadlocks, int[] blockedBy) {
+        this.monitors  = monitors;
+        this.deadlocks = deadlocks;
+        this.blockedBy = blockedBy;
+    }
+
+    public static LockGraph build(List<ThreadInfo> threads) {
+        int n = threads.size();
+
+        // ── Owners and waiters per address ─────────────────────────────────────
+        Map<String, Monitor> byAddress = new HashMap<>();
+        Map<Monitor, List<Integer>> waiting = new HashMap<>();
+        Monitor[] blockedOn = new Monitor[n];
+
+        for (int t = 0; t < n; t++) {
+            List<LockRef> refs = threads.get(t).locks;
+            for (LockRef r : refs) {
+                switch (r.kind) {
+                    case LOCKED, OWNS -> {
+                        // Object.wait() prints "locked" for the monitor it has released; skip those
+                        if (r.kind == LockRef.Kind.LOCKED && releases(refs, r.address)) continue;
+                        Monitor m = monitor(byAddress, r);
+                        if (m.owner < 0) m.owner = t;
+                    }
+                    case WAITING_TO_LOCK, PARKING -> {
+                        if (blockedOn[t] != null) continue;            // first blocking line is the innermost
+                        Monitor m = monitor(byAddress, r);
+                        blockedOn[t] = m;
+                        waiting.computeIfAbsent(m, k -> new ArrayList<>()).add(t);
+                    }
+                    case WAITING_ON -> { }
+                }
+            }
+        }
+
+        // ── Waits-for edges ────────────────────────────────────────────────────
+        int[] next = new int[n];
+        int[] indegree = new int[n];
+        for (int t = 0; t < n; t++) {
+            Monitor m = blockedOn[t];
+            next[t] = (m == null || m.owner == t) ? -1 : m.owner;
+            if (next[t] >= 0) indegree[next[t]]++;
+        }
+
+        // Peel from threads nobody waits for towards the owners; what is never peeled lies on a cycle
+        int[] behind = new int[n];
+        int[] queue  = new int[n];
+        int head = 0, tail = 0;
+        for (int t = 0; t < n; t++) if (indegree[t] == 0) queue[tail++] = t;
+        while (head < tail) {
+            int t = queue[head++], o = next[t];
+            if (o < 0) continue;
+            behind[o] += 1 + behind[t];
+            if (--indegree[o] == 0) queue[tail++] = o;
+        }
+
+        List<int[]> deadlocks = new ArrayList<>();
+        int[] component = new int[n];                 // [t] = size of t's deadlocked component, 0 if none
+        for (int t = 0; t < n; t++) {
+            if (indegree[t] == 0 || component[t] > 0) continue;
+            int len = 0, size = 0;
+            for (int c = t; len == 0 || c != t; c = next[c]) { len++; size += 1 + behind[c]; }
+            int[] cycle = new int[len];
+            int c = t;
+            for (int i = 0; i < len; i++, c = next[c]) { cycle[i] = c; component[c] = size; }
+            deadlocks.add(cycle);
+        }
+
+        // ── Contended monitors ─────────────────────────────────────────────────
+        List<Monitor> monitors = new ArrayList<>(waiting.size());
+        for (Map.Entry<Monitor, List<Integer>> en : waiting.entrySet()) {
+            Monitor m = en.getKey();
+            List<Integer> ws = en.getValue();
+            // Idle pool workers parked on a queue's condition have no owner to wait for
+            if (m.owner < 0 && !anyBlocked(threads, ws)) continue;
+
+            m.waiters = new int[ws.size()];
+            int queued = 0, cycleSize = 0;
+            for (int i = 0; i < ws.size(); i++) {
+                int w = ws.get(i);
+                m.waiters[i] = w;
+                queued += 1 + behind[w];
+                if (component[w] > 0) cycleSize = component[w];
+            }
+            m.queued = cycleSize > 0 ? cycleSize - 1 : queued;
+            monitors.add(m);
+        }
+        monitors.sort((a, b) -> a.queued != b.queued ? Integer.compare(b.queued, a.queued)
+                                                     : a.address.compareTo(b.address));
+        return new LockGraph(monitors, deadlocks, next);
+    }
+
+    private static Monitor monitor(Map<String, Monitor> byAddress, LockRef r) {
+        Monitor m = byAddress.get(r.address);
+        if (m == null) {
+            m = new Monitor(r.address, r.className);
+            byAddress.put(r.address, m);
+        }
+        return m;
+    }
+
+    // The thread waits on (or must re-lock) the same address it lists as locked
+    private static boolean releases(List<LockRef> refs, String address) {
+        for (LockRef r : refs) {
+            if (r.address.equals(address)
+                    && (r.kind == LockRef.Kind.WAITING_ON || r.kind == LockRef.Kind.WAITING_TO_LOCK)) return true;
+        }
+        return false;
+    }
+
+    private static boolean anyBlocked(List<ThreadInfo> threads, List<Integer> ws) {
+        for (int w : ws) if ("BLOCKED".equals(threads.get(w).state)) return true;
+        return false;
+    }
+
+    // ── Snapshot ─────────────────────────────────────────────────────────────
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(monitors.size());
+        for (Monitor m : monitors) {
+            SnapshotIO.string(out, m.address);
+            SnapshotIO.string(out, m.className);
+            out.writeInt(m.owner);
+            SnapshotIO.ints(out, m.waiters);
+            out.writeInt(m.queued);
+        }
+        out.writeInt(deadlocks.size());
+        for (int[] cycle : deadlocks) SnapshotIO.ints(out, cycle);
+        SnapshotIO.ints(out, blockedBy);
+    }
+
+    static LockGraph read(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) throw new IOException("Corrupt snapshot: " + n + " monitors");
+        List<Monitor> monitors = new ArrayList<>(Math.min(n, 1 << 16));
+        for (int i = 0; i < n; i++) {
+            Monitor m = new Monitor(SnapshotIO.string(in), SnapshotIO.string(in));
+            m.owner   = in.readInt();
+            m.waiters = SnapshotIO.ints(in);
+            m.queued  = in.readInt();
+            monitors.add(m);
+        }
+        int d = in.readInt();
+        if (d < 0) throw new IOException("Corrupt snapshot: " + d + " deadlocks");
+        List<int[]> deadlocks = new ArrayList<>(Math.min(d, 1 << 16));
+        for (int i = 0; i < d; i++) deadlocks.add(SnapshotIO.ints(in));
+        return new LockGraph(monitors, deadlocks, SnapshotIO.ints(in));
+    }
+
+    // ── JSON ──────────────────────────────────────────────────────────────────
+
+    /**
+     * <pre>
+     * { "deadlocks": [ [4, 9], ... ],
+     *   "monitors":  [ {"address", "className", "owner", "ownerName", "waiters": [..], "queued"}, ... ] }
+     * </pre>
+     * Thread references are indexes into the "threads" array of the same response.
+     */
+    void write(JsonWriter w, IntFunction<String> names) throws IOException {
+        w.raw("{\"deadlocks\":[");
+        for (int i = 0; i < deadlocks.size(); i++) {
+            if (i > 0) w.raw(",");
+            ints(w, deadlocks.get(i));
+        }
+        w.raw("],\"monitors\":[");
+        for (int i = 0; i < monitors.size(); i++) {
+            Monitor m = monitors.get(i);
+            if (i > 0) w.raw(",");
+            w.raw("{")
+             .raw("\"address\":"   ).str(m.address)    .raw(",")
+             .raw("\"className\":" ).str(m.className)  .raw(",")
+             .raw("\"owner\":"     ).num(m.owner)      .raw(",")
+             .raw("\"ownerName\":" ).str(m.owner >= 0 ? names.apply(m.owner) : "").raw(",")
+             .raw("\"waiters\":");
+            ints(w, m.waiters);
+            w.raw(",\"queued\":").num(m.queued).raw("}");
+        }
+        w.raw("]}");
+    }
+
+    private static void ints(JsonWriter w, int[] a) throws IOException {
+        w.raw("[");
+        for (int i = 0; i < a.length; i++) {
+            if (i > 0) w.raw(",");
+            w.num(a[i]);
+        }
+        w.raw("]");
+    }
+
+}
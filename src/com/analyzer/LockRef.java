@@ -0,0 +1,31 @@
+package com.analyzer;
+
+/**
+ * One lock line of a thread's stack, kept in structured form.
+ *
+ *   - waiting to lock <0x...> (a X)          WAITING_TO_LOCK  blocked entering a monitor
+ *   - waiting to re-lock in wait() <0x...>   WAITING_TO_LOCK  blocked re-entering after wait()
+ *   - waiting on <0x...> (a X)               WAITING_ON       in the monitor's wait set (monitor released)
+ *   - parking to wait for <0x...> (a X)      PARKING          parked on a j.u.c lock or condition
+ *   - locked <0x...> (a X)                   LOCKED           monitor held by this thread
+ *   Locked ownable synchronizers: - <0x...>  OWNS             j.u.c lock held by this thread
+ */
+public class LockRef {
+
+    public enum Kind { WAITING_TO_LOCK, WAITING_ON, PARKING, LOCKED, OWNS }
+
+    public final Kind   kind;
+    public final String address;     // without the angle brackets
+    public final String className;   // "java.lang.Object", "" if not shown
+
+    public LockRef(Kind kind, String address, String className) {
+        this.kind      = kind;
+        this.address   = address;
+        this.className = className;
+    }
+
+    /** True for the kinds that keep a thread from running until another thread lets go. */
+    public boolean blocks() {
+        return kind == Kind.WAITING_TO_LOCK || kind == Kind.PARKING;
+    }
+}
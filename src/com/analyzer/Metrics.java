@@ -0,0 +1,335 @@
+package com.analyzer;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Server telemetry, exported at /metrics in the Prometheus text format.
+ *
+ * Each analysis is timed stage by stage ({@link Stage}) into fixed-bucket histograms, and every
+ * context counts its responses by status. Recording only touches {@link LongAdder}s and atomic
+ * arrays allocated up front — no locks, no per-request maps — so it stays on in production.
+ * Rates (bytes ingested, threads parsed per second) are left to the scraper: the counters are
+ * monotonic, {@code rate(analyzer_ingested_bytes_total[1m])} gives bytes/s.
+ *
+ * Stages and whole analyses are also JFR events ({@code com.analyzer.Stage}, {@code
+ * com.analyzer.Analyze}), off unless a recording enables them.
+ */
+public class Metrics {
+
+    /**
+     * Where an analysis spends its time. MULTIPART is the time spent blocked reading the upload
+     * — network and boundary scanning — while it is hashed. The other stages are recorded with
+     * that read time taken out. RESTORE is a session read back from the result cache, when its
+     * stored summary is gone, instead of being built by PARSE, SORT, LOCKS and INDEX.
+     */
+    public enum Stage {
+        MULTIPART, HASH, PARSE, RESTORE, SORT, LOCKS, INDEX, SERIALIZE;
+
+        final String label = name().toLowerCase(Locale.ROOT);
+    }
+
+    // Upper bounds, seconds: 1 ms .. 60 s
+    private static final double[] SECONDS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60};
+    // Upper bounds, bytes: 1 MB .. 16 GB
+    private static final double[] BYTES   = {1e6, 4e6, 16e6, 64e6, 256e6, 1e9, 4e9, 16e9};
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX =
+            ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean t
+                    && t.isThreadAllocatedMemorySupported() ? t : null;
+
+    private final Histogram[] stages     = new Histogram[Stage.values().length];
+    private final Histogram   requests   = new Histogram(SECONDS, 1e9);
+    private final Histogram   allocated  = new Histogram(BYTES, 1);
+    private final LongAdder   ingested   = new LongAdder();
+    private final LongAdder   parsed     = new LongAdder();
+    private final LongAdder   cacheHits  = new LongAdder();
+    private final Map<String, Context> contexts = new ConcurrentSkipListMap<>();
+    private final Map<String, Counter> counters = new ConcurrentSkipListMap<>();
+
+    private record Counter(String help, LongSupplier value) { }
+
+    public Metrics() {
+        for (Stage s : Stage.values()) stages[s.ordinal()] = new Histogram(SECONDS, 1e9);
+    }
+
+    // ── Recording ────────────────────────────────────────────────────────────
+
+    /** Starts timing one analysis on the calling thread; {@link Request#end} records it. */
+    public Request begin() { return new Request(); }
+
+    /**
+     * Counts requests in flight and responses by status for one context. Put it first in the
+     * context's filters, so requests turned away by later filters are counted too.
+     */
+    public Filter filter(String context) {
+        Context c = contexts.computeIfAbsent(context, k -> new Context());
+        return new Filter() {
+            @Override
+            public void doFilter(HttpExchange ex, Chain chain) throws IOException {
+                c.inFlight.increment();
+                try {
+                    chain.doFilter(ex);
+                } finally {
+                    c.inFlight.decrement();
+                    int status = ex.getResponseCode();   // -1 → the handler threw before responding
+                    c.statuses.incrementAndGet(status >= 100 && status < 600 ? status : 0);
+                }
+            }
+
+            @Override
+            public String description() { return "Counts " + context + " requests by status"; }
+        };
+    }
+
+    /**
+     * One analysis. Not thread-safe: it belongs to the request thread, which moves it from stage
+     * to stage with {@link #stage} and finishes it with {@link #end}.
+     */
+    public final class Request {
+        private final long startNanos = System.nanoTime();
+        private final long startAlloc = THREAD_MX != null ? THREAD_MX.getCurrentThreadAllocatedBytes() : -1;
+        private final AnalyzeEvent analyzeEvent = new AnalyzeEvent();
+
+        private Stage      stage;
+        private long       stageStart, stageReadStart;
+        private StageEvent event;
+
+        private long    bytes, readNanos;
+        private int     threads;
+        private boolean reading, cacheHit;
+
+        private Request() { analyzeEvent.begin(); }
+
+        /** Wraps the upload, counting its bytes and the time spent blocked reading it. */
+        public InputStream input(InputStream in) {
+            reading = true;
+            return new FilterInputStream(in) {
+                @Override public int read() throws IOException {
+                    long t = System.nanoTime();
+                    int b = super.read();
+                    readNanos += System.nanoTime() - t;
+                    if (b >= 0) bytes++;
+                    return b;
+                }
+                @Override public int read(byte[] buf, int off, int len) throws IOException {
+                    long t = System.nanoTime();
+                    int n = super.read(buf, off, len);
+                    readNanos += System.nanoTime() - t;
+                    if (n > 0) bytes += n;
+                    return n;
+                }
+            };
+        }
+
+        /** Ends the current stage, if any, and starts {@code next}. */
+        public void stage(Stage next) {
+            long now = System.nanoTime();
+            close(now);
+            stage          = next;
+            stageStart     = now;
+            stageReadStart = readNanos;
+            event = new StageEvent();
+            event.begin();
+        }
+
+        public void threads(int n)  { threads = n; }
+        public void cacheHit()      { cacheHit = true; }
+
+        /** Ends the current stage and records the analysis as a whole; {@code status} is the response sent. */
+        public void end(int status) {
+            long now = System.nanoTime();
+            close(now);
+            stage = null;
+            if (reading) stages[Stage.MULTIPART.ordinal()].observe(readNanos);
+            requests.observe(now - startNanos);
+            ingested.add(bytes);
+            parsed.add(threads);
+            if (cacheHit) cacheHits.increment();
+            // Per-thread allocation; -1 on virtual threads (JDK 21), where there is nothing to record
+            long alloc = startAlloc >= 0 ? THREAD_MX.getCurrentThreadAllocatedBytes() : -1;
+            if (alloc >= 0) allocated.observe(alloc - startAlloc);
+
+            AnalyzeEvent e = analyzeEvent;
+            if (e.shouldCommit()) {
+                e.status    = status;
+                e.bytes     = bytes;
+                e.threads   = threads;
+                e.cacheHit  = cacheHit;
+                e.multipart = readNanos;
+                e.allocated = alloc >= 0 ? alloc - startAlloc : -1;
+                e.commit();
+            }
+        }
+
+        private void close(long now) {
+            if (stage == null) return;
+            long read = readNanos - stageReadStart;
+            stages[stage.ordinal()].observe(Math.max(0, now - stageStart - read));
+            event.stage     = stage.label;
+            event.bytes     = bytes;
+            event.threads   = threads;
+            event.inputWait = read;
+            event.commit();
+        }
+    }
+
+    /** Exports {@code value} as the counter {@code name}, for totals kept elsewhere, e.g. by the dump index. */
+    public void counter(String name, String help, LongSupplier value) {
+        counters.put(name, new Counter(help, value));
+    }
+
+    // ── Export ───────────────────────────────────────────────────────────────
+
+    /** Every metric in the Prometheus text exposition format, version 0.0.4. */
+    public String prometheus() {
+        StringBuilder sb = new StringBuilder(8 * 1024);
+
+        header(sb, "analyzer_stage_seconds", "histogram", "Time per analysis stage; multipart is time blocked reading the upload, excluded from the others");
+        for (Stage s : Stage.values()) stages[s.ordinal()].write(sb, "analyzer_stage_seconds", "stage=\"" + s.label + "\"");
+
+        header(sb, "analyzer_analyze_seconds", "histogram", "Wall time of whole analyze requests");
+        requests.write(sb, "analyzer_analyze_seconds", "");
+
+        header(sb, "analyzer_request_allocated_bytes", "histogram", "Heap allocated by the request thread per analysis; only where the JVM reports it (platform threads)");
+        allocated.write(sb, "analyzer_request_allocated_bytes", "");
+
+        header(sb, "analyzer_ingested_bytes_total", "counter", "Dump bytes read from uploads");
+        sample(sb, "analyzer_ingested_bytes_total", "", ingested.sum());
+
+        header(sb, "analyzer_threads_parsed_total", "counter", "Threads parsed from uploads");
+        sample(sb, "analyzer_threads_parsed_total", "", parsed.sum());
+
+        header(sb, "analyzer_cache_hits_total", "counter", "Analyses answered from a held or cached session instead of building one");
+        sample(sb, "analyzer_cache_hits_total", "", cacheHits.sum());
+
+        header(sb, "analyzer_requests_in_flight", "gauge", "Requests being handled, by context");
+        contexts.forEach((name, c) -> sample(sb, "analyzer_requests_in_flight", "context=\"" + name + "\"", c.inFlight.sum()));
+
+        header(sb, "analyzer_responses_total", "counter", "Responses by context and status; status 0 means the handler failed before responding");
+        contexts.forEach((name, c) -> {
+            for (int status = 0; status < 600; status++) {
+                long n = c.statuses.get(status);
+                if (n > 0) sample(sb, "analyzer_responses_total", "context=\"" + name + "\",status=\"" + status + "\"", n);
+            }
+        });
+
+        counters.forEach((name, c) -> {
+            header(sb, name, "counter", c.help());
+            sample(sb, name, "", c.value().getAsLong());
+        });
+
+        if (THREAD_MX != null) {
+            header(sb, "analyzer_jvm_allocated_bytes_total", "counter", "Heap allocated by all threads since the JVM started");
+            sample(sb, "analyzer_jvm_allocated_bytes_total", "", THREAD_MX.getTotalThreadAllocatedBytes());
+        }
+        return sb.toString();
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, double value) {
+        sb.append(name);
+        if (!labels.isEmpty()) sb.append('{').append(labels).append('}');
+        sb.append(' ').append(number(value)).append('\n');
+    }
+
+    private static String number(double v) {
+        if (v == Math.rint(v) && Math.abs(v) < 1e15) return Long.toString((long) v);
+        return Double.toString(v);
+    }
+
+    // ── Histogram ────────────────────────────────────────────────────────────
+
+    // Fixed buckets, one adder each; counts are per bucket and made cumulative on export
+    private static final class Histogram {
+        private final double[]    bounds;      // in exported units
+        private final long[]      limits;      // the same in recorded units
+        private final double      unit;        // recorded units per exported unit
+        private final LongAdder[] counts;      // last one is +Inf
+        private final LongAdder   sum = new LongAdder();
+
+        Histogram(double[] bounds, double unit) {
+            this.bounds = bounds;
+            this.unit   = unit;
+            this.limits = new long[bounds.length];
+            for (int i = 0; i < bounds.length; i++) limits[i] = (long) Math.ceil(bounds[i] * unit);
+            this.counts = new LongAdder[bounds.length + 1];
+            for (int i = 0; i < counts.length; i++) counts[i] = new LongAdder();
+        }
+
+        void observe(long v) {
+            int i = 0;
+            while (i < limits.length && v > limits[i]) i++;
+            counts[i].increment();
+            sum.add(v);
+        }
+
+        void write(StringBuilder sb, String name, String labels) {
+            String sep = labels.isEmpty() ? "" : labels + ",";
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i].sum();
+                String le = i < bounds.length ? number(bounds[i]) : "+Inf";
+                sample(sb, name + "_bucket", sep + "le=\"" + le + "\"", cumulative);
+            }
+            sample(sb, name + "_sum",   labels, sum.sum() / unit);
+            sample(sb, name + "_count", labels, cumulative);
+        }
+    }
+
+    private static final class Context {
+        final LongAdder       inFlight = new LongAdder();
+        final AtomicLongArray statuses = new AtomicLongArray(600);
+    }
+
+    // ── JFR events ───────────────────────────────────────────────────────────
+
+    @Name("com.analyzer.Stage")
+    @Label("Analysis Stage")
+    @Category({"Thread Dump Analyzer"})
+    @Description("One stage of an analyze request")
+    @StackTrace(false)
+    static class StageEvent extends Event {
+        @Label("Stage") String stage;
+        @Label("Bytes Read") @DataAmount long bytes;
+        @Label("Threads") int threads;
+        @Label("Input Wait") @Description("Time blocked reading the upload during this stage") @Timespan long inputWait;
+    }
+
+    @Name("com.analyzer.Analyze")
+    @Label("Analyze Request")
+    @Category({"Thread Dump Analyzer"})
+    @Description("A finished analyze request")
+    @StackTrace(false)
+    static class AnalyzeEvent extends Event {
+        @Label("Status") int status;
+        @Label("Bytes Read") @DataAmount long bytes;
+        @Label("Threads") int threads;
+        @Label("Cache Hit") boolean cacheHit;
+        @Label("Multipart") @Timespan long multipart;
+        @Label("Allocated") @Description("-1 where the JVM does not report it") @DataAmount long allocated;
+    }
+}
@@ -1,35 +1,199 @@
 package com.analyzer;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.regex.Pattern;
 
 public class MultipartParser {
 
+    private static final int BUFFER_SIZE     = 64 * 1024;
+    private static final int MAX_HEADER_LINE = 16 * 1024;
+
     public static String extractFileContent(InputStream body, String contentType) throws Exception {
-        String boundary = null;
+        try (InputStream file = openFileStream(body, contentType)) {
+            return new String(file.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Positions a {@link PartStream} on the first file part of the form. The returned stream
+     * yields the file's bytes as they arrive, without the surrounding multipart framing.
+     */
+    public static PartStream openFileStream(InputStream body, String contentType) throws Exception {
+        PartStream parts = new PartStream(body, boundary(contentType));
+        if (!parts.nextFile()) throw new Exception("No file found in form");
+        return parts;
+    }
+
+    /** Opens a form for reading several file parts in turn with {@link PartStream#nextFile()}. */
+    public static PartStream openParts(InputStream body, String contentType) throws Exception {
+        return new PartStream(body, boundary(contentType));
+    }
+
+    static String boundary(String contentType) throws Exception {
         for (String part : contentType.split(";")) {
             String p = part.trim();
-            if (p.startsWith("boundary=")) { boundary = p.substring(9).trim(); break; }
-        }
-        if (boundary == null) throw new Exception("No boundary in Content-Type");
-
-        String bodyStr = new String(body.readAllBytes(), StandardCharsets.UTF_8);
-        String delimiter = "--" + boundary;
-        String[] parts = bodyStr.split(Pattern.quote(delimiter));
-
-        for (String part : parts) {
-            if (part.contains("Content-Disposition") && part.contains("filename=")) {
-                int headerEnd = part.indexOf("\r\n\r\n");
-                int offset = 4;
-                if (headerEnd == -1) { headerEnd = part.indexOf("\n\n"); offset = 2; }
-                if (headerEnd == -1) continue;
-                String content = part.substring(headerEnd + offset);
-                if (content.endsWith("\r\n")) content = content.substring(0, content.length() - 2);
-                if (content.endsWith("\n"))   content = content.substring(0, content.length() - 1);
-                return content;
+            if (p.startsWith("boundary=")) {
+                String b = p.substring(9).trim();
+                if (b.length() > 1 && b.startsWith("\"") && b.endsWith("\"")) b = b.substring(1, b.length() - 1);
+                if (!b.isEmpty()) return b;
+            }
+        }
+        throw new Exception("No boundary in Content-Type");
+    }
+
+    /**
+     * Reads a multipart body part by part, scanning raw bytes for the boundary delimiter.
+     * Only one read window is held at a time; {@link #read} returns -1 at the end of the
+     * current part and {@link #nextFile()} advances to the next part that carries a filename.
+     */
+    public static class PartStream extends InputStream {
+        private final InputStream in;
+        private final byte[] delim;     // "\n--" + boundary; a preceding '\r' is stripped from the part
+        private final byte[] buf;
+        private int pos, lim;
+        private boolean inPart = true;  // the preamble is consumed like an anonymous part
+        private boolean done;           // closing delimiter or end of input reached
+        private String fileName = "";
+
+        PartStream(InputStream in, String boundary) {
+            this.in    = in;
+            this.delim = ("\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+            this.buf   = new byte[Math.max(BUFFER_SIZE, delim.length * 4)];
+            buf[0] = '\n';              // virtual line break so a leading delimiter matches too
+            lim    = 1;
+        }
+
+        /** Filename of the current part, as sent in its Content-Disposition header. */
+        public String fileName() { return fileName; }
+
+        public boolean nextFile() throws IOException {
+            byte[] skip = new byte[8192];
+            while (true) {
+                while (inPart) read(skip, 0, skip.length);
+                if (done) return false;
+
+                // Just past a delimiter: "--" closes the body, anything else is the delimiter line tail
+                if (!fill(2) || (buf[pos] == '-' && buf[pos + 1] == '-')) { done = true; return false; }
+                if (readLine() == null) { done = true; return false; }
+
+                boolean file = false;
+                String name  = "";
+                for (String h; (h = readLine()) != null && !h.isEmpty(); ) {
+                    if (h.regionMatches(true, 0, "Content-Disposition", 0, 19) && h.contains("filename=")) {
+                        file = true;
+                        name = headerParam(h, "filename=");
+                    }
+                }
+                inPart = true;
+                if (file) { fileName = name; return true; }
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            while (inPart) {
+                int idx = indexOfDelimiter();
+                int end;
+                if (idx >= 0) {
+                    end = (idx > pos && buf[idx - 1] == '\r') ? idx - 1 : idx;
+                    if (end <= pos) { pos = idx + delim.length; inPart = false; return -1; }
+                } else {
+                    // Hold back enough bytes for a delimiter (plus its '\r') split across reads
+                    end = lim - delim.length;
+                    if (end <= pos) {
+                        if (!refill()) {
+                            // Unterminated body: hand out what is left, minus a trailing line break
+                            end = lim;
+                            if (end > pos && buf[end - 1] == '\n') end--;
+                            if (end > pos && buf[end - 1] == '\r') end--;
+                            if (end <= pos) { pos = lim; inPart = false; done = true; return -1; }
+                            int n = Math.min(len, end - pos);
+                            System.arraycopy(buf, pos, b, off, n);
+                            pos += n;
+                            if (pos == end) pos = lim;
+                            return n;
+                        }
+                        continue;
+                    }
+                }
+                int n = Math.min(len, end - pos);
+                System.arraycopy(buf, pos, b, off, n);
+                pos += n;
+                return n;
+            }
+            return -1;
+        }
+
+        private int indexOfDelimiter() {
+            byte first = delim[0];
+            int last = lim - delim.length;
+            outer:
+            for (int i = pos; i <= last; i++) {
+                if (buf[i] != first) continue;
+                for (int k = 1; k < delim.length; k++) if (buf[i + k] != delim[k]) continue outer;
+                return i;
+            }
+            return -1;
+        }
+
+        /** Reads one header line, without its line terminator. Returns null at end of input. */
+        private String readLine() throws IOException {
+            int scanned = 0;
+            while (true) {
+                for (int i = pos + scanned; i < lim; i++) {
+                    if (buf[i] == '\n') {
+                        int end = (i > pos && buf[i - 1] == '\r') ? i - 1 : i;
+                        String line = new String(buf, pos, end - pos, StandardCharsets.UTF_8);
+                        pos = i + 1;
+                        return line;
+                    }
+                }
+                scanned = lim - pos;
+                if (scanned > MAX_HEADER_LINE) throw new IOException("Multipart header line too long");
+                if (!refill()) return null;
             }
         }
-        throw new Exception("No file found in form");
+
+        private boolean fill(int n) throws IOException {
+            while (lim - pos < n) if (!refill()) return false;
+            return true;
+        }
+
+        /** Compacts the window and reads more input. Returns false at end of input. */
+        private boolean refill() throws IOException {
+            if (pos > 0) {
+                System.arraycopy(buf, pos, buf, 0, lim - pos);
+                lim -= pos;
+                pos  = 0;
+            }
+            if (lim == buf.length) throw new IOException("Multipart buffer overflow");
+            int n = in.read(buf, lim, buf.length - lim);
+            if (n <= 0) return false;
+            lim += n;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException { in.close(); }
+    }
+
+    private static String headerParam(String header, String key) {
+        int i = header.indexOf(key);
+        if (i < 0) return "";
+        String v = header.substring(i + key.length());
+        if (v.startsWith("\"")) {
+            int end = v.indexOf('"', 1);
+            return end > 0 ? v.substring(1, end) : v.substring(1);
+        }
+        int end = v.indexOf(';');
+        return (end >= 0 ? v.substring(0, end) : v).trim();
     }
 }
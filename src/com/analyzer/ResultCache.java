@@ -0,0 +1,215 @@
+package com.analyzer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Finished results, gzip-compressed, keyed by the SHA-256 of the uploaded dump: the summary
+ * /api/analyze answers with, the full analysis a session exports, and the {@link Session#snapshot}
+ * a session is restored from. The first two are the serialized responses, sent as stored.
+ *
+ * The memory tier is an LRU bounded by the total bytes of its entries. The optional disk tier
+ * keeps one {@code <key>.json.gz} file per entry under a directory, also LRU by byte budget
+ * (file modification time records last use), so results survive a restart. A disk hit is
+ * promoted back into memory. Entries larger than an eighth of the memory budget go to disk only.
+ *
+ * Keys carry {@link #SUMMARY_FORMAT}, {@link #FORMAT} or {@link #SESSION_FORMAT}; bump them
+ * whenever the summary, export or snapshot layout changes, so stale files are never served.
+ */
+public class ResultCache {
+
+    public static final String SUMMARY_FORMAT = "m1";
+    public static final String FORMAT         = "a1";
+    public static final String SESSION_FORMAT = "s1";
+
+    private static final String SUFFIX = ".json.gz";
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final Path dir;               // null → memory only
+    private final long maxDiskBytes;
+
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(64, 0.75f, true);
+    private long diskBytes;
+
+    private final AtomicLong hits = new AtomicLong(), diskHits = new AtomicLong(), misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong(), diskEvictions = new AtomicLong();
+
+    public ResultCache(long maxBytes, Path dir, long maxDiskBytes) throws IOException {
+        this.maxBytes      = Math.max(0, maxBytes);
+        this.maxEntryBytes = this.maxBytes / 8;
+        this.dir           = dir;
+        this.maxDiskBytes  = maxDiskBytes;
+        if (dir != null) load();
+    }
+
+    public boolean enabled() { return maxBytes > 0 || dir != null; }
+
+    /** Largest response worth capturing for {@link #put}. */
+    public long maxEntryBytes() { return dir != null ? Math.max(maxEntryBytes, maxDiskBytes / 8) : maxEntryBytes; }
+
+    public static String key(String sha256) { return FORMAT + "-" + sha256; }
+
+    public static String sessionKey(String sha256) { return SESSION_FORMAT + "-" + sha256; }
+
+    public static String summaryKey(String sha256) { return SUMMARY_FORMAT + "-" + sha256; }
+
+    /** Whether either tier holds {@code key}; unlike {@link #get}, counts nothing and reads nothing. */
+    public synchronized boolean contains(String key) {
+        return memory.containsKey(key) || disk.containsKey(key);
+    }
+
+    /** The stored gzip bytes, or null. */
+    public byte[] get(String key) {
+        synchronized (this) {
+            byte[] v = memory.get(key);
+            if (v != null) { hits.incrementAndGet(); return v; }
+            if (dir == null || disk.get(key) == null) { misses.incrementAndGet(); return null; }   // get, not containsKey: it counts as a use
+        }
+        // Disk read outside the lock; a concurrent eviction simply turns this into a miss
+        try {
+            Path f = dir.resolve(key + SUFFIX);
+            byte[] v = Files.readAllBytes(f);
+            Files.setLastModifiedTime(f, FileTime.fromMillis(System.currentTimeMillis()));
+            diskHits.incrementAndGet();
+            synchronized (this) { putMemory(key, v); }
+            return v;
+        } catch (IOException e) {
+            synchronized (this) { forgetDisk(key); }
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    public void put(String key, byte[] gz) {
+        synchronized (this) { putMemory(key, gz); }
+        if (dir != null && gz.length <= maxDiskBytes) writeDisk(key, gz);
+    }
+
+    private void putMemory(String key, byte[] gz) {
+        if (gz.length > maxEntryBytes) return;
+        byte[] old = memory.put(key, gz);
+        if (old != null) bytes -= old.length;
+        bytes += gz.length;
+        for (Iterator<byte[]> it = memory.values().iterator(); bytes > maxBytes && it.hasNext(); ) {
+            bytes -= it.next().length;
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    // Written under a temporary name and moved into place, so a crash never leaves a torn entry
+    private void writeDisk(String key, byte[] gz) {
+        List<String> evicted = new ArrayList<>();
+        try {
+            Path tmp = Files.createTempFile(dir, key, ".tmp");
+            Files.write(tmp, gz);
+            Files.move(tmp, dir.resolve(key + SUFFIX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Cache: cannot write " + key + ": " + e.getMessage());
+            return;
+        }
+        synchronized (this) {
+            Long old = disk.put(key, (long) gz.length);
+            if (old != null) diskBytes -= old;
+            diskBytes += gz.length;
+            for (Iterator<Map.Entry<String, Long>> it = disk.entrySet().iterator(); diskBytes > maxDiskBytes && it.hasNext(); ) {
+                Map.Entry<String, Long> e = it.next();
+                diskBytes -= e.getValue();
+                evicted.add(e.getKey());
+                it.remove();
+                diskEvictions.incrementAndGet();
+            }
+        }
+        for (String k : evicted) {
+            try { Files.deleteIfExists(dir.resolve(k + SUFFIX)); }
+            catch (IOException ignored) { }
+        }
+    }
+
+    private void forgetDisk(String key) {
+        Long old = disk.remove(key);
+        if (old != null) diskBytes -= old;
+    }
+
+    // Existing entries of the current formats, least recently used first; other formats are removed
+    private void load() throws IOException {
+        Files.createDirectories(dir);
+        record F(String key, long size, long used) { }
+        List<F> found = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                String name = p.getFileName().toString();
+                if (!name.endsWith(SUFFIX) && !name.endsWith(".tmp")) continue;
+                try {
+                    if (name.endsWith(SUFFIX) && (name.startsWith(SUMMARY_FORMAT + "-") || name.startsWith(FORMAT + "-")
+                                                     || name.startsWith(SESSION_FORMAT + "-"))) {
+                        found.add(new F(name.substring(0, name.length() - SUFFIX.length()),
+                                        Files.size(p), Files.getLastModifiedTime(p).toMillis()));
+                    } else {
+                        Files.deleteIfExists(p);
+                    }
+                } catch (NoSuchFileException ignored) { }
+            }
+        }
+        found.sort((a, b) -> Long.compare(a.used, b.used));
+        for (F f : found) {
+            disk.put(f.key, f.size);
+            diskBytes += f.size;
+        }
+    }
+
+    /** {"entries", "bytes", "maxBytes", "hits", "diskHits", "misses", "evictions", "diskEntries", "diskBytes", ...} */
+    public synchronized String statsJson() {
+        return "{\"entries\":"      + memory.size()
+             + ",\"bytes\":"         + bytes
+             + ",\"maxBytes\":"      + maxBytes
+             + ",\"hits\":"          + hits.get()
+             + ",\"diskHits\":"      + diskHits.get()
+             + ",\"misses\":"        + misses.get()
+             + ",\"evictions\":"     + evictions.get()
+             + ",\"diskEntries\":"   + disk.size()
+             + ",\"diskBytes\":"     + diskBytes
+             + ",\"maxDiskBytes\":"  + (dir != null ? maxDiskBytes : 0)
+             + ",\"diskEvictions\":" + diskEvictions.get()
+             + "}";
+    }
+
+    /**
+     * Collects a response's gzip bytes while it is being sent. Past {@code limit} bytes it stops
+     * keeping them and {@link #result()} returns null — the response is still sent in full.
+     */
+    public static final class Capture extends ByteArrayOutputStream {
+        private final long limit;
+        private boolean   overflow;
+
+        public Capture(long limit) { this.limit = limit; }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            if (overflow) return;
+            if (count + (long) len > limit) { overflow = true; buf = new byte[0]; count = 0; return; }
+            super.write(b, off, len);
+        }
+
+        @Override
+        public synchronized void write(int b) { write(new byte[] { (byte) b }, 0, 1); }
+
+        public byte[] result() { return overflow ? null : toByteArray(); }
+    }
+}
@@ -0,0 +1,461 @@
+package com.analyzer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * One analyzed dump kept on the server, so the browser can page through it instead of
+ * receiving every thread and stack at once.
+ *
+ * Threads are held in CPU-time order; a thread's position in that order is its "idx" in every
+ * response, and is what lock data refers to. Thread indexes per state and per health are built
+ * once, so a filter on either starts from just the matching threads. Other sort orders are
+ * computed on first use and kept. Queries only read, so any number may run at once.
+ *
+ * The threads themselves are held as a {@link ThreadTable}, so a session costs a fraction of
+ * the parsed {@code List<ThreadInfo>}; nothing is turned back into objects except the rows and
+ * traces a response actually contains.
+ */
+public class Session {
+
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT     = 1000;
+
+    private static final int SUMMARY_GROUPS   = 50;
+    private static final int SUMMARY_MONITORS = 50;
+    private static final int SAMPLE_NAMES     = 5;
+
+    public final String      id;
+    public final ThreadTable threads;            // cpuMs descending
+    public final LockGraph   locks;
+
+    private final Map<String, int[]> byState;
+    private final Map<String, int[]> byHealth;
+    private final byte[]             lowerNames;  // lower-cased names, UTF-8, back to back
+    private final int[]              lowerOff;
+    private final Map<String, int[]> orders = new ConcurrentHashMap<>();   // sort key → idx in ascending order
+    private final Map<String, int[]> ranks  = new ConcurrentHashMap<>();   // sort key → position of each idx in it
+
+    volatile long lastAccess = System.currentTimeMillis();
+
+    /** {@code threads} must already be sorted by cpuMs descending, {@code locks} built over that order. */
+    public Session(String id, ThreadTable threads, LockGraph locks) {
+        this.id       = id;
+        this.threads  = threads;
+        this.locks    = locks;
+        this.byState  = index(threads, threads::state);
+        this.byHealth = index(threads, i -> threads.health(i).name());
+
+        int n = threads.size();
+        ByteArrayOutputStream names = new ByteArrayOutputStream(n * 24);
+        this.lowerOff = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            lowerOff[i] = names.size();
+            names.writeBytes(threads.name(i).toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8));
+        }
+        lowerOff[n] = names.size();
+        this.lowerNames = names.toByteArray();
+    }
+
+    // Thread indexes per key value, each list in CPU order
+    private static Map<String, int[]> index(ThreadTable threads, IntFunction<String> key) {
+        Map<String, Integer> fill = new HashMap<>();
+        for (int i = 0; i < threads.size(); i++) fill.merge(key.apply(i), 1, Integer::sum);
+        Map<String, int[]> index = new HashMap<>();
+        fill.forEach((k, size) -> index.put(k, new int[size]));
+        fill.replaceAll((k, v) -> 0);
+        for (int i = 0; i < threads.size(); i++) {
+            String k = key.apply(i);
+            index.get(k)[fill.merge(k, 1, Integer::sum) - 1] = i;
+        }
+        return index;
+    }
+
+    // ── Queries ──────────────────────────────────────────────────────────────
+
+    /**
+     * Filters, sort and page window of a threads request. Null filters match everything;
+     * {@code name} is a lower-case substring.
+     */
+    public record Query(String state, String health, String name, double cpuMin, double cpuMax, String lock,
+                        String sort, boolean desc, int offset, int limit) {
+
+        /** Reads {@code state, health, q, cpuMin, cpuMax, lock, sort, order, offset, limit} from a raw query string. */
+        public static Query parse(String rawQuery) {
+            Map<String, String> p = params(rawQuery);
+            String sort = p.getOrDefault("sort", "cpu");
+            if (!SORTS.containsKey(sort)) sort = "cpu";
+            return new Query(
+                    blankToNull(p.get("state")),
+                    blankToNull(p.get("health")),
+                    lower(blankToNull(p.get("q"))),
+                    number(p.get("cpuMin"), Double.NEGATIVE_INFINITY),
+                    number(p.get("cpuMax"), Double.POSITIVE_INFINITY),
+                    blankToNull(p.get("lock")),
+                    sort,
+                    !"asc".equals(p.get("order")),
+                    (int) Math.max(0, number(p.get("offset"), 0)),
+                    (int) Math.min(MAX_LIMIT, Math.max(1, number(p.get("limit"), DEFAULT_LIMIT))));
+        }
+
+        /** Decoded name → value pairs of a raw query string; the last of repeated names wins. */
+        static Map<String, String> params(String rawQuery) {
+            Map<String, String> p = new HashMap<>();
+            if (rawQuery != null) {
+                for (String kv : rawQuery.split("&")) {
+                    int eq = kv.indexOf('=');
+                    if (eq <= 0) continue;
+                    p.put(kv.substring(0, eq), URLDecoder.decode(kv.substring(eq + 1), StandardCharsets.UTF_8));
+                }
+            }
+            return p;
+        }
+
+        private static String blankToNull(String s) { return s == null || s.isBlank() ? null : s.trim(); }
+
+        private static String lower(String s) { return s == null ? null : s.toLowerCase(Locale.ROOT); }
+
+        private static double number(String s, double dflt) {
+            if (s == null || s.isBlank()) return dflt;
+            try { return Double.parseDouble(s.trim()); }
+            catch (NumberFormatException e) { return dflt; }
+        }
+
+        boolean cpuBounded() { return cpuMin != Double.NEGATIVE_INFINITY || cpuMax != Double.POSITIVE_INFINITY; }
+    }
+
+    /** The window of matching thread indexes, and how many matched in all. */
+    public record Page(int total, int[] rows) { }
+
+    // Ascending orders over row indexes; ties keep CPU order
+    private static final Map<String, Function<ThreadTable, IntComparator>> SORTS = Map.of(
+            "cpu",        t -> (a, b) -> Double.compare(t.cpuMs(a), t.cpuMs(b)),
+            "cpuPercent", t -> (a, b) -> Double.compare(t.cpuPercent(a), t.cpuPercent(b)),
+            "elapsed",    t -> (a, b) -> Double.compare(t.elapsedMs(a), t.elapsedMs(b)),
+            "name",       t -> {
+                String[] names = new String[t.size()];            // decoded once for the sort only
+                for (int i = 0; i < names.length; i++) names[i] = t.name(i);
+                return (a, b) -> names[a].compareTo(names[b]);
+            },
+            "state",      t -> (a, b) -> t.state(a).compareTo(t.state(b)),
+            "health",     t -> (a, b) -> t.health(a).name().compareTo(t.health(b).name()),
+            "threadNum",  t -> (a, b) -> Integer.compare(t.threadNum(a), t.threadNum(b)));
+
+    private interface IntComparator { int compare(int a, int b); }
+
+    public Page query(Query q) {
+        int n = threads.size();
+        int[] order = order(q.sort);
+
+        // Start from the smaller precomputed index when state or health is filtered
+        int[] candidates = null;
+        if (q.state  != null) candidates = byState.getOrDefault(q.state, new int[0]);
+        if (q.health != null) {
+            int[] h = byHealth.getOrDefault(q.health, new int[0]);
+            if (candidates == null || h.length < candidates.length) candidates = h;
+        }
+
+        byte[] name = q.name != null ? q.name.getBytes(StandardCharsets.UTF_8) : null;
+        int[] rows = new int[Math.min(q.limit, n)];
+        int total = 0, filled = 0;
+        if (candidates != null && q.sort.equals("cpu")) {
+            // Index lists are already in CPU order
+            for (int i = 0; i < candidates.length; i++) {
+                int idx = candidates[q.desc ? i : candidates.length - 1 - i];
+                if (!matches(idx, q, name)) continue;
+                if (total >= q.offset && filled < rows.length) rows[filled++] = idx;
+                total++;
+            }
+        } else if (candidates != null) {
+            // Put the candidates in sort order through their ranks, then filter
+            int[] rank = rank(q.sort);
+            int[] r = new int[candidates.length];
+            for (int i = 0; i < r.length; i++) r[i] = rank[candidates[i]];
+            Arrays.sort(r);
+            for (int i = 0; i < r.length; i++) {
+                int idx = order[q.desc ? r[r.length - 1 - i] : r[i]];
+                if (!matches(idx, q, name)) continue;
+                if (total >= q.offset && filled < rows.length) rows[filled++] = idx;
+                total++;
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                int idx = order[q.desc ? n - 1 - i : i];
+                if (!matches(idx, q, name)) continue;
+                if (total >= q.offset && filled < rows.length) rows[filled++] = idx;
+                total++;
+            }
+        }
+        return new Page(total, Arrays.copyOf(rows, filled));
+    }
+
+    // name is q.name as UTF-8; a substring of the UTF-8 bytes is a substring of the text
+    private boolean matches(int idx, Query q, byte[] name) {
+        if (q.state  != null && !q.state.equals(threads.state(idx)))                 return false;
+        if (q.health != null && !q.health.equals(threads.health(idx).name()))        return false;
+        if (name     != null && !contains(lowerNames, lowerOff[idx], lowerOff[idx + 1], name)) return false;
+        double cpu = threads.cpuMs(idx);
+        if (q.cpuBounded() && (cpu < 0 || cpu < q.cpuMin || cpu > q.cpuMax))          return false;
+        if (q.lock   != null && !threads.locksMention(idx, q.lock))                   return false;
+        return true;
+    }
+
+    private static boolean contains(byte[] b, int from, int to, byte[] needle) {
+        outer:
+        for (int i = from, last = to - needle.length; i <= last; i++) {
+            for (int k = 0; k < needle.length; k++) if (b[i + k] != needle[k]) continue outer;
+            return true;
+        }
+        return false;
+    }
+
+    /** Adds the threads that pass {@code q}'s filters to {@code tree}; sort and paging are ignored. */
+    public void addTo(CallTree tree, Query q) {
+        byte[] name = q.name != null ? q.name.getBytes(StandardCharsets.UTF_8) : null;
+        tree.add(threads, idx -> matches(idx, q, name));
+    }
+
+    private int[] order(String sort) {
+        return orders.computeIfAbsent(sort, k -> {
+            int n = threads.size();
+            if (k.equals("cpu")) {
+                // Already held in descending CPU order; ascending is that order reversed
+                int[] o = new int[n];
+                for (int i = 0; i < n; i++) o[i] = n - 1 - i;
+                return o;
+            }
+            IntComparator c = SORTS.get(k).apply(threads);
+            Integer[] boxed = new Integer[n];
+            for (int i = 0; i < n; i++) boxed[i] = i;
+            // Stable, so equal keys stay in CPU order when walked descending
+            Arrays.sort(boxed, (a, b) -> {
+                int r = c.compare(a, b);
+                return r != 0 ? r : Integer.compare(b, a);
+            });
+            int[] o = new int[n];
+            for (int i = 0; i < n; i++) o[i] = boxed[i];
+            return o;
+        });
+    }
+
+    private int[] rank(String sort) {
+        return ranks.computeIfAbsent(sort, k -> {
+            int[] o = order(k);
+            int[] r = new int[o.length];
+            for (int i = 0; i < o.length; i++) r[o[i]] = i;
+            return r;
+        });
+    }
+
+    // ── Snapshot ─────────────────────────────────────────────────────────────
+    // The table and lock graph, gzip-compressed, for the result cache. Indexes and the lower-cased
+    // names are rebuilt on restore; they cost little next to parsing.
+
+    private static final int SNAPSHOT_MAGIC   = 0x54445353;   // "TDSS"
+    private static final int SNAPSHOT_VERSION = 1;
+
+    public byte[] snapshot() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(threads.size() * 64 + 1024);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(bytes, 1 << 16) {{ def.setLevel(Deflater.BEST_SPEED); }}, 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            threads.write(out);
+            locks.write(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** The session {@link #snapshot} was taken of, under {@code id}. */
+    public static Session restore(String id, byte[] snapshot) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new ByteArrayInputStream(snapshot), 1 << 16), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) throw new IOException("Not a session snapshot");
+            ThreadTable threads = ThreadTable.read(in);
+            LockGraph   locks   = LockGraph.read(in);
+            if (locks.blockedBy.length != threads.size()) throw new IOException("Corrupt snapshot: lock graph does not match threads");
+            return new Session(id, threads, locks);
+        }
+    }
+
+    // ── JSON ──────────────────────────────────────────────────────────────────
+
+    /**
+     * The first response after an upload; its size does not grow with the thread count.
+     * <pre>
+     * { "sessionId", "threadCount", "stackCount", "daemon",
+     *   "states": {"RUNNABLE": 120, ...}, "health": {"HOT": 3, ...},
+     *   "stackGroups": [ {"stackId", "count", "names": [..], "topFrame"}, ... ],
+     *   "locks": { "deadlocks": [ {"threads": [4, 9], "names": [..]} ],
+     *              "monitorCount",
+     *              "monitors": [ {"address", "className", "owner", "ownerName", "waiters", "waiterNames", "queued"} ] } }
+     * </pre>
+     * stackGroups and monitors are cut to the largest {@value #SUMMARY_GROUPS}.
+     */
+    public void writeSummary(OutputStream out) throws IOException {
+        JsonWriter w = new JsonWriter(out);
+        int daemon = 0;
+        for (int i = 0; i < threads.size(); i++) if (threads.daemon(i)) daemon++;
+
+        w.raw("{\"sessionId\":").str(id)
+         .raw(",\"threadCount\":").num(threads.size())
+         .raw(",\"stackCount\":").num(threads.stackCount())
+         .raw(",\"daemon\":").num(daemon)
+         .raw(",\"states\":");
+        counts(w, byState);
+        w.raw(",\"health\":");
+        counts(w, byHealth);
+
+        w.raw(",\"stackGroups\":[");
+        int[] groups = threads.stackGroups(2);
+        Map<Integer, List<String>> names = sampleNames(Arrays.copyOf(groups, Math.min(SUMMARY_GROUPS, groups.length)));
+        for (int i = 0; i < groups.length && i < SUMMARY_GROUPS; i++) {
+            int s = groups[i];
+            if (i > 0) w.raw(",");
+            w.raw("{\"stackId\":").num(s).raw(",\"count\":").num(threads.stackThreads(s)).raw(",\"names\":");
+            strings(w, names.get(s));
+            w.raw(",\"topFrame\":").str(topFrame(threads.stackText(s))).raw("}");
+        }
+
+        w.raw("],\"locks\":{\"deadlocks\":[");
+        for (int i = 0; i < locks.deadlocks.size(); i++) {
+            int[] cycle = locks.deadlocks.get(i);
+            if (i > 0) w.raw(",");
+            w.raw("{\"threads\":");
+            ints(w, cycle, cycle.length);
+            List<String> n = new ArrayList<>(cycle.length);
+            for (int t : cycle) n.add(threads.name(t));
+            w.raw(",\"names\":");
+            strings(w, n);
+            w.raw("}");
+        }
+        w.raw("],\"monitorCount\":").num(locks.monitors.size()).raw(",\"monitors\":[");
+        for (int i = 0; i < locks.monitors.size() && i < SUMMARY_MONITORS; i++) {
+            LockGraph.Monitor m = locks.monitors.get(i);
+            if (i > 0) w.raw(",");
+            List<String> waiters = new ArrayList<>(SAMPLE_NAMES);
+            for (int k = 0; k < m.waiters.length && k < SAMPLE_NAMES; k++) waiters.add(threads.name(m.waiters[k]));
+            w.raw("{")
+             .raw("\"address\":"   ).str(m.address)    .raw(",")
+             .raw("\"className\":" ).str(m.className)  .raw(",")
+             .raw("\"owner\":"     ).num(m.owner)      .raw(",")
+             .raw("\"ownerName\":" ).str(m.owner >= 0 ? threads.name(m.owner) : "").raw(",")
+             .raw("\"waiters\":"   ).num(m.waiters.length).raw(",")
+             .raw("\"waiterNames\":");
+            strings(w, waiters);
+            w.raw(",\"queued\":").num(m.queued).raw("}");
+        }
+        w.raw("]}}");
+        w.flush();
+    }
+
+    /**
+     * <pre>
+     * { "total": 812, "offset": 0, "limit": 100,
+     *   "threads": [ {"idx", ...thread fields..., "stackId", "blockedBy", "blockedByName"}, ... ] }
+     * </pre>
+     */
+    public void writePage(Query q, Page page, OutputStream out) throws IOException {
+        JsonWriter w = new JsonWriter(out);
+        w.raw("{\"total\":").num(page.total)
+         .raw(",\"offset\":").num(q.offset)
+         .raw(",\"limit\":").num(q.limit)
+         .raw(",\"threads\":[");
+        for (int i = 0; i < page.rows.length; i++) {
+            int idx = page.rows[i];
+            int by = locks.blockedBy[idx];
+            if (i > 0) w.raw(",");
+            JsonSerializer.writeFields(w, threads, idx);
+            w.raw(",\"idx\":").num(idx)
+             .raw(",\"stackId\":").num(threads.stackId(idx))
+             .raw(",\"blockedBy\":").num(by)
+             .raw(",\"blockedByName\":").str(by >= 0 ? threads.name(by) : "")
+             .raw("}");
+        }
+        w.raw("]}");
+        w.flush();
+    }
+
+    /** {"id", "threads", "trace"} */
+    public void writeStack(int stackId, OutputStream out) throws IOException {
+        JsonWriter w = new JsonWriter(out);
+        w.raw("{\"id\":").num(stackId)
+         .raw(",\"threads\":").num(threads.stackThreads(stackId))
+         .raw(",\"trace\":").str(threads.stackText(stackId))
+         .raw("}");
+        w.flush();
+    }
+
+    private Map<Integer, List<String>> sampleNames(int[] groups) {
+        Map<Integer, List<String>> names = new HashMap<>();
+        for (int s : groups) names.put(s, new ArrayList<>(SAMPLE_NAMES));
+        for (int i = 0; i < threads.size(); i++) {
+            List<String> l = names.get(threads.stackId(i));
+            if (l != null && l.size() < SAMPLE_NAMES) l.add(threads.name(i));
+        }
+        return names;
+    }
+
+    /** First "at ..." line of a trace, without the "at ". */
+    static String topFrame(String trace) {
+        int s = 0, n = trace.length();
+        while (s < n) {
+            int e = trace.indexOf('\n', s);
+            if (e < 0) e = n;
+            String line = trace.substring(s, e).trim();
+            if (line.startsWith("at ")) return line.substring(3);
+            s = e + 1;
+        }
+        int e = trace.indexOf('\n');
+        return (e < 0 ? trace : trace.substring(0, e)).trim();
+    }
+
+    private static void counts(JsonWriter w, Map<String, int[]> index) throws IOException {
+        w.raw("{");
+        boolean first = true;
+        for (Map.Entry<String, int[]> e : index.entrySet()) {
+            if (!first) w.raw(",");
+            first = false;
+            w.str(e.getKey()).raw(":").num(e.getValue().length);
+        }
+        w.raw("}");
+    }
+
+    private static void strings(JsonWriter w, List<String> l) throws IOException {
+        w.raw("[");
+        for (int i = 0; i < l.size(); i++) {
+            if (i > 0) w.raw(",");
+            w.str(l.get(i));
+        }
+        w.raw("]");
+    }
+
+    private static void ints(JsonWriter w, int[] a, int len) throws IOException {
+        w.raw("[");
+        for (int i = 0; i < len; i++) {
+            if (i > 0) w.raw(",");
+            w.num(a[i]);
+        }
+        w.raw("]");
+    }
+}
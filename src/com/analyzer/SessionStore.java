@@ -0,0 +1,50 @@
+package com.analyzer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Sessions by id, least recently used first. Holds at most {@code maxSessions}; a session not
+ * touched for {@code idleMillis} is dropped on the next access to the store.
+ */
+public class SessionStore {
+
+    private final int  maxSessions;
+    private final long idleMillis;
+    private final LinkedHashMap<String, Session> sessions = new LinkedHashMap<>(16, 0.75f, true);
+
+    public SessionStore(int maxSessions, long idleMillis) {
+        this.maxSessions = Math.max(1, maxSessions);
+        this.idleMillis  = idleMillis;
+    }
+
+    /** The live session, or null if unknown or expired. Marks it used. */
+    public synchronized Session get(String id) {
+        long now = System.currentTimeMillis();
+        expire(now);
+        Session s = sessions.get(id);
+        if (s != null) s.lastAccess = now;
+        return s;
+    }
+
+    public synchronized void put(Session s) {
+        long now = System.currentTimeMillis();
+        s.lastAccess = now;
+        sessions.put(s.id, s);
+        expire(now);
+        for (Iterator<Session> it = sessions.values().iterator(); sessions.size() > maxSessions && it.hasNext(); ) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    public synchronized int size() { return sessions.size(); }
+
+    // Access order puts the longest-idle session first
+    private void expire(long now) {
+        for (Iterator<Session> it = sessions.values().iterator(); it.hasNext(); ) {
+            if (now - it.next().lastAccess <= idleMillis) break;
+            it.remove();
+        }
+    }
+}
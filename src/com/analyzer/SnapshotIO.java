@@ -0,0 +1,167 @@
+package com.analyzer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Length-prefixed arrays for the binary form of a {@link Session} — its {@link ThreadTable} and
+ * {@link LockGraph} — as kept in the {@link ResultCache}.
+ *
+ * Numeric arrays go through one ByteBuffer per array rather than a write call per element,
+ * since a session holds a few columns of hundreds of thousands of values.
+ */
+final class SnapshotIO {
+
+    private static final int CHUNK = 64 * 1024;
+
+    private SnapshotIO() { }
+
+    // ── Writing ──────────────────────────────────────────────────────────────
+
+    static void ints(DataOutputStream out, int[] a) throws IOException {
+        out.writeInt(a.length);
+        ByteBuffer b = ByteBuffer.allocate(Math.min(a.length, CHUNK) * 4);
+        for (int from = 0; from < a.length; from += CHUNK) {
+            int n = Math.min(CHUNK, a.length - from);
+            b.clear();
+            b.asIntBuffer().put(a, from, n);
+            out.write(b.array(), 0, n * 4);
+        }
+    }
+
+    static void longs(DataOutputStream out, long[] a) throws IOException {
+        out.writeInt(a.length);
+        ByteBuffer b = ByteBuffer.allocate(Math.min(a.length, CHUNK) * 8);
+        for (int from = 0; from < a.length; from += CHUNK) {
+            int n = Math.min(CHUNK, a.length - from);
+            b.clear();
+            b.asLongBuffer().put(a, from, n);
+            out.write(b.array(), 0, n * 8);
+        }
+    }
+
+    static void doubles(DataOutputStream out, double[] a) throws IOException {
+        out.writeInt(a.length);
+        ByteBuffer b = ByteBuffer.allocate(Math.min(a.length, CHUNK) * 8);
+        for (int from = 0; from < a.length; from += CHUNK) {
+            int n = Math.min(CHUNK, a.length - from);
+            b.clear();
+            b.asDoubleBuffer().put(a, from, n);
+            out.write(b.array(), 0, n * 8);
+        }
+    }
+
+    static void shorts(DataOutputStream out, short[] a) throws IOException {
+        out.writeInt(a.length);
+        ByteBuffer b = ByteBuffer.allocate(Math.min(a.length, CHUNK) * 2);
+        for (int from = 0; from < a.length; from += CHUNK) {
+            int n = Math.min(CHUNK, a.length - from);
+            b.clear();
+            b.asShortBuffer().put(a, from, n);
+            out.write(b.array(), 0, n * 2);
+        }
+    }
+
+    static void bytes(DataOutputStream out, byte[] a) throws IOException {
+        out.writeInt(a.length);
+        out.write(a);
+    }
+
+    static void string(DataOutputStream out, String s) throws IOException {
+        bytes(out, s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static void strings(DataOutputStream out, String[] a) throws IOException {
+        out.writeInt(a.length);
+        for (String s : a) string(out, s);
+    }
+
+    static void stringMap(DataOutputStream out, Map<Integer, String> m) throws IOException {
+        out.writeInt(m.size());
+        for (Map.Entry<Integer, String> e : m.entrySet()) {
+            out.writeInt(e.getKey());
+            string(out, e.getValue());
+        }
+    }
+
+    // ── Reading ──────────────────────────────────────────────────────────────
+
+    static int[] ints(DataInputStream in) throws IOException {
+        int[] a = new int[length(in, 4)];
+        byte[] b = new byte[Math.min(a.length, CHUNK) * 4];
+        for (int from = 0; from < a.length; from += CHUNK) {
+            int n = Math.min(CHUNK, a.length - from);
+            in.readFully(b, 0, n * 4);
+            ByteBuffer.wrap(b, 0, n * 4).asIntBuffer().get(a, from, n);
+        }
+        return a;
+    }
+
+    static long[] longs(DataInputStream in) throws IOException {
+        long[] a = new long[length(in, 8)];
+        byte[] b = new byte[Math.min(a.length, CHUNK) * 8];
+        for (int from = 0; from < a.length; from += CHUNK) {
+            int n = Math.min(CHUNK, a.length - from);
+            in.readFully(b, 0, n * 8);
+            ByteBuffer.wrap(b, 0, n * 8).asLongBuffer().get(a, from, n);
+        }
+        return a;
+    }
+
+    static double[] doubles(DataInputStream in) throws IOException {
+        double[] a = new double[length(in, 8)];
+        byte[] b = new byte[Math.min(a.length, CHUNK) * 8];
+        for (int from = 0; from < a.length; from += CHUNK) {
+            int n = Math.min(CHUNK, a.length - from);
+            in.readFully(b, 0, n * 8);
+            ByteBuffer.wrap(b, 0, n * 8).asDoubleBuffer().get(a, from, n);
+        }
+        return a;
+    }
+
+    static short[] shorts(DataInputStream in) throws IOException {
+        short[] a = new short[length(in, 2)];
+        byte[] b = new byte[Math.min(a.length, CHUNK) * 2];
+        for (int from = 0; from < a.length; from += CHUNK) {
+            int n = Math.min(CHUNK, a.length - from);
+            in.readFully(b, 0, n * 2);
+            ByteBuffer.wrap(b, 0, n * 2).asShortBuffer().get(a, from, n);
+        }
+        return a;
+    }
+
+    static byte[] bytes(DataInputStream in) throws IOException {
+        byte[] a = new byte[length(in, 1)];
+        in.readFully(a);
+        return a;
+    }
+
+    static String string(DataInputStream in) throws IOException {
+        return new String(bytes(in), StandardCharsets.UTF_8);
+    }
+
+    static String[] strings(DataInputStream in) throws IOException {
+        String[] a = new String[length(in, 4)];
+        for (int i = 0; i < a.length; i++) a[i] = string(in);
+        return a;
+    }
+
+    static Map<Integer, String> stringMap(DataInputStream in) throws IOException {
+        int n = length(in, 8);
+        Map<Integer, String> m = new HashMap<>();
+        for (int i = 0; i < n; i++) m.put(in.readInt(), string(in));
+        return m;
+    }
+
+    // A corrupt length would otherwise surface as an OutOfMemoryError
+    private static int length(DataInputStream in, int elementBytes) throws IOException {
+        int n = in.readInt();
+        if (n < 0 || (long) n * elementBytes > Integer.MAX_VALUE - 8) throw new IOException("Corrupt snapshot: array length " + n);
+        return n;
+    }
+}
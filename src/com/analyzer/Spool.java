@@ -0,0 +1,100 @@
+package com.analyzer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Holds an upload while it is hashed, so the cache can be consulted before any parsing.
+ * Small uploads stay in memory; past {@code memoryLimit} bytes the content moves to a temp
+ * file, so heap use is bounded whatever the upload size. {@link #close()} removes the file.
+ */
+public class Spool implements AutoCloseable {
+
+    private final int memoryLimit;
+    private Buffer       mem = new Buffer();
+    private Path         file;
+    private OutputStream fileOut;
+    private long         size;
+    private String       sha256;
+
+    private Spool(int memoryLimit) { this.memoryLimit = memoryLimit; }
+
+    /** Copies {@code in} to the end, hashing as it goes. */
+    public static Spool of(InputStream in, int memoryLimit) throws IOException {
+        Spool s = new Spool(memoryLimit);
+        MessageDigest md;
+        try { md = MessageDigest.getInstance("SHA-256"); }
+        catch (NoSuchAlgorithmException e) { throw new IllegalStateException(e); }
+
+        byte[] buf = new byte[64 * 1024];
+        try {
+            for (int n; (n = in.read(buf)) > 0; ) {
+                md.update(buf, 0, n);
+                s.write(buf, n);
+            }
+            if (s.fileOut != null) s.fileOut.close();
+        } catch (IOException | RuntimeException e) {
+            s.close();
+            throw e;
+        }
+        s.sha256 = HexFormat.of().formatHex(md.digest());
+        return s;
+    }
+
+    private void write(byte[] b, int n) throws IOException {
+        size += n;
+        if (fileOut == null && mem.size() + n <= memoryLimit) { mem.write(b, 0, n); return; }
+        if (fileOut == null) {
+            file    = Files.createTempFile("threaddump-", ".upload");
+            fileOut = Files.newOutputStream(file);
+            mem.writeTo(fileOut);
+            mem = null;
+        }
+        fileOut.write(b, 0, n);
+    }
+
+    /** Lower-case hex SHA-256 of the content. */
+    public String sha256() { return sha256; }
+
+    public long size() { return size; }
+
+    public InputStream open() throws IOException {
+        return file != null ? Files.newInputStream(file) : mem.open();
+    }
+
+    /** The content as one buffer — mapped from the temp file, not read into the heap. Up to 2 GB. */
+    public ByteBuffer buffer() throws IOException {
+        if (file == null) return mem.buffer();
+        if (size > Integer.MAX_VALUE) throw new IOException("Upload too large to map: " + size + " bytes");
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    // Reads the bytes in place instead of copying them out with toByteArray()
+    private static final class Buffer extends ByteArrayOutputStream {
+        InputStream open()  { return new ByteArrayInputStream(buf, 0, count); }
+        ByteBuffer buffer() { return ByteBuffer.wrap(buf, 0, count); }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (fileOut != null) fileOut.close();
+            if (file != null) Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // a leftover temp file is not worth failing the request over
+        }
+    }
+}
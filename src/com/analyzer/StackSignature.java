@@ -0,0 +1,23 @@
+package com.analyzer;
+
+/**
+ * One distinct stack, shared by every thread whose stack lines are identical.
+ *
+ * Fields:
+ *   id       - index in the owning {@link StackTable}, in order of first appearance
+ *   frames   - ids of the interned stack lines ("at ..." and "- locked ..." alike), top first
+ *   text     - the stack as ThreadInfo.stackTrace shows it, built once per signature
+ *   threads  - number of threads that carry this stack
+ */
+public class StackSignature {
+    public final int    id;
+    public final int[]  frames;
+    public final String text;
+    public int          threads;
+
+    StackSignature(int id, int[] frames, String text) {
+        this.id     = id;
+        this.frames = frames;
+        this.text   = text;
+    }
+}
@@ -0,0 +1,131 @@
+package com.analyzer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interning tables for one parse: each distinct stack line is stored once as a frame, and
+ * each distinct sequence of frames once as a {@link StackSignature}. Threads of a pool that
+ * sit in the same place therefore share a single stack object and a single trace String.
+ *
+ * Not thread-safe — each {@link ThreadDumpParser} owns one.
+ */
+public class StackTable {
+
+    private final List<String>         frames   = new ArrayList<>();
+    private final Map<String, Integer> frameIds = new HashMap<>();
+
+    private final List<StackSignature>         stacks  = new ArrayList<>();
+    private final Map<FrameSeq, StackSignature> byFrames = new HashMap<>();
+
+    // Reused lookup key, so a hit allocates nothing
+    private final FrameSeq probe = new FrameSeq(null, 0);
+
+    /** Returns the id of {@code line}, adding it on first sight. */
+    public int frame(String line) {
+        Integer id = frameIds.get(line);
+        if (id != null) return id;
+        int next = frames.size();
+        frames.add(line);
+        frameIds.put(line, next);
+        return next;
+    }
+
+    public String frameText(int id) { return frames.get(id); }
+
+    public int frameCount() { return frames.size(); }
+
+    /** Returns the signature for the first {@code len} entries of {@code ids}, creating it on first sight. */
+    public StackSignature intern(int[] ids, int len) {
+        return intern(ids, len, null);
+    }
+
+    // text, when known, is what render() would produce for these ids
+    private StackSignature intern(int[] ids, int len, String text) {
+        probe.set(ids, len);
+        StackSignature sig = byFrames.get(probe);
+        if (sig != null) return sig;
+
+        int[] own = Arrays.copyOf(ids, len);
+        sig = new StackSignature(stacks.size(), own, text != null ? text : render(own));
+        stacks.add(sig);
+        byFrames.put(new FrameSeq(own, len), sig);
+        return sig;
+    }
+
+    /**
+     * Adds everything in {@code part}, as if its input had been parsed into this table after what
+     * it already holds, and returns this table's signature for each of part's stack ids.
+     */
+    public StackSignature[] absorb(StackTable part) {
+        int[] frameMap = new int[part.frames.size()];
+        for (int i = 0; i < frameMap.length; i++) frameMap[i] = frame(part.frames.get(i));
+
+        StackSignature[] map = new StackSignature[part.stacks.size()];
+        int[] ids = new int[64];
+        for (StackSignature s : part.stacks) {
+            int len = s.frames.length;
+            if (ids.length < len) ids = new int[len];
+            for (int k = 0; k < len; k++) ids[k] = frameMap[s.frames[k]];
+            StackSignature sig = intern(ids, len, s.text);
+            sig.threads += s.threads;
+            map[s.id] = sig;
+        }
+        return map;
+    }
+
+    public StackSignature get(int id) { return stacks.get(id); }
+
+    public int size() { return stacks.size(); }
+
+    public List<StackSignature> stacks() { return stacks; }
+
+    /** Signatures carried by at least {@code minThreads} threads, largest group first. */
+    public List<StackSignature> groups(int minThreads) {
+        List<StackSignature> out = new ArrayList<>();
+        for (StackSignature s : stacks) if (s.threads >= minThreads) out.add(s);
+        out.sort((a, b) -> a.threads != b.threads ? Integer.compare(b.threads, a.threads) : Integer.compare(a.id, b.id));
+        return out;
+    }
+
+    // Lines joined by '\n' and trimmed as a whole — the same text the parser used to build per thread
+    private String render(int[] ids) {
+        if (ids.length == 0) return "";
+        StringBuilder sb = new StringBuilder(ids.length * 64);
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) sb.append('\n');
+            sb.append(frames.get(ids[i]));
+        }
+        int s = 0, e = sb.length();
+        while (s < e && sb.charAt(s) <= ' ')     s++;
+        while (e > s && sb.charAt(e - 1) <= ' ') e--;
+        return sb.substring(s, e);
+    }
+
+    /** int[] prefix with value semantics, usable as a hash key. */
+    private static final class FrameSeq {
+        private int[] ids;
+        private int   len;
+        private int   hash;
+
+        FrameSeq(int[] ids, int len) { set(ids, len); }
+
+        void set(int[] ids, int len) {
+            this.ids = ids;
+            this.len = len;
+            int h = 1;
+            for (int i = 0; i < len; i++) h = 31 * h + ids[i];
+            this.hash = h;
+        }
+
+        @Override public int hashCode() { return hash; }
+
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof FrameSeq other) || other.len != len || other.hash != hash) return false;
+            return Arrays.equals(ids, 0, len, other.ids, 0, len);
+        }
+    }
+}
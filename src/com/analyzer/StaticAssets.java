@@ -0,0 +1,170 @@
+package com.analyzer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The frontend files, read into memory once so serving them never touches the disk.
+ *
+ * Every file is held as is and, where that is smaller, gzip-compressed at the best level, with
+ * an ETag per form derived from the content hash. The map of files is immutable and replaced
+ * whole on {@link #reload}; {@link #watch} reloads whenever the directory changes, for
+ * working on the frontend without restarts.
+ */
+public final class StaticAssets {
+
+    /** One file. {@code gzip} is null when compressing does not pay. */
+    public record Asset(String contentType, byte[] identity, byte[] gzip, String etag, String gzipEtag) { }
+
+    private final Path dir;
+    private volatile Map<String, Asset> assets = Map.of();
+
+    public StaticAssets(Path dir) throws IOException {
+        this.dir = dir;
+        reload();
+    }
+
+    /** The asset at {@code path} ("/app.js"), or null. */
+    public Asset get(String path) { return assets.get(path); }
+
+    public int size() { return assets.size(); }
+
+    public void reload() throws IOException {
+        if (!Files.isDirectory(dir)) {
+            System.err.println("Frontend directory " + dir.toAbsolutePath() + " not found; serving no static files");
+            assets = Map.of();
+            return;
+        }
+        Map<String, Asset> next = new HashMap<>();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                Path rel = dir.relativize(p);
+                if (rel.toString().startsWith(".")) continue;
+                StringBuilder key = new StringBuilder();
+                for (Path part : rel) key.append('/').append(part);
+                next.put(key.toString(), load(p));
+            }
+        }
+        assets = Map.copyOf(next);
+    }
+
+    private static Asset load(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        ByteArrayOutputStream gz = new ByteArrayOutputStream(bytes.length / 3 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(gz) {{ def.setLevel(Deflater.BEST_COMPRESSION); }}) {
+            out.write(bytes);
+        }
+        String hash;
+        try { hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes), 0, 8); }
+        catch (NoSuchAlgorithmException e) { throw new IllegalStateException(e); }
+        boolean pays = gz.size() < bytes.length;
+        return new Asset(contentType(file.getFileName().toString()), bytes, pays ? gz.toByteArray() : null,
+                "\"" + hash + "\"", "\"" + hash + "-gz\"");
+    }
+
+    private static String contentType(String name) {
+        String ext = name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        return switch (ext) {
+            case "html", "htm" -> "text/html; charset=UTF-8";
+            case "js"          -> "application/javascript; charset=UTF-8";
+            case "css"         -> "text/css; charset=UTF-8";
+            case "json"        -> "application/json; charset=UTF-8";
+            case "svg"         -> "image/svg+xml";
+            case "png"         -> "image/png";
+            case "ico"         -> "image/x-icon";
+            case "txt"         -> "text/plain; charset=UTF-8";
+            default            -> "application/octet-stream";
+        };
+    }
+
+    /**
+     * False for request paths that try to leave the frontend directory or are not plain
+     * paths: "..", ".", empty segments past the root, backslashes, control characters.
+     */
+    public static boolean safe(String path) {
+        if (!path.startsWith("/")) return false;
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c < 0x20 || c == '\\' || c == 0x7F) return false;
+        }
+        for (String seg : path.substring(1).split("/", -1)) {
+            if (seg.isEmpty() || seg.equals(".") || seg.equals("..")) return false;
+        }
+        return true;
+    }
+
+    /** Whether an If-None-Match header names either form of {@code a} (weak comparison, as RFC 9110 asks). */
+    public static boolean notModified(String ifNoneMatch, Asset a) {
+        if (ifNoneMatch == null) return false;
+        for (String tag : ifNoneMatch.split(",")) {
+            String t = tag.trim();
+            if (t.equals("*")) return true;
+            if (t.startsWith("W/")) t = t.substring(2);
+            if (t.equals(a.etag()) || t.equals(a.gzipEtag())) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reloads on any change under the directory, on a daemon thread, until the JVM exits.
+     * Directories created later are watched from then on.
+     */
+    public void watch() throws IOException {
+        if (!Files.isDirectory(dir)) return;
+        WatchService ws = FileSystems.getDefault().newWatchService();
+        register(ws, dir);
+        Thread t = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey key = ws.take();
+                    Thread.sleep(100);                   // let an editor finish writing
+                    List<WatchEvent<?>> events = key.pollEvents();
+                    key.reset();
+                    if (events.isEmpty()) continue;
+                    try {
+                        for (WatchEvent<?> e : events) {
+                            if (e.kind() != StandardWatchEventKinds.ENTRY_CREATE) continue;
+                            Path created = ((Path) key.watchable()).resolve((Path) e.context());
+                            if (Files.isDirectory(created)) register(ws, created);
+                        }
+                        reload();
+                        System.out.println("Frontend reloaded, " + size() + " files.");
+                    } catch (IOException | RuntimeException e) {
+                        System.err.println("Error: reloading frontend: " + e.getMessage());
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // exiting
+            }
+        }, "frontend-watch");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // root and every directory under it; a directory moved in with its contents is one event
+    private static void register(WatchService ws, Path root) throws IOException {
+        try (Stream<Path> dirs = Files.walk(root)) {
+            for (Path d : (Iterable<Path>) dirs.filter(Files::isDirectory)::iterator)
+                d.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                           StandardWatchEventKinds.ENTRY_DELETE);
+        }
+    }
+}
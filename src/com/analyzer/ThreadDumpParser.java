@@ -1,176 +1,594 @@
 package com.analyzer;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
-import java.util.regex.*;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
 
 public class ThreadDumpParser {
 
-    // ── Header line patterns ─────────────────────────────────────────────────
+    // ── Header line ──────────────────────────────────────────────────────────
     // Format: "Name" #N [osId] daemon prio=N os_prio=N cpu=N.Nms elapsed=N.Ns tid=0x... nid=N/0x... ...
-    private static final Pattern P_NAME       = Pattern.compile("^\"(.+?)\"");
-    private static final Pattern P_THREAD_NUM = Pattern.compile("#(\\d+)");
-    // [644252] — OS thread ID in brackets (newer JDK format)
-    private static final Pattern P_BRACKET_ID = Pattern.compile("\\[(\\d+)\\]");
-    private static final Pattern P_PRIO       = Pattern.compile("\\bprio=(\\d+)");
-    private static final Pattern P_OS_PRIO    = Pattern.compile("os_prio=(\\d+)");
-    private static final Pattern P_CPU        = Pattern.compile("cpu=([\\d.]+)ms");
-    // elapsed can be in seconds (elapsed=18271.47s) or ms (elapsed=18271470ms)
-    private static final Pattern P_ELAPSED_S  = Pattern.compile("elapsed=([\\d.]+)s\\b");
-    private static final Pattern P_ELAPSED_MS = Pattern.compile("elapsed=([\\d.]+)ms\\b");
-    private static final Pattern P_TID        = Pattern.compile("tid=(0x[0-9a-fA-F]+)");
-    // nid can be hex (nid=0x1a2b) or decimal (nid=644252)
-    private static final Pattern P_NID_HEX    = Pattern.compile("nid=(0x[0-9a-fA-F]+)");
-    private static final Pattern P_NID_DEC    = Pattern.compile("\\bnid=(\\d+)\\b");
+    // Scanned left to right once: after the quoted name, each whitespace-separated token is
+    // dispatched on its first character and its number parsed in place.
+    //   #N          JVM thread number          [644252]   OS thread ID (newer JDK format)
+    //   elapsed=    seconds (elapsed=18271.47s) or ms (elapsed=18271470ms)
+    //   nid=        hex (nid=0x1a2b) or decimal (nid=644252)
 
     // ── State line ───────────────────────────────────────────────────────────
-    private static final Pattern P_STATE      = Pattern.compile(
-            "java\\.lang\\.Thread\\.State:\\s*(\\S+)\\s*(.*)");
+    private static final String STATE_KEY = "java.lang.Thread.State:";
 
-    // ── Lock lines inside stack trace ────────────────────────────────────────
-    private static final Pattern P_LOCK_WAIT  = Pattern.compile(
-            "-\\s*waiting (?:to lock|on) <([^>]+)>(?:\\s*\\((.+?)\\))?");
-    private static final Pattern P_LOCKED     = Pattern.compile(
-            "-\\s*locked <([^>]+)>(?:\\s*\\((.+?)\\))?");
-    private static final Pattern P_PARKING    = Pattern.compile(
-            "-\\s*parking to wait for\\s*<([^>]+)>(?:\\s*\\((.+?)\\))?");
+    // ── Trailer after a thread's stack (jstack -l / jcmd Thread.print -l) ─────
+    private static final String OWNABLE_KEY = "Locked ownable synchronizers:";
+
+    // Canonical Thread.State names, so every thread shares one String per state
+    private static final String[] STATES = {
+            "NEW", "RUNNABLE", "BLOCKED", "WAITING", "TIMED_WAITING", "TERMINATED" };
+
+    // Powers of ten that are exact as doubles — m / 10^k is then correctly rounded, like parseDouble
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15 };
+
+    private final StackTable stacks;
+    private final Map<String, String> lockAddresses = new HashMap<>();   // one String per lock address
+
+    public ThreadDumpParser() { this(new StackTable()); }
+
+    /** Parser that interns frames and stacks into {@code stacks}, e.g. to share one table across dumps. */
+    public ThreadDumpParser(StackTable stacks) { this.stacks = stacks; }
+
+    /** Distinct frames and stacks seen so far; every parsed ThreadInfo.stack points into it. */
+    public StackTable stackTable() { return stacks; }
 
     public List<ThreadInfo> parse(String content) {
         List<ThreadInfo> threads = new ArrayList<>();
-        String[] lines = content.split("\n");
-        int i = 0;
-
-        while (i < lines.length) {
-            String line = lines[i].trim();
-            Matcher nameMatcher = P_NAME.matcher(line);
-            if (!nameMatcher.find()) { i++; continue; }
-
-            ThreadInfo t = new ThreadInfo(nameMatcher.group(1));
-
-            // ── Parse header fields ──────────────────────────────────────────
-            extractInt(P_THREAD_NUM, line).ifPresent(v -> t.threadNum  = v);
-            extractInt(P_PRIO,       line).ifPresent(v -> t.priority   = v);
-            extractInt(P_OS_PRIO,    line).ifPresent(v -> t.osPriority = v);
-            extractDouble(P_CPU,     line).ifPresent(v -> t.cpuMs      = v);
-            extractStr(P_TID,        line).ifPresent(v -> t.tid        = v);
-            t.daemon = line.contains(" daemon ");
-
-            // elapsed: prefer seconds format (newer JDKs), fall back to ms
-            boolean elapsedFound = false;
-            Matcher elS = P_ELAPSED_S.matcher(line);
-            if (elS.find()) {
-                t.elapsedMs = Double.parseDouble(elS.group(1)) * 1000.0; // convert s → ms
-                elapsedFound = true;
+        Incremental feed = incremental(threads::add);
+        feedLines(content, 0, content.length(), feed);
+        feed.finish();
+        return threads;
+    }
+
+    private static void feedLines(String content, int from, int to, Incremental feed) {
+        int start = from;
+        while (start < to) {
+            int nl = content.indexOf('\n', start);
+            if (nl < 0 || nl > to) nl = to;
+            feed.accept(content.substring(start, nl));
+            start = nl + 1;
+        }
+    }
+
+    /** Parses a dump line by line from {@code in}, handing each thread to {@code sink} as soon as it is complete. */
+    public void parse(Reader in, Consumer<ThreadInfo> sink) throws IOException {
+        incremental(sink).readAll(in);
+    }
+
+    public Incremental incremental(Consumer<ThreadInfo> sink) {
+        return new Incremental(sink);
+    }
+
+    // ── Parallel parse ───────────────────────────────────────────────────────
+    // Every line whose trimmed form starts with '"' ends the block before it and resets the
+    // parser state, so the input can be cut at such lines and the pieces parsed independently.
+    // Each piece interns into its own StackTable; the pieces are then folded into this parser's
+    // table in input order, which reproduces the ids a sequential parse would have assigned.
+
+    /** Inputs smaller than this are parsed sequentially — splitting would cost more than it saves. */
+    public static final int PARALLEL_THRESHOLD = 4 * 1024 * 1024;
+
+    private static final int MIN_CHUNK = 1024 * 1024;
+
+    private record Chunk(List<ThreadInfo> threads, StackTable stacks) { }
+
+    /** Same result as {@link #parse(String)}, with the work spread over {@code pool}. */
+    public List<ThreadInfo> parseParallel(String content, ForkJoinPool pool) {
+        int n = content.length();
+        if (n < PARALLEL_THRESHOLD || pool.getParallelism() < 2) return parse(content);
+
+        int[] cuts = cuts(n, pool, at -> nextHeader(content, at));
+        List<ForkJoinTask<Chunk>> parts = new ArrayList<>(cuts.length);
+        for (int i = 0; i + 1 < cuts.length; i++) {
+            int from = cuts[i], to = cuts[i + 1];
+            parts.add(pool.submit(() -> {
+                ThreadDumpParser p = new ThreadDumpParser();
+                List<ThreadInfo> threads = new ArrayList<>();
+                Incremental feed = p.incremental(threads::add);
+                feedLines(content, from, to, feed);
+                feed.finish();
+                return new Chunk(threads, p.stacks);
+            }));
+        }
+        return merge(parts);
+    }
+
+    /**
+     * Parses UTF-8 bytes — typically a mapped upload — with the work spread over {@code pool}.
+     * Lines split like {@link #parse(Reader, Consumer)}; the result is the threads in input order.
+     */
+    public List<ThreadInfo> parseParallel(ByteBuffer utf8, ForkJoinPool pool) {
+        int n = utf8.remaining();
+        if (n < PARALLEL_THRESHOLD || pool.getParallelism() < 2) {
+            List<ThreadInfo> threads = new ArrayList<>();
+            readAll(utf8, incremental(threads::add));
+            return threads;
+        }
+
+        ByteBuffer all = utf8.slice();
+        int[] cuts = cuts(n, pool, at -> nextHeader(all, at));
+        List<ForkJoinTask<Chunk>> parts = new ArrayList<>(cuts.length);
+        for (int i = 0; i + 1 < cuts.length; i++) {
+            ByteBuffer piece = all.slice(cuts[i], cuts[i + 1] - cuts[i]);
+            parts.add(pool.submit(() -> {
+                ThreadDumpParser p = new ThreadDumpParser();
+                List<ThreadInfo> threads = new ArrayList<>();
+                readAll(piece, p.incremental(threads::add));
+                return new Chunk(threads, p.stacks);
+            }));
+        }
+        return merge(parts);
+    }
+
+    private static void readAll(ByteBuffer utf8, Incremental feed) {
+        ByteBuffer b = utf8.duplicate();
+        InputStream in = new InputStream() {
+            @Override public int read() { return b.hasRemaining() ? b.get() & 0xFF : -1; }
+            @Override public int read(byte[] dst, int off, int len) {
+                if (!b.hasRemaining()) return -1;
+                int k = Math.min(len, b.remaining());
+                b.get(dst, off, k);
+                return k;
+            }
+        };
+        try { feed.readAll(new InputStreamReader(in, StandardCharsets.UTF_8)); }
+        catch (IOException e) { throw new UncheckedIOException(e); }
+    }
+
+    // Chunk starts: 0, then the first header line at or after each multiple of the chunk size, then n
+    private static int[] cuts(int n, ForkJoinPool pool, IntUnaryOperator nextHeader) {
+        int chunk = Math.max(MIN_CHUNK, n / (pool.getParallelism() * 4));
+        int[] cuts = new int[8];
+        int count = 1;
+        for (int at = chunk; at < n; ) {
+            int c = nextHeader.applyAsInt(at);
+            if (c >= n) break;
+            if (count + 1 == cuts.length) cuts = Arrays.copyOf(cuts, cuts.length * 2);
+            cuts[count++] = c;
+            at = c + chunk;
+        }
+        cuts[count++] = n;
+        return Arrays.copyOf(cuts, count);
+    }
+
+    // Start of the first line after {@code at} whose trimmed form begins with '"', or the length
+    private static int nextHeader(String s, int at) {
+        int n = s.length();
+        for (int i = s.indexOf('\n', at); i >= 0; i = s.indexOf('\n', i + 1)) {
+            int k = i + 1;
+            while (k < n && s.charAt(k) <= ' ' && s.charAt(k) != '\n') k++;
+            if (k < n && s.charAt(k) == '"') return i + 1;
+        }
+        return n;
+    }
+
+    // Same on bytes; '\r' ends a line too, as it does for BufferedReader.readLine
+    private static int nextHeader(ByteBuffer b, int at) {
+        int n = b.limit();
+        for (int i = at; i < n; i++) {
+            if (b.get(i) != '\n') continue;
+            int k = i + 1;
+            while (k < n && (b.get(k) & 0xFF) <= ' ' && b.get(k) != '\n' && b.get(k) != '\r') k++;
+            if (k < n && b.get(k) == '"') return i + 1;
+        }
+        return n;
+    }
+
+    // Joins the chunks in order, re-pointing each thread at this parser's shared stack
+    private List<ThreadInfo> merge(List<ForkJoinTask<Chunk>> parts) {
+        List<ThreadInfo> threads = new ArrayList<>();
+        for (ForkJoinTask<Chunk> part : parts) {
+            Chunk c = part.join();
+            StackSignature[] map = stacks.absorb(c.stacks);
+            for (ThreadInfo t : c.threads) {
+                t.stack      = map[t.stack.id];
+                t.stackTrace = t.stack.text;
+                threads.add(t);
             }
-            if (!elapsedFound) {
-                Matcher elMs = P_ELAPSED_MS.matcher(line);
-                if (elMs.find()) t.elapsedMs = Double.parseDouble(elMs.group(1));
+        }
+        return threads;
+    }
+
+    /**
+     * Line-at-a-time parser state. Only the thread block currently being read is held in memory;
+     * each {@link ThreadInfo} is emitted once the line that ends its block has been seen. Stack
+     * lines are interned into the parser's {@link StackTable} as they arrive.
+     */
+    public final class Incremental {
+        private static final int OUTSIDE = 0, AFTER_HEADER = 1, IN_STACK = 2, TRAILER = 3, OWNABLE = 4;
+
+        private final Consumer<ThreadInfo> sink;
+        private final StringBuilder lockBuf = new StringBuilder();
+        private final List<LockRef> locks   = new ArrayList<>();
+        private int[] frames = new int[64];     // interned ids of the current block's stack lines
+        private int   depth;
+        private ThreadInfo current;
+        private int     mode = OUTSIDE;
+        private boolean sawContent;
+
+        private Incremental(Consumer<ThreadInfo> sink) { this.sink = sink; }
+
+        /** True once any non-blank line has been fed. */
+        public boolean sawContent() { return sawContent; }
+
+        public void readAll(Reader in) throws IOException {
+            BufferedReader br = in instanceof BufferedReader b ? b : new BufferedReader(in, 1 << 16);
+            for (String line; (line = br.readLine()) != null; ) accept(line);
+            finish();
+        }
+
+        public void accept(String line) {
+            // Bounds of the trimmed line, without allocating a trimmed copy
+            int s = 0, e = line.length();
+            while (s < e && line.charAt(s) <= ' ')     s++;
+            while (e > s && line.charAt(e - 1) <= ' ') e--;
+            if (s < e) sawContent = true;
+
+            if (mode == TRAILER || mode == OWNABLE) {
+                // Stack ended at a blank line; the block may still list its ownable synchronizers
+                if (s == e) return;
+                if (line.startsWith(OWNABLE_KEY, s)) { mode = OWNABLE; return; }
+                if (mode == OWNABLE && line.charAt(s) == '-') { matchOwnable(line, s, e); return; }
+                emit();
             }
 
-            // nid: try hex first, then decimal
-            Matcher nidHex = P_NID_HEX.matcher(line);
-            if (nidHex.find()) {
-                String hex = nidHex.group(1);
-                t.nid = hex;
-                try { t.nidDecimal = String.valueOf(Long.parseLong(hex.substring(2), 16)); }
-                catch (NumberFormatException ignored) {}
-            } else {
-                // decimal nid (newer JDK: nid=644252)
-                Matcher nidDec = P_NID_DEC.matcher(line);
-                if (nidDec.find()) {
-                    String dec = nidDec.group(1);
-                    t.nidDecimal = dec;
-                    t.nid = "0x" + Long.toHexString(Long.parseLong(dec)); // also store as hex
-                }
+            if (mode == AFTER_HEADER) {
+                // Skip blank lines before state line
+                if (s == e) return;
+                mode = IN_STACK;
+                if (parseState(current, line, s, e)) return;
             }
 
-            // [osId] bracket — some JDKs put OS thread ID here too; use as nidDecimal if not set
-            if (t.nidDecimal.isEmpty()) {
-                // skip the first bracket match if it's the thread number area
-                Matcher bm = P_BRACKET_ID.matcher(line);
-                // skip past #N first
-                int searchFrom = 0;
-                Matcher tnm = P_THREAD_NUM.matcher(line);
-                if (tnm.find()) searchFrom = tnm.end();
-                bm.region(searchFrom, line.length());
-                if (bm.find()) {
-                    t.nidDecimal = bm.group(1);
-                    t.nid = "0x" + Long.toHexString(Long.parseLong(bm.group(1)));
+            if (mode == IN_STACK) {
+                // Collect stack trace + lock info
+                if (s == e) { mode = TRAILER; return; }
+                char c = line.charAt(s);
+                if (c == '"'
+                        || (c == 'J' && line.startsWith("JNI global", s))
+                        || (c == 'F' && line.startsWith("Found ", s))) {
+                    emit();
+                } else {
+                    if (c == '-') matchLock(line, s, e, lockBuf, locks);
+                    if (depth == frames.length) frames = Arrays.copyOf(frames, depth * 2);
+                    frames[depth++] = stacks.frame(line);
+                    return;
                 }
             }
 
-            // CPU% only when both cpu and elapsed are present
-            if (t.cpuMs >= 0 && t.elapsedMs > 0)
-                t.cpuPercent = (t.cpuMs / t.elapsedMs) * 100.0;
+            // Header: "name" — at least one character between the quotes
+            if (e - s < 3 || line.charAt(s) != '"') return;
+            int q = line.indexOf('"', s + 2);
+            if (q < 0 || q >= e) return;
+            current = parseHeader(line, s, q, e);
+            mode    = AFTER_HEADER;
+        }
+
+        /** Flushes the thread still being read at end of input. */
+        public void finish() {
+            if (current != null) emit();
+        }
+
+        private void emit() {
+            ThreadInfo t = current;
+            StackSignature sig = stacks.intern(frames, depth);
+            sig.threads++;
+            t.stack      = sig;
+            t.stackTrace = sig.text;
+            t.lockInfo   = trimmed(lockBuf);
+            if (!locks.isEmpty()) t.locks = List.copyOf(locks);
+            t.computeHealth();
+            depth = 0;
+            lockBuf.setLength(0);
+            locks.clear();
+            current = null;
+            mode    = OUTSIDE;
+            sink.accept(t);
+        }
+
+        // "- <0x000000076b3e2de8> (a java.util.concurrent.locks.ReentrantLock$NonfairSync)"; "- None" has no address
+        private void matchOwnable(String line, int s, int e) {
+            int open = line.indexOf('<', s + 1);
+            if (open < 0 || open >= e) return;
+            int close = line.indexOf('>', open + 2);
+            if (close < 0 || close >= e) return;
+            locks.add(new LockRef(LockRef.Kind.OWNS, address(line, open + 1, close), lockClass(line, close + 1, e)));
+        }
+    }
 
-            int j = i + 1;
+    // ── Header scanner ────────────────────────────────────────────────────────
 
-            // Skip blank lines before state line
-            while (j < lines.length && lines[j].trim().isEmpty()) j++;
+    /** {@code s..e} are the trimmed bounds of {@code line}; the name ends at the quote at {@code q}. */
+    private ThreadInfo parseHeader(String line, int s, int q, int e) {
+        ThreadInfo t = new ThreadInfo(line.substring(s + 1, q));
 
-            // Parse Thread.State line
-            if (j < lines.length) {
-                Matcher sm = P_STATE.matcher(lines[j].trim());
-                if (sm.find()) {
-                    t.state       = sm.group(1).trim();
-                    t.stateDetail = sm.group(2).trim();
-                    j++;
+        int bracketFrom = -1, bracketTo = -1;   // [osId] seen after #N
+        int elSFrom = -1, elSTo = -1, elMsFrom = -1, elMsTo = -1;
+        int nidHexFrom = -1, nidHexTo = -1, nidDecFrom = -1, nidDecTo = -1;
+        boolean numSeen = false, prioSeen = false, osPrioSeen = false, cpuSeen = false;
+
+        int i = q + 1;
+        while (i < e) {
+            while (i < e && line.charAt(i) <= ' ') i++;
+            int ts = i;
+            while (i < e && line.charAt(i) > ' ')  i++;
+            int te = i;
+            if (ts == te) break;
+
+            int v;
+            switch (line.charAt(ts)) {
+                case '#' -> {
+                    if (!numSeen && (v = digitsEnd(line, ts + 1, te)) > ts + 1) {
+                        t.threadNum = parseInt(line, ts + 1, v);
+                        numSeen     = true;
+                        bracketFrom = -1;           // an [osId] only counts after #N
+                    }
+                }
+                case '[' -> {
+                    if (bracketFrom < 0 && (v = digitsEnd(line, ts + 1, te)) > ts + 1 && v < te && line.charAt(v) == ']') {
+                        bracketFrom = ts + 1;
+                        bracketTo   = v;
+                    }
+                }
+                case 'd' -> {
+                    // " daemon " — needs a space on both sides
+                    if (te - ts == 6 && line.startsWith("daemon", ts)
+                            && line.charAt(ts - 1) == ' ' && te < e && line.charAt(te) == ' ')
+                        t.daemon = true;
+                }
+                case 'p' -> {
+                    if (!prioSeen && line.startsWith("prio=", ts) && (v = digitsEnd(line, ts + 5, te)) > ts + 5) {
+                        t.priority = parseInt(line, ts + 5, v);
+                        prioSeen   = true;
+                    }
+                }
+                case 'o' -> {
+                    if (!osPrioSeen && line.startsWith("os_prio=", ts) && (v = digitsEnd(line, ts + 8, te)) > ts + 8) {
+                        t.osPriority = parseInt(line, ts + 8, v);
+                        osPrioSeen   = true;
+                    }
+                }
+                case 'c' -> {
+                    if (!cpuSeen && line.startsWith("cpu=", ts) && (v = decimalEnd(line, ts + 4, te)) > ts + 4
+                            && line.startsWith("ms", v) && v + 2 <= te) {
+                        t.cpuMs = parseDecimal(line, ts + 4, v);
+                        cpuSeen = true;
+                    }
                 }
+                case 'e' -> {
+                    if (line.startsWith("elapsed=", ts) && (v = decimalEnd(line, ts + 8, te)) > ts + 8) {
+                        if (v < te && line.charAt(v) == 's' && !isWordChar(line, v + 1, te)) {
+                            if (elSFrom < 0)  { elSFrom = ts + 8;  elSTo = v; }
+                        } else if (line.startsWith("ms", v) && v + 2 <= te && !isWordChar(line, v + 2, te)) {
+                            if (elMsFrom < 0) { elMsFrom = ts + 8; elMsTo = v; }
+                        }
+                    }
+                }
+                case 't' -> {
+                    if (t.tid.isEmpty() && line.startsWith("tid=0x", ts) && (v = hexEnd(line, ts + 6, te)) > ts + 6)
+                        t.tid = line.substring(ts + 4, v);
+                }
+                case 'n' -> {
+                    if (line.startsWith("nid=", ts)) {
+                        if (line.startsWith("0x", ts + 4) && (v = hexEnd(line, ts + 6, te)) > ts + 6) {
+                            if (nidHexFrom < 0) { nidHexFrom = ts + 4; nidHexTo = v; }
+                        } else if ((v = digitsEnd(line, ts + 4, te)) > ts + 4 && !isWordChar(line, v, te)) {
+                            if (nidDecFrom < 0) { nidDecFrom = ts + 4; nidDecTo = v; }
+                        }
+                    }
+                }
+                default -> { }
             }
+        }
 
-            // Collect stack trace + lock info
-            StringBuilder stack   = new StringBuilder();
-            StringBuilder lockBuf = new StringBuilder();
+        // elapsed: prefer seconds format (newer JDKs), fall back to ms
+        if (elSFrom >= 0)       t.elapsedMs = parseDecimal(line, elSFrom, elSTo) * 1000.0; // convert s → ms
+        else if (elMsFrom >= 0) t.elapsedMs = parseDecimal(line, elMsFrom, elMsTo);
 
-            while (j < lines.length) {
-                String sl = lines[j];
-                String st = sl.trim();
-                if (st.isEmpty())                { j++; break; }
-                if (st.startsWith("\""))         { break; }
-                if (st.startsWith("JNI global")) { break; }
-                if (st.startsWith("Found "))     { break; }
+        // nid: hex first, then decimal
+        if (nidHexFrom >= 0) {
+            t.nid = line.substring(nidHexFrom, nidHexTo);
+            long dec = parseHex(line, nidHexFrom + 2, nidHexTo);
+            if (dec >= 0) t.nidDecimal = String.valueOf(dec);
+        } else if (nidDecFrom >= 0) {
+            // decimal nid (newer JDK: nid=644252)
+            t.nidDecimal = line.substring(nidDecFrom, nidDecTo);
+            t.nid = "0x" + Long.toHexString(parseLong(line, nidDecFrom, nidDecTo)); // also store as hex
+        }
 
-                matchLock(P_LOCK_WAIT, st, lockBuf, "waiting on");
-                matchLock(P_LOCKED,    st, lockBuf, "locked");
-                matchLock(P_PARKING,   st, lockBuf, "parking for");
+        // [osId] bracket — some JDKs put OS thread ID here too; use as nidDecimal if not set
+        if (t.nidDecimal.isEmpty() && bracketFrom >= 0) {
+            t.nidDecimal = line.substring(bracketFrom, bracketTo);
+            t.nid = "0x" + Long.toHexString(parseLong(line, bracketFrom, bracketTo));
+        }
 
-                stack.append(sl).append("\n");
-                j++;
-            }
+        // CPU% only when both cpu and elapsed are present
+        if (t.cpuMs >= 0 && t.elapsedMs > 0)
+            t.cpuPercent = (t.cpuMs / t.elapsedMs) * 100.0;
 
-            t.stackTrace = stack.toString().trim();
-            t.lockInfo   = lockBuf.toString().trim();
+        return t;
+    }
 
-            t.computeHealth();
-            threads.add(t);
-            i = j;
+    /** "java.lang.Thread.State: STATE detail" — returns false when the line is not a state line. */
+    private static boolean parseState(ThreadInfo t, String line, int s, int e) {
+        int k = line.indexOf(STATE_KEY, s);
+        if (k < 0 || k >= e) return false;
+        k += STATE_KEY.length();
+        while (k < e && isSpace(line.charAt(k))) k++;
+        int vs = k;
+        while (k < e && !isSpace(line.charAt(k))) k++;
+        if (k == vs) return false;
+        t.state = stateName(line, vs, k);
+        while (k < e && isSpace(line.charAt(k))) k++;
+        t.stateDetail = k < e ? line.substring(k, e).trim() : "";
+        return true;
+    }
+
+    private static String stateName(String line, int from, int to) {
+        for (String st : STATES)
+            if (st.length() == to - from && line.startsWith(st, from)) return st;
+        return line.substring(from, to);
+    }
+
+    // ── Lock lines inside stack trace ─────────────────────────────────────────
+    //   - waiting to lock <0x...> (a X)     - waiting on <0x...> (a X)
+    //   - locked <0x...> (a X)              - parking to wait for  <0x...> (a X)
+
+    // Appends the lockInfo text and records the structured LockRef.
+    // "waiting to re-lock in wait()" is recorded structurally only; lockInfo keeps its existing labels.
+    private void matchLock(String line, int s, int e, StringBuilder buf, List<LockRef> refs) {
+        int k = s + 1;
+        while (k < e && isSpace(line.charAt(k))) k++;
+
+        String label;
+        LockRef.Kind kind;
+        if (line.startsWith("waiting to lock <", k))   { label = "waiting on";  kind = LockRef.Kind.WAITING_TO_LOCK; k += 16; }
+        else if (line.startsWith("waiting on <", k))   { label = "waiting on";  kind = LockRef.Kind.WAITING_ON;      k += 11; }
+        else if (line.startsWith("locked <", k))       { label = "locked";      kind = LockRef.Kind.LOCKED;          k += 7; }
+        else if (line.startsWith("waiting to re-lock in wait() <", k)) {
+            label = null;
+            kind  = LockRef.Kind.WAITING_TO_LOCK;
+            k += 29;
         }
+        else if (line.startsWith("parking to wait for", k)) {
+            label = "parking for";
+            kind  = LockRef.Kind.PARKING;
+            k += 19;
+            while (k < e && isSpace(line.charAt(k))) k++;
+            if (k >= e || line.charAt(k) != '<') return;
+        } else return;
 
-        return threads;
+        // <address> — at least one character, no '>' inside
+        int close = line.indexOf('>', k + 2);
+        if (close < 0 || close >= e) return;
+
+        // "<no object reference available>" and similar placeholders are not addresses
+        if (line.startsWith("0x", k + 1))
+            refs.add(new LockRef(kind, address(line, k + 1, close), lockClass(line, close + 1, e)));
+        if (label == null) return;
+
+        if (buf.length() > 0) buf.append("; ");
+        buf.append(label).append(" <").append(line, k + 1, close).append('>');
+
+        // optional "(a java.lang.Object)"
+        int p = close + 1;
+        while (p < e && isSpace(line.charAt(p))) p++;
+        if (p < e && line.charAt(p) == '(') {
+            int cp = line.indexOf(')', p + 2);
+            if (cp >= 0 && cp < e) buf.append(" (").append(line, p + 1, cp).append(')');
+        }
+    }
+
+    private String address(String line, int from, int to) {
+        return lockAddresses.computeIfAbsent(line.substring(from, to), a -> a);
+    }
+
+    /** Class from an optional "(a java.lang.Object)" at or after {@code from}; "" if absent. */
+    private static String lockClass(String line, int from, int e) {
+        int p = from;
+        while (p < e && isSpace(line.charAt(p))) p++;
+        if (p >= e || line.charAt(p) != '(') return "";
+        int cp = line.indexOf(')', p + 2);
+        if (cp < 0 || cp >= e) return "";
+        int cs = line.startsWith("a ", p + 1) ? p + 3 : p + 1;
+        return line.substring(cs, cp);
     }
 
     // ── Helpers ───────────────────────────────────────────────────────────────
 
-    private void matchLock(Pattern p, String line, StringBuilder buf, String label) {
-        Matcher m = p.matcher(line);
-        if (m.find()) {
-            if (buf.length() > 0) buf.append("; ");
-            buf.append(label).append(" <").append(m.group(1)).append(">");
-            if (m.groupCount() >= 2 && m.group(2) != null) buf.append(" (").append(m.group(2)).append(")");
-        }
+    private static String trimmed(StringBuilder sb) {
+        int s = 0, e = sb.length();
+        while (s < e && sb.charAt(s) <= ' ')     s++;
+        while (e > s && sb.charAt(e - 1) <= ' ') e--;
+        return sb.substring(s, e);
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0B;
+    }
+
+    /** Regex {@code \w} at {@code i}; positions at or past {@code end} count as a word boundary. */
+    private static boolean isWordChar(String s, int i, int end) {
+        if (i >= end) return false;
+        char c = s.charAt(i);
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static int digitsEnd(String s, int i, int end) {
+        while (i < end && s.charAt(i) >= '0' && s.charAt(i) <= '9') i++;
+        return i;
+    }
+
+    private static int decimalEnd(String s, int i, int end) {
+        while (i < end && ((s.charAt(i) >= '0' && s.charAt(i) <= '9') || s.charAt(i) == '.')) i++;
+        return i;
+    }
+
+    private static int hexEnd(String s, int i, int end) {
+        while (i < end && Character.digit(s.charAt(i), 16) >= 0 && s.charAt(i) < 128) i++;
+        return i;
     }
 
-    private Optional<Double>  extractDouble(Pattern p, String s) {
-        Matcher m = p.matcher(s);
-        return m.find() ? Optional.of(Double.parseDouble(m.group(1))) : Optional.empty();
+    private static int parseInt(String s, int from, int to) {
+        if (to - from > 9) return Integer.parseInt(s.substring(from, to));
+        int v = 0;
+        for (int i = from; i < to; i++) v = v * 10 + (s.charAt(i) - '0');
+        return v;
     }
-    private Optional<Integer> extractInt(Pattern p, String s) {
-        Matcher m = p.matcher(s);
-        return m.find() ? Optional.of(Integer.parseInt(m.group(1))) : Optional.empty();
+
+    private static long parseLong(String s, int from, int to) {
+        if (to - from > 18) return Long.parseLong(s.substring(from, to));
+        long v = 0;
+        for (int i = from; i < to; i++) v = v * 10 + (s.charAt(i) - '0');
+        return v;
+    }
+
+    /** Hex digits to a non-negative long, or -1 when the value does not fit (as Long.parseLong would reject). */
+    private static long parseHex(String s, int from, int to) {
+        long v = 0;
+        for (int i = from; i < to; i++) {
+            if (v > (Long.MAX_VALUE >> 4)) return -1;
+            v = (v << 4) | Character.digit(s.charAt(i), 16);
+        }
+        return v;
     }
-    private Optional<String>  extractStr(Pattern p, String s) {
-        Matcher m = p.matcher(s);
-        return m.find() ? Optional.of(m.group(1)) : Optional.empty();
+
+    /** Digits with an optional '.', parsed without a substring when the result is exact. */
+    private static double parseDecimal(String s, int from, int to) {
+        long m = 0;
+        int digits = 0, frac = -1;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == '.') {
+                if (frac >= 0) return Double.parseDouble(s.substring(from, to)); // rejects like the JDK does
+                frac = 0;
+                continue;
+            }
+            m = m * 10 + (c - '0');
+            digits++;
+            if (frac >= 0) frac++;
+        }
+        if (digits == 0 || digits > 15) return Double.parseDouble(s.substring(from, to));
+        return frac > 0 ? m / POW10[frac] : m;
     }
 }
@@ -1,20 +1,43 @@
 package com.analyzer;
 
+import com.sun.net.httpserver.Filter;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 public class ThreadDumpServer {
 
     private static final int[] PORTS = {8080, 8081, 8082, 9090, 9091};
 
     public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("batch")) {
+            BatchAnalyzer.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         if (args.length > 0) {
             startOn(Integer.parseInt(args[0]));
             return;
@@ -29,46 +52,226 @@ public class ThreadDumpServer {
         System.exit(1);
     }
 
-    private static void startOn(int port) throws Exception {
+    /** Starts the server on {@code port} (0 picks an ephemeral port) and returns it, already running. */
+    public static HttpServer startOn(int port) throws Exception {
+        Admission parses = new Admission(maxParses());
+        ResultCache cache = resultCache();
+        SessionStore sessions = sessionStore();
+        DumpIndex index = dumpIndex();
+        StaticAssets assets = staticAssets();
+        Metrics metrics = new Metrics();
         HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
-        server.createContext("/api/analyze", new AnalyzeHandler());
-        server.createContext("/health",      new HealthHandler());
-        server.createContext("/",            new FrontendHandler());  // serves frontend files
+        server.setExecutor(executor());
+        server.createContext("/api/analyze", new AnalyzeHandler(cache, sessions, index, metrics)).getFilters().addAll(List.of(metrics.filter("analyze"), parses));
+        server.createContext("/api/compare", new CompareHandler()).getFilters().addAll(List.of(metrics.filter("compare"), parses));
+        server.createContext("/api/sessions/", new SessionsHandler(sessions, cache)).getFilters().add(metrics.filter("sessions"));
+        server.createContext("/api/cache/stats", new CacheStatsHandler(cache)).getFilters().add(metrics.filter("cache"));
+        if (Boolean.parseBoolean(setting("live", "ANALYZER_LIVE", "false")))
+            server.createContext("/api/live", new LiveHandler(Integer.parseInt(setting("liveMax", "ANALYZER_LIVE_MAX", "4"))))
+                  .getFilters().add(metrics.filter("live"));
+        if (index != null) {
+            server.createContext("/api/index/", new IndexHandler(index)).getFilters().add(metrics.filter("index"));
+            metrics.counter("analyzer_index_dropped_total", "Uploads not indexed because the index queue was full", index::dropped);
+        }
+        server.createContext("/health",      new HealthHandler(parses, sessions)).getFilters().add(metrics.filter("health"));
+        server.createContext("/metrics",     new MetricsHandler(metrics));
+        server.createContext("/",            new FrontendHandler(assets)).getFilters().add(metrics.filter("static"));  // serves frontend files
         server.start();
+        port = server.getAddress().getPort();
         System.out.println("==============================================");
         System.out.println("  Thread Dump Analyzer running on :" + port);
         System.out.println("  Open: http://localhost:" + port);
+        System.out.println("  Concurrent parses: " + parses.capacity);
         System.out.println("==============================================");
+        return server;
+    }
+
+    // ── Configuration ─────────────────────────────────────────────────────────
+    //   -Danalyzer.executor=virtual|<n>   ANALYZER_EXECUTOR     request threads (default virtual)
+    //   -Danalyzer.maxParses=<n>          ANALYZER_MAX_PARSES   concurrent analyze/compare requests
+    //   -Danalyzer.cacheBytes=<n>         ANALYZER_CACHE_BYTES  in-memory result cache budget, 0 to disable
+    //   -Danalyzer.cacheDir=<path>        ANALYZER_CACHE_DIR    on-disk result cache (default none)
+    //   -Danalyzer.cacheDiskBytes=<n>     ANALYZER_CACHE_DISK_BYTES
+    //   -Danalyzer.sessions=<n>           ANALYZER_SESSIONS     analyzed dumps kept for paging (default 8)
+    //   -Danalyzer.sessionIdleMinutes=<n> ANALYZER_SESSION_IDLE_MINUTES (default 30)
+    //   -Danalyzer.live=true|false        ANALYZER_LIVE         live sampling of local JVMs, loopback clients only (default false)
+    //   -Danalyzer.liveMax=<n>            ANALYZER_LIVE_MAX     samplers running at once (default 4)
+    //   -Danalyzer.indexDir=<path>        ANALYZER_INDEX_DIR    search index of every dump analyzed (default none)
+    //   -Danalyzer.frontendDir=<path>     ANALYZER_FRONTEND_DIR static files, read once at startup (default frontend)
+    //   -Danalyzer.watchFrontend=true     ANALYZER_WATCH_FRONTEND  reload them when they change (default false)
+
+    /** Heap one in-flight parse is budgeted — interned frames, threads and the response being written. */
+    private static final long PARSE_HEAP_BYTES = 256L * 1024 * 1024;
+
+    static String setting(String name, String env, String def) {
+        String v = System.getProperty("analyzer." + name);
+        if (v == null || v.isBlank()) v = System.getenv(env);
+        return v == null || v.isBlank() ? def : v.trim();
+    }
+
+    // A thread per request, so /health and static files never wait behind an upload.
+    // A fixed pool is available for JVMs where virtual threads are unwanted; size it above maxParses.
+    static ExecutorService executor() {
+        String mode = setting("executor", "ANALYZER_EXECUTOR", "virtual");
+        if (mode.equals("virtual")) return Executors.newVirtualThreadPerTaskExecutor();
+        return Executors.newFixedThreadPool(Integer.parseInt(mode));
+    }
+
+    // One parse per core, as far as the heap allows
+    static int maxParses() {
+        String v = setting("maxParses", "ANALYZER_MAX_PARSES", "");
+        if (!v.isEmpty()) return Math.max(1, Integer.parseInt(v));
+        long byHeap = Runtime.getRuntime().maxMemory() / PARSE_HEAP_BYTES;
+        return (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), byHeap));
+    }
+
+    // An eighth of the heap, at most 256 MB, unless configured
+    static ResultCache resultCache() throws IOException {
+        long dflt = Math.min(256L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 8);
+        long mem  = Long.parseLong(setting("cacheBytes", "ANALYZER_CACHE_BYTES", String.valueOf(dflt)));
+        String dir = setting("cacheDir", "ANALYZER_CACHE_DIR", "");
+        long disk = Long.parseLong(setting("cacheDiskBytes", "ANALYZER_CACHE_DISK_BYTES", String.valueOf(2L << 30)));
+        return new ResultCache(mem, dir.isEmpty() ? null : Path.of(dir), disk);
+    }
+
+    static SessionStore sessionStore() {
+        int  max  = Integer.parseInt(setting("sessions", "ANALYZER_SESSIONS", "8"));
+        long idle = Long.parseLong(setting("sessionIdleMinutes", "ANALYZER_SESSION_IDLE_MINUTES", "30"));
+        return new SessionStore(max, idle * 60_000);
+    }
+
+    static DumpIndex dumpIndex() throws IOException {
+        String dir = setting("indexDir", "ANALYZER_INDEX_DIR", "");
+        return dir.isEmpty() ? null : new DumpIndex(Path.of(dir));
+    }
+
+    static StaticAssets staticAssets() throws IOException {
+        StaticAssets assets = new StaticAssets(Path.of(setting("frontendDir", "ANALYZER_FRONTEND_DIR", "frontend")));
+        if (Boolean.parseBoolean(setting("watchFrontend", "ANALYZER_WATCH_FRONTEND", "false"))) assets.watch();
+        return assets;
+    }
+
+    /**
+     * Caps the parses in flight. A POST that finds every permit taken is turned away at once with
+     * 503 and Retry-After rather than queued: a queued upload still holds its connection and its
+     * request body, and would only time out in the browser.
+     */
+    static class Admission extends Filter {
+        private static final int RETRY_AFTER_SECONDS = 5;
+
+        final int capacity;
+        private final Semaphore permits;
+
+        Admission(int capacity) {
+            this.capacity = capacity;
+            this.permits  = new Semaphore(capacity);
+        }
+
+        int inFlight() { return capacity - permits.availablePermits(); }
+
+        @Override
+        public void doFilter(HttpExchange ex, Chain chain) throws IOException {
+            if (!"POST".equals(ex.getRequestMethod())) { chain.doFilter(ex); return; }
+            if (!permits.tryAcquire()) {
+                ex.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+                ex.getResponseHeaders().set("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+                sendJson(ex, 503, "{\"error\":\"Server busy analyzing other dumps (limit " + capacity
+                        + "). Retry in a few seconds.\"}");
+                return;
+            }
+            try { chain.doFilter(ex); }
+            finally { permits.release(); }
+        }
+
+        @Override
+        public String description() { return "Limits concurrent dump parses"; }
     }
 
-    // GET / → serves frontend/index.html, app.js, style.css
+    /**
+     * GET / → serves frontend/index.html, app.js, style.css from {@link StaticAssets}, gzip-compressed
+     * when the client accepts it. Each response carries its ETag; a matching If-None-Match gets 304.
+     * Cache-Control is no-cache: browsers and the ingress may keep the files but revalidate each
+     * use, since index.html refers to app.js and style.css by fixed names.
+     */
     static class FrontendHandler implements HttpHandler {
+        private final StaticAssets assets;
+
+        FrontendHandler(StaticAssets assets) { this.assets = assets; }
+
         @Override
         public void handle(HttpExchange ex) throws IOException {
+            String method = ex.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                ex.getResponseHeaders().set("Allow", "GET, HEAD");
+                sendText(ex, 405, "Method not allowed");
+                return;
+            }
             String path = ex.getRequestURI().getPath();
             if (path.equals("/")) path = "/index.html";
-
-            java.io.File file = new java.io.File("frontend" + path);
-            if (!file.exists() || !file.isFile()) {
-                byte[] b = "Not found".getBytes(StandardCharsets.UTF_8);
-                ex.sendResponseHeaders(404, b.length);
-                try (OutputStream os = ex.getResponseBody()) { os.write(b); }
+            if (!StaticAssets.safe(path)) {
+                sendText(ex, 400, "Bad path");
+                return;
+            }
+            StaticAssets.Asset a = assets.get(path);
+            if (a == null) {
+                sendText(ex, 404, "Not found");
                 return;
             }
 
-            String ct = path.endsWith(".js")  ? "application/javascript; charset=UTF-8"
-                      : path.endsWith(".css") ? "text/css; charset=UTF-8"
-                      : "text/html; charset=UTF-8";
+            boolean gzip = a.gzip() != null && acceptsGzip(ex);
+            ex.getResponseHeaders().set("Content-Type", a.contentType());
+            ex.getResponseHeaders().set("Cache-Control", "no-cache");
+            ex.getResponseHeaders().set("ETag", gzip ? a.gzipEtag() : a.etag());
+            if (a.gzip() != null) ex.getResponseHeaders().set("Vary", "Accept-Encoding");
+            if (StaticAssets.notModified(ex.getRequestHeaders().getFirst("If-None-Match"), a)) {
+                ex.sendResponseHeaders(304, -1);
+                ex.close();
+                return;
+            }
+            byte[] body = gzip ? a.gzip() : a.identity();
+            if (gzip) ex.getResponseHeaders().set("Content-Encoding", "gzip");
+            if ("HEAD".equals(method)) {
+                ex.getResponseHeaders().set("Content-Length", String.valueOf(body.length));
+                ex.sendResponseHeaders(200, -1);
+                ex.close();
+                return;
+            }
+            ex.sendResponseHeaders(200, body.length);
+            try (OutputStream os = ex.getResponseBody()) { os.write(body); }
+        }
 
-            byte[] bytes = java.nio.file.Files.readAllBytes(file.toPath());
-            ex.getResponseHeaders().set("Content-Type", ct);
-            ex.sendResponseHeaders(200, bytes.length);
-            try (OutputStream os = ex.getResponseBody()) { os.write(bytes); }
+        private static void sendText(HttpExchange ex, int status, String text) throws IOException {
+            byte[] b = text.getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+            ex.sendResponseHeaders(status, b.length);
+            try (OutputStream os = ex.getResponseBody()) { os.write(b); }
         }
     }
 
-    // POST /api/analyze → JSON array of threads
+    /**
+     * POST /api/analyze → session summary; threads and stacks are then fetched from /api/sessions/{id}/...
+     *
+     * The upload is spooled and hashed before any parsing; the session id is that content hash.
+     * A dump analyzed before costs the hash and writing out its stored, gzip-compressed summary
+     * (X-Cache: HIT) while its session is still held or its snapshot is cached, so the follow-up
+     * requests find it. Otherwise it is parsed: uploads of {@link ThreadDumpParser#PARALLEL_THRESHOLD}
+     * and more are split at thread headers and parsed on all cores, smaller ones streamed.
+     */
     static class AnalyzeHandler implements HttpHandler {
+        private static final int SPOOL_IN_MEMORY = 8 * 1024 * 1024;
+
+        private final ResultCache  cache;
+        private final SessionStore sessions;
+        private final DumpIndex    index;      // null → not indexing
+        private final Metrics      metrics;
+
+        AnalyzeHandler(ResultCache cache, SessionStore sessions, DumpIndex index, Metrics metrics) {
+            this.cache    = cache;
+            this.sessions = sessions;
+            this.index    = index;
+            this.metrics  = metrics;
+        }
+
         @Override
         public void handle(HttpExchange ex) throws IOException {
             ex.getResponseHeaders().set("Access-Control-Allow-Origin",  "*");
@@ -84,6 +287,7 @@ public class ThreadDumpServer {
                 return;
             }
 
+            Metrics.Request m = metrics.begin();
             try {
                 String contentType = ex.getRequestHeaders().getFirst("Content-Type");
                 if (contentType == null || !contentType.contains("multipart/form-data")) {
@@ -91,36 +295,648 @@ public class ThreadDumpServer {
                     return;
                 }
 
-                String fileContent = MultipartParser.extractFileContent(ex.getRequestBody(), contentType);
-                if (fileContent == null || fileContent.trim().isEmpty()) {
-                    sendJson(ex, 400, "{\"error\":\"Uploaded file is empty\"}");
+                MultipartParser.PartStream part = MultipartParser.openFileStream(ex.getRequestBody(), contentType);
+                String name = part.fileName();
+                m.stage(Metrics.Stage.HASH);
+                try (InputStream file = m.input(part); Spool upload = Spool.of(file, SPOOL_IN_MEMORY)) {
+                    String id = upload.sha256();
+                    byte[] summary = storedSummary(id);
+                    if (summary != null) {
+                        m.cacheHit();
+                        m.stage(Metrics.Stage.SERIALIZE);
+                        ex.getResponseHeaders().set("X-Cache", "HIT");
+                        sendStored(ex, summary);
+                        return;
+                    }
+                    m.stage(Metrics.Stage.RESTORE);
+                    Session known = findSession(id, sessions, cache);
+                    if (known != null) {
+                        // Held or restored, but its summary has left the cache
+                        m.cacheHit();
+                        ex.getResponseHeaders().set("X-Cache", "HIT");
+                        sendSummary(ex, m, known);
+                        return;
+                    }
+                    ex.getResponseHeaders().set("X-Cache", "MISS");
+
+                    m.stage(Metrics.Stage.PARSE);
+                    ThreadDumpParser parser = new ThreadDumpParser();
+                    List<ThreadInfo> threads;
+                    boolean sawContent;
+                    if (upload.size() >= ThreadDumpParser.PARALLEL_THRESHOLD && upload.size() <= Integer.MAX_VALUE) {
+                        // Whole upload at hand: split it at thread headers and parse on all cores
+                        threads = parser.parseParallel(upload.buffer(), ForkJoinPool.commonPool());
+                        sawContent = true;
+                    } else {
+                        threads = new ArrayList<>();
+                        ThreadDumpParser.Incremental feed = parser.incremental(threads::add);
+                        try (InputStream in = upload.open()) {
+                            feed.readAll(new InputStreamReader(in, StandardCharsets.UTF_8));
+                        }
+                        sawContent = feed.sawContent();
+                    }
+                    respond(ex, m, parser, threads, sawContent, id, name);
+                }
+
+            } catch (Exception e) {
+                System.err.println("Error: " + e.getMessage());
+                sendJson(ex, 500, "{\"error\":\"" + String.valueOf(e.getMessage()).replace("\"", "'") + "\"}");
+            } finally {
+                m.end(ex.getResponseCode());
+            }
+        }
+
+        // The stored summary, if the session it describes can still be reached
+        private byte[] storedSummary(String id) {
+            if (!cache.enabled()) return null;
+            if (sessions.get(id) == null && !cache.contains(ResultCache.sessionKey(id))) return null;
+            return cache.get(ResultCache.summaryKey(id));
+        }
+
+        private void respond(HttpExchange ex, Metrics.Request m, ThreadDumpParser parser, List<ThreadInfo> threads,
+                             boolean sawContent, String id, String name) throws IOException {
+            m.threads(threads.size());
+            if (!sawContent) {
+                sendJson(ex, 400, "{\"error\":\"Uploaded file is empty\"}");
+                return;
+            }
+            if (threads.isEmpty()) {
+                sendJson(ex, 422, "{\"error\":\"No threads found. Is this a valid Java thread dump?\"}");
+                return;
+            }
+
+            m.stage(Metrics.Stage.SORT);
+            threads.sort((a, b) -> Double.compare(b.cpuMs, a.cpuMs));
+            m.stage(Metrics.Stage.LOCKS);
+            LockGraph locks = LockGraph.build(threads);
+            System.out.println("Parsed " + threads.size() + " threads"
+                    + (locks.deadlocks.isEmpty() ? "." : ", " + locks.deadlocks.size() + " deadlock(s)."));
+
+            m.stage(Metrics.Stage.INDEX);
+            Session session = new Session(id, ThreadTable.of(threads, parser.stackTable()), locks);
+            sessions.put(session);
+            if (index != null) index.submit(id, name, session.threads);
+            sendSummary(ex, m, session);
+        }
+
+        // Stored before it is sent, so a client that asks again at once finds the parse permit free
+        private void sendSummary(HttpExchange ex, Metrics.Request m, Session session) throws IOException {
+            m.stage(Metrics.Stage.SERIALIZE);
+            if (!cache.enabled()) {
+                streamJson(ex, 200, session::writeSummary);
+                return;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (OutputStream os = gzip(out)) { session.writeSummary(os); }
+            byte[] gz = out.toByteArray();
+            if (!cache.contains(ResultCache.sessionKey(session.id))) cache.put(ResultCache.sessionKey(session.id), session.snapshot());
+            cache.put(ResultCache.summaryKey(session.id), gz);
+            sendStored(ex, gz);
+        }
+    }
+
+    /**
+     * The live session {@code id}, or else the one restored from its snapshot in the result cache
+     * (and held live again); null if neither has it.
+     */
+    static Session findSession(String id, SessionStore sessions, ResultCache cache) {
+        Session s = sessions.get(id);
+        if (s != null || !cache.enabled()) return s;
+        byte[] snapshot = cache.get(ResultCache.sessionKey(id));
+        if (snapshot == null) return null;
+        try {
+            s = Session.restore(id, snapshot);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Cache: cannot restore session " + id + ": " + e.getMessage());
+            return null;
+        }
+        sessions.put(s);
+        return s;
+    }
+
+    /**
+     * GET /api/sessions/{id}                   → summary, as returned by /api/analyze
+     * GET /api/sessions/{id}/threads?...       → one page of threads, see {@link Session.Query#parse}
+     * GET /api/sessions/{id}/stacks/{stackId}  → one stack trace
+     * GET /api/sessions/{id}/export            → the full analysis: every thread, stack and lock
+     * GET /api/sessions/{id}/flame?...         → call tree of the threads matching the thread filters:
+     *       weight=threads|cpu, frames=method|line, format=json|folded, min=0.001 (json only),
+     *       with=id2,id3 to add the threads of further sessions into the same tree
+     *
+     * The export and the session snapshot are kept in the result cache under the session id (the
+     * dump's content hash), so both are still served after the session has been evicted or the
+     * server restarted.
+     */
+    static class SessionsHandler implements HttpHandler {
+        private final SessionStore sessions;
+        private final ResultCache  cache;
+
+        SessionsHandler(SessionStore sessions, ResultCache cache) {
+            this.sessions = sessions;
+            this.cache    = cache;
+        }
+
+        @Override
+        public void handle(HttpExchange ex) throws IOException {
+            ex.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+            if (!"GET".equals(ex.getRequestMethod())) {
+                sendJson(ex, 405, "{\"error\":\"Method not allowed\"}");
+                return;
+            }
+
+            try {
+                // id, then the sub-resource and its own id
+                String[] seg = ex.getRequestURI().getPath().substring("/api/sessions/".length()).split("/");
+                String id = seg[0];
+                String what = seg.length > 1 ? seg[1] : "";
+                if (!isHex(id)) {
+                    sendJson(ex, 404, "{\"error\":\"Not found\"}");
+                    return;
+                }
+
+                if (what.equals("export") && seg.length == 2) {
+                    byte[] stored = cache.enabled() ? cache.get(ResultCache.key(id)) : null;
+                    if (stored != null) {
+                        ex.getResponseHeaders().set("X-Cache", "HIT");
+                        sendStored(ex, stored);
+                        return;
+                    }
+                }
+
+                Session s = findSession(id, sessions, cache);
+                if (s == null) {
+                    sendJson(ex, 404, "{\"error\":\"Session expired or unknown. Analyze the dump again.\"}");
+                    return;
+                }
+
+                if (what.isEmpty()) {
+                    streamJson(ex, 200, s::writeSummary);
+                } else if (what.equals("threads") && seg.length == 2) {
+                    Session.Query q = Session.Query.parse(ex.getRequestURI().getRawQuery());
+                    Session.Page page = s.query(q);
+                    streamJson(ex, 200, out -> s.writePage(q, page, out));
+                } else if (what.equals("stacks") && seg.length == 3) {
+                    int stackId = parseId(seg[2]);
+                    if (stackId < 0 || stackId >= s.threads.stackCount()) {
+                        sendJson(ex, 404, "{\"error\":\"No such stack\"}");
+                        return;
+                    }
+                    streamJson(ex, 200, out -> s.writeStack(stackId, out));
+                } else if (what.equals("flame") && seg.length == 2) {
+                    flame(ex, s);
+                } else if (what.equals("export") && seg.length == 2) {
+                    ResultCache.Capture copy = cache.enabled() ? new ResultCache.Capture(cache.maxEntryBytes()) : null;
+                    if (copy != null) ex.getResponseHeaders().set("X-Cache", "MISS");
+                    streamJson(ex, 200, out -> JsonSerializer.writeAnalysis(s.threads, s.locks, out), copy);
+                    if (copy != null && copy.result() != null) cache.put(ResultCache.key(id), copy.result());
+                } else {
+                    sendJson(ex, 404, "{\"error\":\"Not found\"}");
+                }
+            } catch (Exception e) {
+                System.err.println("Error: " + e.getMessage());
+                sendJson(ex, 500, "{\"error\":\"" + String.valueOf(e.getMessage()).replace("\"", "'") + "\"}");
+            }
+        }
+
+        private void flame(HttpExchange ex, Session s) throws IOException {
+            String rawQuery = ex.getRequestURI().getRawQuery();
+            Map<String, String> p = Session.Query.params(rawQuery);
+            Session.Query q = Session.Query.parse(rawQuery);
+            CallTree tree = new CallTree(
+                    "cpu".equals(p.get("weight"))  ? CallTree.Weight.CPU : CallTree.Weight.THREADS,
+                    "line".equals(p.get("frames")) ? CallTree.Frames.LINE : CallTree.Frames.METHOD);
+            s.addTo(tree, q);
+            for (String other : p.getOrDefault("with", "").split(",")) {
+                if (other.isBlank()) continue;
+                Session o = isHex(other.trim()) ? findSession(other.trim(), sessions, cache) : null;
+                if (o == null) {
+                    sendJson(ex, 404, "{\"error\":\"Session " + other.trim().replace("\"", "'") + " expired or unknown\"}");
+                    return;
+                }
+                o.addTo(tree, q);
+            }
+
+            if ("folded".equals(p.get("format"))) {
+                ex.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+                ex.getResponseHeaders().set("Vary", "Accept-Encoding");
+                boolean gzip = acceptsGzip(ex);
+                if (gzip) ex.getResponseHeaders().set("Content-Encoding", "gzip");
+                ex.sendResponseHeaders(200, 0);
+                try (OutputStream raw = ex.getResponseBody(); OutputStream os = gzip ? gzip(raw) : raw) {
+                    tree.writeFolded(os);
+                }
+                return;
+            }
+            double min = Math.max(0, Math.min(1, parseDouble(p.get("min"), 0.001)));
+            streamJson(ex, 200, out -> tree.writeJson(min, out));
+        }
+
+        private static double parseDouble(String s, double dflt) {
+            if (s == null || s.isBlank()) return dflt;
+            try { return Double.parseDouble(s.trim()); }
+            catch (NumberFormatException e) { return dflt; }
+        }
+
+        // Session ids are content hashes or random hex; also keeps them safe as cache file names
+        private static boolean isHex(String s) {
+            if (s.isEmpty() || s.length() > 64) return false;
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) return false;
+            }
+            return true;
+        }
+
+        private static int parseId(String s) {
+            try { return Integer.parseInt(s); }
+            catch (NumberFormatException e) { return -1; }
+        }
+    }
+
+    // GET /api/cache/stats → result cache counters
+    static class CacheStatsHandler implements HttpHandler {
+        private final ResultCache cache;
+
+        CacheStatsHandler(ResultCache cache) { this.cache = cache; }
+
+        @Override
+        public void handle(HttpExchange ex) throws IOException {
+            ex.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+            sendJson(ex, 200, cache.statsJson());
+        }
+    }
+
+    /**
+     * POST   /api/live?target={pid|self}&intervalMs=1000&samples=120  → start sampling (replaces a running one)
+     * GET    /api/live                                                → every sampler's status
+     * GET    /api/live/{target}?limit=200                             → rolling view, see {@link LiveSampler#writeView}
+     * GET    /api/live/{target}/threads/{id}                          → one thread across the window
+     * DELETE /api/live/{target}                                       → stop
+     *
+     * All samplers share one scheduler thread, so at most one dump is being taken at a time.
+     *
+     * Sampling runs jcmd against local pids, so it answers only clients on this machine, and no
+     * CORS header lets a page of another origin in their browser read it; a cross-origin request
+     * is refused outright, since a simple POST would be carried out before CORS is consulted.
+     */
+    static class LiveHandler implements HttpHandler {
+        private static final long MIN_INTERVAL_MS = 100;
+        private static final int  MAX_SAMPLES     = 3600;
+
+        private final int max;
+        private final Map<String, LiveSampler> samplers = new ConcurrentHashMap<>();
+        private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "live-sampler");
+            t.setDaemon(true);
+            return t;
+        });
+
+        LiveHandler(int max) { this.max = max; }
+
+        @Override
+        public void handle(HttpExchange ex) throws IOException {
+            if (!local(ex)) {
+                sendJson(ex, 403, "{\"error\":\"Live sampling is only available from this machine\"}");
+                return;
+            }
+            String method = ex.getRequestMethod();
+            String[] seg = ex.getRequestURI().getPath().replaceFirst("^/api/live/?", "").split("/");
+            String target = seg[0];
+            Map<String, String> q = Session.Query.params(ex.getRequestURI().getRawQuery());
+
+            try {
+                if (target.isEmpty() && method.equals("GET")) {
+                    streamJson(ex, 200, out -> {
+                        JsonWriter w = new JsonWriter(out);
+                        w.raw("{\"samplers\":[");
+                        boolean first = true;
+                        for (LiveSampler l : samplers.values()) {
+                            if (!first) w.raw(",");
+                            first = false;
+                            l.writeStatus(w);
+                        }
+                        w.raw("]}");
+                        w.flush();
+                    });
+                } else if (target.isEmpty() && method.equals("POST")) {
+                    start(ex, q);
+                } else if (seg.length == 1 && method.equals("DELETE")) {
+                    LiveSampler l = samplers.remove(target);
+                    if (l != null) l.close();
+                    sendJson(ex, l != null ? 200 : 404, l != null ? "{\"stopped\":\"" + target + "\"}" : "{\"error\":\"Not sampling " + target + "\"}");
+                } else if (method.equals("GET") && samplers.get(target) == null) {
+                    sendJson(ex, 404, "{\"error\":\"Not sampling this target. Start it with POST /api/live?target=...\"}");
+                } else if (seg.length == 1 && method.equals("GET")) {
+                    int limit = (int) Math.max(1, Math.min(Session.MAX_LIMIT, number(q.get("limit"), 200)));
+                    LiveSampler l = samplers.get(target);
+                    streamJson(ex, 200, out -> l.writeView(limit, out));
+                } else if (seg.length == 3 && seg[1].equals("threads") && method.equals("GET")) {
+                    LiveSampler l = samplers.get(target);
+                    int id = SessionsHandler.parseId(seg[2]);
+                    ByteArrayOutputStream body = new ByteArrayOutputStream();
+                    if (id >= 0 && l.writeThread(id, body)) streamJson(ex, 200, body::writeTo);
+                    else sendJson(ex, 404, "{\"error\":\"No such thread in the window\"}");
+                } else {
+                    sendJson(ex, 404, "{\"error\":\"Not found\"}");
+                }
+            } catch (Exception e) {
+                System.err.println("Error: " + e.getMessage());
+                sendJson(ex, 500, "{\"error\":\"" + String.valueOf(e.getMessage()).replace("\"", "'") + "\"}");
+            }
+        }
+
+        private void start(HttpExchange ex, Map<String, String> q) throws IOException {
+            String target = q.getOrDefault("target", "").trim();
+            if (!target.equals("self") && !target.matches("\\d{1,10}")) {
+                sendJson(ex, 400, "{\"error\":\"target must be a pid or 'self'\"}");
+                return;
+            }
+            long interval = (long) Math.max(MIN_INTERVAL_MS, number(q.get("intervalMs"), 1000));
+            int  samples  = (int) Math.max(2, Math.min(MAX_SAMPLES, number(q.get("samples"), 120)));
+            // Only the check and the put are under the lock: a virtual thread blocked writing the
+            // response while holding a monitor would pin its carrier
+            LiveSampler started = null, old = null;
+            synchronized (samplers) {
+                if (samplers.containsKey(target) || samplers.size() < max) {
+                    started = LiveSampler.start(target, interval, samples, scheduler);
+                    old     = samplers.put(target, started);
+                }
+            }
+            if (old != null) old.close();
+            if (started == null) {
+                sendJson(ex, 409, "{\"error\":\"Already sampling " + max + " JVMs. Stop one first.\"}");
+                return;
+            }
+            LiveSampler l = started;
+            streamJson(ex, 201, out -> {
+                JsonWriter w = new JsonWriter(out);
+                l.writeStatus(w);
+                w.flush();
+            });
+        }
+
+        private static double number(String s, double dflt) {
+            if (s == null || s.isBlank()) return dflt;
+            try { return Double.parseDouble(s.trim()); }
+            catch (NumberFormatException e) { return dflt; }
+        }
+
+        // A loopback client, and no page of another origin sending the request on its behalf
+        static boolean local(HttpExchange ex) {
+            if (!ex.getRemoteAddress().getAddress().isLoopbackAddress()) return false;
+            String origin = ex.getRequestHeaders().getFirst("Origin");
+            String host   = ex.getRequestHeaders().getFirst("Host");
+            return origin == null || host != null && origin.equalsIgnoreCase("http://" + host);
+        }
+    }
+
+    // POST /api/compare → several dumps of one JVM, in capture order → per-thread interval CPU and stuck threads
+    static class CompareHandler implements HttpHandler {
+        private static final int MAX_DUMPS = 64;
+
+        @Override
+        public void handle(HttpExchange ex) throws IOException {
+            ex.getResponseHeaders().set("Access-Control-Allow-Origin",  "*");
+            ex.getResponseHeaders().set("Access-Control-Allow-Methods", "POST, OPTIONS");
+            ex.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type");
+
+            if ("OPTIONS".equals(ex.getRequestMethod())) {
+                ex.sendResponseHeaders(204, -1);
+                return;
+            }
+            if (!"POST".equals(ex.getRequestMethod())) {
+                sendJson(ex, 405, "{\"error\":\"Method not allowed\"}");
+                return;
+            }
+
+            try {
+                String contentType = ex.getRequestHeaders().getFirst("Content-Type");
+                if (contentType == null || !contentType.contains("multipart/form-data")) {
+                    sendJson(ex, 400, "{\"error\":\"Expected multipart/form-data\"}");
                     return;
                 }
 
-                List<ThreadInfo> threads = new ThreadDumpParser().parse(fileContent);
-                if (threads.isEmpty()) {
-                    sendJson(ex, 422, "{\"error\":\"No threads found. Is this a valid Java thread dump?\"}");
+                // Each part is parsed on the common pool while the next one is still being received
+                List<String> names = new ArrayList<>();
+                List<CompletableFuture<List<ThreadInfo>>> parsing = new ArrayList<>();
+                MultipartParser.PartStream parts = MultipartParser.openParts(ex.getRequestBody(), contentType);
+                while (parts.nextFile()) {
+                    if (names.size() == MAX_DUMPS) {
+                        sendJson(ex, 413, "{\"error\":\"At most " + MAX_DUMPS + " dumps per comparison\"}");
+                        return;
+                    }
+                    byte[] dump = parts.readAllBytes();
+                    names.add(parts.fileName().isEmpty() ? "dump " + (names.size() + 1) : parts.fileName());
+                    parsing.add(CompletableFuture.supplyAsync(() -> parseBytes(dump)));
+                }
+                if (names.size() < 2) {
+                    sendJson(ex, 400, "{\"error\":\"Upload at least two dumps to compare\"}");
                     return;
                 }
 
-                threads.sort((a, b) -> Double.compare(b.cpuMs, a.cpuMs));
-                System.out.println("Parsed " + threads.size() + " threads.");
-                sendJson(ex, 200, JsonSerializer.toJson(threads));
+                List<List<ThreadInfo>> snapshots = new ArrayList<>();
+                for (int i = 0; i < parsing.size(); i++) {
+                    List<ThreadInfo> threads = parsing.get(i).join();
+                    if (threads.isEmpty()) {
+                        sendJson(ex, 422, "{\"error\":\"No threads found in " + names.get(i).replace("\"", "'") + "\"}");
+                        return;
+                    }
+                    snapshots.add(threads);
+                }
+
+                DumpSeries series = DumpSeries.analyze(snapshots, names);
+                System.out.println("Compared " + names.size() + " dumps, " + series.tracks.size() + " threads.");
+                streamJson(ex, 200, series::writeJson);
 
             } catch (Exception e) {
                 System.err.println("Error: " + e.getMessage());
-                sendJson(ex, 500, "{\"error\":\"" + e.getMessage().replace("\"", "'") + "\"}");
+                sendJson(ex, 500, "{\"error\":\"" + String.valueOf(e.getMessage()).replace("\"", "'") + "\"}");
             }
         }
+
+        private static List<ThreadInfo> parseBytes(byte[] dump) {
+            List<ThreadInfo> threads = new ArrayList<>();
+            try {
+                new ThreadDumpParser().parse(
+                        new InputStreamReader(new ByteArrayInputStream(dump), StandardCharsets.UTF_8), threads::add);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return threads;
+        }
+    }
+
+    /**
+     * GET /api/index/search?q=...&limit=50&sample=5  → dumps and threads matching, see {@link DumpIndex#writeSearch}
+     * GET /api/index/terms?prefix=frame:com.acme&limit=20  → indexed terms, for completion
+     * GET /api/index/stats                                → segments, dumps, threads and bytes held
+     */
+    static class IndexHandler implements HttpHandler {
+        private static final int MAX_LIMIT = 1000, MAX_SAMPLE = 100;
+
+        private final DumpIndex index;
+
+        IndexHandler(DumpIndex index) { this.index = index; }
+
+        @Override
+        public void handle(HttpExchange ex) throws IOException {
+            ex.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+            if (!"GET".equals(ex.getRequestMethod())) {
+                sendJson(ex, 405, "{\"error\":\"Method not allowed\"}");
+                return;
+            }
+            try {
+                String action = ex.getRequestURI().getPath().substring("/api/index/".length());
+                Map<String, String> p = Session.Query.params(ex.getRequestURI().getRawQuery());
+                switch (action) {
+                    case "search" -> {
+                        DumpIndex.parse(p.getOrDefault("q", ""));   // a bad query is a 400, before any output
+                        int limit  = bounded(p.get("limit"), 50, MAX_LIMIT);
+                        int sample = bounded(p.get("sample"), 5, MAX_SAMPLE);
+                        streamJson(ex, 200, out -> index.writeSearch(p.get("q"), limit, sample, out));
+                    }
+                    case "terms" -> {
+                        int limit = bounded(p.get("limit"), 20, MAX_LIMIT);
+                        streamJson(ex, 200, out -> index.writeTerms(p.getOrDefault("prefix", ""), limit, out));
+                    }
+                    case "stats" -> sendJson(ex, 200, index.statsJson());
+                    default      -> sendJson(ex, 404, "{\"error\":\"Not found\"}");
+                }
+            } catch (IllegalArgumentException e) {
+                sendJson(ex, 400, "{\"error\":\"" + String.valueOf(e.getMessage()).replace("\"", "'") + "\"}");
+            } catch (Exception e) {
+                System.err.println("Error: " + e.getMessage());
+                sendJson(ex, 500, "{\"error\":\"" + String.valueOf(e.getMessage()).replace("\"", "'") + "\"}");
+            }
+        }
+
+        private static int bounded(String v, int dflt, int max) {
+            if (v == null || v.isEmpty()) return dflt;
+            return Math.max(1, Math.min(max, Integer.parseInt(v)));
+        }
+    }
+
+    // GET /metrics → counters and latency histograms, Prometheus text format, see {@link Metrics}
+    static class MetricsHandler implements HttpHandler {
+        private final Metrics metrics;
+
+        MetricsHandler(Metrics metrics) { this.metrics = metrics; }
+
+        @Override
+        public void handle(HttpExchange ex) throws IOException {
+            byte[] bytes = metrics.prometheus().getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=UTF-8");
+            ex.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = ex.getResponseBody()) { os.write(bytes); }
+        }
     }
 
-    // GET /health → liveness check
+    // GET /health → liveness check, with parse slots in use and sessions held
     static class HealthHandler implements HttpHandler {
+        private final Admission    parses;
+        private final SessionStore sessions;
+
+        HealthHandler(Admission parses, SessionStore sessions) {
+            this.parses   = parses;
+            this.sessions = sessions;
+        }
+
         @Override
         public void handle(HttpExchange ex) throws IOException {
             ex.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
-            sendJson(ex, 200, "{\"status\":\"ok\"}");
+            sendJson(ex, 200, "{\"status\":\"ok\",\"parses\":" + parses.inFlight()
+                    + ",\"maxParses\":" + parses.capacity + ",\"sessions\":" + sessions.size() + "}");
+        }
+    }
+
+    /** Writes a JSON response body directly to the exchange's output stream. */
+    interface JsonBody {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Streams a JSON body with chunked transfer encoding, gzip-compressed when the client accepts it.
+     * Headers go out before serialization starts, so time-to-first-byte and heap use do not depend
+     * on the size of the response.
+     */
+    static void streamJson(HttpExchange ex, int status, JsonBody body) throws IOException {
+        streamJson(ex, status, body, null);
+    }
+
+    /**
+     * As above; {@code gzipCopy}, if not null, also receives the gzip form of the body whatever
+     * the client negotiated. A gzip client shares the one compressed stream with the copy.
+     */
+    static void streamJson(HttpExchange ex, int status, JsonBody body, OutputStream gzipCopy) throws IOException {
+        boolean gzip = acceptsGzip(ex);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        ex.getResponseHeaders().set("Vary", "Accept-Encoding");
+        if (gzip) ex.getResponseHeaders().set("Content-Encoding", "gzip");
+        ex.sendResponseHeaders(status, 0);   // 0 → chunked
+        try (OutputStream raw = ex.getResponseBody()) {
+            if (gzipCopy == null) {
+                try (OutputStream os = gzip ? gzip(raw) : raw) { body.writeTo(os); }
+            } else if (gzip) {
+                try (OutputStream os = gzip(tee(raw, gzipCopy))) { body.writeTo(os); }
+            } else {
+                try (OutputStream z = gzip(gzipCopy)) { body.writeTo(tee(raw, z)); }
+            }
+        }
+    }
+
+    /** Sends a stored gzip body: as is to gzip clients, inflated on the fly to the rest. */
+    static void sendStored(HttpExchange ex, byte[] gz) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        ex.getResponseHeaders().set("Vary", "Accept-Encoding");
+        if (acceptsGzip(ex)) {
+            ex.getResponseHeaders().set("Content-Encoding", "gzip");
+            ex.sendResponseHeaders(200, gz.length);
+            try (OutputStream os = ex.getResponseBody()) { os.write(gz); }
+            return;
+        }
+        ex.sendResponseHeaders(200, 0);
+        try (OutputStream os = ex.getResponseBody();
+             InputStream  in = new GZIPInputStream(new ByteArrayInputStream(gz), 16 * 1024)) {
+            in.transferTo(os);
+        }
+    }
+
+    // Writes go to both streams; close() closes both
+    static OutputStream tee(OutputStream a, OutputStream b) {
+        return new OutputStream() {
+            @Override public void write(int x) throws IOException { a.write(x); b.write(x); }
+            @Override public void write(byte[] buf, int off, int len) throws IOException {
+                a.write(buf, off, len);
+                b.write(buf, off, len);
+            }
+            @Override public void flush() throws IOException { a.flush(); b.flush(); }
+            @Override public void close() throws IOException {
+                try (b) { a.close(); }
+            }
+        };
+    }
+
+    /** gzip at BEST_SPEED — on large dynamic responses level 6 costs several times more CPU for a few % of size. */
+    static GZIPOutputStream gzip(OutputStream raw) throws IOException {
+        return new GZIPOutputStream(raw, 16 * 1024) {{ def.setLevel(Deflater.BEST_SPEED); }};
+    }
+
+    static boolean acceptsGzip(HttpExchange ex) {
+        String ae = ex.getRequestHeaders().getFirst("Accept-Encoding");
+        if (ae == null) return false;
+        for (String part : ae.split(",")) {
+            String[] kv = part.trim().split(";");
+            if (!kv[0].trim().equalsIgnoreCase("gzip")) continue;
+            for (int i = 1; i < kv.length; i++) {
+                String q = kv[i].trim();
+                if (q.startsWith("q=")) {
+                    try { return Double.parseDouble(q.substring(2)) > 0; }
+                    catch (NumberFormatException e) { return false; }
+                }
+            }
+            return true;
         }
+        return false;
     }
 
     static void sendJson(HttpExchange ex, int status, String json) throws IOException {
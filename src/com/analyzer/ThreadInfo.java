@@ -1,5 +1,7 @@
 package com.analyzer;
 
+import java.util.List;
+
 /**
  * Represents a single thread parsed from a Java thread dump.
  *
@@ -21,8 +23,10 @@ package com.analyzer;
  *   state        - java.lang.Thread.State value
  *   stateDetail  - extra context e.g. "(sleeping)", "(on object monitor)"
  *   lockInfo     - waiting/locked/parking info extracted from stack lines
+ *   locks        - the same lock lines in structured form, plus owned synchronizers
  *   health       - derived: HOT | ACTIVE | BLOCKED | IDLE
  *   stackTrace   - full "at ..." lines
+ *   stack        - shared signature of those lines; threads with identical stacks share one (null if not parsed)
  */
 public class ThreadInfo {
     public String  name;
@@ -39,8 +43,10 @@ public class ThreadInfo {
     public String  state;
     public String  stateDetail;
     public String  lockInfo;
+    public List<LockRef> locks;
     public String  health;
     public String  stackTrace;
+    public StackSignature stack;
 
     public ThreadInfo(String name) {
         this.name        = name;
@@ -57,6 +63,7 @@ public class ThreadInfo {
         this.state       = "UNKNOWN";
         this.stateDetail = "";
         this.lockInfo    = "";
+        this.locks       = List.of();
         this.health      = "IDLE";
         this.stackTrace  = "";
     }
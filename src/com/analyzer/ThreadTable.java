@@ -0,0 +1,485 @@
+package com.analyzer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A parsed dump stored column by column, for keeping analyses around at a fraction of the heap
+ * a {@code List<ThreadInfo>} plus its {@link StackTable} costs.
+ *
+ * Columns:
+ *   numbers      - int[] / double[] per field, no boxing
+ *   daemon       - one bit per thread
+ *   state        - short code; codes 0..6 are {@link State} ordinals, rarer names follow in a dictionary
+ *   stateDetail  - short code into a small dictionary ("(sleeping)", "(parking)", ...); past
+ *                  {@link Short#MAX_VALUE} distinct values, the text itself is kept per row
+ *   health       - {@link Health} ordinal
+ *   tid, nid,    - long value plus a byte recording how it was written (hex, upper-case hex, decimal,
+ *   nidDecimal     digit count), so the original text comes back exactly; anything else is kept as is
+ *   name,        - UTF-8 in one shared byte[], located by offsets
+ *   lockInfo
+ *   stack        - stack id; each distinct stack is stored once as a run of frame ids, and each
+ *                  distinct frame line once, UTF-8, in a second byte[] — traces are rebuilt on access
+ *   locks        - kind, address and class per lock line, flattened across threads
+ *
+ * Rows are read through the accessors, or materialized as {@link ThreadInfo} with {@link #get}
+ * and {@link #asList()} for code written against ThreadInfo. Materialized rows have
+ * {@code stack == null}; use {@link #stackId} instead. Immutable once built; {@link #write} and
+ * {@link #read} copy the columns to and from a session snapshot.
+ */
+public class ThreadTable {
+
+    public enum State  { NEW, RUNNABLE, BLOCKED, WAITING, TIMED_WAITING, TERMINATED, UNKNOWN }
+    public enum Health { HOT, ACTIVE, BLOCKED, IDLE }
+
+    private final int size;
+
+    private final int[]    threadNum, priority, osPriority;
+    private final double[] cpuMs, elapsedMs, cpuPercent;
+    private final long[]   daemon;                       // bit set
+    private final short[]  state, stateDetail;
+    private final byte[]   health;
+    private final String[] stateNames, detailNames;
+    private final Map<Integer, String> oddStates;        // (row << 1 | column) → text past the dictionaries
+
+    private final long[]   tid, nid, nidDecimal;
+    private final byte[]   tidForm, nidForm, nidDecimalForm;
+    private final Map<Integer, String> oddIds;           // (row << 2 | column) → text that did not encode
+
+    private final byte[]   text;                         // name, lockInfo, name, lockInfo, ...
+    private final int[]    textOff;                      // 2 * size + 1 offsets
+
+    private final int[]    stackId;
+    private final int[]    stackFrames;                  // frame ids of every stack, back to back
+    private final int[]    stackOff;                     // stackCount + 1 offsets into stackFrames
+    private final int[]    stackThreads;
+    private final byte[]   frameText;
+    private final int[]    frameOff;                     // frameCount + 1 offsets
+
+    private final int[]    lockStart;                    // size + 1 offsets into the lock columns
+    private final byte[]   lockKind;
+    private final int[]    lockAddress, lockClass;
+    private final String[] lockStrings;
+
+    // ── Building ─────────────────────────────────────────────────────────────
+
+    /** Copies {@code threads} (in their current order) and the stacks they point to. */
+    public static ThreadTable of(List<ThreadInfo> threads, StackTable stacks) {
+        return new ThreadTable(threads, stacks);
+    }
+
+    private ThreadTable(List<ThreadInfo> threads, StackTable stacks) {
+        int n = threads.size();
+        size = n;
+        threadNum   = new int[n];
+        priority    = new int[n];
+        osPriority  = new int[n];
+        cpuMs       = new double[n];
+        elapsedMs   = new double[n];
+        cpuPercent  = new double[n];
+        daemon      = new long[(n + 63) >>> 6];
+        state       = new short[n];
+        stateDetail = new short[n];
+        health      = new byte[n];
+        tid = new long[n];        tidForm        = new byte[n];
+        nid = new long[n];        nidForm        = new byte[n];
+        nidDecimal = new long[n]; nidDecimalForm = new byte[n];
+        oddIds    = new HashMap<>();
+        oddStates = new HashMap<>();
+        textOff = new int[2 * n + 1];
+        stackId = new int[n];
+        lockStart = new int[n + 1];
+
+        Dict states  = new Dict(State.values().length + 1);
+        for (State s : State.values()) states.code(s.name());
+        Dict details = new Dict(8);
+        Dict lockStr = new Dict(64);
+
+        Utf8 txt = new Utf8(n * 48);
+        int locks = 0;
+        for (ThreadInfo t : threads) locks += t.locks.size();
+        lockKind    = new byte[locks];
+        lockAddress = new int[locks];
+        lockClass   = new int[locks];
+
+        int l = 0;
+        for (int i = 0; i < n; i++) {
+            ThreadInfo t = threads.get(i);
+            threadNum[i]  = t.threadNum;
+            priority[i]   = t.priority;
+            osPriority[i] = t.osPriority;
+            cpuMs[i]      = t.cpuMs;
+            elapsedMs[i]  = t.elapsedMs;
+            cpuPercent[i] = t.cpuPercent;
+            if (t.daemon) daemon[i >>> 6] |= 1L << i;
+            state[i]       = stateCode(states, t.state, i, 0);
+            stateDetail[i] = stateCode(details, t.stateDetail, i, 1);
+            health[i]      = (byte) Health.valueOf(t.health).ordinal();
+
+            tidForm[i]        = encode(t.tid, tid, i, 0);
+            nidForm[i]        = encode(t.nid, nid, i, 1);
+            nidDecimalForm[i] = encode(t.nidDecimal, nidDecimal, i, 2);
+
+            textOff[2 * i]     = txt.size();
+            txt.add(t.name);
+            textOff[2 * i + 1] = txt.size();
+            txt.add(t.lockInfo);
+
+            stackId[i] = t.stack != null ? t.stack.id : -1;
+
+            lockStart[i] = l;
+            for (LockRef r : t.locks) {
+                lockKind[l]    = (byte) r.kind.ordinal();
+                lockAddress[l] = lockStr.code(r.address);
+                lockClass[l]   = lockStr.code(r.className);
+                l++;
+            }
+        }
+        textOff[2 * n] = txt.size();
+        lockStart[n]   = l;
+        text = txt.bytes();
+        stateNames  = states.names();
+        detailNames = details.names();
+        lockStrings = lockStr.names();
+
+        int fc = stacks.frameCount();
+        Utf8 fr = new Utf8(fc * 64);
+        frameOff = new int[fc + 1];
+        for (int f = 0; f < fc; f++) {
+            frameOff[f] = fr.size();
+            fr.add(stacks.frameText(f));
+        }
+        frameOff[fc] = fr.size();
+        frameText = fr.bytes();
+
+        int sc = stacks.size(), depth = 0;
+        for (int k = 0; k < sc; k++) depth += stacks.get(k).frames.length;
+        stackFrames  = new int[depth];
+        stackOff     = new int[sc + 1];
+        stackThreads = new int[sc];
+        for (int k = 0, at = 0; k < sc; k++) {
+            StackSignature sig = stacks.get(k);
+            stackOff[k]     = at;
+            stackThreads[k] = sig.threads;
+            System.arraycopy(sig.frames, 0, stackFrames, at, sig.frames.length);
+            at += sig.frames.length;
+        }
+        stackOff[sc] = depth;
+    }
+
+    // ── Snapshot ─────────────────────────────────────────────────────────────
+    // Every column as is, in declaration order; read back without re-encoding anything.
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(size);
+        SnapshotIO.ints(out, threadNum);
+        SnapshotIO.ints(out, priority);
+        SnapshotIO.ints(out, osPriority);
+        SnapshotIO.doubles(out, cpuMs);
+        SnapshotIO.doubles(out, elapsedMs);
+        SnapshotIO.doubles(out, cpuPercent);
+        SnapshotIO.longs(out, daemon);
+        SnapshotIO.shorts(out, state);
+        SnapshotIO.shorts(out, stateDetail);
+        SnapshotIO.bytes(out, health);
+        SnapshotIO.strings(out, stateNames);
+        SnapshotIO.strings(out, detailNames);
+        SnapshotIO.stringMap(out, oddStates);
+        SnapshotIO.longs(out, tid);
+        SnapshotIO.longs(out, nid);
+        SnapshotIO.longs(out, nidDecimal);
+        SnapshotIO.bytes(out, tidForm);
+        SnapshotIO.bytes(out, nidForm);
+        SnapshotIO.bytes(out, nidDecimalForm);
+        SnapshotIO.stringMap(out, oddIds);
+        SnapshotIO.bytes(out, text);
+        SnapshotIO.ints(out, textOff);
+        SnapshotIO.ints(out, stackId);
+        SnapshotIO.ints(out, stackFrames);
+        SnapshotIO.ints(out, stackOff);
+        SnapshotIO.ints(out, stackThreads);
+        SnapshotIO.bytes(out, frameText);
+        SnapshotIO.ints(out, frameOff);
+        SnapshotIO.ints(out, lockStart);
+        SnapshotIO.bytes(out, lockKind);
+        SnapshotIO.ints(out, lockAddress);
+        SnapshotIO.ints(out, lockClass);
+        SnapshotIO.strings(out, lockStrings);
+    }
+
+    static ThreadTable read(DataInputStream in) throws IOException {
+        ThreadTable t = new ThreadTable(in);
+        if (t.threadNum.length != t.size || t.textOff.length != 2 * t.size + 1 || t.lockStart.length != t.size + 1
+                || t.stackOff.length != t.stackThreads.length + 1)
+            throw new IOException("Corrupt snapshot: column lengths do not match");
+        return t;
+    }
+
+    private ThreadTable(DataInputStream in) throws IOException {
+        size           = in.readInt();
+        threadNum      = SnapshotIO.ints(in);
+        priority       = SnapshotIO.ints(in);
+        osPriority     = SnapshotIO.ints(in);
+        cpuMs          = SnapshotIO.doubles(in);
+        elapsedMs      = SnapshotIO.doubles(in);
+        cpuPercent     = SnapshotIO.doubles(in);
+        daemon         = SnapshotIO.longs(in);
+        state          = SnapshotIO.shorts(in);
+        stateDetail    = SnapshotIO.shorts(in);
+        health         = SnapshotIO.bytes(in);
+        stateNames     = SnapshotIO.strings(in);
+        detailNames    = SnapshotIO.strings(in);
+        oddStates      = SnapshotIO.stringMap(in);
+        tid            = SnapshotIO.longs(in);
+        nid            = SnapshotIO.longs(in);
+        nidDecimal     = SnapshotIO.longs(in);
+        tidForm        = SnapshotIO.bytes(in);
+        nidForm        = SnapshotIO.bytes(in);
+        nidDecimalForm = SnapshotIO.bytes(in);
+        oddIds         = SnapshotIO.stringMap(in);
+        text           = SnapshotIO.bytes(in);
+        textOff        = SnapshotIO.ints(in);
+        stackId        = SnapshotIO.ints(in);
+        stackFrames    = SnapshotIO.ints(in);
+        stackOff       = SnapshotIO.ints(in);
+        stackThreads   = SnapshotIO.ints(in);
+        frameText      = SnapshotIO.bytes(in);
+        frameOff       = SnapshotIO.ints(in);
+        lockStart      = SnapshotIO.ints(in);
+        lockKind       = SnapshotIO.bytes(in);
+        lockAddress    = SnapshotIO.ints(in);
+        lockClass      = SnapshotIO.ints(in);
+        lockStrings    = SnapshotIO.strings(in);
+    }
+
+    // Dictionary code, or ODD with the text kept aside once the dictionary is full
+    private short stateCode(Dict dict, String s, int row, int column) {
+        int c = dict.code(s, Short.MAX_VALUE);
+        if (c >= 0) return (short) c;
+        oddStates.put(row << 1 | column, s);
+        return ODD;
+    }
+
+    // ── Id encoding ──────────────────────────────────────────────────────────
+    // form byte: 0 = "", 1..3 = kind in the top two bits with the digit count below; ODD = kept as text
+
+    private static final int  KIND_HEX = 1, KIND_HEX_UPPER = 2, KIND_DEC = 3;
+    private static final byte ABSENT = 0, ODD = -1;
+
+    private byte encode(String s, long[] values, int row, int column) {
+        if (s.isEmpty()) return ABSENT;
+        int kind = -1, from = 0;
+        if (s.startsWith("0x") && s.length() > 2 && s.length() <= 18) {
+            from = 2;
+            boolean lower = false, upper = false, ok = true;
+            for (int i = 2; i < s.length() && ok; i++) {
+                char c = s.charAt(i);
+                if (c >= 'a' && c <= 'f') lower = true;
+                else if (c >= 'A' && c <= 'F') upper = true;
+                else ok = c >= '0' && c <= '9';
+            }
+            if (ok && !(lower && upper)) kind = upper ? KIND_HEX_UPPER : KIND_HEX;
+        } else if (s.length() <= 18) {
+            boolean ok = true;
+            for (int i = 0; i < s.length() && ok; i++) ok = s.charAt(i) >= '0' && s.charAt(i) <= '9';
+            if (ok) kind = KIND_DEC;
+        }
+        if (kind > 0) {
+            String digits = s.substring(from);
+            values[row] = kind == KIND_DEC ? Long.parseLong(digits) : Long.parseUnsignedLong(digits, 16);
+            return (byte) (kind << 5 | digits.length());
+        }
+        oddIds.put(row << 2 | column, s);
+        return ODD;
+    }
+
+    private String decode(byte form, long[] values, int row, int column) {
+        if (form == ABSENT) return "";
+        if (form == ODD) return oddIds.get(row << 2 | column);
+        int kind = (form >> 5) & 3, width = form & 31;
+        long v = values[row];
+        String digits = kind == KIND_DEC ? Long.toString(v) : Long.toHexString(v);
+        if (kind == KIND_HEX_UPPER) digits = digits.toUpperCase(java.util.Locale.ROOT);
+        StringBuilder sb = new StringBuilder(width + 2);
+        if (kind != KIND_DEC) sb.append("0x");
+        for (int k = digits.length(); k < width; k++) sb.append('0');
+        return sb.append(digits).toString();
+    }
+
+    // ── Columns ──────────────────────────────────────────────────────────────
+
+    public int size() { return size; }
+
+    public int     threadNum(int i)   { return threadNum[i]; }
+    public int     priority(int i)    { return priority[i]; }
+    public int     osPriority(int i)  { return osPriority[i]; }
+    public double  cpuMs(int i)       { return cpuMs[i]; }
+    public double  elapsedMs(int i)   { return elapsedMs[i]; }
+    public double  cpuPercent(int i)  { return cpuPercent[i]; }
+    public boolean daemon(int i)      { return (daemon[i >>> 6] & 1L << i) != 0; }
+    /** Dictionary code of row {@code i}'s state; -1 for the rare state kept as text past a full dictionary. */
+    public int     stateCode(int i)   { return state[i]; }
+    public String  state(int i)       { return state[i] >= 0 ? stateNames[state[i]] : oddStates.get(i << 1); }
+    public String  stateDetail(int i) { return stateDetail[i] >= 0 ? detailNames[stateDetail[i]] : oddStates.get(i << 1 | 1); }
+    public Health  health(int i)      { return Health.values()[health[i]]; }
+    public String  tid(int i)         { return decode(tidForm[i], tid, i, 0); }
+    public String  nid(int i)         { return decode(nidForm[i], nid, i, 1); }
+    public String  nidDecimal(int i)  { return decode(nidDecimalForm[i], nidDecimal, i, 2); }
+    public int     stackId(int i)     { return stackId[i]; }
+
+    /** Code of a state name as {@link #stateCode} reports it, -1 if no thread has that state. */
+    public int stateCode(String name) {
+        for (int c = 0; c < stateNames.length; c++) if (stateNames[c].equals(name)) return c;
+        return -1;
+    }
+
+    public String name(int i)     { return utf8(text, textOff[2 * i], textOff[2 * i + 1]); }
+    public String lockInfo(int i) { return utf8(text, textOff[2 * i + 1], textOff[2 * i + 2]); }
+
+    /** The UTF-8 bytes of row {@code i}'s name, for writing or matching without decoding. */
+    public byte[] textBuffer()        { return text; }
+    public int    nameStart(int i)    { return textOff[2 * i]; }
+    public int    nameEnd(int i)      { return textOff[2 * i + 1]; }
+
+    /** Whether row {@code i}'s lock line, or the address or class of any lock it holds or waits on, contains {@code s}. */
+    public boolean locksMention(int i, String s) {
+        if (textOff[2 * i + 2] > textOff[2 * i + 1] && lockInfo(i).contains(s)) return true;
+        for (int k = lockStart[i]; k < lockStart[i + 1]; k++)
+            if (lockStrings[lockAddress[k]].contains(s) || lockStrings[lockClass[k]].contains(s)) return true;
+        return false;
+    }
+
+    public List<LockRef> locks(int i) {
+        int from = lockStart[i], to = lockStart[i + 1];
+        if (from == to) return List.of();
+        List<LockRef> l = new ArrayList<>(to - from);
+        LockRef.Kind[] kinds = LockRef.Kind.values();
+        for (int k = from; k < to; k++)
+            l.add(new LockRef(kinds[lockKind[k]], lockStrings[lockAddress[k]], lockStrings[lockClass[k]]));
+        return l;
+    }
+
+    // ── Stacks ───────────────────────────────────────────────────────────────
+
+    public int stackCount()         { return stackThreads.length; }
+    public int stackThreads(int id) { return stackThreads[id]; }
+    public int stackDepth(int id)   { return stackOff[id + 1] - stackOff[id]; }
+
+    /** Frame id at {@code depth} (0 = top) of stack {@code id}. */
+    public int stackFrame(int id, int depth) { return stackFrames[stackOff[id] + depth]; }
+
+    public int    frameCount()       { return frameOff.length - 1; }
+    public String frameText(int f)   { return utf8(frameText, frameOff[f], frameOff[f + 1]); }
+
+    /** The trace as {@link StackSignature#text} had it: frame lines joined by '\n', trimmed as a whole. */
+    public String stackText(int id) {
+        int from = stackOff[id], to = stackOff[id + 1];
+        if (from == to) return "";
+        StringBuilder sb = new StringBuilder((to - from) * 64);
+        for (int k = from; k < to; k++) {
+            if (k > from) sb.append('\n');
+            sb.append(frameText(stackFrames[k]));
+        }
+        return sb.toString().trim();
+    }
+
+    /** Stack ids carried by at least {@code minThreads} threads, largest group first. */
+    public int[] stackGroups(int minThreads) {
+        int count = 0;
+        for (int t : stackThreads) if (t >= minThreads) count++;
+        Integer[] ids = new Integer[count];
+        for (int s = 0, k = 0; s < stackThreads.length; s++) if (stackThreads[s] >= minThreads) ids[k++] = s;
+        Arrays.sort(ids, (a, b) -> stackThreads[a] != stackThreads[b]
+                ? Integer.compare(stackThreads[b], stackThreads[a]) : Integer.compare(a, b));
+        int[] out = new int[count];
+        for (int k = 0; k < count; k++) out[k] = ids[k];
+        return out;
+    }
+
+    // ── ThreadInfo views ─────────────────────────────────────────────────────
+
+    /** Row {@code i} as a fresh ThreadInfo; its stack is null, stackTrace holds the text. */
+    public ThreadInfo get(int i) {
+        ThreadInfo t = new ThreadInfo(name(i));
+        t.threadNum   = threadNum[i];
+        t.daemon      = daemon(i);
+        t.priority    = priority[i];
+        t.osPriority  = osPriority[i];
+        t.tid         = tid(i);
+        t.nid         = nid(i);
+        t.nidDecimal  = nidDecimal(i);
+        t.cpuMs       = cpuMs[i];
+        t.elapsedMs   = elapsedMs[i];
+        t.cpuPercent  = cpuPercent[i];
+        t.state       = state(i);
+        t.stateDetail = stateDetail(i);
+        t.lockInfo    = lockInfo(i);
+        t.locks       = locks(i);
+        t.health      = health(i).name();
+        t.stackTrace  = stackId[i] >= 0 ? stackText(stackId[i]) : "";
+        return t;
+    }
+
+    /** Read-only list over the rows; each get() materializes the row anew. */
+    public List<ThreadInfo> asList() {
+        return new AbstractList<>() {
+            @Override public ThreadInfo get(int i) { return ThreadTable.this.get(i); }
+            @Override public int size()            { return size; }
+        };
+    }
+
+    private static String utf8(byte[] b, int from, int to) {
+        return from == to ? "" : new String(b, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    // ── Builders ─────────────────────────────────────────────────────────────
+
+    /** Small string → code dictionary, codes in order of first sight. */
+    private static final class Dict {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> names;
+
+        Dict(int expected) { names = new ArrayList<>(expected); }
+
+        int code(String s) { return code(s, Integer.MAX_VALUE); }
+
+        /** Code of {@code s}, or -1 if it is new and the dictionary already holds {@code max} + 1 names. */
+        int code(String s, int max) {
+            Integer c = codes.get(s);
+            if (c != null) return c;
+            if (names.size() > max) return -1;
+            names.add(s);
+            codes.put(s, names.size() - 1);
+            return names.size() - 1;
+        }
+
+        String[] names() { return names.toArray(new String[0]); }
+    }
+
+    /** Growable UTF-8 byte buffer. */
+    private static final class Utf8 {
+        private byte[] buf;
+        private int    len;
+
+        Utf8(int initial) { buf = new byte[Math.max(64, initial)]; }
+
+        int size() { return len; }
+
+        void add(String s) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            if (len + b.length > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + b.length));
+            System.arraycopy(b, 0, buf, len, b.length);
+            len += b.length;
+        }
+
+        byte[] bytes() { return Arrays.copyOf(buf, len); }
+    }
+}
@@ -0,0 +1,305 @@
+package com.analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Segment files written, reopened and merged, and the searches the index answers over them. */
+class DumpIndexTest {
+
+    @TempDir Path dir;
+
+    // ── Fixtures ─────────────────────────────────────────────────────────────
+
+    /** {@code n} threads named {@code tag-k}: BLOCKED in Cache.get, RUNNABLE in HttpServer, or parked in Pool.take by k % 3. */
+    private static ThreadTable table(String tag, int n) {
+        StringBuilder dump = new StringBuilder();
+        for (int k = 0; k < n; k++) {
+            dump.append('"').append(tag).append('-').append(k).append("\" #").append(k + 1)
+                .append(" prio=5 tid=0x").append(Integer.toHexString(k + 1)).append(" nid=0x").append(Integer.toHexString(k + 1))
+                .append(" runnable\n");
+            switch (k % 3) {
+                case 0 -> dump.append("   java.lang.Thread.State: BLOCKED (on object monitor)\n")
+                              .append("\tat com.example.Cache.get(Cache.java:10)\n")
+                              .append("\t- waiting to lock <0x00000000AAAA0001> (a java.lang.Object)\n");
+                case 1 -> dump.append("   java.lang.Thread.State: RUNNABLE\n")
+                              .append("\tat com.example.HttpServer.handleRequest(HttpServer.java:20)\n")
+                              .append("\t- locked <0x00000000aaaa0001> (a java.lang.Object)\n");
+                default -> dump.append("   java.lang.Thread.State: WAITING (parking)\n")
+                               .append("\tat com.example.Pool.take(Pool.java:30)\n");
+            }
+            dump.append("\tat com.example.Worker.run(Worker.java:5)\n\n");
+        }
+        ThreadDumpParser parser = new ThreadDumpParser();
+        List<ThreadInfo> threads = parser.parse(dump.toString());
+        assertEquals(n, threads.size());
+        return ThreadTable.of(threads, parser.stackTable());
+    }
+
+    private static List<Path> segmentFiles(Path dir) throws IOException {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(p -> p.getFileName().toString().endsWith(".tdx")).sorted().toList();
+        }
+    }
+
+    /** The one-dump segment the index writes for {@code table}, in a directory of its own. */
+    private IndexSegment segment(String id, ThreadTable table) throws IOException {
+        Path own = dir.resolve("single-" + id);
+        try (DumpIndex index = new DumpIndex(own)) {
+            assertTrue(index.add(id, "dump " + id, table));
+        }
+        List<Path> files = segmentFiles(own);
+        assertEquals(1, files.size());
+        return IndexSegment.open(files.get(0), 0);
+    }
+
+    private static int[] postings(IndexSegment seg, String term) {
+        int t = seg.find(term.getBytes(StandardCharsets.UTF_8));
+        if (t < 0) return new int[0];
+        int[] docs = new int[seg.docFreq(t)];
+        seg.postings(t, docs, 0, 0);
+        return docs;
+    }
+
+    private static String search(DumpIndex index, String query) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.writeSearch(query, 100, 100, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    // The first number called name in json
+    private static long num(String json, String name) {
+        int at = json.indexOf("\"" + name + "\":") + name.length() + 3;
+        int end = at;
+        while (end < json.length() && Character.isDigit(json.charAt(end))) end++;
+        return Long.parseLong(json.substring(at, end));
+    }
+
+    private static int count(String json, String text) {
+        int n = 0;
+        for (int at = json.indexOf(text); at >= 0; at = json.indexOf(text, at + 1)) n++;
+        return n;
+    }
+
+    // ── Segments ─────────────────────────────────────────────────────────────
+
+    @Test
+    void segmentReadsBackAsWritten() throws IOException {
+        ThreadTable table = table("a", 7);
+        IndexSegment seg = segment("id-a", table);
+
+        assertEquals(1, seg.dumpCount);
+        assertEquals(7, seg.docCount);
+        assertEquals("id-a", seg.dumpId(0));
+        assertEquals("dump id-a", seg.dumpName(0));
+        assertEquals(7, seg.threadCount(0));
+        assertTrue(seg.indexedAt(0) > 0);
+        for (int i = 0; i < table.size(); i++) {
+            assertEquals(table.name(i), seg.threadName(i));
+            assertEquals(ThreadTable.State.valueOf(table.state(i)).ordinal(), seg.state(i));
+            assertEquals(table.health(i).ordinal(), seg.health(i));
+            assertEquals(0, seg.dumpOf(i));
+        }
+        for (int t = 1; t < seg.termCount; t++) assertTrue(IndexSegment.compare(seg.term(t - 1), seg.term(t)) < 0, "terms sorted");
+
+        assertArrayEquals(new int[] {0, 3, 6}, postings(seg, DumpIndex.FRAME + "com.example.Cache.get"));
+        assertArrayEquals(new int[] {1, 4},    postings(seg, DumpIndex.HELD + "0x00000000aaaa0001"));
+        assertArrayEquals(new int[] {0, 3, 6}, postings(seg, DumpIndex.WAITING + "0x00000000aaaa0001"));
+        assertArrayEquals(new int[] {0, 1, 2, 3, 4, 5, 6}, postings(seg, DumpIndex.TOKEN + "worker"));
+        assertArrayEquals(new int[] {2, 5},    postings(seg, DumpIndex.STATE + "waiting"));
+        assertEquals(-1, seg.find("frame:com.example.Missing.x".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(seg.termCount, seg.ceiling(new byte[] {(byte) 0xFF}));
+    }
+
+    @Test
+    void mergeKeepsEveryDumpDocAndPosting() throws IOException {
+        List<IndexSegment> sources = new ArrayList<>();
+        for (int k = 0; k < 8; k++) sources.add(segment("id-" + k, table("d" + k, 1 + 2 * k)));
+        Path file = dir.resolve("merged.tdx");
+        IndexSegment.merge(file, sources);
+        IndexSegment merged = IndexSegment.open(file, 1);
+
+        assertEquals(8, merged.dumpCount);
+        int base = 0;
+        for (int k = 0; k < 8; k++) {
+            IndexSegment s = sources.get(k);
+            assertEquals(s.dumpId(0),      merged.dumpId(k));
+            assertEquals(s.dumpName(0),    merged.dumpName(k));
+            assertEquals(s.indexedAt(0),   merged.indexedAt(k));
+            assertEquals(s.threadCount(0), merged.threadCount(k));
+            assertEquals(base,             merged.docBase(k));
+            for (int i = 0; i < s.docCount; i++) {
+                assertEquals(s.threadName(i), merged.threadName(base + i));
+                assertEquals(s.state(i),      merged.state(base + i));
+                assertEquals(s.health(i),     merged.health(base + i));
+                assertEquals(k,               merged.dumpOf(base + i));
+            }
+            // Every term of the source, its docs shifted by the source's base
+            for (int t = 0; t < s.termCount; t++) {
+                String term = new String(s.term(t), StandardCharsets.UTF_8);
+                int[] expected = postings(s, term), all = postings(merged, term);
+                for (int i = 0; i < expected.length; i++) expected[i] += base;
+                int from = 0;
+                while (from < all.length && all[from] < base) from++;
+                assertArrayEquals(expected, Arrays.copyOfRange(all, from, from + expected.length), term + " in dump " + k);
+            }
+            base += s.docCount;
+        }
+        assertEquals(base, merged.docCount);
+        for (int t = 0; t < merged.termCount; t++) {
+            if (t > 0) assertTrue(IndexSegment.compare(merged.term(t - 1), merged.term(t)) < 0, "terms sorted and distinct");
+            long freq = 0;
+            for (IndexSegment s : sources) {
+                int st = s.find(merged.term(t));
+                if (st >= 0) freq += s.docFreq(st);
+            }
+            assertEquals(freq, merged.docFreq(t));
+        }
+    }
+
+    @Test
+    void dumpOfSkipsDumpsWithoutThreads() throws IOException {
+        ThreadTable empty = table("e", 0);
+        List<IndexSegment> sources = List.of(segment("e0", empty), segment("a", table("a", 3)), segment("e1", empty),
+                segment("e2", empty), segment("b", table("b", 2)), segment("e3", empty));
+        Path file = dir.resolve("merged.tdx");
+        IndexSegment.merge(file, sources);
+        IndexSegment seg = IndexSegment.open(file, 1);
+
+        assertEquals(6, seg.dumpCount);
+        assertEquals(5, seg.docCount);
+        assertEquals(0, seg.threadCount(0));
+        assertEquals(0, seg.threadCount(5));
+        int[] expected = {1, 1, 1, 4, 4};
+        for (int doc = 0; doc < 5; doc++) assertEquals(expected[doc], seg.dumpOf(doc), "doc " + doc);
+        assertEquals("b-1", seg.threadName(4));
+    }
+
+    // ── Index ────────────────────────────────────────────────────────────────
+
+    @Test
+    void eightSegmentsOfATierAreMerged() throws IOException {
+        try (DumpIndex index = new DumpIndex(dir)) {
+            for (int k = 0; k < 8; k++) assertTrue(index.add("id-" + k, "dump " + k, table("d" + k, 4 + k)));
+            assertFalse(index.add("id-3", "again", table("d3", 7)), "a dump already indexed is skipped");
+            String stats = index.statsJson();
+            assertEquals(1, num(stats, "segments"));
+            assertEquals(8, num(stats, "dumps"));
+            assertEquals(4 * 8 + 28, num(stats, "threads"));
+        }
+        assertEquals(1, segmentFiles(dir).size());
+        try (DumpIndex reopened = new DumpIndex(dir)) {
+            assertEquals(8, num(reopened.statsJson(), "dumps"));
+        }
+    }
+
+    @Test
+    void prefixQueriesUnionTheirTerms() throws IOException {
+        try (DumpIndex index = new DumpIndex(dir)) {
+            index.add("a", "a", table("a", 6));
+            index.add("b", "b", table("b", 4));
+
+            // Several terms under the prefix: a thread matching more than one still counts once
+            String all = search(index, "frame:com.example.*");
+            assertEquals(10, num(all, "threads"));
+            assertEquals(2, num(all, "dumps"));
+            String some = search(index, "frame:com.example.Cache.* state:blocked");
+            assertEquals(4, num(some, "threads"));
+            assertTrue(some.contains("\"facets\":{\"state\":{\"BLOCKED\":4}"), some);
+            // One term under the prefix
+            assertEquals(3, num(search(index, "token:handlereq*"), "threads"));
+            assertEquals(0, num(search(index, "token:nothing*"), "threads"));
+            assertEquals(7, num(search(index, "0x00000000AAAA0001"), "threads"));
+            assertEquals(3, num(search(index, "held:<0x00000000aaaa0001>"), "threads"));
+        }
+    }
+
+    @Test
+    void partlyDuplicatedSegmentsAreCountedOnce() throws IOException {
+        // What a crash between a merge's rename and its deletes can leave: y is in both files
+        IndexSegment x = segment("x", table("x", 1)), y = segment("y", table("y", 1)), z = segment("z", table("z", 1));
+        Path index = dir.resolve("index");
+        Files.createDirectories(index);
+        IndexSegment.merge(index.resolve("seg-000000000005.tdx"), List.of(x, y));
+        IndexSegment.merge(index.resolve("seg-000000000006.tdx"), List.of(y, z));
+
+        try (DumpIndex i = new DumpIndex(index)) {
+            assertOnce(i, 3);
+            ByteArrayOutputStream terms = new ByteArrayOutputStream();
+            i.writeTerms("token:work", 10, terms);
+            assertEquals("{\"terms\":[{\"term\":\"token:worker\",\"threads\":3}]}", terms.toString(StandardCharsets.UTF_8));
+
+            // Merged with six more: the hidden copy stays hidden in the merged segment
+            for (int k = 0; k < 6; k++) i.add("n" + k, "n" + k, table("n" + k, 1));
+            assertEquals(1, num(i.statsJson(), "segments"));
+            assertOnce(i, 9);
+        }
+        try (DumpIndex i = new DumpIndex(index)) {
+            assertOnce(i, 9);
+        }
+    }
+
+    private static void assertOnce(DumpIndex index, int dumps) throws IOException {
+        String found = search(index, "token:worker");
+        assertEquals(dumps, num(found, "dumps"));
+        assertEquals(dumps, num(found, "threads"));
+        assertEquals(dumps, num(found, "dumpsSearched"));
+        assertEquals(1, count(found, "\"dumpId\":\"y\""));
+        assertTrue(found.contains("\"facets\":{\"state\":{\"BLOCKED\":" + dumps + "}"), found);
+        assertEquals(dumps, num(index.statsJson(), "dumps"));
+        assertEquals(dumps, num(index.statsJson(), "threads"));
+    }
+
+    // ── Queries ──────────────────────────────────────────────────────────────
+
+    @Test
+    void clausesFollowTheQueryRules() {
+        assertEquals(List.of(new DumpIndex.Clause(DumpIndex.FRAME, "com.Foo.bar", false),
+                             new DumpIndex.Clause(DumpIndex.LOCK, "0x00000000aaaa0001", false),
+                             new DumpIndex.Clause(DumpIndex.TOKEN, "hikari", true)),
+                     DumpIndex.parse("  com.Foo.bar   0x00000000AAAA0001 Hikari* "));
+        assertEquals(List.of(new DumpIndex.Clause(DumpIndex.STATE, "blocked", false),
+                             new DumpIndex.Clause(DumpIndex.HELD, "0x1a", false),
+                             new DumpIndex.Clause(DumpIndex.LOCK_CLASS, "java.util.concurrent.locks.ReentrantLock$NonfairSync", false),
+                             new DumpIndex.Clause(DumpIndex.FRAME, "org.Apache.", true)),
+                     DumpIndex.parse("STATE:Blocked held:<0x1A> lockclass:java.util.concurrent.locks.ReentrantLock$NonfairSync frame:org.Apache.*"));
+        assertEquals(List.of(new DumpIndex.Clause(DumpIndex.TOKEN, "", true)), DumpIndex.parse("token:*"));
+        assertEquals("frame:org.Apache.*", DumpIndex.parse("frame:org.Apache.*").get(0).toString());
+
+        assertThrows(IllegalArgumentException.class, () -> DumpIndex.parse("   "));
+        assertThrows(IllegalArgumentException.class, () -> DumpIndex.parse("color:red"));
+        assertThrows(IllegalArgumentException.class, () -> DumpIndex.parse("state:"));
+        assertThrows(IllegalArgumentException.class, () -> DumpIndex.parse("held:<>"));
+    }
+
+    private static List<String> tokens(String method) {
+        List<String> out = new ArrayList<>();
+        DumpIndex.tokens(method, out::add);
+        return out;
+    }
+
+    @Test
+    void tokensSplitAtSeparatorsAndCamelCase() {
+        assertEquals(List.of("com", "zaxxer", "hikari", "pool", "hikaripool", "hikari", "pool", "getconnection", "get", "connection"),
+                     tokens("com.zaxxer.hikari.pool.HikariPool.getConnection"));
+        assertEquals(List.of("httpserver", "http", "server", "parseurl", "parse", "url"), tokens("HTTPServer.parseURL"));
+        assertEquals(List.of("utf8decoder", "utf", "decoder", "v2", "init"), tokens("Utf8Decoder$v2.<init>"));
+        assertEquals(List.of("outer", "lambda", "0x1", "run"), tokens("Outer$$Lambda$17/0x1.run"));
+        assertEquals(List.of("io", "netty", "my", "type"), tokens("io/netty.my_type"));
+    }
+}
@@ -0,0 +1,183 @@
+package com.analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/** Threads followed across snapshots: how they are paired, their interval CPU, and when they count as stuck. */
+class DumpSeriesTest {
+
+    private static final String SPIN  = "\tat com.example.Spin.loop(Spin.java:7)\n";
+    private static final String CACHE = "\tat com.example.Cache.get(Cache.java:10)\n";
+    private static final String PARK  = "\tat jdk.internal.misc.Unsafe.park(Native Method)\n";
+
+    /** A thread as jstack prints it; {@code ids} is the "tid=... nid=..." part, or "" for none. */
+    private static String thread(String name, double cpuMs, double elapsedS, String ids, String state, String stack) {
+        return "\"" + name + "\" #1 prio=5 os_prio=0 cpu=" + cpuMs + "ms elapsed=" + elapsedS + "s " + ids + " runnable\n"
+                + "   java.lang.Thread.State: " + state + "\n" + stack + "\n";
+    }
+
+    private static String blocked(String address) {
+        return CACHE + "\t- waiting to lock <" + address + "> (a java.lang.Object)\n";
+    }
+
+    private static DumpSeries series(String... dumps) {
+        List<List<ThreadInfo>> snapshots = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (String d : dumps) {
+            snapshots.add(new ThreadDumpParser().parse(d));
+            names.add("dump" + names.size() + ".txt");
+        }
+        return DumpSeries.analyze(snapshots, names);
+    }
+
+    private static DumpSeries.Track track(DumpSeries s, String name) {
+        DumpSeries.Track found = null;
+        for (DumpSeries.Track t : s.tracks) {
+            if (!t.latest().name.equals(name)) continue;
+            assertNull(found, "one track named " + name);
+            found = t;
+        }
+        assertNotNull(found, name);
+        return found;
+    }
+
+    // ── Interval CPU ─────────────────────────────────────────────────────────
+
+    @Test
+    void intervalCpuIsTheRateBetweenTwoDumps() {
+        DumpSeries s = series(
+                thread("spinner", 1000, 100, "tid=0x1 nid=0x10", "RUNNABLE", SPIN)
+                        + thread("idle", 5000, 100, "tid=0x2 nid=0x11", "WAITING (parking)", PARK)
+                        + thread("reused", 900, 50, "tid=0x3 nid=0x12", "RUNNABLE", SPIN),
+                thread("spinner", 1900, 101, "tid=0x1 nid=0x10", "RUNNABLE", SPIN)
+                        + thread("idle", 5010, 101, "tid=0x2 nid=0x11", "WAITING (parking)", PARK)
+                        + thread("reused", 10, 0.5, "tid=0x3 nid=0x12", "RUNNABLE", SPIN));
+
+        // 900 ms of CPU in one second: 90%, where the lifetime average is 1.9%
+        DumpSeries.Track spinner = track(s, "spinner");
+        assertEquals(-1, spinner.intervalCpuPercent[0]);
+        assertEquals(90.0, spinner.intervalCpuPercent[1], 1e-9);
+        assertEquals(90.0, spinner.maxIntervalCpuPercent, 1e-9);
+        assertEquals(1.0, track(s, "idle").intervalCpuPercent[1], 1e-9);
+        // Less CPU and a shorter life than before: another thread with the same ids
+        assertEquals(-1, track(s, "reused").intervalCpuPercent[1]);
+        assertEquals(spinner, s.tracks.get(0), "highest interval CPU first");
+    }
+
+    @Test
+    void intervalCpuNeedsBothSamplesAndBothTimes() {
+        DumpSeries s = series(
+                thread("late", 10, 1, "tid=0x1 nid=0x10", "RUNNABLE", SPIN),
+                "\"late\" #1 prio=5 tid=0x1 nid=0x10 runnable\n   java.lang.Thread.State: RUNNABLE\n" + SPIN + "\n"
+                        + thread("new", 10, 1, "tid=0x2 nid=0x11", "RUNNABLE", SPIN),
+                thread("late", 30, 3, "tid=0x1 nid=0x10", "RUNNABLE", SPIN)
+                        + thread("new", 20, 2, "tid=0x2 nid=0x11", "RUNNABLE", SPIN));
+
+        assertArrayEquals(new double[] {-1, -1, -1}, track(s, "late").intervalCpuPercent, "no cpu= in the middle dump");
+        DumpSeries.Track fresh = track(s, "new");
+        assertNull(fresh.samples[0]);
+        assertEquals(-1, fresh.intervalCpuPercent[1]);
+        assertEquals(1.0, fresh.intervalCpuPercent[2], 1e-9);
+    }
+
+    // ── Pairing ──────────────────────────────────────────────────────────────
+
+    @Test
+    void poolThreadWithANewNidIsANewThread() {
+        // The pool replaced its worker: same name, new OS thread. Its CPU starts again from 0
+        DumpSeries s = series(
+                thread("pool-1-thread-1", 4000, 60, "tid=0x1 nid=0x10", "RUNNABLE", SPIN),
+                thread("pool-1-thread-1", 5,    1,  "tid=0x2 nid=0x20", "RUNNABLE", SPIN),
+                thread("pool-1-thread-1", 505,  2,  "tid=0x2 nid=0x20", "RUNNABLE", SPIN));
+
+        assertEquals(2, s.tracks.size());
+        DumpSeries.Track before = s.tracks.stream().filter(t -> t.samples[0] != null).findFirst().orElseThrow();
+        DumpSeries.Track after  = s.tracks.stream().filter(t -> t.samples[0] == null).findFirst().orElseThrow();
+        assertNull(before.samples[1]);
+        assertNull(before.samples[2]);
+        assertArrayEquals(new double[] {-1, -1, -1}, before.intervalCpuPercent);
+        assertEquals("", before.stuck, "absent from later dumps");
+        assertEquals(50.0, after.intervalCpuPercent[2], 1e-9);
+        assertEquals("", after.stuck, "absent from the first dump");
+        assertArrayEquals(new int[] {0, 0, 0}, s.dropped);
+    }
+
+    @Test
+    void sameNamedThreadsWithoutIdsPairInDumpOrder() {
+        String first  = thread("pool-worker", 100, 10, "", "RUNNABLE", SPIN) + thread("pool-worker", 200, 10, "", "RUNNABLE", SPIN);
+        String second = thread("pool-worker", 600, 11, "", "RUNNABLE", SPIN) + thread("pool-worker", 210, 11, "", "RUNNABLE", SPIN);
+        DumpSeries s = series(first, second);
+
+        assertEquals(2, s.tracks.size());
+        assertEquals("name:pool-worker",   s.tracks.get(0).key);
+        assertEquals(50.0, s.tracks.get(0).maxIntervalCpuPercent, 1e-9);
+        assertEquals("name:pool-worker#1", s.tracks.get(1).key);
+        assertEquals(1.0,  s.tracks.get(1).maxIntervalCpuPercent, 1e-9);
+        assertArrayEquals(new int[] {0, 0}, s.dropped);
+    }
+
+    @Test
+    void duplicateIdsInOneDumpAreDropped() {
+        DumpSeries s = series(
+                thread("a", 1, 1, "tid=0x1 nid=0x10", "RUNNABLE", SPIN) + thread("b", 1, 1, "tid=0x1 nid=0x10", "RUNNABLE", SPIN),
+                thread("a", 2, 2, "tid=0x1 nid=0x10", "RUNNABLE", SPIN));
+        assertEquals(1, s.tracks.size());
+        assertEquals("a", s.tracks.get(0).samples[0].name, "first wins");
+        assertArrayEquals(new int[] {2, 1}, s.threadCounts);
+        assertArrayEquals(new int[] {1, 0}, s.dropped);
+    }
+
+    // ── Stuck ────────────────────────────────────────────────────────────────
+
+    @Test
+    void stuckOnlyWhenTheSameInEverySnapshot() {
+        String[] dumps = new String[4];
+        for (int i = 0; i < dumps.length; i++) {
+            double cpu = 100 * (i + 1), elapsed = 10 + i;
+            dumps[i] = thread("spin", cpu, elapsed, "tid=0x1 nid=0x10", "RUNNABLE", SPIN)
+                    // same lock every time, from different call sites
+                    + thread("waiter", 5, elapsed, "tid=0x2 nid=0x11", "BLOCKED (on object monitor)",
+                             (i % 2 == 0 ? "" : SPIN) + blocked("0x00000000aaaa0001"))
+                    + thread("hung", 5, elapsed, "tid=0x3 nid=0x12", "BLOCKED (on object monitor)",
+                             blocked("0x00000000aaaa000" + (i + 2)))
+                    + thread("moved", cpu, elapsed, "tid=0x4 nid=0x13", "RUNNABLE", i == 3 ? CACHE : SPIN)
+                    + thread("parked", 5, elapsed, "tid=0x5 nid=0x14", "WAITING (parking)", PARK)
+                    + (i == 2 ? "" : thread("gone", cpu, elapsed, "tid=0x6 nid=0x15", "RUNNABLE", SPIN));
+        }
+        DumpSeries s = series(dumps);
+
+        assertEquals("stack", track(s, "spin").stuck);
+        assertEquals("lock",  track(s, "waiter").stuck);
+        assertEquals("",      track(s, "hung").stuck, "a different monitor each time, and a different stack");
+        assertEquals("",      track(s, "moved").stuck, "left the loop in the last dump");
+        assertEquals("",      track(s, "parked").stuck, "waiting is not stuck");
+        assertEquals("",      track(s, "gone").stuck, "missing from one dump");
+
+        // Three snapshots are enough to be stuck; the fourth is what moved it
+        assertEquals("stack", track(series(Arrays.copyOf(dumps, 3)), "moved").stuck);
+        assertEquals("",      track(series(dumps[0]), "spin").stuck, "one snapshot proves nothing");
+    }
+
+    @Test
+    void jsonListsSnapshotsAndSamples() throws Exception {
+        DumpSeries s = series(thread("t", 10, 1, "tid=0x1 nid=0x10", "RUNNABLE", SPIN),
+                              thread("u", 10, 1, "tid=0x2 nid=0x11", "RUNNABLE", SPIN));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        s.writeJson(out);
+        String json = out.toString(StandardCharsets.UTF_8);
+        assertTrue(json.startsWith("{\"snapshots\":[{\"name\":\"dump0.txt\",\"threads\":1,\"dropped\":0},"), json);
+        assertTrue(json.contains("\"samples\":[null,{\"state\":\"RUNNABLE\""), json);
+        assertTrue(json.contains("\"samples\":[{\"state\":\"RUNNABLE\",\"cpuMs\":10.0,\"elapsedMs\":1000.0,\"intervalCpuPercent\":null},null]"), json);
+    }
+}
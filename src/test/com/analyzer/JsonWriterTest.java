@@ -0,0 +1,186 @@
+package com.analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/** The streaming writer against the StringBuilder serializer it replaced, byte for byte. */
+class JsonWriterTest {
+
+    private interface Body { void write(JsonWriter w) throws IOException; }
+
+    private static byte[] bytes(Body body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonWriter w = new JsonWriter(out);
+        body.write(w);
+        w.flush();
+        return out.toByteArray();
+    }
+
+    private static String json(Body body) throws IOException {
+        return new String(bytes(body), StandardCharsets.UTF_8);
+    }
+
+    // What the old serializer sent: its String, encoded by the server with getBytes
+    private static byte[] old(String json) { return json.getBytes(StandardCharsets.UTF_8); }
+
+    // ── Strings ──────────────────────────────────────────────────────────────
+
+    @Test
+    void escapesQuotesBackslashesAndWhitespaceAsBefore() throws IOException {
+        for (String s : new String[] { "", "plain", "say \"hi\"", "C:\\temp\\x", "\\\"", "a\nb\r\nc\td",
+                                       "\"quoted\"\n\tat com.Foo.bar(Foo.java:1)\n", "end\\" }) {
+            assertArrayEquals(old(Baseline.str(s)), bytes(w -> w.str(s)), s);
+        }
+        assertEquals("\"a\\\"b\\\\c\\nd\\re\\tf\"", json(w -> w.str("a\"b\\c\nd\re\tf")));
+        assertEquals("\"\"", json(w -> w.str(null)));
+    }
+
+    @Test
+    void escapesEveryOtherControlCharacter() throws IOException {
+        StringBuilder expected = new StringBuilder("\"");
+        StringBuilder all = new StringBuilder();
+        for (char c = 0; c < 0x20; c++) {
+            all.append(c);
+            expected.append(switch (c) {
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                case '\t' -> "\\t";
+                default   -> String.format("\\u%04x", (int) c);
+            });
+        }
+        assertEquals(expected.append('"').toString(), json(w -> w.str(all.toString())));
+        // The one intended difference: the old serializer let these through raw, which is not JSON
+        assertEquals("\"\\u0000\"", json(w -> w.str("\u0000")));
+        assertEquals("\"\\u001f\"", json(w -> w.str("\u001f")));
+        assertEquals("\"\u007f\"", json(w -> w.str("\u007f")), "DEL needs no escape");
+    }
+
+    @Test
+    void encodesNonAsciiAndSurrogatesAsGetBytesDoes() throws IOException {
+        for (String s : new String[] {
+                "é", "naïve café", "пул-потоков", "线程-1", "\u0800\uffff", "emoji \uD83D\uDE00 pair",
+                "\uD834\uDD1E", "lone high \uD83D end", "lone low \uDE00 end", "\uDE00\uD83D", "\uD83D",
+                "high at end \uD83D", "\uD83D\uD83D\uDE00" }) {
+            assertArrayEquals(old(Baseline.str(s)), bytes(w -> w.str(s)), s);
+            assertArrayEquals(s.getBytes(StandardCharsets.UTF_8), bytes(w -> w.raw(s)), "raw " + s);
+        }
+    }
+
+    @Test
+    void longStringsCrossTheBufferIntact() throws IOException {
+        // Longer than the 16 KB window, with escapes and multi-byte chars landing on every offset
+        StringBuilder sb = new StringBuilder();
+        String[] pieces = { "a", "\"", "\\", "\n", "é", "线", "\uD83D\uDE00", "\u0001", "\uD83D" };
+        for (int i = 0; sb.length() < 70_000; i++) sb.append(pieces[i % pieces.length]).append(pieces[i * 7 % pieces.length]);
+        String s = sb.toString();
+        byte[] expected = old(Baseline.str(s).replace("\u0001", "\\u0001"));
+        for (int lead = 0; lead < 5; lead++) {
+            String prefix = "x".repeat(16 * 1024 - 3 + lead);
+            byte[] got = bytes(w -> w.raw(prefix).str(s));
+            assertArrayEquals(expected, Arrays.copyOfRange(got, prefix.length(), got.length), "lead " + lead);
+        }
+    }
+
+    // ── Numbers ──────────────────────────────────────────────────────────────
+
+    @Test
+    void roundsToTwoPlacesAsBefore() throws IOException {
+        double[] values = { 0, -0.0, 0.004, 0.005, 0.015, 1.005, 1.5, 2.675, 123.456, 99.999, 1e6, 1.23456789e7,
+                            1e-5, 3.0, Double.MAX_VALUE, Long.MAX_VALUE / 100.0, -1, -0.5, -1e9 };
+        for (double v : values) assertEquals(Baseline.r2(v), json(w -> w.r2(v)), "r2 " + v);
+
+        assertEquals("null",    json(w -> w.r2(-1)));
+        assertEquals("0.0",     json(w -> w.r2(0)));
+        assertEquals("123.46",  json(w -> w.r2(123.456)));
+        assertEquals("1.23456789E7", json(w -> w.r2(1.23456789e7)), "Double.toString past 10^7");
+    }
+
+    @Test
+    void writesIntegersAndBooleansAsJava() throws IOException {
+        assertEquals("0,-1,9223372036854775807,-9223372036854775808,2.5,true,false",
+                json(w -> w.num(0).raw(",").num(-1).raw(",").num(Long.MAX_VALUE).raw(",").num(Long.MIN_VALUE)
+                           .raw(",").num(2.5).raw(",").bool(true).raw(",").bool(false)));
+    }
+
+    // ── Whole threads ────────────────────────────────────────────────────────
+
+    @Test
+    void threadArrayMatchesTheOldSerializer() throws IOException {
+        String dump = String.join("\n",
+                "\"worker \\\"1\\\"\" #11 daemon prio=5 os_prio=0 cpu=120.456ms elapsed=9.1s tid=0x1011 nid=0xb waiting for monitor entry",
+                "   java.lang.Thread.State: BLOCKED (on object monitor)",
+                "\tat com.example.Account.transfer(Account.java:40)",
+                "\t- waiting to lock <0x00000000aaaa0002> (a java.lang.Object)",
+                "",
+                "\"пул-1\\thread\" #12 prio=5 cpu=0.004ms elapsed=3600.25s tid=0x1012 nid=0xc runnable",
+                "   java.lang.Thread.State: RUNNABLE",
+                "\tat C:\\src\\Main.run(Main.java:5)",
+                "",
+                "\"no-ids\" runnable",
+                "   java.lang.Thread.State: RUNNABLE",
+                "");
+        List<ThreadInfo> threads = new ThreadDumpParser().parse(dump);
+        assertEquals(3, threads.size());
+        assertArrayEquals(old(Baseline.toJson(threads)), JsonSerializer.toJson(threads).getBytes(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        JsonSerializer.write(threads, streamed);
+        assertArrayEquals(old(Baseline.toJson(threads)), streamed.toByteArray());
+    }
+
+    // ── Reference ────────────────────────────────────────────────────────────
+
+    /** JsonSerializer as it was before the streaming writer. Do not "fix" it: it is the spec. */
+    private static final class Baseline {
+
+        static String toJson(List<ThreadInfo> threads) {
+            StringBuilder sb = new StringBuilder("[");
+            for (int i = 0; i < threads.size(); i++) {
+                ThreadInfo t = threads.get(i);
+                if (i > 0) sb.append(",");
+                sb.append("{")
+                  .append("\"name\":"       ).append(str(t.name)        ).append(",")
+                  .append("\"threadNum\":"  ).append(t.threadNum         ).append(",")
+                  .append("\"state\":"      ).append(str(t.state)        ).append(",")
+                  .append("\"stateDetail\":").append(str(t.stateDetail)  ).append(",")
+                  .append("\"daemon\":"     ).append(t.daemon             ).append(",")
+                  .append("\"priority\":"   ).append(t.priority           ).append(",")
+                  .append("\"osPriority\":" ).append(t.osPriority         ).append(",")
+                  .append("\"tid\":"        ).append(str(t.tid)           ).append(",")
+                  .append("\"nid\":"        ).append(str(t.nid)           ).append(",")
+                  .append("\"nidDecimal\":" ).append(str(t.nidDecimal)    ).append(",")
+                  .append("\"cpuMs\":"      ).append(r2(t.cpuMs)          ).append(",")
+                  .append("\"elapsedMs\":"  ).append(r2(t.elapsedMs)      ).append(",")
+                  .append("\"cpuPercent\":" ).append(r2(t.cpuPercent)     ).append(",")
+                  .append("\"lockInfo\":"   ).append(str(t.lockInfo)      ).append(",")
+                  .append("\"health\":"     ).append(str(t.health)        ).append(",")
+                  .append("\"stackTrace\":" ).append(str(t.stackTrace)    )
+                  .append("}");
+            }
+            sb.append("]");
+            return sb.toString();
+        }
+
+        static String str(String s) {
+            if (s == null) return "\"\"";
+            return "\"" + s.replace("\\", "\\\\")
+                           .replace("\"", "\\\"")
+                           .replace("\n",  "\\n")
+                           .replace("\r",  "\\r")
+                           .replace("\t",  "\\t") + "\"";
+        }
+
+        static String r2(double v) {
+            if (v < 0) return "null";
+            return String.valueOf(Math.round(v * 100.0) / 100.0);
+        }
+    }
+}
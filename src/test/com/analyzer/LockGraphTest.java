@@ -0,0 +1,268 @@
+package com.analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/** Waits-for graphs built from parsed dumps: deadlock cycles, owners, and how much queues behind a lock. */
+class LockGraphTest {
+
+    // ── Dump building ────────────────────────────────────────────────────────
+
+    private static final String OBJECT = "java.lang.Object";
+    private static final String SYNC   = "java.util.concurrent.locks.ReentrantLock$NonfairSync";
+
+    private final StringBuilder dump = new StringBuilder();
+    private int threads;
+
+    /** Appends a thread; {@code lines} are lock lines under its one frame, or "owns 0x.." for an ownable synchronizer. */
+    private void thread(String name, String state, String... lines) {
+        threads++;
+        dump.append('"').append(name).append("\" #").append(threads).append(" prio=5 os_prio=0 tid=0x")
+            .append(Integer.toHexString(0x1000 + threads)).append(" nid=0x").append(Integer.toHexString(threads))
+            .append(" waiting\n   java.lang.Thread.State: ").append(state).append('\n')
+            .append("\tat com.example.Worker.run(Worker.java:").append(threads).append(")\n");
+        List<String> owned = new ArrayList<>();
+        for (String l : lines) {
+            if (l.startsWith("owns ")) owned.add(l.substring(5));
+            else dump.append('\t').append(l).append('\n');
+        }
+        if (!owned.isEmpty()) {
+            // jstack -l prints these after the stack's blank line
+            dump.append("\n   Locked ownable synchronizers:\n");
+            for (String a : owned) dump.append("\t- <").append(a).append("> (a ").append(SYNC).append(")\n");
+        }
+        dump.append('\n');
+    }
+
+    private static String waitingToLock(String addr) { return "- waiting to lock <" + addr + "> (a " + OBJECT + ")"; }
+    private static String locked(String addr)        { return "- locked <" + addr + "> (a " + OBJECT + ")"; }
+    private static String parking(String addr)       { return "- parking to wait for  <" + addr + "> (a " + SYNC + ")"; }
+    private static String owns(String addr)          { return "owns " + addr; }
+
+    private LockGraph build() {
+        List<ThreadInfo> parsed = new ThreadDumpParser().parse(dump.toString());
+        assertEquals(threads, parsed.size(), "threads parsed");
+        return LockGraph.build(parsed);
+    }
+
+    private static LockGraph.Monitor monitor(LockGraph g, String address) {
+        for (LockGraph.Monitor m : g.monitors) if (m.address.equals(address)) return m;
+        return null;
+    }
+
+    /** A cycle rotated to start at its smallest thread, so the test does not depend on where peeling started. */
+    private static int[] canonical(int[] cycle) {
+        int min = 0;
+        for (int i = 1; i < cycle.length; i++) if (cycle[i] < cycle[min]) min = i;
+        int[] r = new int[cycle.length];
+        for (int i = 0; i < cycle.length; i++) r[i] = cycle[(min + i) % cycle.length];
+        return r;
+    }
+
+    private static int[] sorted(int[] a) {
+        int[] c = a.clone();
+        Arrays.sort(c);
+        return c;
+    }
+
+    // ── Deadlocks ────────────────────────────────────────────────────────────
+
+    @Test
+    void twoThreadDeadlock() {
+        thread("A", "BLOCKED (on object monitor)", waitingToLock("0xb"), locked("0xa"));
+        thread("B", "BLOCKED (on object monitor)", waitingToLock("0xa"), locked("0xb"));
+        LockGraph g = build();
+
+        assertEquals(1, g.deadlocks.size());
+        assertArrayEquals(new int[] { 0, 1 }, canonical(g.deadlocks.get(0)));
+        assertArrayEquals(new int[] { 1, 0 }, g.blockedBy);
+        assertEquals(0, monitor(g, "0xa").owner);
+        assertEquals(1, monitor(g, "0xb").owner);
+        assertArrayEquals(new int[] { 1 }, monitor(g, "0xa").waiters);
+        // Each monitor of a deadlock reports the rest of the component as queued
+        assertEquals(1, monitor(g, "0xa").queued);
+        assertEquals(1, monitor(g, "0xb").queued);
+    }
+
+    @Test
+    void longCycle() {
+        int n = 6;
+        for (int t = 0; t < n; t++)
+            thread("T" + t, "BLOCKED (on object monitor)", waitingToLock("0x" + (t + 1) % n), locked("0x" + t));
+        thread("bystander", "RUNNABLE");
+        LockGraph g = build();
+
+        assertEquals(1, g.deadlocks.size());
+        assertArrayEquals(new int[] { 0, 1, 2, 3, 4, 5 }, canonical(g.deadlocks.get(0)));
+        for (int t = 0; t < n; t++) assertEquals((t + 1) % n, g.blockedBy[t]);
+        assertEquals(-1, g.blockedBy[n]);
+        for (int t = 0; t < n; t++) assertEquals(n - 1, monitor(g, "0x" + t).queued);
+    }
+
+    @Test
+    void twoSeparateDeadlocks() {
+        thread("A", "BLOCKED", waitingToLock("0xb"), locked("0xa"));
+        thread("B", "BLOCKED", waitingToLock("0xa"), locked("0xb"));
+        thread("C", "BLOCKED", waitingToLock("0xd"), locked("0xc"));
+        thread("D", "BLOCKED", waitingToLock("0xe"), locked("0xd"));
+        thread("E", "BLOCKED", waitingToLock("0xc"), locked("0xe"));
+        LockGraph g = build();
+
+        assertEquals(2, g.deadlocks.size());
+        List<int[]> cycles = new ArrayList<>();
+        for (int[] c : g.deadlocks) cycles.add(canonical(c));
+        cycles.sort((x, y) -> Integer.compare(x[0], y[0]));
+        assertArrayEquals(new int[] { 0, 1 },    cycles.get(0));
+        assertArrayEquals(new int[] { 2, 3, 4 }, cycles.get(1));
+    }
+
+    @Test
+    void chainFeedingIntoCycle() {
+        // 0 <-> 1 deadlocked; 2 waits for 1, 3 waits for 2, 4 waits for 3: a tail of three
+        thread("A", "BLOCKED", waitingToLock("0xb"), locked("0xa"));
+        thread("B", "BLOCKED", waitingToLock("0xa"), locked("0xb"));
+        thread("C", "BLOCKED", waitingToLock("0xb"), locked("0xc"));
+        thread("D", "BLOCKED", waitingToLock("0xc"), locked("0xd"));
+        thread("E", "BLOCKED", waitingToLock("0xd"));
+        LockGraph g = build();
+
+        assertEquals(1, g.deadlocks.size(), "the tail is not a deadlock of its own");
+        assertArrayEquals(new int[] { 0, 1 }, canonical(g.deadlocks.get(0)));
+        assertArrayEquals(new int[] { 1, 0, 1, 2, 3 }, g.blockedBy);
+
+        // Behind D's lock: E. Behind C's: D and E.
+        assertEquals(1, monitor(g, "0xd").queued);
+        assertEquals(2, monitor(g, "0xc").queued);
+        // 0xb is waited on by A (in the cycle) and C (the tail): everything in the component but its owner
+        assertArrayEquals(new int[] { 0, 2 }, sorted(monitor(g, "0xb").waiters));
+        assertEquals(4, monitor(g, "0xb").queued);
+        assertEquals(4, monitor(g, "0xa").queued);
+    }
+
+    @Test
+    void chainWithoutCycle() {
+        thread("owner",  "RUNNABLE", locked("0xa"));
+        thread("first",  "BLOCKED", waitingToLock("0xa"), locked("0xb"));
+        thread("second", "BLOCKED", waitingToLock("0xb"), locked("0xc"));
+        thread("third",  "BLOCKED", waitingToLock("0xc"));
+        thread("also",   "BLOCKED", waitingToLock("0xa"));
+        LockGraph g = build();
+
+        assertTrue(g.deadlocks.isEmpty());
+        assertArrayEquals(new int[] { -1, 0, 1, 2, 0 }, g.blockedBy);
+        assertEquals(4, monitor(g, "0xa").queued);
+        assertEquals(2, monitor(g, "0xb").queued);
+        assertEquals(1, monitor(g, "0xc").queued);
+        assertEquals("0xa", g.monitors.get(0).address, "most queued first");
+    }
+
+    // ── Object.wait() ────────────────────────────────────────────────────────
+
+    @Test
+    void waitReleasesTheMonitor() {
+        // In wait(): "locked" is printed for the monitor it has given up, so it owns nothing
+        thread("waiter", "WAITING (on object monitor)",
+               "- waiting on <0xa> (a " + OBJECT + ")", locked("0xa"));
+        thread("other", "BLOCKED (on object monitor)", waitingToLock("0xa"));
+        LockGraph g = build();
+
+        LockGraph.Monitor a = monitor(g, "0xa");
+        assertNotNull(a);
+        assertEquals(-1, a.owner);
+        assertArrayEquals(new int[] { -1, -1 }, g.blockedBy);
+        assertTrue(g.deadlocks.isEmpty());
+    }
+
+    @Test
+    void relockInsideWait() {
+        // Notified and woken: it must re-acquire 0xa, which the notifier still holds
+        thread("waiter", "BLOCKED (on object monitor)",
+               "- waiting to re-lock in wait() <0xa> (a " + OBJECT + ")", locked("0xa"));
+        thread("notifier", "RUNNABLE", locked("0xa"));
+        LockGraph g = build();
+
+        LockGraph.Monitor a = monitor(g, "0xa");
+        assertEquals(1, a.owner, "the re-locking thread does not own the monitor it lists as locked");
+        assertArrayEquals(new int[] { 0 }, a.waiters);
+        assertEquals(1, a.queued);
+        assertArrayEquals(new int[] { 1, -1 }, g.blockedBy);
+    }
+
+    @Test
+    void relockDeadlock() {
+        // The notifier then blocks on a monitor the re-locking thread holds further up its stack
+        thread("waiter", "BLOCKED (on object monitor)",
+               "- waiting to re-lock in wait() <0xa> (a " + OBJECT + ")", locked("0xa"), locked("0xb"));
+        thread("notifier", "BLOCKED (on object monitor)", waitingToLock("0xb"), locked("0xa"));
+        LockGraph g = build();
+
+        assertEquals(1, g.deadlocks.size());
+        assertArrayEquals(new int[] { 0, 1 }, canonical(g.deadlocks.get(0)));
+        assertEquals(1, monitor(g, "0xa").owner);
+        assertEquals(0, monitor(g, "0xb").owner);
+    }
+
+    // ── Ownable synchronizers ────────────────────────────────────────────────
+
+    @Test
+    void parkedOnOwnedSynchronizer() {
+        thread("holder", "RUNNABLE", owns("0x5"));
+        thread("parked", "WAITING (parking)", parking("0x5"));
+        LockGraph g = build();
+
+        LockGraph.Monitor s = monitor(g, "0x5");
+        assertEquals(0, s.owner);
+        assertEquals(SYNC, s.className);
+        assertArrayEquals(new int[] { -1, 0 }, g.blockedBy);
+        assertEquals(1, s.queued);
+    }
+
+    @Test
+    void synchronizerDeadlock() {
+        thread("A", "WAITING (parking)", parking("0x6"), owns("0x5"));
+        thread("B", "WAITING (parking)", parking("0x5"), owns("0x6"));
+        LockGraph g = build();
+
+        assertEquals(1, g.deadlocks.size());
+        assertArrayEquals(new int[] { 0, 1 }, canonical(g.deadlocks.get(0)));
+        assertEquals(1, monitor(g, "0x5").queued);
+    }
+
+    @Test
+    void mixedMonitorAndSynchronizerDeadlock() {
+        thread("A", "BLOCKED (on object monitor)", waitingToLock("0xa"), owns("0x5"));
+        thread("B", "WAITING (parking)", parking("0x5"), locked("0xa"));
+        LockGraph g = build();
+
+        assertEquals(1, g.deadlocks.size());
+        assertArrayEquals(new int[] { 1, 0 }, g.blockedBy);
+    }
+
+    @Test
+    void idleParkedWorkersAreNotContention() {
+        // Pool workers parked on a queue condition nobody owns
+        for (int t = 0; t < 4; t++) thread("worker-" + t, "WAITING (parking)", parking("0x9"));
+        LockGraph g = build();
+
+        assertNull(monitor(g, "0x9"));
+        assertTrue(g.deadlocks.isEmpty());
+    }
+
+    @Test
+    void selfWaitIsNotADeadlock() {
+        thread("A", "BLOCKED", waitingToLock("0xa"), locked("0xa"));
+        LockGraph g = build();
+
+        assertTrue(g.deadlocks.isEmpty());
+        assertEquals(-1, g.blockedBy[0]);
+    }
+}
@@ -0,0 +1,193 @@
+package com.analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class MultipartParserTest {
+
+    private static final String BOUNDARY = "----AaB03x";
+    private static final String TYPE     = "multipart/form-data; boundary=" + BOUNDARY;
+
+    // ── Helpers ──────────────────────────────────────────────────────────────
+
+    /** Hands out {@code data} at most {@code chunk} bytes per read, like a slow socket. */
+    private static InputStream chunked(byte[] data, int chunk) {
+        return new InputStream() {
+            int pos;
+            @Override public int read() {
+                return pos < data.length ? data[pos++] & 0xFF : -1;
+            }
+            @Override public int read(byte[] b, int off, int len) {
+                if (pos == data.length) return -1;
+                int n = Math.min(Math.min(len, chunk), data.length - pos);
+                System.arraycopy(data, pos, b, off, n);
+                pos += n;
+                return n;
+            }
+        };
+    }
+
+    private static byte[] form(byte[]... fileBodies) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < fileBodies.length; i++) {
+            out.writeBytes(("--" + BOUNDARY + "\r\n"
+                    + "Content-Disposition: form-data; name=\"file\"; filename=\"dump" + i + ".txt\"\r\n"
+                    + "Content-Type: text/plain\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            out.writeBytes(fileBodies[i]);
+            out.writeBytes("\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        }
+        out.writeBytes(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        return out.toByteArray();
+    }
+
+    private static byte[] bytes(String s) { return s.getBytes(StandardCharsets.UTF_8); }
+
+    private static byte[] firstFile(byte[] body, int chunk) throws Exception {
+        try (InputStream in = MultipartParser.openFileStream(chunked(body, chunk), TYPE)) {
+            return in.readAllBytes();
+        }
+    }
+
+    /** Reads through {@code read(byte[])} in small, odd-sized slices rather than readAllBytes. */
+    private static byte[] drain(InputStream in, int slice) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] b = new byte[slice];
+        for (int n; (n = in.read(b, 0, b.length)) != -1; ) out.write(b, 0, n);
+        return out.toByteArray();
+    }
+
+    private static byte[] filler(int n) {
+        byte[] b = new byte[n];
+        for (int i = 0; i < n; i++) b[i] = (byte) ('a' + i % 26);
+        return b;
+    }
+
+    // ── Boundary scanning ────────────────────────────────────────────────────
+
+    @Test
+    void readsSimpleFilePart() throws Exception {
+        byte[] body = bytes("\"main\" #1 prio=5\n   java.lang.Thread.State: RUNNABLE\n");
+        assertArrayEquals(body, firstFile(form(body), 1 << 16));
+    }
+
+    @Test
+    void boundarySplitAcrossReads() throws Exception {
+        byte[] content = bytes("line one\nline two\n");
+        byte[] body    = form(content);
+        // Every chunk size up to past the delimiter length puts the split at a different offset of it
+        for (int chunk = 1; chunk <= BOUNDARY.length() + 8; chunk++)
+            assertArrayEquals(content, firstFile(body, chunk), "chunk " + chunk);
+    }
+
+    @Test
+    void boundaryStraddlesFullBuffer() throws Exception {
+        // Part bodies around the 64 KiB window size make the delimiter cross a compaction
+        for (int size = 65536 - 40; size <= 65536 + 40; size++) {
+            byte[] content = filler(size);
+            assertArrayEquals(content, firstFile(form(content), 8192), "size " + size);
+        }
+    }
+
+    @Test
+    void carriageReturnHeldBackAtBufferEdge() throws Exception {
+        // The part's own trailing "\r" is kept; only the "\r\n" before the delimiter is framing
+        byte[] content = bytes("ends with a carriage return\r");
+        byte[] body    = form(content);
+        int edge = indexOf(body, content) + content.length;   // chunk ends right after that "\r"
+        for (int chunk = 1; chunk <= 64; chunk++)
+            assertArrayEquals(content, firstFile(body, chunk), "chunk " + chunk);
+        assertArrayEquals(content, firstFile(body, edge));
+    }
+
+    @Test
+    void loneCarriageReturnInsideBodyIsKept() throws Exception {
+        byte[] content = bytes("a\rb\r\nc\r\r\nd");
+        for (int chunk = 1; chunk <= 16; chunk++)
+            assertArrayEquals(content, firstFile(form(content), chunk), "chunk " + chunk);
+    }
+
+    @Test
+    void bodyWithBoundaryLikeText() throws Exception {
+        byte[] content = bytes("--" + BOUNDARY.substring(0, BOUNDARY.length() - 1) + "\n"   // delimiter minus a byte
+                + "x--" + BOUNDARY + "\n"                                                   // not at a line start
+                + "\n-" + BOUNDARY + "\n"                                                   // one dash short
+                + "\r\n--" + BOUNDARY.toLowerCase() + "\n"                                  // case differs
+                + "--\n");
+        for (int chunk : new int[] { 1, 2, 3, 7, 13, 1 << 16 })
+            assertArrayEquals(content, firstFile(form(content), chunk), "chunk " + chunk);
+    }
+
+    @Test
+    void emptyFilePart() throws Exception {
+        assertArrayEquals(new byte[0], firstFile(form(new byte[0]), 3));
+    }
+
+    // ── Framing ──────────────────────────────────────────────────────────────
+
+    @Test
+    void missingClosingBoundary() throws Exception {
+        String head = "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"d.txt\"\r\n\r\n";
+        for (String tail : new String[] { "", "\n", "\r\n" }) {
+            byte[] body = bytes(head + "unterminated body" + tail);
+            for (int chunk : new int[] { 1, 5, 1 << 16 }) {
+                try (MultipartParser.PartStream parts = MultipartParser.openParts(chunked(body, chunk), TYPE)) {
+                    assertTrue(parts.nextFile());
+                    assertEquals("unterminated body", new String(drain(parts, 4), StandardCharsets.UTF_8),
+                                 "tail " + tail.length() + ", chunk " + chunk);
+                    assertFalse(parts.nextFile());
+                }
+            }
+        }
+    }
+
+    @Test
+    void bodyWithoutAnyBoundary() throws Exception {
+        assertThrows(Exception.class, () -> firstFile(bytes("just some text\n"), 4));
+    }
+
+    @Test
+    void skipsFieldsAndReadsSeveralFiles() throws Exception {
+        String body = "preamble to ignore\r\n"
+                + "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"note\"\r\n\r\nnot a file\r\n"
+                + "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"a\"; filename=\"first.txt\"\r\n\r\none\r\n"
+                + "--" + BOUNDARY + "\r\ncontent-disposition: form-data; name=\"b\"; filename=second.txt\r\n\r\ntwo\n\r\n"
+                + "--" + BOUNDARY + "--\r\nepilogue";
+        for (int chunk : new int[] { 1, 4, 1 << 16 }) {
+            try (MultipartParser.PartStream parts = MultipartParser.openParts(chunked(bytes(body), chunk), TYPE)) {
+                assertTrue(parts.nextFile());
+                assertEquals("first.txt", parts.fileName());
+                // the second file is found even though this one is not read to its end
+                assertEquals('o', parts.read());
+                assertTrue(parts.nextFile());
+                assertEquals("second.txt", parts.fileName());
+                assertEquals("two\n", new String(drain(parts, 3), StandardCharsets.UTF_8));
+                assertEquals(-1, parts.read());
+                assertFalse(parts.nextFile());
+            }
+        }
+    }
+
+    @Test
+    void quotedBoundaryParameter() throws Exception {
+        assertEquals("a b", MultipartParser.boundary("multipart/form-data; boundary=\"a b\""));
+        assertEquals(BOUNDARY, MultipartParser.boundary("multipart/form-data;boundary=" + BOUNDARY + "; charset=x"));
+        assertThrows(Exception.class, () -> MultipartParser.boundary("multipart/form-data"));
+    }
+
+    private static int indexOf(byte[] hay, byte[] needle) {
+        for (int i = 0; i + needle.length <= hay.length; i++)
+            if (Arrays.equals(hay, i, i + needle.length, needle, 0, needle.length)) return i;
+        return -1;
+    }
+}
@@ -0,0 +1,168 @@
+package com.analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** The two LRU tiers of the result cache, their byte budgets, restarts, and the counters they report. */
+class ResultCacheTest {
+
+    @TempDir Path dir;
+
+    private static byte[] entry(int size, int fill) {
+        byte[] b = new byte[size];
+        Arrays.fill(b, (byte) fill);
+        return b;
+    }
+
+    private static String key(int i) { return ResultCache.summaryKey("%064x".formatted(i)); }
+
+    // One number out of statsJson()
+    private static long stat(ResultCache c, String name) {
+        String json = c.statsJson();
+        int at = json.indexOf("\"" + name + "\":") + name.length() + 3;
+        int end = at;
+        while (end < json.length() && Character.isDigit(json.charAt(end))) end++;
+        return Long.parseLong(json.substring(at, end));
+    }
+
+    // ── Memory tier ──────────────────────────────────────────────────────────
+
+    @Test
+    void evictsLeastRecentlyUsedPastTheByteBudget() throws Exception {
+        ResultCache c = new ResultCache(800, null, 0);          // entries up to 100 bytes
+        for (int i = 0; i < 8; i++) c.put(key(i), entry(100, i));
+        assertEquals(800, stat(c, "bytes"));
+        assertEquals(0, stat(c, "evictions"));
+
+        assertArrayEquals(entry(100, 0), c.get(key(0)));        // 0 is now the most recently used
+        c.put(key(8), entry(100, 8));
+        assertNull(c.get(key(1)), "least recently used goes first");
+        assertTrue(c.contains(key(0)));
+        assertTrue(c.contains(key(8)));
+        assertEquals(1, stat(c, "evictions"));
+        assertEquals(8, stat(c, "entries"));
+        assertEquals(800, stat(c, "bytes"));
+
+        c.put(key(9), entry(60, 9));                            // 860 bytes: one more has to go
+        assertFalse(c.contains(key(2)));
+        assertEquals(760, stat(c, "bytes"));
+    }
+
+    @Test
+    void replacingAnEntryCountsItsBytesOnce() throws Exception {
+        ResultCache c = new ResultCache(800, null, 0);
+        c.put(key(1), entry(100, 1));
+        c.put(key(1), entry(40, 2));
+        assertEquals(40, stat(c, "bytes"));
+        assertArrayEquals(entry(40, 2), c.get(key(1)));
+    }
+
+    @Test
+    void entriesPastAnEighthOfTheBudgetAreNotHeldInMemory() throws Exception {
+        ResultCache c = new ResultCache(800, null, 0);
+        c.put(key(1), entry(101, 1));
+        assertFalse(c.contains(key(1)));
+        assertNull(c.get(key(1)));
+        assertEquals(0, stat(c, "bytes"));
+    }
+
+    @Test
+    void countsHitsAndMisses() throws Exception {
+        ResultCache c = new ResultCache(800, null, 0);
+        c.put(key(1), entry(10, 1));
+        c.get(key(1));
+        c.get(key(1));
+        c.get(key(2));
+        assertTrue(c.contains(key(1)));                        // contains() counts nothing
+        assertFalse(c.contains(key(2)));
+        assertEquals(2, stat(c, "hits"));
+        assertEquals(1, stat(c, "misses"));
+        assertEquals(0, stat(c, "diskHits"));
+    }
+
+    @Test
+    void disabledWithoutBudgetOrDirectory() throws Exception {
+        assertFalse(new ResultCache(0, null, 0).enabled());
+        assertTrue(new ResultCache(0, dir, 1000).enabled());
+    }
+
+    // ── Disk tier ────────────────────────────────────────────────────────────
+
+    @Test
+    void largeEntriesGoToDiskOnlyAndArePromotedOnAHit() throws Exception {
+        ResultCache c = new ResultCache(8000, dir, 1 << 20);   // memory entries up to 1000 bytes
+        c.put(key(1), entry(500, 1));
+        c.put(key(2), entry(2000, 2));
+        assertTrue(Files.exists(dir.resolve(key(1) + ".json.gz")));
+        assertTrue(Files.exists(dir.resolve(key(2) + ".json.gz")));
+        assertEquals(1, stat(c, "entries"));
+        assertEquals(2, stat(c, "diskEntries"));
+        assertEquals(2500, stat(c, "diskBytes"));
+
+        assertArrayEquals(entry(2000, 2), c.get(key(2)));       // too large to promote
+        assertArrayEquals(entry(500, 1), c.get(key(1)));        // from memory
+        assertEquals(1, stat(c, "diskHits"));
+        assertEquals(1, stat(c, "hits"));
+    }
+
+    @Test
+    void diskHitIsPromotedToMemory() throws Exception {
+        new ResultCache(8000, dir, 1 << 20).put(key(1), entry(500, 1));
+        ResultCache c = new ResultCache(8000, dir, 1 << 20);
+        assertEquals(0, stat(c, "entries"));
+        assertArrayEquals(entry(500, 1), c.get(key(1)));
+        assertArrayEquals(entry(500, 1), c.get(key(1)));
+        assertEquals(1, stat(c, "diskHits"));
+        assertEquals(1, stat(c, "hits"));
+        assertEquals(1, stat(c, "entries"));
+    }
+
+    @Test
+    void diskTierEvictsLeastRecentlyUsedFiles() throws Exception {
+        ResultCache c = new ResultCache(0, dir, 1000);
+        for (int i = 0; i < 4; i++) c.put(key(i), entry(250, i));
+        assertEquals(1000, stat(c, "diskBytes"));
+        c.get(key(0));
+        c.put(key(4), entry(250, 4));
+        assertTrue(Files.exists(dir.resolve(key(0) + ".json.gz")));
+        assertFalse(Files.exists(dir.resolve(key(1) + ".json.gz")), "least recently used file is deleted");
+        assertEquals(1, stat(c, "diskEvictions"));
+        assertEquals(4, stat(c, "diskEntries"));
+        assertEquals(1000, stat(c, "diskBytes"));
+    }
+
+    @Test
+    void reloadsEntriesAfterARestart() throws Exception {
+        ResultCache before = new ResultCache(8000, dir, 1000);
+        before.put(key(1), entry(300, 1));
+        before.put(ResultCache.key("%064x".formatted(2)), entry(300, 2));
+        before.put(ResultCache.sessionKey("%064x".formatted(3)), entry(300, 3));
+        // Last use is the modification time: make key(1) the oldest
+        Files.setLastModifiedTime(dir.resolve(key(1) + ".json.gz"), FileTime.fromMillis(1_000));
+        Files.write(dir.resolve("z9-old-format.json.gz"), entry(10, 0));
+        Files.write(dir.resolve(key(7) + "123.tmp"), entry(10, 0));
+
+        ResultCache after = new ResultCache(8000, dir, 1000);
+        assertEquals(3, stat(after, "diskEntries"));
+        assertEquals(900, stat(after, "diskBytes"));
+        assertFalse(Files.exists(dir.resolve("z9-old-format.json.gz")), "other formats are removed");
+        assertFalse(Files.exists(dir.resolve(key(7) + "123.tmp")), "torn writes are removed");
+        assertArrayEquals(entry(300, 2), after.get(ResultCache.key("%064x".formatted(2))));
+        assertArrayEquals(entry(300, 3), after.get(ResultCache.sessionKey("%064x".formatted(3))));
+
+        after.put(key(4), entry(300, 4));
+        assertFalse(after.contains(key(1)), "the file least recently used before the restart goes first");
+        assertTrue(after.contains(key(4)));
+    }
+}
@@ -0,0 +1,94 @@
+package com.analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/** Sessions restored from their cached snapshot answer exactly as the session they were taken from. */
+class SessionTest {
+
+    private static final String DUMP = String.join("\n",
+            "\"worker-1\" #11 daemon prio=5 os_prio=0 cpu=120.50ms elapsed=9.1s tid=0x1011 nid=0xb waiting for monitor entry",
+            "   java.lang.Thread.State: BLOCKED (on object monitor)",
+            "\tat com.example.Account.transfer(Account.java:40)",
+            "\t- waiting to lock <0x00000000aaaa0002> (a java.lang.Object)",
+            "\t- locked <0x00000000aaaa0001> (a java.lang.Object)",
+            "",
+            "\"worker-2\" #12 prio=5 os_prio=0 cpu=80.25ms elapsed=9.1s tid=0x1012 nid=0xc waiting for monitor entry",
+            "   java.lang.Thread.State: BLOCKED (on object monitor)",
+            "\tat com.example.Account.transfer(Account.java:40)",
+            "\t- waiting to lock <0x00000000aaaa0001> (a java.lang.Object)",
+            "\t- locked <0x00000000aaaa0002> (a java.lang.Object)",
+            "",
+            "\"pool-1-thread-1\" #13 prio=5 os_prio=0 cpu=3.00ms elapsed=9.0s tid=0x1013 nid=0xd waiting on condition",
+            "   java.lang.Thread.State: WAITING (parking)",
+            "\tat jdk.internal.misc.Unsafe.park(Native Method)",
+            "\t- parking to wait for  <0x00000000bbbb0001> (a java.util.concurrent.locks.ReentrantLock$NonfairSync)",
+            "\tat java.util.concurrent.locks.LockSupport.park(LockSupport.java:341)",
+            "",
+            "\"main\" #1 prio=5 os_prio=0 cpu=900.00ms elapsed=9.5s tid=0x1001 nid=0x1 runnable",
+            "   java.lang.Thread.State: RUNNABLE",
+            "\tat com.example.Main.loop(Main.java:12)",
+            "\tat com.example.Main.main(Main.java:5)",
+            "",
+            "   Locked ownable synchronizers:",
+            "\t- <0x00000000bbbb0001> (a java.util.concurrent.locks.ReentrantLock$NonfairSync)",
+            "",
+            "\"odd\" #14 prio=5 tid=0x1014 nid=0xe runnable",
+            "   java.lang.Thread.State: SOMETHING_NEW (not seen before)",
+            "\tat com.example.Main.loop(Main.java:12)",
+            "");
+
+    private static Session session() {
+        ThreadDumpParser parser = new ThreadDumpParser();
+        List<ThreadInfo> threads = parser.parse(DUMP);
+        threads.sort((a, b) -> Double.compare(b.cpuMs, a.cpuMs));
+        return new Session("abc123", ThreadTable.of(threads, parser.stackTable()), LockGraph.build(threads));
+    }
+
+    private interface Body { void write(ByteArrayOutputStream out) throws IOException; }
+
+    private static String json(Body body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.write(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void restoredSessionAnswersTheSame() throws Exception {
+        Session s = session();
+        Session r = Session.restore(s.id, s.snapshot());
+
+        assertEquals(s.id, r.id);
+        assertEquals(json(s::writeSummary), json(r::writeSummary));
+        assertEquals(json(out -> JsonSerializer.writeAnalysis(s.threads, s.locks, out)),
+                     json(out -> JsonSerializer.writeAnalysis(r.threads, r.locks, out)));
+        for (int i = 0; i < s.threads.stackCount(); i++) {
+            int stack = i;
+            assertEquals(json(out -> s.writeStack(stack, out)), json(out -> r.writeStack(stack, out)), "stack " + i);
+        }
+        for (String q : new String[] { null, "state=BLOCKED", "lock=0x00000000aaaa0001", "name=worker&sort=name" }) {
+            Session.Query query = Session.Query.parse(q);
+            Session.Page a = s.query(query), b = r.query(query);
+            assertEquals(a.total(), b.total(), "query " + q);
+            assertArrayEquals(a.rows(), b.rows(), "query " + q);
+            assertEquals(json(out -> s.writePage(query, a, out)), json(out -> r.writePage(query, b, out)), "query " + q);
+        }
+        assertEquals(1, r.locks.deadlocks.size());
+    }
+
+    @Test
+    void corruptSnapshotIsRejected() throws Exception {
+        byte[] snapshot = session().snapshot();
+        assertThrows(IOException.class, () -> Session.restore("x", new byte[] { 1, 2, 3 }));
+        assertThrows(IOException.class, () -> Session.restore("x", Arrays.copyOf(snapshot, snapshot.length / 2)));
+    }
+}
@@ -0,0 +1,220 @@
+package com.analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Which request paths reach a frontend file, and the ETag rules that answer 304. */
+class StaticAssetsTest {
+
+    @TempDir Path root;
+
+    private Path         frontend;
+    private StaticAssets assets;
+    private HttpServer   server;
+
+    private static final String APP = "function main() { return 1; }\n".repeat(50);
+
+    @BeforeEach
+    void serve() throws IOException {
+        frontend = root.resolve("frontend");
+        Files.createDirectories(frontend.resolve("css"));
+        Files.writeString(frontend.resolve("index.html"), "<!doctype html><title>t</title>");
+        Files.writeString(frontend.resolve("app.js"), APP);
+        Files.writeString(frontend.resolve("css/site.css"), "body { margin: 0 }\n".repeat(20));
+        Files.writeString(frontend.resolve(".hidden"), "x");
+        Files.writeString(root.resolve("secret.txt"), "outside");
+        assets = new StaticAssets(frontend);
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new ThreadDumpServer.FrontendHandler(assets));
+        server.start();
+    }
+
+    @AfterEach
+    void stop() { server.stop(0); }
+
+    private record Response(int status, Map<String, String> headers, byte[] body) {
+        String header(String name) { return headers.get(name.toLowerCase(Locale.ROOT)); }
+    }
+
+    // A raw request, so the target goes out exactly as written
+    private Response request(String method, String target, String... headers) throws IOException {
+        try (Socket s = new Socket(InetAddress.getLoopbackAddress(), server.getAddress().getPort())) {
+            StringBuilder req = new StringBuilder(method + " " + target + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n");
+            for (String h : headers) req.append(h).append("\r\n");
+            OutputStream out = s.getOutputStream();
+            out.write(req.append("\r\n").toString().getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+
+            byte[] all = s.getInputStream().readAllBytes();
+            String text = new String(all, StandardCharsets.ISO_8859_1);
+            int end = text.indexOf("\r\n\r\n");
+            String[] lines = text.substring(0, end).split("\r\n");
+            Map<String, String> h = new HashMap<>();
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                h.put(lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT), lines[i].substring(colon + 1).trim());
+            }
+            byte[] body = Arrays.copyOfRange(all, end + 4, all.length);
+            return new Response(Integer.parseInt(lines[0].split(" ")[1]), h, body);
+        }
+    }
+
+    private static byte[] gunzip(byte[] b) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(b))) { return in.readAllBytes(); }
+    }
+
+    // ── Paths ────────────────────────────────────────────────────────────────
+
+    @Test
+    void safeAcceptsOnlyPlainPaths() {
+        assertTrue(StaticAssets.safe("/index.html"));
+        assertTrue(StaticAssets.safe("/css/site.css"));
+        assertTrue(StaticAssets.safe("/a..b.js"), "dots inside a name are fine");
+        assertTrue(StaticAssets.safe("/.well-known/x"), "refused by lookup, not by safe");
+
+        assertFalse(StaticAssets.safe("index.html"), "relative");
+        assertFalse(StaticAssets.safe("/../secret.txt"));
+        assertFalse(StaticAssets.safe("/css/../../secret.txt"));
+        assertFalse(StaticAssets.safe("/css/.."));
+        assertFalse(StaticAssets.safe("/./index.html"));
+        assertFalse(StaticAssets.safe("/css/."));
+        assertFalse(StaticAssets.safe("//etc/passwd"));
+        assertFalse(StaticAssets.safe("/css//site.css"));
+        assertFalse(StaticAssets.safe("/css/"));
+        assertFalse(StaticAssets.safe("/..\\secret.txt"));
+        assertFalse(StaticAssets.safe("/css\\site.css"));
+        assertFalse(StaticAssets.safe("/index.html\u0000.png"));
+        assertFalse(StaticAssets.safe("/index.html\n"));
+        assertFalse(StaticAssets.safe("/in\u001fdex.html"));
+        assertFalse(StaticAssets.safe("/in\u007fdex.html"));
+    }
+
+    @Test
+    void handlerRefusesPathsOutsideTheDirectory() throws IOException {
+        assertEquals(200, request("GET", "/").status());
+        assertEquals(200, request("GET", "/css/site.css").status());
+        for (String target : new String[] {
+                "/../secret.txt", "/%2e%2e/secret.txt", "/%2E%2E/secret.txt", "/css/%2e%2e/%2e%2e/secret.txt",
+                "/%2e/index.html", "/css//site.css", "/css%5c..%5c..%5csecret.txt", "/index.html%00.js", "/css%2f%2e%2e%2f%2e%2e%2fsecret.txt" }) {
+            Response r = request("GET", target);
+            assertEquals(400, r.status(), target);
+            assertFalse(new String(r.body(), StandardCharsets.UTF_8).contains("outside"), target);
+        }
+        // Read as an authority with an empty path, so it never reaches the handler
+        assertNotEquals(200, request("GET", "//index.html").status());
+        assertEquals(404, request("GET", "/.hidden").status(), "dot files are not loaded");
+        assertEquals(404, request("GET", "/missing.js").status());
+        assertEquals(405, request("POST", "/index.html", "Content-Length: 0").status());
+    }
+
+    // ── ETags ────────────────────────────────────────────────────────────────
+
+    @Test
+    void notModifiedComparesEitherFormWeakly() {
+        StaticAssets.Asset a = assets.get("/app.js");
+        assertNotNull(a.gzip());
+        String strong = a.etag(), gz = a.gzipEtag();
+        assertNotEquals(strong, gz);
+
+        assertTrue(StaticAssets.notModified(strong, a));
+        assertTrue(StaticAssets.notModified("W/" + strong, a));
+        assertTrue(StaticAssets.notModified(gz, a));
+        assertTrue(StaticAssets.notModified("W/" + gz, a));
+        assertTrue(StaticAssets.notModified("\"other\", " + strong, a));
+        assertTrue(StaticAssets.notModified("\"other\",W/" + gz + " , \"more\"", a));
+        assertTrue(StaticAssets.notModified("*", a));
+
+        assertFalse(StaticAssets.notModified(null, a));
+        assertFalse(StaticAssets.notModified("", a));
+        assertFalse(StaticAssets.notModified("\"other\", W/\"more\"", a));
+        assertFalse(StaticAssets.notModified(strong.replace("\"", ""), a), "unquoted");
+        assertFalse(StaticAssets.notModified(strong, assets.get("/index.html")), "another file's tag");
+    }
+
+    @Test
+    void handlerServesEachFormWithItsOwnTag() throws IOException {
+        StaticAssets.Asset a = assets.get("/app.js");
+
+        Response plain = request("GET", "/app.js");
+        assertEquals(200, plain.status());
+        assertEquals(a.etag(), plain.header("ETag"));
+        assertNull(plain.header("Content-Encoding"));
+        assertEquals("Accept-Encoding", plain.header("Vary"));
+        assertArrayEquals(APP.getBytes(StandardCharsets.UTF_8), plain.body());
+
+        Response gz = request("GET", "/app.js", "Accept-Encoding: br, gzip");
+        assertEquals(a.gzipEtag(), gz.header("ETag"));
+        assertEquals("gzip", gz.header("Content-Encoding"));
+        assertArrayEquals(APP.getBytes(StandardCharsets.UTF_8), gunzip(gz.body()));
+        assertNull(request("GET", "/app.js", "Accept-Encoding: gzip;q=0").header("Content-Encoding"));
+
+        Response head = request("HEAD", "/app.js", "Accept-Encoding: gzip");
+        assertEquals(200, head.status());
+        assertEquals(String.valueOf(a.gzip().length), head.header("Content-Length"));
+        assertEquals(0, head.body().length);
+
+        for (String tag : new String[] { a.etag(), "W/" + a.etag(), a.gzipEtag(), "\"x\", " + a.gzipEtag(), "*" }) {
+            Response r = request("GET", "/app.js", "Accept-Encoding: gzip", "If-None-Match: " + tag);
+            assertEquals(304, r.status(), tag);
+            assertEquals(0, r.body().length, tag);
+            assertEquals(a.gzipEtag(), r.header("ETag"), tag);
+        }
+        assertEquals(200, request("GET", "/app.js", "If-None-Match: \"stale\"").status());
+    }
+
+    @Test
+    void reloadPicksUpChangedFiles() throws IOException {
+        String before = assets.get("/app.js").etag();
+        Files.writeString(frontend.resolve("app.js"), "changed");
+        Files.writeString(frontend.resolve("css/new.css"), "p {}");
+        assets.reload();
+        assertNotEquals(before, assets.get("/app.js").etag());
+        assertNull(assets.get("/app.js").gzip(), "too small to be worth compressing");
+        assertEquals("text/css; charset=UTF-8", assets.get("/css/new.css").contentType());
+        assertEquals(200, request("GET", "/app.js", "If-None-Match: " + before).status());
+    }
+
+    @Test
+    void missingDirectoryServesNothing() throws IOException {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream was = System.err;
+        System.setErr(new PrintStream(err, true, StandardCharsets.UTF_8));
+        try {
+            assertEquals(0, new StaticAssets(root.resolve("none")).size());
+        } finally {
+            System.setErr(was);
+        }
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("not found"));
+    }
+}
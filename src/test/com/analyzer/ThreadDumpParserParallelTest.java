@@ -0,0 +1,235 @@
+package com.analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link ThreadDumpParser#parseParallel} against the sequential parse of the same input: the
+ * threads, every field, and the frame and stack ids of the shared table must come out the same.
+ */
+class ThreadDumpParserParallelTest {
+
+    private static ForkJoinPool pool;
+
+    @BeforeAll static void startPool() { pool = new ForkJoinPool(4); }
+    @AfterAll  static void stopPool()  { pool.shutdown(); }
+
+    // ── Dump building ────────────────────────────────────────────────────────
+
+    // The size cuts() starts from on a pool of 4, for inputs of the sizes built here
+    private static final int CHUNK = 1024 * 1024;
+
+    private static final String TRAILER =
+            "\nFound one Java-level deadlock:\n=============================\n"
+            + "\"worker-7\":\n  waiting to lock monitor 0x00007f00 (object 0x00000000aaaa0001, a java.lang.Object),\n"
+            + "  which is held by \"worker-8\"\n"
+            + "\"worker-8\":\n  waiting to lock monitor 0x00007f08 (object 0x00000000aaaa0002, a java.lang.Object),\n"
+            + "  which is held by \"worker-7\"\n\n"
+            + "Java stack information for the threads listed above:\n===================================================\n"
+            + "\"worker-7\":\n\tat com.example.Account.transfer(Account.java:40)\n"
+            + "\t- waiting to lock <0x00000000aaaa0001> (a java.lang.Object)\n\n"
+            + "Found 1 deadlock.\n\n"
+            + "JNI global refs: 15, weak refs: 0\n\n";
+
+    /** One thread, in the jstack layout; the kinds vary with {@code i} so every section shows up. */
+    private static String thread(int i) {
+        StringBuilder b = new StringBuilder(512);
+        b.append('"').append(i % 5 == 0 ? "http-nio-8080-exec-" : "pool-" + (i % 9) + "-thread-").append(i)
+         .append("\" #").append(i + 20).append(i % 3 == 0 ? " daemon" : "").append(" prio=5 os_prio=0 cpu=")
+         .append(i % 997).append('.').append(i % 100).append("ms elapsed=").append(100 + i % 50).append(".25s tid=0x")
+         .append(Long.toHexString(0x7f0000L + i)).append(" nid=0x").append(Integer.toHexString(i + 100))
+         .append(" waiting on condition  [0x00007f1a2b3c0000]\n");
+        switch (i % 4) {
+            case 0 -> b.append("   java.lang.Thread.State: TIMED_WAITING (parking)\n")
+                       .append("\tat jdk.internal.misc.Unsafe.park(Native Method)\n")
+                       .append("\t- parking to wait for  <0x00000000").append(String.format("%08x", i % 40))
+                       .append("> (a java.util.concurrent.locks.AbstractQueuedSynchronizer$ConditionObject)\n")
+                       .append("\tat java.util.concurrent.locks.LockSupport.parkNanos(LockSupport.java:252)\n");
+            case 1 -> b.append("   java.lang.Thread.State: BLOCKED (on object monitor)\n")
+                       .append("\tat com.example.Cache.get(Cache.java:").append(i % 90).append(")\n")
+                       .append("\t- waiting to lock <0x00000000aaaa").append(String.format("%04x", i % 7)).append("> (a java.lang.Object)\n")
+                       .append("\t- locked <0x00000000bbbb").append(String.format("%04x", i % 11)).append("> (a com.example.Cache)\n");
+            case 2 -> b.append("   java.lang.Thread.State: RUNNABLE\n")
+                       .append("\tat java.net.SocketInputStream.socketRead0(Native Method)\n")
+                       .append("\tat com.example.Client").append(i % 13).append(".read(Client.java:17)\n");
+            default -> b.append("   java.lang.Thread.State: WAITING (on object monitor)\n")
+                        .append("\tat java.lang.Object.wait(Native Method)\n")
+                        .append("\t- waiting on <0x00000000cccc").append(String.format("%04x", i % 5)).append("> (a java.lang.ref.ReferenceQueue$Lock)\n");
+        }
+        b.append("\tat com.example.Worker").append(i % 17).append(".run(Worker.java:").append(i % 200).append(")\n")
+         .append("\tat java.lang.Thread.run(Thread.java:833)\n\n");
+        if (i % 6 == 0) {
+            b.append("   Locked ownable synchronizers:\n")
+             .append("\t- <0x00000000dddd").append(String.format("%04x", i % 23))
+             .append("> (a java.util.concurrent.locks.ReentrantLock$NonfairSync)\n\n");
+        } else if (i % 6 == 1) {
+            b.append("   Locked ownable synchronizers:\n\t- None\n\n");
+        }
+        return b.toString();
+    }
+
+    /**
+     * A dump of at least {@code minChars}, two dumps back to back (each with its preamble and
+     * trailers), laid out so that every multiple of {@link #CHUNK} falls inside a header line:
+     * the cut search starts there and must move on to the next header.
+     */
+    private static String dump(int minChars, String eol) {
+        StringBuilder sb = new StringBuilder(minChars + CHUNK);
+        sb.append(("2026-10-17 05:00:00\nFull thread dump OpenJDK 64-Bit Server VM (21.0.1+12 mixed mode):\n\n"
+                + "Threads class SMR info:\n_java_thread_list=0x00007f00, length=3, elements={\n"
+                + "0x00007f10, 0x00007f20, 0x00007f30\n}\n\n").replace("\n", eol));
+        String frame = "\tat com.example.Pad.p(Pad.java:1)";
+        int i = 0;
+        for (long next = CHUNK; sb.length() < minChars; i++) {
+            String t = thread(i).replace("\n", eol);
+            if (sb.length() + t.length() > next) {
+                // Pad the previous block so this thread's header straddles the multiple
+                int pad = (int) (next - sb.length()) - 20 - frame.length() - eol.length();
+                if (pad >= 0) sb.append(frame).append("x".repeat(pad)).append(eol);
+                next += CHUNK;
+            }
+            sb.append(t);
+            if (i == 4000) {
+                sb.append((TRAILER + "Full thread dump OpenJDK 64-Bit Server VM (21.0.1+12 mixed mode):\n\n").replace("\n", eol));
+            }
+        }
+        return sb.append(TRAILER.replace("\n", eol)).toString();
+    }
+
+    // ── Comparison ───────────────────────────────────────────────────────────
+
+    private record Parsed(List<ThreadInfo> threads, StackTable stacks) { }
+
+    // Everything the analysis exposes, stack ids and the frame table included
+    private static String render(Parsed p) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonSerializer.writeAnalysis(p.threads, p.stacks, LockGraph.build(p.threads), out);
+        StringBuilder frames = new StringBuilder();
+        for (int f = 0; f < p.stacks.frameCount(); f++) frames.append(f).append(' ').append(p.stacks.frameText(f)).append('\n');
+        return out.toString(StandardCharsets.UTF_8) + "\n" + frames;
+    }
+
+    private static void assertSameParse(Parsed expected, Parsed actual) throws IOException {
+        assertEquals(expected.threads.size(), actual.threads.size(), "thread count");
+        assertEquals(expected.stacks.size(),  actual.stacks.size(),  "stack count");
+        for (int i = 0; i < expected.threads.size(); i++) {
+            ThreadInfo e = expected.threads.get(i), a = actual.threads.get(i);
+            String at = "thread " + i + " \"" + e.name + "\" ";
+            assertEquals(e.name,        a.name,        at + "name");
+            assertEquals(e.threadNum,   a.threadNum,   at + "threadNum");
+            assertEquals(e.daemon,      a.daemon,      at + "daemon");
+            assertEquals(e.priority,    a.priority,    at + "priority");
+            assertEquals(e.tid,         a.tid,         at + "tid");
+            assertEquals(e.nid,         a.nid,         at + "nid");
+            assertEquals(Double.doubleToLongBits(e.cpuMs),     Double.doubleToLongBits(a.cpuMs),     at + "cpuMs");
+            assertEquals(Double.doubleToLongBits(e.elapsedMs), Double.doubleToLongBits(a.elapsedMs), at + "elapsedMs");
+            assertEquals(e.state,       a.state,       at + "state");
+            assertEquals(e.stateDetail, a.stateDetail, at + "stateDetail");
+            assertEquals(e.lockInfo,    a.lockInfo,    at + "lockInfo");
+            assertEquals(e.health,      a.health,      at + "health");
+            assertEquals(e.stackTrace,  a.stackTrace,  at + "stackTrace");
+            assertEquals(locks(e),      locks(a),      at + "locks");
+            assertEquals(e.stack.id,    a.stack.id,    at + "stack id");
+        }
+        assertEquals(render(expected), render(actual));
+    }
+
+    private static String locks(ThreadInfo t) {
+        if (t.locks == null) return "null";
+        StringBuilder sb = new StringBuilder();
+        for (LockRef l : t.locks) sb.append(l.kind).append(' ').append(l.address).append(' ').append(l.className).append('\n');
+        return sb.toString();
+    }
+
+    private static Parsed sequential(String text) {
+        ThreadDumpParser p = new ThreadDumpParser();
+        return new Parsed(p.parse(text), p.stackTable());
+    }
+
+    private static Parsed streamed(String text) throws IOException {
+        ThreadDumpParser p = new ThreadDumpParser();
+        List<ThreadInfo> threads = new ArrayList<>();
+        p.parse(new StringReader(text), threads::add);
+        return new Parsed(threads, p.stackTable());
+    }
+
+    private static Parsed parallel(String text) {
+        ThreadDumpParser p = new ThreadDumpParser();
+        return new Parsed(p.parseParallel(text, pool), p.stackTable());
+    }
+
+    private static Parsed parallel(ByteBuffer utf8) {
+        ThreadDumpParser p = new ThreadDumpParser();
+        return new Parsed(p.parseParallel(utf8, pool), p.stackTable());
+    }
+
+    private static void assertSameBothWays(String text) throws IOException {
+        assertTrue(text.length() >= ThreadDumpParser.PARALLEL_THRESHOLD, "large enough to be split");
+        assertSameParse(sequential(text), parallel(text));
+
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        assertSameParse(streamed(text), parallel(ByteBuffer.wrap(utf8)));
+        // A buffer that starts past position 0, as a slice of a larger one would
+        ByteBuffer offset = ByteBuffer.allocate(utf8.length + 7).position(7);
+        offset.put(utf8).position(7);
+        assertSameParse(streamed(text), parallel(offset));
+    }
+
+    // ── Tests ────────────────────────────────────────────────────────────────
+
+    @Test
+    void lfDumpMatchesSequentialParse() throws IOException {
+        assertSameBothWays(straddled(dump(ThreadDumpParser.PARALLEL_THRESHOLD + 3 * CHUNK, "\n")));
+    }
+
+    @Test
+    void crlfDumpMatchesSequentialParse() throws IOException {
+        assertSameBothWays(straddled(dump(ThreadDumpParser.PARALLEL_THRESHOLD + 3 * CHUNK, "\r\n")));
+    }
+
+    // Checks the padding did its job, so the tests cannot quietly stop splitting inside headers
+    private static String straddled(String text) {
+        for (int at = CHUNK; at < text.length(); at += CHUNK) {
+            assertEquals('"', text.charAt(text.lastIndexOf('\n', at) + 1), "offset " + at + " is inside a header line");
+        }
+        return text;
+    }
+
+    @Test
+    void unevenSizesMatchSequentialParse() throws IOException {
+        // Other sizes move n / (parallelism * 4) off the padded offsets, so cuts land anywhere
+        String base = dump(ThreadDumpParser.PARALLEL_THRESHOLD * 3, "\n");
+        for (int cut : new int[] { 12_345, 777_777 }) {
+            String text = base.substring(0, base.indexOf("\n\"", base.length() - cut) + 1);
+            assertSameParse(sequential(text), parallel(text));
+        }
+    }
+
+    @Test
+    void nonAsciiNamesMatchSequentialParse() throws IOException {
+        // Multi-byte UTF-8 puts the byte offsets of the ByteBuffer form off the char offsets
+        String text = dump(ThreadDumpParser.PARALLEL_THRESHOLD + CHUNK, "\n").replace("pool-", "пул-");
+        assertSameBothWays(text);
+    }
+
+    @Test
+    void parsedTrailersAsSequentialParseDoes() throws IOException {
+        String text = dump(ThreadDumpParser.PARALLEL_THRESHOLD + CHUNK, "\n");
+        Parsed p = parallel(text);
+        assertTrue(p.threads.stream().anyMatch(t -> t.locks != null && !t.locks.isEmpty()), "lock lines parsed");
+        assertSameParse(sequential(text), p);
+    }
+}
@@ -0,0 +1,382 @@
+package com.analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The header and lock-line scanner against the regexes it replaced. {@link RegexParser} is the
+ * previous parser, kept verbatim as the reference; every field it produced must come out the same.
+ */
+class ThreadDumpParserTest {
+
+    // ── Headers by JDK ───────────────────────────────────────────────────────
+
+    private static final String[] HOTSPOT_8 = {
+            "\"main\" #1 prio=5 os_prio=0 tid=0x00007f8c4c009800 nid=0x1c03 runnable [0x00007f8c53f3e000]",
+            "\"Reference Handler\" #2 daemon prio=10 os_prio=0 tid=0x00007f8c4c0ee000 nid=0x2703 in Object.wait() [0x00007f8c30d4e000]",
+            "\"VM Thread\" os_prio=31 tid=0x00007f8c4d00b000 nid=0x3103 runnable",
+            "\"GC task thread (ParallelGC)\" os_prio=0 tid=0x00007f8c4c01e800 nid=0x1d03 runnable",
+            "\"VM Periodic Task Thread\" os_prio=0 tid=0x00007f8c4c0fa000 nid=0x5603 waiting on condition",
+            "\"http-nio-8080-exec-7\" #41 daemon prio=5 os_prio=0 tid=0x00007f8bd8012000 nid=0x6aaf waiting on condition [0x00007f8b9c7f9000]",
+    };
+
+    private static final String[] HOTSPOT_17 = {
+            "\"main\" #1 prio=5 os_prio=0 cpu=1234.56ms elapsed=100.23s tid=0x00007f5d2c028000 nid=0x5c03 waiting on condition  [0x00007f5d33ffe000]",
+            "\"Signal Dispatcher\" #4 daemon prio=9 os_prio=0 cpu=0.24ms elapsed=3601.12s tid=0x00007f5d2c1a6800 nid=0x5c0a runnable  [0x0000000000000000]",
+            "\"C2 CompilerThread0\" #5 daemon prio=9 os_prio=0 cpu=73012.50ms elapsed=3601.12s tid=0x00007f5d2c1a8800 nid=0x5c0b waiting on condition  [0x0000000000000000]",
+            "\"Common-Cleaner\" #9 daemon prio=8 os_prio=0 cpu=2.11ms elapsed=3600.98s tid=0x00007f5d2c1dc000 nid=0x5c10 in Object.wait()  [0x00007f5cf8ff5000]",
+            "\"VM Thread\" os_prio=0 cpu=311.04ms elapsed=3601.15s tid=0x00007f5d2c19b000 nid=0x5c08 runnable",
+            "\"ZLogsAgent-3\" #45 daemon prio=5 os_prio=0 cpu=55553.41ms elapsed=123456.78ms tid=0x00007f1234 nid=0x1a2b waiting on condition",
+            "\"Finalizer\" #3 daemon prio=8 os_prio=0 cpu=23.45ms elapsed=131000.00ms tid=0x00007fffff nid=0x0003 in Object.wait()",
+    };
+
+    private static final String[] HOTSPOT_21 = {
+            "\"main\" #1 [5123] prio=5 os_prio=0 cpu=12.34ms elapsed=5.67s tid=0x00007f3a18026800 nid=5123 runnable  [0x00007f3a1f5fe000]",
+            "\"Reference Handler\" #9 [5131] daemon prio=10 os_prio=0 cpu=0.30ms elapsed=5.60s tid=0x00007f3a18149000 nid=5131 waiting on condition  [0x00007f39f40fe000]",
+            "\"ForkJoinPool-1-worker-1\" #29 [5160] daemon prio=5 os_prio=0 cpu=1.02ms elapsed=2.01s tid=0x00007f39b0004800 [0x00007f39cf9fe000]",
+            "\"Attach Listener\" #31 [5171] daemon prio=9 os_prio=0 cpu=0.51ms elapsed=0.10s tid=0x00007f39a8000ea0 nid=5171 waiting on condition  [0x0000000000000000]",
+            "\"VM Thread\" os_prio=0 cpu=4.12ms elapsed=5.65s tid=0x00007f3a180f6800 nid=5129 runnable",
+            "\"Thread-0\" #22 [644252] prio=5 os_prio=0 cpu=99.90ms elapsed=100.00s tid=0x00007f39b0001000 nid=644252 runnable  [0x00007f39cfffe000]",
+            "\"virtual-carrier\" #40 [7001] daemon prio=5 os_prio=0 cpu=0.00ms elapsed=0.00s tid=0x00007f39b0009000 waiting on condition  [0x00007f39ceffe000]",
+    };
+
+    // tid/nid spellings: upper-case hex, no 0x on tid, hex nid that overflows a long, ms elapsed, both elapsed forms
+    private static final String[] ID_VARIANTS = {
+            "\"a\" #7 prio=5 os_prio=0 tid=0x00007F8C4C009800 nid=0X1C03 runnable",
+            "\"b\" #8 prio=5 os_prio=0 tid=0x7f nid=0xABCdef runnable",
+            "\"c\" #9 prio=5 os_prio=0 tid=7f8c nid=42 runnable",
+            "\"d\" #10 prio=5 os_prio=0 tid=0x1 nid=0xffffffffffffffffff [77] runnable",
+            "\"e\" #11 prio=5 nid=0x1 nid=0x2 tid=0x3 tid=0x4 runnable",
+            "\"f\" #12 prio=5 nid=12x runnable [99]",
+            "\"g\" #13 [55] prio=5 nid=0x runnable",
+            "\"h\" [66] #14 [67] prio=5 runnable",
+            "\"i\" #15 cpu=10ms elapsed=20000ms runnable",
+            "\"j\" #16 cpu=10ms elapsed=20s elapsed=5ms runnable",
+            "\"k\" #17 cpu=10ms elapsed=5ms elapsed=20s runnable",
+            "\"l\" #18 cpu=10.5ms elapsed=3.25sx elapsed=4000ms runnable",
+            "\"m\" #19 cpu=1ms elapsed=2s_ elapsed=3s elapsed=4s runnable",
+            "\"n\" #20 daemon\tprio=5 runnable",
+            "\"o\"  #21  daemon  prio=5  os_prio=-1  tid=0x1  nid=0x2  runnable",
+            "\"p\" #x #22 prio=x prio=4 os_prio=y os_prio=3 runnable",
+            "\"q\"",
+            "\"éè-中文\" #23 prio=5 tid=0x1 nid=0x2 runnable",
+            "\"r\" #24 cpu=1234567890123.5ms elapsed=98765432109876.25s tid=0x1 nid=0x2",
+            "\"s\" #25 cpu=0.1ms elapsed=0.3ms",
+            "\"t\" #26 cpu=.5ms elapsed=1.s",
+            "\"u\" #27 nid=00042 [0099]",
+    };
+
+    // Numbers the regexes matched but could not parse: both parsers must fail alike
+    private static final String[] MALFORMED = {
+            "\"a\" #1 prio=99999999999 runnable",
+            "\"b\" #99999999999 prio=5 runnable",
+            "\"c\" #1 os_prio=99999999999 runnable",
+            "\"d\" #1 cpu=1.2.3ms elapsed=1s runnable",
+            "\"e\" #1 cpu=.ms runnable",
+            "\"f\" #1 elapsed=..s runnable",
+            "\"g\" #1 nid=99999999999999999999 runnable",
+            "\"h\" #1 [99999999999999999999] runnable",
+    };
+
+    private static final String STACK =
+            "   java.lang.Thread.State: BLOCKED (on object monitor)\n"
+            + "\tat com.example.Cache.get(Cache.java:42)\n"
+            + "\t- waiting to lock <0x000000076b3e2de8> (a java.lang.Object)\n"
+            + "\tat com.example.Service.handle(Service.java:17)\n"
+            + "\t- locked <0x000000076b3e2e00> (a com.example.Service)\n"
+            + "\t- waiting on <0x000000076b3e2f00> (a java.lang.ref.ReferenceQueue$Lock)\n"
+            + "\t- parking to wait for  <0x000000076b3e3000> (a java.util.concurrent.locks.AbstractQueuedSynchronizer$ConditionObject)\n"
+            + "\t- locked <0x000000076b3e3100>\n"
+            + "\t-   locked   <0x000000076b3e3200>   (a X)\n"
+            + "\t- waiting on <no object reference available>\n"
+            + "\t- parking to wait for<0x1>(a Y)\n"
+            + "\t- locked <0x2> (a Z\n"
+            + "\t- locked <> (a Z)\n"
+            + "\t- locked 0x3\n"
+            + "\tat java.lang.Thread.run(Thread.java:833)\n";
+
+    // ── Comparison ───────────────────────────────────────────────────────────
+
+    @Test
+    void hotspot8Headers()  { assertSameHeaders(HOTSPOT_8); }
+
+    @Test
+    void hotspot17Headers() { assertSameHeaders(HOTSPOT_17); }
+
+    @Test
+    void hotspot21Headers() { assertSameHeaders(HOTSPOT_21); }
+
+    @Test
+    void tidAndNidVariants() { assertSameHeaders(ID_VARIANTS); }
+
+    @Test
+    void malformedNumbersFailAlike() {
+        for (String header : MALFORMED) {
+            String dump = header + "\n" + STACK;
+            Class<? extends Throwable> expected = assertThrows(RuntimeException.class,
+                    () -> new RegexParser().parse(dump), header).getClass();
+            Throwable actual = assertThrows(RuntimeException.class, () -> new ThreadDumpParser().parse(dump), header);
+            assertEquals(expected, actual.getClass(), header);
+        }
+    }
+
+    @Test
+    void lockLines() {
+        for (String state : new String[] {
+                "   java.lang.Thread.State: RUNNABLE",
+                "   java.lang.Thread.State: WAITING (parking)",
+                "   java.lang.Thread.State: TIMED_WAITING (sleeping)",
+                "   java.lang.Thread.State:   TERMINATED",
+                "   java.lang.Thread.State: SOMETHING_NEW  (with detail)  ",
+                "   java.lang.Thread.State:",
+                "\tat first.Frame(Frame.java:1)" })
+            assertSame(HOTSPOT_17[0] + "\n" + state + "\n" + STACK.substring(STACK.indexOf('\n') + 1));
+    }
+
+    @Test
+    void wholeDumps() {
+        StringBuilder dump = new StringBuilder("2024-01-01 00:00:00\nFull thread dump OpenJDK 64-Bit Server VM (17.0.9+9 mixed mode):\n\n");
+        for (String[] jdk : List.of(HOTSPOT_8, HOTSPOT_17, HOTSPOT_21, ID_VARIANTS))
+            for (String h : jdk) dump.append(h).append('\n').append(STACK).append('\n');
+        dump.append("JNI global refs: 15, weak refs: 0\n\nFound one Java-level deadlock:\n");
+        assertSame(dump.toString());
+        // no blank line between blocks, and blank lines before the state line
+        assertSame(HOTSPOT_21[0] + "\n\n\n" + STACK + HOTSPOT_21[1] + "\n" + STACK);
+    }
+
+    @Test
+    void crlfInput() {
+        StringBuilder dump = new StringBuilder();
+        for (String[] jdk : List.of(HOTSPOT_8, HOTSPOT_17, HOTSPOT_21, ID_VARIANTS))
+            for (String h : jdk) dump.append(h).append('\n').append(STACK).append('\n');
+        String crlf = dump.toString().replace("\n", "\r\n");
+        assertSame(crlf);
+
+        // The streaming path splits on "\r\n" itself, so its stacks carry no '\r' at all
+        List<ThreadInfo> streamed = new ArrayList<>();
+        try { new ThreadDumpParser().parse(new StringReader(crlf), streamed::add); }
+        catch (IOException e) { throw new AssertionError(e); }
+        List<ThreadInfo> expected = new RegexParser().parse(dump.toString());
+        assertEquals(expected.size(), streamed.size());
+        for (int i = 0; i < expected.size(); i++) assertSameThread(expected.get(i), streamed.get(i), "thread " + i);
+    }
+
+    /** The one intended difference: key-like text inside the quoted name is not a header field. */
+    @Test
+    void nameIsNotScannedForFields() {
+        ThreadInfo t = new ThreadDumpParser().parse("\"GC Thread#0 daemon prio=3 nid=0x9\" os_prio=0 tid=0x1 runnable\n").get(0);
+        assertEquals("GC Thread#0 daemon prio=3 nid=0x9", t.name);
+        assertEquals(-1, t.threadNum);
+        assertEquals(-1, t.priority);
+        assertFalse(t.daemon);
+        assertEquals("", t.nid);
+        assertEquals("0x1", t.tid);
+
+        ThreadInfo old = new RegexParser().parse("\"GC Thread#0 daemon prio=3 nid=0x9\" os_prio=0 tid=0x1 runnable\n").get(0);
+        assertEquals(0, old.threadNum);
+        assertTrue(old.daemon);
+    }
+
+    private static void assertSameHeaders(String[] headers) {
+        StringBuilder dump = new StringBuilder();
+        for (String h : headers) {
+            assertSame(h + "\n" + STACK);
+            dump.append(h).append('\n').append(STACK).append('\n');
+        }
+        assertSame(dump.toString());
+    }
+
+    private static void assertSame(String dump) {
+        List<ThreadInfo> expected = new RegexParser().parse(dump);
+        List<ThreadInfo> actual   = new ThreadDumpParser().parse(dump);
+        assertEquals(expected.size(), actual.size(), "thread count");
+        for (int i = 0; i < expected.size(); i++) assertSameThread(expected.get(i), actual.get(i), "thread " + i);
+    }
+
+    private static void assertSameThread(ThreadInfo e, ThreadInfo a, String where) {
+        String at = where + " \"" + e.name + "\" ";
+        assertEquals(e.name,        a.name,        at + "name");
+        assertEquals(e.threadNum,   a.threadNum,   at + "threadNum");
+        assertEquals(e.daemon,      a.daemon,      at + "daemon");
+        assertEquals(e.priority,    a.priority,    at + "priority");
+        assertEquals(e.osPriority,  a.osPriority,  at + "osPriority");
+        assertEquals(e.tid,         a.tid,         at + "tid");
+        assertEquals(e.nid,         a.nid,         at + "nid");
+        assertEquals(e.nidDecimal,  a.nidDecimal,  at + "nidDecimal");
+        // bitwise, so a rounding difference in the hand-written decimal parse shows up
+        assertEquals(Double.doubleToLongBits(e.cpuMs),      Double.doubleToLongBits(a.cpuMs),      at + "cpuMs");
+        assertEquals(Double.doubleToLongBits(e.elapsedMs),  Double.doubleToLongBits(a.elapsedMs),  at + "elapsedMs");
+        assertEquals(Double.doubleToLongBits(e.cpuPercent), Double.doubleToLongBits(a.cpuPercent), at + "cpuPercent");
+        assertEquals(e.state,       a.state,       at + "state");
+        assertEquals(e.stateDetail, a.stateDetail, at + "stateDetail");
+        assertEquals(e.lockInfo,    a.lockInfo,    at + "lockInfo");
+        assertEquals(e.health,      a.health,      at + "health");
+        assertEquals(e.stackTrace.replace("\r", ""), a.stackTrace.replace("\r", ""), at + "stackTrace");
+    }
+
+    // ── Reference ────────────────────────────────────────────────────────────
+
+    /** The regex parser as it was before the scanner replaced it. Do not "fix" it: it is the spec. */
+    private static final class RegexParser {
+
+        private static final Pattern P_NAME       = Pattern.compile("^\"(.+?)\"");
+        private static final Pattern P_THREAD_NUM = Pattern.compile("#(\\d+)");
+        private static final Pattern P_BRACKET_ID = Pattern.compile("\\[(\\d+)\\]");
+        private static final Pattern P_PRIO       = Pattern.compile("\\bprio=(\\d+)");
+        private static final Pattern P_OS_PRIO    = Pattern.compile("os_prio=(\\d+)");
+        private static final Pattern P_CPU        = Pattern.compile("cpu=([\\d.]+)ms");
+        private static final Pattern P_ELAPSED_S  = Pattern.compile("elapsed=([\\d.]+)s\\b");
+        private static final Pattern P_ELAPSED_MS = Pattern.compile("elapsed=([\\d.]+)ms\\b");
+        private static final Pattern P_TID        = Pattern.compile("tid=(0x[0-9a-fA-F]+)");
+        private static final Pattern P_NID_HEX    = Pattern.compile("nid=(0x[0-9a-fA-F]+)");
+        private static final Pattern P_NID_DEC    = Pattern.compile("\\bnid=(\\d+)\\b");
+
+        private static final Pattern P_STATE      = Pattern.compile(
+                "java\\.lang\\.Thread\\.State:\\s*(\\S+)\\s*(.*)");
+
+        private static final Pattern P_LOCK_WAIT  = Pattern.compile(
+                "-\\s*waiting (?:to lock|on) <([^>]+)>(?:\\s*\\((.+?)\\))?");
+        private static final Pattern P_LOCKED     = Pattern.compile(
+                "-\\s*locked <([^>]+)>(?:\\s*\\((.+?)\\))?");
+        private static final Pattern P_PARKING    = Pattern.compile(
+                "-\\s*parking to wait for\\s*<([^>]+)>(?:\\s*\\((.+?)\\))?");
+
+        List<ThreadInfo> parse(String content) {
+            List<ThreadInfo> threads = new ArrayList<>();
+            String[] lines = content.split("\n");
+            int i = 0;
+
+            while (i < lines.length) {
+                String line = lines[i].trim();
+                Matcher nameMatcher = P_NAME.matcher(line);
+                if (!nameMatcher.find()) { i++; continue; }
+
+                ThreadInfo t = new ThreadInfo(nameMatcher.group(1));
+
+                extractInt(P_THREAD_NUM, line).ifPresent(v -> t.threadNum  = v);
+                extractInt(P_PRIO,       line).ifPresent(v -> t.priority   = v);
+                extractInt(P_OS_PRIO,    line).ifPresent(v -> t.osPriority = v);
+                extractDouble(P_CPU,     line).ifPresent(v -> t.cpuMs      = v);
+                extractStr(P_TID,        line).ifPresent(v -> t.tid        = v);
+                t.daemon = line.contains(" daemon ");
+
+                boolean elapsedFound = false;
+                Matcher elS = P_ELAPSED_S.matcher(line);
+                if (elS.find()) {
+                    t.elapsedMs = Double.parseDouble(elS.group(1)) * 1000.0;
+                    elapsedFound = true;
+                }
+                if (!elapsedFound) {
+                    Matcher elMs = P_ELAPSED_MS.matcher(line);
+                    if (elMs.find()) t.elapsedMs = Double.parseDouble(elMs.group(1));
+                }
+
+                Matcher nidHex = P_NID_HEX.matcher(line);
+                if (nidHex.find()) {
+                    String hex = nidHex.group(1);
+                    t.nid = hex;
+                    try { t.nidDecimal = String.valueOf(Long.parseLong(hex.substring(2), 16)); }
+                    catch (NumberFormatException ignored) {}
+                } else {
+                    Matcher nidDec = P_NID_DEC.matcher(line);
+                    if (nidDec.find()) {
+                        String dec = nidDec.group(1);
+                        t.nidDecimal = dec;
+                        t.nid = "0x" + Long.toHexString(Long.parseLong(dec));
+                    }
+                }
+
+                if (t.nidDecimal.isEmpty()) {
+                    Matcher bm = P_BRACKET_ID.matcher(line);
+                    int searchFrom = 0;
+                    Matcher tnm = P_THREAD_NUM.matcher(line);
+                    if (tnm.find()) searchFrom = tnm.end();
+                    bm.region(searchFrom, line.length());
+                    if (bm.find()) {
+                        t.nidDecimal = bm.group(1);
+                        t.nid = "0x" + Long.toHexString(Long.parseLong(bm.group(1)));
+                    }
+                }
+
+                if (t.cpuMs >= 0 && t.elapsedMs > 0)
+                    t.cpuPercent = (t.cpuMs / t.elapsedMs) * 100.0;
+
+                int j = i + 1;
+                while (j < lines.length && lines[j].trim().isEmpty()) j++;
+
+                if (j < lines.length) {
+                    Matcher sm = P_STATE.matcher(lines[j].trim());
+                    if (sm.find()) {
+                        t.state       = sm.group(1).trim();
+                        t.stateDetail = sm.group(2).trim();
+                        j++;
+                    }
+                }
+
+                StringBuilder stack   = new StringBuilder();
+                StringBuilder lockBuf = new StringBuilder();
+
+                while (j < lines.length) {
+                    String sl = lines[j];
+                    String st = sl.trim();
+                    if (st.isEmpty())                { j++; break; }
+                    if (st.startsWith("\""))         { break; }
+                    if (st.startsWith("JNI global")) { break; }
+                    if (st.startsWith("Found "))     { break; }
+
+                    matchLock(P_LOCK_WAIT, st, lockBuf, "waiting on");
+                    matchLock(P_LOCKED,    st, lockBuf, "locked");
+                    matchLock(P_PARKING,   st, lockBuf, "parking for");
+
+                    stack.append(sl).append("\n");
+                    j++;
+                }
+
+                t.stackTrace = stack.toString().trim();
+                t.lockInfo   = lockBuf.toString().trim();
+
+                t.computeHealth();
+                threads.add(t);
+                i = j;
+            }
+
+            return threads;
+        }
+
+        private static void matchLock(Pattern p, String line, StringBuilder buf, String label) {
+            Matcher m = p.matcher(line);
+            if (m.find()) {
+                if (buf.length() > 0) buf.append("; ");
+                buf.append(label).append(" <").append(m.group(1)).append(">");
+                if (m.groupCount() >= 2 && m.group(2) != null) buf.append(" (").append(m.group(2)).append(")");
+            }
+        }
+
+        private static Optional<Double> extractDouble(Pattern p, String s) {
+            Matcher m = p.matcher(s);
+            return m.find() ? Optional.of(Double.parseDouble(m.group(1))) : Optional.empty();
+        }
+
+        private static Optional<Integer> extractInt(Pattern p, String s) {
+            Matcher m = p.matcher(s);
+            return m.find() ? Optional.of(Integer.parseInt(m.group(1))) : Optional.empty();
+        }
+
+        private static Optional<String> extractStr(Pattern p, String s) {
+            Matcher m = p.matcher(s);
+            return m.find() ? Optional.of(m.group(1)) : Optional.empty();
+        }
+    }
+}
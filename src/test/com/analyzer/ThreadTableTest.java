@@ -0,0 +1,53 @@
+package com.analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class ThreadTableTest {
+
+    private static ThreadTable table(int n, String statePrefix, String detailPrefix) {
+        StringBuilder dump = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            dump.append("\"t").append(i).append("\" #").append(i).append(" prio=5 tid=0x").append(Integer.toHexString(i + 1))
+                .append(" nid=0x").append(Integer.toHexString(i + 1)).append(" runnable\n")
+                .append("   java.lang.Thread.State: ").append(statePrefix).append(i).append(' ')
+                .append(detailPrefix).append(i).append('\n')
+                .append("\tat com.example.Worker.run(Worker.java:1)\n\n");
+        }
+        ThreadDumpParser parser = new ThreadDumpParser();
+        List<ThreadInfo> threads = parser.parse(dump.toString());
+        assertEquals(n, threads.size());
+        return ThreadTable.of(threads, parser.stackTable());
+    }
+
+    @Test
+    void manyDistinctStates() {
+        // Well past a byte's worth of codes: every row keeps its own state and detail
+        ThreadTable t = table(300, "ODD_", "(detail ");
+        for (int i = 0; i < t.size(); i++) {
+            assertEquals("ODD_" + i, t.state(i));
+            assertEquals("(detail " + i, t.stateDetail(i));
+            assertEquals("ODD_" + i, t.get(i).state);
+            assertTrue(t.stateCode(i) >= 0);
+        }
+        assertEquals(t.stateCode(7), t.stateCode("ODD_7"));
+    }
+
+    @Test
+    void statesPastTheDictionaryAreKeptAsText() {
+        int n = Short.MAX_VALUE + 40;
+        ThreadTable t = table(n, "S", "D");
+        List<Integer> odd = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            assertEquals("S" + i, t.state(i), "row " + i);
+            assertEquals("D" + i, t.stateDetail(i), "row " + i);
+            if (t.stateCode(i) < 0) odd.add(i);
+        }
+        assertTrue(odd.size() > 0 && odd.size() < 100, "only the overflow rows lose their code: " + odd.size());
+    }
+}